@@ -1,6 +1,7 @@
 buildscript {
     dependencies {
         classpath("gradle.plugin.com.github.sherter.google-java-format:google-java-format-gradle-plugin:0.8")
+        classpath("me.champeau.gradle:jmh-gradle-plugin:0.5.3")
     }
 }
 plugins {
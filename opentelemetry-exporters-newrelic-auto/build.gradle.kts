@@ -13,11 +13,17 @@ dependencies {
     }
 
     annotationProcessor("com.google.auto.service:auto-service:1.0-rc7")
-    api("com.google.auto.service:auto-service-annotations:1.0-rc7")
-    api(project(":opentelemetry-exporters-newrelic"))
-    implementation("io.opentelemetry.javaagent:opentelemetry-javaagent-spi:0.13.1")
-    implementation("io.opentelemetry:opentelemetry-sdk:0.13.1")
+    compileOnly("com.google.auto.service:auto-service-annotations:1.0-rc7")
+    api(project(":opentelemetry-exporters-newrelic")) {
+        // the exporters fall back to the JDK's HTTP client, so OkHttp, Okio and Kotlin stay out of the jar
+        exclude(group = "com.newrelic.telemetry", module = "telemetry-http-okhttp")
+    }
+    // provided by the javaagent at runtime
+    compileOnly("io.opentelemetry.javaagent:opentelemetry-javaagent-spi:0.13.1")
+    compileOnly("io.opentelemetry:opentelemetry-sdk:0.13.1")
 
+    testImplementation("io.opentelemetry.javaagent:opentelemetry-javaagent-spi:0.13.1")
+    testImplementation("io.opentelemetry:opentelemetry-sdk:0.13.1")
     testRuntimeOnly("org.junit.jupiter:junit-jupiter-engine:5.4.2")
     testRuntimeOnly("org.slf4j:slf4j-simple:1.7.26")
     testImplementation("org.junit.jupiter:junit-jupiter-api:5.4.2")
@@ -26,13 +32,27 @@ dependencies {
 }
 
 tasks {
-    "shadowJar"(ShadowJar::class) {
+    val shadowPrefix = "com.newrelic.telemetry.opentelemetry.export.auto.shaded"
+    val shadowJar = "shadowJar"(ShadowJar::class) {
         classifier = ""
         minimize()
+        dependencies {
+            // the javaagent provides the OpenTelemetry SDK and slf4j to exporters
+            exclude(dependency("io.opentelemetry.*:.*:.*"))
+            exclude(dependency("org.slf4j:.*:.*"))
+        }
+        relocate("com.google.gson", "$shadowPrefix.com.google.gson")
+        relocate("com.newrelic.telemetry", "$shadowPrefix.com.newrelic.telemetry") {
+            exclude("com.newrelic.telemetry.opentelemetry.**")
+        }
     }
     assemble {
         dependsOn(shadowJar)
     }
+    test {
+        dependsOn(shadowJar)
+        systemProperty("newrelic.shadow.jar", shadowJar.archiveFile.get().asFile.absolutePath)
+    }
     jar {
         enabled = false
     }
@@ -5,8 +5,17 @@
 
 package com.newrelic.telemetry.opentelemetry.export.auto;
 
+import java.time.Duration;
+import java.util.Locale;
 import java.util.Properties;
+import java.util.function.Function;
 
+/**
+ * Reads the exporter settings from the agent's configuration. A setting that isn't in the
+ * configuration is also looked up as an environment variable, named by upper-casing the property
+ * and replacing its dots with underscores: {@code newrelic.max.batch.size} can be set with {@code
+ * NEWRELIC_MAX_BATCH_SIZE}.
+ */
 class NewRelicConfiguration {
   static final String NEW_RELIC_API_KEY = "newrelic.api.key";
   static final String NEW_RELIC_ENABLE_AUDIT_LOGGING = "newrelic.enable.audit.logging";
@@ -14,35 +23,53 @@ class NewRelicConfiguration {
   static final String DEFAULT_NEW_RELIC_SERVICE_NAME = "(unknown service)";
   static final String NEW_RELIC_TRACE_URI_OVERRIDE = "newrelic.trace.uri.override";
   static final String NEW_RELIC_METRIC_URI_OVERRIDE = "newrelic.metric.uri.override";
+  static final String NEW_RELIC_MAX_CONCURRENT_SENDS = "newrelic.max.concurrent.sends";
+  static final String NEW_RELIC_USE_VIRTUAL_THREADS = "newrelic.use.virtual.threads";
+  static final String NEW_RELIC_SHUTDOWN_TIMEOUT_SECONDS = "newrelic.shutdown.timeout.seconds";
+  static final String NEW_RELIC_MAX_BATCH_SIZE = "newrelic.max.batch.size";
+  static final String NEW_RELIC_GROUP_BY_INSTRUMENTATION_LIBRARY =
+      "newrelic.group.by.instrumentation.library";
+  static final String NEW_RELIC_AGGREGATE_SPAN_METRICS = "newrelic.aggregate.span.metrics";
+  static final String NEW_RELIC_SPAN_SAMPLE_RATIO = "newrelic.span.sample.ratio";
+  static final String NEW_RELIC_DEDUPLICATE_SPANS_CAPACITY = "newrelic.deduplicate.spans.capacity";
+  static final String NEW_RELIC_DEDUPLICATE_SPANS_FALSE_POSITIVE_RATE =
+      "newrelic.deduplicate.spans.false.positive.rate";
+  static final double DEFAULT_DEDUPLICATE_SPANS_FALSE_POSITIVE_RATE = 0.0001;
+  static final String NEW_RELIC_TRACE_LOCALITY_WINDOW_MILLIS =
+      "newrelic.trace.locality.window.millis";
+  static final String NEW_RELIC_TRACE_LOCALITY_MAX_SPANS = "newrelic.trace.locality.max.spans";
+  static final int DEFAULT_TRACE_LOCALITY_MAX_SPANS = 10_000;
 
   // this should not be used, now that we have both span and metric exporters. Support is here
   // for any users who might still be using it.
   static final String NEW_RELIC_URI_OVERRIDE = "newrelic.uri.override";
 
   private final Properties config;
+  private final Function<String, String> environment;
 
   NewRelicConfiguration(Properties config) {
+    this(config, System::getenv);
+  }
+
+  NewRelicConfiguration(Properties config, Function<String, String> environment) {
     this.config = config;
+    this.environment = environment;
   }
 
   String getApiKey() {
-    return config.getProperty(NEW_RELIC_API_KEY, "");
+    return getProperty(NEW_RELIC_API_KEY, "");
   }
 
   boolean shouldEnableAuditLogging() {
-    return Boolean.parseBoolean(config.getProperty(NEW_RELIC_ENABLE_AUDIT_LOGGING, "false"));
+    return getBoolean(NEW_RELIC_ENABLE_AUDIT_LOGGING);
   }
 
   // note: newrelic.service.name key will not required once service.name is guaranteed to be
   // provided via the Resource in the SDK.  See
   // https://github.com/newrelic/opentelemetry-exporter-java/issues/62
   // for the tracking issue.
-  static String getServiceName(Properties config) {
-    return config.getProperty(NEW_RELIC_SERVICE_NAME, DEFAULT_NEW_RELIC_SERVICE_NAME);
-  }
-
   String getServiceName() {
-    return getServiceName(config);
+    return getProperty(NEW_RELIC_SERVICE_NAME, DEFAULT_NEW_RELIC_SERVICE_NAME);
   }
 
   boolean isMetricUriSpecified() {
@@ -50,7 +77,7 @@ class NewRelicConfiguration {
   }
 
   String getMetricUri() {
-    return config.getProperty(NEW_RELIC_METRIC_URI_OVERRIDE, "");
+    return getProperty(NEW_RELIC_METRIC_URI_OVERRIDE, "");
   }
 
   boolean isTraceUriSpecified() {
@@ -58,8 +85,116 @@ class NewRelicConfiguration {
   }
 
   String getTraceUri() {
-    String deprecatedUriOverride = config.getProperty(NEW_RELIC_URI_OVERRIDE, "");
-    return config.getProperty(NEW_RELIC_TRACE_URI_OVERRIDE, deprecatedUriOverride);
+    String deprecatedUriOverride = getProperty(NEW_RELIC_URI_OVERRIDE, "");
+    return getProperty(NEW_RELIC_TRACE_URI_OVERRIDE, deprecatedUriOverride);
+  }
+
+  boolean isMaxConcurrentSendsSpecified() {
+    return isSpecified(getProperty(NEW_RELIC_MAX_CONCURRENT_SENDS, ""));
+  }
+
+  int getMaxConcurrentSends() {
+    return getInt(NEW_RELIC_MAX_CONCURRENT_SENDS);
+  }
+
+  boolean shouldUseVirtualThreads() {
+    return getBoolean(NEW_RELIC_USE_VIRTUAL_THREADS);
+  }
+
+  boolean isShutdownTimeoutSpecified() {
+    return isSpecified(getProperty(NEW_RELIC_SHUTDOWN_TIMEOUT_SECONDS, ""));
+  }
+
+  Duration getShutdownTimeout() {
+    return Duration.ofSeconds(getInt(NEW_RELIC_SHUTDOWN_TIMEOUT_SECONDS));
+  }
+
+  boolean isMaxBatchSizeSpecified() {
+    return isSpecified(getProperty(NEW_RELIC_MAX_BATCH_SIZE, ""));
+  }
+
+  int getMaxBatchSize() {
+    return getInt(NEW_RELIC_MAX_BATCH_SIZE);
+  }
+
+  boolean shouldGroupByInstrumentationLibrary() {
+    return getBoolean(NEW_RELIC_GROUP_BY_INSTRUMENTATION_LIBRARY);
+  }
+
+  boolean shouldAggregateSpanMetrics() {
+    return getBoolean(NEW_RELIC_AGGREGATE_SPAN_METRICS);
+  }
+
+  boolean isSpanSampleRatioSpecified() {
+    return isSpecified(getProperty(NEW_RELIC_SPAN_SAMPLE_RATIO, ""));
+  }
+
+  double getSpanSampleRatio() {
+    return getDouble(NEW_RELIC_SPAN_SAMPLE_RATIO);
+  }
+
+  boolean isSpanDeduplicationSpecified() {
+    return isSpecified(getProperty(NEW_RELIC_DEDUPLICATE_SPANS_CAPACITY, ""));
+  }
+
+  int getSpanDeduplicationCapacity() {
+    return getInt(NEW_RELIC_DEDUPLICATE_SPANS_CAPACITY);
+  }
+
+  double getSpanDeduplicationFalsePositiveRate() {
+    if (!isSpecified(getProperty(NEW_RELIC_DEDUPLICATE_SPANS_FALSE_POSITIVE_RATE, ""))) {
+      return DEFAULT_DEDUPLICATE_SPANS_FALSE_POSITIVE_RATE;
+    }
+    return getDouble(NEW_RELIC_DEDUPLICATE_SPANS_FALSE_POSITIVE_RATE);
+  }
+
+  boolean isTraceLocalitySpecified() {
+    return isSpecified(getProperty(NEW_RELIC_TRACE_LOCALITY_WINDOW_MILLIS, ""));
+  }
+
+  Duration getTraceLocalityWindow() {
+    return Duration.ofMillis(getInt(NEW_RELIC_TRACE_LOCALITY_WINDOW_MILLIS));
+  }
+
+  int getTraceLocalityMaxSpans() {
+    if (!isSpecified(getProperty(NEW_RELIC_TRACE_LOCALITY_MAX_SPANS, ""))) {
+      return DEFAULT_TRACE_LOCALITY_MAX_SPANS;
+    }
+    return getInt(NEW_RELIC_TRACE_LOCALITY_MAX_SPANS);
+  }
+
+  static String toEnvironmentVariable(String key) {
+    return key.toUpperCase(Locale.ROOT).replace('.', '_');
+  }
+
+  private String getProperty(String key, String defaultValue) {
+    String value = config.getProperty(key);
+    if (value == null) {
+      value = environment.apply(toEnvironmentVariable(key));
+    }
+    return value == null ? defaultValue : value.trim();
+  }
+
+  private boolean getBoolean(String key) {
+    return Boolean.parseBoolean(getProperty(key, "false"));
+  }
+
+  private int getInt(String key) {
+    String value = getProperty(key, "");
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(key + " must be a whole number, but was: " + value, e);
+    }
+  }
+
+  private double getDouble(String key) {
+    String value = getProperty(key, "");
+    try {
+      return Double.parseDouble(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(key + " must be a number, but was: " + value, e);
+    }
   }
 
   private boolean isSpecified(String s) {
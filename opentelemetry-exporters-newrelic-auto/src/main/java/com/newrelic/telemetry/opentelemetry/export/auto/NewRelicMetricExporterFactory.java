@@ -54,6 +54,22 @@ public class NewRelicMetricExporterFactory implements MetricExporterFactory {
       builder.uriOverride(URI.create(newRelicConfiguration.getMetricUri()));
     }
 
+    if (newRelicConfiguration.isMaxConcurrentSendsSpecified()) {
+      builder.maxConcurrentSends(newRelicConfiguration.getMaxConcurrentSends());
+    }
+
+    if (newRelicConfiguration.shouldUseVirtualThreads()) {
+      builder.useVirtualThreads();
+    }
+
+    if (newRelicConfiguration.isShutdownTimeoutSpecified()) {
+      builder.shutdownTimeout(newRelicConfiguration.getShutdownTimeout());
+    }
+
+    if (newRelicConfiguration.isMaxBatchSizeSpecified()) {
+      builder.maxBatchSize(newRelicConfiguration.getMaxBatchSize());
+    }
+
     return builder.build();
   }
 }
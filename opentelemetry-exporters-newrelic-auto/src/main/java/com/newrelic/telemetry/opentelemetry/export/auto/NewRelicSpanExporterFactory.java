@@ -51,6 +51,50 @@ public class NewRelicSpanExporterFactory implements SpanExporterFactory {
       newRelicSpanExporterBuilder.uriOverride(URI.create(newRelicConfiguration.getTraceUri()));
     }
 
+    if (newRelicConfiguration.isMaxConcurrentSendsSpecified()) {
+      newRelicSpanExporterBuilder.maxConcurrentSends(newRelicConfiguration.getMaxConcurrentSends());
+    }
+
+    if (newRelicConfiguration.shouldUseVirtualThreads()) {
+      newRelicSpanExporterBuilder.useVirtualThreads();
+    }
+
+    if (newRelicConfiguration.isShutdownTimeoutSpecified()) {
+      newRelicSpanExporterBuilder.shutdownTimeout(newRelicConfiguration.getShutdownTimeout());
+    }
+
+    if (newRelicConfiguration.isMaxBatchSizeSpecified()) {
+      newRelicSpanExporterBuilder.maxBatchSize(newRelicConfiguration.getMaxBatchSize());
+    }
+
+    if (newRelicConfiguration.shouldGroupByInstrumentationLibrary()) {
+      newRelicSpanExporterBuilder.groupByInstrumentationLibrary();
+    }
+
+    if (newRelicConfiguration.shouldAggregateSpanMetrics()) {
+      newRelicSpanExporterBuilder.aggregateSpanMetrics();
+      if (newRelicConfiguration.isMetricUriSpecified()) {
+        newRelicSpanExporterBuilder.metricUriOverride(
+            URI.create(newRelicConfiguration.getMetricUri()));
+      }
+    }
+
+    if (newRelicConfiguration.isSpanSampleRatioSpecified()) {
+      newRelicSpanExporterBuilder.spanSampleRatio(newRelicConfiguration.getSpanSampleRatio());
+    }
+
+    if (newRelicConfiguration.isSpanDeduplicationSpecified()) {
+      newRelicSpanExporterBuilder.deduplicateSpans(
+          newRelicConfiguration.getSpanDeduplicationCapacity(),
+          newRelicConfiguration.getSpanDeduplicationFalsePositiveRate());
+    }
+
+    if (newRelicConfiguration.isTraceLocalitySpecified()) {
+      newRelicSpanExporterBuilder.traceLocality(
+          newRelicConfiguration.getTraceLocalityWindow(),
+          newRelicConfiguration.getTraceLocalityMaxSpans());
+    }
+
     return newRelicSpanExporterBuilder.build();
   }
 }
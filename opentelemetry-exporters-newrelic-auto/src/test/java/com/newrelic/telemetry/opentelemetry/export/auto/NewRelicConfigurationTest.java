@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export.auto;
+
+import static com.newrelic.telemetry.opentelemetry.export.auto.NewRelicConfiguration.NEW_RELIC_MAX_BATCH_SIZE;
+import static com.newrelic.telemetry.opentelemetry.export.auto.NewRelicConfiguration.NEW_RELIC_SPAN_SAMPLE_RATIO;
+import static com.newrelic.telemetry.opentelemetry.export.auto.NewRelicConfiguration.NEW_RELIC_TRACE_LOCALITY_WINDOW_MILLIS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import org.junit.jupiter.api.Test;
+
+class NewRelicConfigurationTest {
+
+  @Test
+  void testPropertiesTakePrecedenceOverEnvironment() {
+    Properties config = new Properties();
+    config.setProperty(NEW_RELIC_MAX_BATCH_SIZE, "500");
+    Map<String, String> environment = new HashMap<>();
+    environment.put("NEWRELIC_MAX_BATCH_SIZE", "1000");
+    environment.put("NEWRELIC_SPAN_SAMPLE_RATIO", " 0.25 ");
+
+    NewRelicConfiguration testClass = new NewRelicConfiguration(config, environment::get);
+
+    assertEquals(500, testClass.getMaxBatchSize());
+    assertTrue(testClass.isSpanSampleRatioSpecified());
+    assertEquals(0.25, testClass.getSpanSampleRatio());
+  }
+
+  @Test
+  void testDefaults() {
+    NewRelicConfiguration testClass =
+        new NewRelicConfiguration(new Properties(), new HashMap<String, String>()::get);
+
+    assertFalse(testClass.isMaxBatchSizeSpecified());
+    assertFalse(testClass.isTraceLocalitySpecified());
+    assertFalse(testClass.shouldAggregateSpanMetrics());
+    assertEquals(
+        NewRelicConfiguration.DEFAULT_TRACE_LOCALITY_MAX_SPANS,
+        testClass.getTraceLocalityMaxSpans());
+    assertEquals(
+        NewRelicConfiguration.DEFAULT_DEDUPLICATE_SPANS_FALSE_POSITIVE_RATE,
+        testClass.getSpanDeduplicationFalsePositiveRate());
+    assertEquals(NewRelicConfiguration.DEFAULT_NEW_RELIC_SERVICE_NAME, testClass.getServiceName());
+  }
+
+  @Test
+  void testDurations() {
+    Properties config = new Properties();
+    config.setProperty(NEW_RELIC_TRACE_LOCALITY_WINDOW_MILLIS, "1500");
+    NewRelicConfiguration testClass =
+        new NewRelicConfiguration(config, new HashMap<String, String>()::get);
+
+    assertEquals(Duration.ofMillis(1500), testClass.getTraceLocalityWindow());
+  }
+
+  @Test
+  void testInvalidNumbers() {
+    Properties config = new Properties();
+    config.setProperty(NEW_RELIC_SPAN_SAMPLE_RATIO, "half");
+    NewRelicConfiguration testClass =
+        new NewRelicConfiguration(config, new HashMap<String, String>()::get);
+
+    assertThrows(IllegalArgumentException.class, testClass::getSpanSampleRatio);
+  }
+
+  @Test
+  void testEnvironmentVariableNames() {
+    assertEquals(
+        "NEWRELIC_TRACE_URI_OVERRIDE",
+        NewRelicConfiguration.toEnvironmentVariable("newrelic.trace.uri.override"));
+  }
+}
@@ -5,11 +5,21 @@
 
 package com.newrelic.telemetry.opentelemetry.export.auto;
 
+import static com.newrelic.telemetry.opentelemetry.export.auto.NewRelicConfiguration.NEW_RELIC_AGGREGATE_SPAN_METRICS;
+import static com.newrelic.telemetry.opentelemetry.export.auto.NewRelicConfiguration.NEW_RELIC_DEDUPLICATE_SPANS_CAPACITY;
+import static com.newrelic.telemetry.opentelemetry.export.auto.NewRelicConfiguration.NEW_RELIC_GROUP_BY_INSTRUMENTATION_LIBRARY;
+import static com.newrelic.telemetry.opentelemetry.export.auto.NewRelicConfiguration.NEW_RELIC_MAX_BATCH_SIZE;
+import static com.newrelic.telemetry.opentelemetry.export.auto.NewRelicConfiguration.NEW_RELIC_MAX_CONCURRENT_SENDS;
+import static com.newrelic.telemetry.opentelemetry.export.auto.NewRelicConfiguration.NEW_RELIC_SHUTDOWN_TIMEOUT_SECONDS;
+import static com.newrelic.telemetry.opentelemetry.export.auto.NewRelicConfiguration.NEW_RELIC_SPAN_SAMPLE_RATIO;
+import static com.newrelic.telemetry.opentelemetry.export.auto.NewRelicConfiguration.NEW_RELIC_TRACE_LOCALITY_WINDOW_MILLIS;
 import static com.newrelic.telemetry.opentelemetry.export.auto.NewRelicConfiguration.NEW_RELIC_TRACE_URI_OVERRIDE;
 import static com.newrelic.telemetry.opentelemetry.export.auto.NewRelicConfiguration.NEW_RELIC_URI_OVERRIDE;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import com.newrelic.telemetry.opentelemetry.export.NewRelicSpanExporter;
 import io.opentelemetry.sdk.trace.export.SpanExporter;
 import java.util.Collections;
 import java.util.Properties;
@@ -41,6 +51,54 @@ class NewRelicSpanExporterFactoryTest {
     assertNotNull(spanExporter);
   }
 
+  @Test
+  void testFromConfig_SenderSettings() {
+    Properties config = TestProperties.newTestProperties();
+    config.setProperty(NEW_RELIC_MAX_CONCURRENT_SENDS, "4");
+    config.setProperty(NEW_RELIC_SHUTDOWN_TIMEOUT_SECONDS, "2");
+    NewRelicSpanExporterFactory newRelicSpanExporterFactory = new NewRelicSpanExporterFactory();
+    SpanExporter spanExporter = newRelicSpanExporterFactory.fromConfig(config);
+
+    // the limit starts at half the maximum
+    assertEquals(2, ((NewRelicSpanExporter) spanExporter).getSendConcurrencyLimit());
+  }
+
+  @Test
+  void testFromConfig_PerformanceSettings() {
+    Properties config = TestProperties.newTestProperties();
+    config.setProperty(NEW_RELIC_MAX_BATCH_SIZE, "2000");
+    config.setProperty(NEW_RELIC_GROUP_BY_INSTRUMENTATION_LIBRARY, "true");
+    config.setProperty(NEW_RELIC_AGGREGATE_SPAN_METRICS, "true");
+    config.setProperty(NEW_RELIC_SPAN_SAMPLE_RATIO, "0.1");
+    config.setProperty(NEW_RELIC_DEDUPLICATE_SPANS_CAPACITY, "1000");
+    config.setProperty(NEW_RELIC_TRACE_LOCALITY_WINDOW_MILLIS, "500");
+    NewRelicSpanExporterFactory newRelicSpanExporterFactory = new NewRelicSpanExporterFactory();
+    SpanExporter spanExporter = newRelicSpanExporterFactory.fromConfig(config);
+
+    assertNotNull(spanExporter);
+    spanExporter.shutdown();
+  }
+
+  @Test
+  void testFromConfig_InvalidSampleRatio() {
+    Properties config = TestProperties.newTestProperties();
+    config.setProperty(NEW_RELIC_SPAN_SAMPLE_RATIO, "2");
+    NewRelicSpanExporterFactory newRelicSpanExporterFactory = new NewRelicSpanExporterFactory();
+
+    assertThrows(
+        IllegalArgumentException.class, () -> newRelicSpanExporterFactory.fromConfig(config));
+  }
+
+  @Test
+  void testFromConfig_InvalidNumber() {
+    Properties config = TestProperties.newTestProperties();
+    config.setProperty(NEW_RELIC_MAX_CONCURRENT_SENDS, "lots");
+    NewRelicSpanExporterFactory newRelicSpanExporterFactory = new NewRelicSpanExporterFactory();
+
+    assertThrows(
+        IllegalArgumentException.class, () -> newRelicSpanExporterFactory.fromConfig(config));
+  }
+
   @Test
   void testGetNames() {
     NewRelicSpanExporterFactory factory = new NewRelicSpanExporterFactory();
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export.auto;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the size and contents of the shaded jar that the javaagent loads. Every class is loaded
+ * into the agent's exporter class loader at startup, so the class count is a proxy for the
+ * extension's startup cost.
+ */
+class ShadowJarTest {
+
+  private static final long MAX_JAR_BYTES = 1_000_000;
+  private static final int MAX_CLASSES = 600;
+  private static final String OWN_PACKAGE = "com/newrelic/telemetry/opentelemetry/export/";
+
+  private File jar;
+
+  @BeforeEach
+  void findJar() {
+    // set by the build, which runs shadowJar before the tests
+    String path = System.getProperty("newrelic.shadow.jar");
+    assumeTrue(path != null, "newrelic.shadow.jar is not set");
+    jar = new File(path);
+  }
+
+  @Test
+  void testJarSize() {
+    assertTrue(
+        jar.length() < MAX_JAR_BYTES,
+        "The shaded jar is " + jar.length() + " bytes, more than " + MAX_JAR_BYTES);
+  }
+
+  @Test
+  void testClassCount() throws Exception {
+    List<String> classes = classNames();
+    assertTrue(
+        classes.size() < MAX_CLASSES,
+        "The shaded jar has " + classes.size() + " classes, more than " + MAX_CLASSES);
+  }
+
+  @Test
+  void testThirdPartyClassesAreRelocated() throws Exception {
+    for (String name : classNames()) {
+      assertTrue(name.startsWith(OWN_PACKAGE), name + " is not relocated");
+    }
+  }
+
+  @Test
+  void testOkHttpIsNotInTheJar() throws Exception {
+    try (JarFile jarFile = new JarFile(jar)) {
+      Enumeration<JarEntry> entries = jarFile.entries();
+      while (entries.hasMoreElements()) {
+        String name = entries.nextElement().getName();
+        assertFalse(
+            name.startsWith("okhttp3/") || name.startsWith("okio/") || name.startsWith("kotlin/"),
+            name + " should not be in the jar, batches are sent with the JDK's HTTP client");
+      }
+    }
+  }
+
+  @Test
+  void testExporterFactoriesAreRegistered() throws Exception {
+    try (JarFile jarFile = new JarFile(jar)) {
+      assertNotNull(
+          jarFile.getEntry(
+              "META-INF/services/io.opentelemetry.javaagent.spi.exporter.SpanExporterFactory"));
+      assertNotNull(
+          jarFile.getEntry(
+              "META-INF/services/io.opentelemetry.javaagent.spi.exporter.MetricExporterFactory"));
+    }
+  }
+
+  private List<String> classNames() throws Exception {
+    List<String> classes = new ArrayList<>();
+    try (JarFile jarFile = new JarFile(jar)) {
+      Enumeration<JarEntry> entries = jarFile.entries();
+      while (entries.hasMoreElements()) {
+        String name = entries.nextElement().getName();
+        if (name.endsWith(".class") && !name.endsWith("module-info.class")) {
+          classes.add(name);
+        }
+      }
+    }
+    return classes;
+  }
+}
@@ -1,3 +1,5 @@
+apply(plugin = "me.champeau.gradle.jmh")
+
 dependencies {
     val newRelicTelemetrySdkVersion = "0.10.0"
 
@@ -5,6 +7,11 @@ dependencies {
     implementation("org.slf4j:slf4j-api:1.7.26")
     implementation("com.newrelic.telemetry:telemetry-http-okhttp:$newRelicTelemetrySdkVersion")
     implementation("io.opentelemetry:opentelemetry-sdk:0.13.1")
+    // optional: OTLP export is only used when the application adds protobuf-java itself. Only
+    // CodedOutputStream is used, to write OTLP without the generated message classes.
+    compileOnly("com.google.protobuf:protobuf-java:3.14.0")
+    // optional: zstd payload compression is only used when the application adds zstd-jni itself
+    compileOnly("com.github.luben:zstd-jni:1.4.8-2")
 
     testRuntimeOnly("org.slf4j:slf4j-simple:1.7.26")
     testRuntimeOnly("org.junit.jupiter:junit-jupiter-engine:5.4.2")
@@ -12,6 +19,17 @@ dependencies {
     testImplementation("org.mockito:mockito-core:3.0.0")
     testImplementation("org.mockito:mockito-junit-jupiter:3.0.0")
     testImplementation("com.google.guava:guava:28.0-jre")
+    testImplementation("com.github.luben:zstd-jni:1.4.8-2")
+    testImplementation("com.google.protobuf:protobuf-java:3.14.0")
+
+    jmh("com.google.protobuf:protobuf-java:3.14.0")
+}
+
+configure<me.champeau.gradle.JMHPluginExtension> {
+    // the allocation benchmark builds its spans with the tests' TestSpanData
+    setIncludeTests(true)
+    // reports the bytes allocated per operation (gc.alloc.rate.norm) alongside the timings
+    profilers = listOf("gc")
 }
 
 tasks {
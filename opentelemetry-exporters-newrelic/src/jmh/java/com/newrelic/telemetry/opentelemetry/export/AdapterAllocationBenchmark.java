@@ -0,0 +1,155 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import com.newrelic.telemetry.Attributes;
+import com.newrelic.telemetry.metrics.Metric;
+import com.newrelic.telemetry.spans.SpanBatch;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Labels;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.sdk.common.InstrumentationLibraryInfo;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.metrics.data.MetricData.LongPoint;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the conversion of a batch of spans and a set of cumulative metric points with and
+ * without the adapters' thread-local pools.
+ *
+ * <p>The interesting number is {@code gc.alloc.rate.norm} from the gc profiler, which the jmh task
+ * enables: the bytes allocated per conversion. The New Relic spans, metrics and attributes that
+ * make up the batches are allocated either way, since they are held until the batch is sent, so
+ * the difference is the grouping and lookup scratch that the pools reuse.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AdapterAllocationBenchmark {
+
+  private static final int SPANS_PER_EXPORT = 512;
+  private static final int METRIC_SERIES = 200;
+
+  @Param({"false", "true"})
+  public boolean useThreadLocalPools;
+
+  @Param({"false", "true"})
+  public boolean groupByInstrumentationLibrary;
+
+  private SpanBatchAdapter spanBatchAdapter;
+  private MetricPointAdapter metricPointAdapter;
+  private List<SpanData> spans;
+  private List<MetricData> metrics;
+  private long exportCount;
+
+  @Setup
+  public void setUp() {
+    spanBatchAdapter =
+        new SpanBatchAdapter(
+            new Attributes().put("service.name", "benchmark"),
+            "instanceId",
+            groupByInstrumentationLibrary,
+            false,
+            useThreadLocalPools);
+    metricPointAdapter = new MetricPointAdapter(useThreadLocalPools);
+
+    List<Resource> resources = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      resources.add(
+          Resource.create(
+              io.opentelemetry.api.common.Attributes.of(
+                  AttributeKey.stringKey("host"), "host-" + i)));
+    }
+    List<InstrumentationLibraryInfo> libraries = new ArrayList<>();
+    libraries.add(InstrumentationLibraryInfo.create("jetty-server", "9.4"));
+    libraries.add(InstrumentationLibraryInfo.create("jdbc", "1.0"));
+
+    spans = new ArrayList<>(SPANS_PER_EXPORT);
+    for (int i = 0; i < SPANS_PER_EXPORT; i++) {
+      spans.add(
+          TestSpanData.newBuilder()
+              .setTraceId(String.format("%032x", i / 8 + 1))
+              .setSpanId(String.format("%016x", i + 1))
+              .setName("span-" + (i % 16))
+              .setKind(Span.Kind.SERVER)
+              .setStatus(SpanData.Status.ok())
+              .setStartEpochNanos(1_000_000_000L)
+              .setEndEpochNanos(1_005_000_000L)
+              .setResource(resources.get(i % resources.size()))
+              .setInstrumentationLibraryInfo(libraries.get(i % libraries.size()))
+              .setAttributes(
+                  io.opentelemetry.api.common.Attributes.of(
+                      AttributeKey.stringKey("http.method"), "GET"))
+              .setHasEnded(true)
+              .build());
+    }
+
+    metrics = new ArrayList<>(METRIC_SERIES);
+    for (int i = 0; i < METRIC_SERIES; i++) {
+      metrics.add(cumulativeSum(resources.get(i % resources.size()), i, 0));
+    }
+  }
+
+  @Benchmark
+  public void adaptSpans(Blackhole blackhole) {
+    Collection<SpanBatch> batches = spanBatchAdapter.adaptToSpanBatches(spans);
+    blackhole.consume(batches);
+  }
+
+  @Benchmark
+  public void adaptMetricPoints(Blackhole blackhole) {
+    // a new point per series each time, so that the delta state always has something to do.
+    long epochSeconds = ++exportCount;
+    for (MetricData metric : metrics) {
+      LongPoint previous = (LongPoint) metric.getPoints().iterator().next();
+      LongPoint point =
+          LongPoint.create(
+              previous.getStartEpochNanos(),
+              TimeUnit.SECONDS.toNanos(epochSeconds),
+              previous.getLabels(),
+              epochSeconds);
+      Collection<Metric> converted =
+          metricPointAdapter.buildMetricsFromPoint(metric, new Attributes(), point);
+      blackhole.consume(converted);
+    }
+  }
+
+  private static MetricData cumulativeSum(Resource resource, int series, long value) {
+    LongPoint point =
+        LongPoint.create(0, 0, Labels.of("series", Integer.toString(series)), value);
+    return MetricData.createLongSum(
+        resource,
+        InstrumentationLibraryInfo.create("benchmark", "1.0"),
+        "requests",
+        "",
+        "1",
+        MetricData.LongSumData.create(
+            true,
+            MetricData.AggregationTemporality.CUMULATIVE,
+            Collections.singletonList(point)));
+  }
+}
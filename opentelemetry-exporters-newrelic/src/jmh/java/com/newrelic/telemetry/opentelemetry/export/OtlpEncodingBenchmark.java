@@ -0,0 +1,121 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import com.newrelic.telemetry.Attributes;
+import com.newrelic.telemetry.json.AttributesJson;
+import com.newrelic.telemetry.spans.SpanBatch;
+import com.newrelic.telemetry.spans.json.SpanBatchMarshaller;
+import com.newrelic.telemetry.spans.json.SpanJsonCommonBlockWriter;
+import com.newrelic.telemetry.spans.json.SpanJsonTelemetryBlockWriter;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.sdk.common.InstrumentationLibraryInfo;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares turning a batch of spans into a gzipped request body as New Relic JSON, through the
+ * span adapter and the telemetry SDK's marshaller, and as OTLP protobuf, straight from the span
+ * data. The setup prints the compressed size of each, once, so that the payload sizes can be
+ * compared as well as the time and allocation per batch.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OtlpEncodingBenchmark {
+
+  private static final int SPANS_PER_EXPORT = 512;
+
+  private SpanBatchAdapter spanBatchAdapter;
+  private SpanBatchMarshaller marshaller;
+  private ProtobufWriter writer;
+  private List<SpanData> spans;
+
+  @Setup
+  public void setUp() throws IOException {
+    spanBatchAdapter =
+        new SpanBatchAdapter(
+            new Attributes().put("service.name", "benchmark"), "instanceId", false, false, false);
+    AttributesJson attributesJson = new AttributesJson();
+    marshaller =
+        new SpanBatchMarshaller(
+            new SpanJsonCommonBlockWriter(attributesJson),
+            new SpanJsonTelemetryBlockWriter(attributesJson));
+    writer = new ProtobufWriter();
+
+    Resource resource =
+        Resource.create(
+            io.opentelemetry.api.common.Attributes.of(
+                AttributeKey.stringKey("service.name"), "benchmark"));
+    InstrumentationLibraryInfo library = InstrumentationLibraryInfo.create("jetty-server", "9.4");
+    spans = new ArrayList<>(SPANS_PER_EXPORT);
+    for (int i = 0; i < SPANS_PER_EXPORT; i++) {
+      spans.add(
+          TestSpanData.newBuilder()
+              .setTraceId(String.format("%032x", i / 8 + 1))
+              .setSpanId(String.format("%016x", i + 1))
+              .setName("span-" + (i % 16))
+              .setKind(Span.Kind.SERVER)
+              .setStatus(SpanData.Status.ok())
+              .setStartEpochNanos(1_000_000_000L + i)
+              .setEndEpochNanos(1_005_000_000L + i)
+              .setResource(resource)
+              .setInstrumentationLibraryInfo(library)
+              .setAttributes(
+                  io.opentelemetry.api.common.Attributes.of(
+                      AttributeKey.stringKey("http.method"),
+                      "GET",
+                      AttributeKey.longKey("http.status_code"),
+                      200L))
+              .setHasEnded(true)
+              .build());
+    }
+    System.out.println(
+        "\ngzipped bytes per batch: json=" + json().length + ", otlp=" + otlp().length);
+  }
+
+  @Benchmark
+  public void encodeJson(Blackhole blackhole) throws IOException {
+    blackhole.consume(json());
+  }
+
+  @Benchmark
+  public void encodeOtlp(Blackhole blackhole) throws IOException {
+    blackhole.consume(otlp());
+  }
+
+  private byte[] json() throws IOException {
+    // a single resource and library, so the adapter makes a single batch.
+    SpanBatch batch = spanBatchAdapter.adaptToSpanBatches(spans).iterator().next();
+    byte[] body = marshaller.toJson(batch).getBytes(StandardCharsets.UTF_8);
+    return IngestResponses.gzip(body, body.length);
+  }
+
+  private byte[] otlp() throws IOException {
+    int length = OtlpSpanEncoder.encode(writer, spans);
+    return IngestResponses.gzip(writer.buffer(), length);
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time from a cold {@link NewRelicExporters#start(String, String)} until the first
+ * span has been handed to the New Relic sender, which is what short-lived jobs pay for on every
+ * run.
+ *
+ * <p>Each measurement runs in a fresh JVM, since the exporters register themselves with the global
+ * OpenTelemetry SDK and class loading is part of the cost. The span is never actually delivered
+ * (the API key is not real), so network time is not included.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+  @Benchmark
+  public void timeToFirstExport() {
+    NewRelicExporters.start("not-a-real-key", "startup-benchmark");
+    OpenTelemetry.getGlobalTracerProvider()
+        .get("startup-benchmark")
+        .spanBuilder("first")
+        .startSpan()
+        .end();
+    OpenTelemetrySdk.getGlobalTracerManagement().forceFlush().join(10, TimeUnit.SECONDS);
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDown() {
+    NewRelicExporters.shutdown(0, TimeUnit.SECONDS);
+  }
+}
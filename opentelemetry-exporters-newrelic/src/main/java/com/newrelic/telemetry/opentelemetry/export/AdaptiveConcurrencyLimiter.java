@@ -0,0 +1,179 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import io.opentelemetry.sdk.common.Clock;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the number of batches in flight to the ingest API, using additive-increase /
+ * multiplicative-decrease (AIMD) on the limit.
+ *
+ * <p>Each successful send that completes close to the fastest latency seen so far grows the limit
+ * by roughly one per round trip. Sends that are noticeably slower than that baseline shrink it a
+ * little, and overload responses (HTTP 429 and 5xx) halve it. When the ingest API asks for a pause
+ * (via Retry-After), no new sends are started until that time has passed.
+ */
+class AdaptiveConcurrencyLimiter {
+
+  // a send slower than this multiple of the baseline latency is taken as a sign of queueing.
+  private static final double LATENCY_TOLERANCE = 2.0;
+  private static final double SLOW_DECREASE_FACTOR = 0.9;
+  private static final double OVERLOAD_DECREASE_FACTOR = 0.5;
+  // lets the baseline drift upward slowly, so that one lucky fast response isn't the target forever
+  private static final double BASELINE_DRIFT = 0.01;
+
+  private final Clock clock;
+  private final int minLimit;
+  private final int maxLimit;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition permitAvailable = lock.newCondition();
+
+  private volatile double limit;
+  private int inFlight = 0;
+  private long baselineLatencyNanos = 0;
+  private long pausedUntilNanos = Long.MIN_VALUE;
+
+  AdaptiveConcurrencyLimiter(Clock clock, int minLimit, int maxLimit) {
+    if (minLimit < 1 || maxLimit < minLimit) {
+      throw new IllegalArgumentException(
+          "Invalid concurrency limits, min: " + minLimit + " max: " + maxLimit);
+    }
+    this.clock = clock;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.limit = Math.max(minLimit, maxLimit / 2);
+  }
+
+  /**
+   * Take a permit if one is available and sends are not paused.
+   *
+   * @return true if a permit was acquired, and must be released.
+   */
+  boolean tryAcquire() {
+    lock.lock();
+    try {
+      if (pausedNanos() > 0 || inFlight >= getLimit()) {
+        return false;
+      }
+      inFlight++;
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Block until a permit is available and sends are not paused.
+   *
+   * @throws InterruptedException if interrupted while waiting
+   */
+  void acquire() throws InterruptedException {
+    lock.lock();
+    try {
+      while (!tryAcquire()) {
+        long pausedNanos = pausedNanos();
+        if (pausedNanos > 0) {
+          permitAvailable.awaitNanos(pausedNanos);
+        } else {
+          permitAvailable.await();
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Return a permit taken by {@link #tryAcquire()} or {@link #acquire()}. */
+  void release() {
+    lock.lock();
+    try {
+      inFlight--;
+      permitAvailable.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Record a send that the ingest API accepted.
+   *
+   * @param latencyNanos how long the send took.
+   */
+  void onSuccess(long latencyNanos) {
+    lock.lock();
+    try {
+      if (baselineLatencyNanos == 0 || latencyNanos < baselineLatencyNanos) {
+        baselineLatencyNanos = latencyNanos;
+      } else {
+        baselineLatencyNanos += (long) ((latencyNanos - baselineLatencyNanos) * BASELINE_DRIFT);
+      }
+      if (latencyNanos > baselineLatencyNanos * LATENCY_TOLERANCE) {
+        decrease(SLOW_DECREASE_FACTOR);
+      } else {
+        limit = Math.min(maxLimit, limit + 1 / limit);
+      }
+      permitAvailable.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Record a send that failed because the ingest API is overloaded or unavailable. */
+  void onOverload() {
+    lock.lock();
+    try {
+      decrease(OVERLOAD_DECREASE_FACTOR);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Record a send that the ingest API asked to be retried later, and stop starting new sends until
+   * then.
+   *
+   * @param delay how long the ingest API asked us to wait.
+   * @param unit the unit of the delay.
+   */
+  void onRetryAfter(long delay, TimeUnit unit) {
+    lock.lock();
+    try {
+      pausedUntilNanos = Math.max(pausedUntilNanos, clock.nanoTime() + unit.toNanos(delay));
+      decrease(OVERLOAD_DECREASE_FACTOR);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * The number of sends that may currently be in flight at once.
+   *
+   * @return the current limit
+   */
+  int getLimit() {
+    return (int) limit;
+  }
+
+  int getInFlight() {
+    lock.lock();
+    try {
+      return inFlight;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void decrease(double factor) {
+    limit = Math.max(minLimit, limit * factor);
+  }
+
+  private long pausedNanos() {
+    return pausedUntilNanos == Long.MIN_VALUE ? 0 : pausedUntilNanos - clock.nanoTime();
+  }
+}
@@ -18,6 +18,12 @@ public class AttributeNames {
   public static final String SERVICE_INSTANCE_ID = ResourceAttributes.SERVICE_INSTANCE.getKey();
   public static final String SPAN_KIND = "span.kind";
   public static final String ERROR_MESSAGE = "error.message";
+  public static final String TRACE_ID = "trace.id";
+  public static final String SPAN_ID = "span.id";
+  public static final String SPAN_EVENT_NAME = "name";
+  public static final String SPAN_LINK_ID = "id";
+  public static final String LINKED_TRACE_ID = "linkedTraceId";
+  public static final String LINKED_SPAN_ID = "linkedSpanId";
   public static final String DESCRIPTOR_DESCRIPTION = "description";
   public static final String DESCRIPTOR_UNIT = "unit";
 }
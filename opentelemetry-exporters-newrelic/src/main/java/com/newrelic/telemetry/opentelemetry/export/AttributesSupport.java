@@ -11,23 +11,54 @@ import static com.newrelic.telemetry.opentelemetry.export.AttributeNames.INSTRUM
 import com.newrelic.telemetry.Attributes;
 import io.opentelemetry.sdk.common.InstrumentationLibraryInfo;
 import io.opentelemetry.sdk.resources.Resource;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class AttributesSupport {
 
   static final String SERVICE_INSTANCE_ID = UUID.randomUUID().toString();
 
+  // instrumentation libraries come from code, so there are only ever a handful of them. the cap
+  // is just a safety net against a caller creating a new library per tracer or meter.
+  private static final int MAX_LIBRARY_INFO_FRAGMENTS = 1_000;
+  private static final Map<InstrumentationLibraryInfo, Attributes> libraryInfoFragments =
+      new ConcurrentHashMap<>();
+
   static Attributes populateLibraryInfo(
       Attributes attributes, InstrumentationLibraryInfo instrumentationLibraryInfo) {
     if (instrumentationLibraryInfo != null) {
-      if (instrumentationLibraryInfo.getName() != null
-          && !instrumentationLibraryInfo.getName().isEmpty()) {
-        attributes.put(INSTRUMENTATION_NAME, instrumentationLibraryInfo.getName());
-      }
-      if (instrumentationLibraryInfo.getVersion() != null
-          && !instrumentationLibraryInfo.getVersion().isEmpty()) {
-        attributes.put(INSTRUMENTATION_VERSION, instrumentationLibraryInfo.getVersion());
-      }
+      attributes.putAll(libraryInfoFragment(instrumentationLibraryInfo));
+    }
+    return attributes;
+  }
+
+  /**
+   * The instrumentation name and version attributes for a library. These are worked out once per
+   * library and shared, so the returned instance must not be modified.
+   */
+  static Attributes libraryInfoFragment(InstrumentationLibraryInfo instrumentationLibraryInfo) {
+    Attributes fragment = libraryInfoFragments.get(instrumentationLibraryInfo);
+    if (fragment != null) {
+      return fragment;
+    }
+    fragment = buildLibraryInfo(instrumentationLibraryInfo);
+    if (libraryInfoFragments.size() < MAX_LIBRARY_INFO_FRAGMENTS) {
+      libraryInfoFragments.putIfAbsent(instrumentationLibraryInfo, fragment);
+    }
+    return fragment;
+  }
+
+  private static Attributes buildLibraryInfo(
+      InstrumentationLibraryInfo instrumentationLibraryInfo) {
+    Attributes attributes = new Attributes();
+    if (instrumentationLibraryInfo.getName() != null
+        && !instrumentationLibraryInfo.getName().isEmpty()) {
+      attributes.put(INSTRUMENTATION_NAME, instrumentationLibraryInfo.getName());
+    }
+    if (instrumentationLibraryInfo.getVersion() != null
+        && !instrumentationLibraryInfo.getVersion().isEmpty()) {
+      attributes.put(INSTRUMENTATION_VERSION, instrumentationLibraryInfo.getVersion());
     }
     return attributes;
   }
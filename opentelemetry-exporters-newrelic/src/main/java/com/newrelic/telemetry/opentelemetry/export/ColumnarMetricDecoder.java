@@ -0,0 +1,201 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import static com.newrelic.telemetry.opentelemetry.export.ColumnarMetricEncoder.BOOLEAN_VALUE;
+import static com.newrelic.telemetry.opentelemetry.export.ColumnarMetricEncoder.COUNT;
+import static com.newrelic.telemetry.opentelemetry.export.ColumnarMetricEncoder.DOUBLE_VALUE;
+import static com.newrelic.telemetry.opentelemetry.export.ColumnarMetricEncoder.GAUGE;
+import static com.newrelic.telemetry.opentelemetry.export.ColumnarMetricEncoder.LONG_VALUE;
+import static com.newrelic.telemetry.opentelemetry.export.ColumnarMetricEncoder.MAGIC;
+import static com.newrelic.telemetry.opentelemetry.export.ColumnarMetricEncoder.STRING_VALUE;
+import static com.newrelic.telemetry.opentelemetry.export.ColumnarMetricEncoder.SUMMARY;
+import static com.newrelic.telemetry.opentelemetry.export.ColumnarMetricEncoder.VERSION;
+
+import com.newrelic.telemetry.Attributes;
+import com.newrelic.telemetry.metrics.Count;
+import com.newrelic.telemetry.metrics.Gauge;
+import com.newrelic.telemetry.metrics.Metric;
+import com.newrelic.telemetry.metrics.MetricBatch;
+import com.newrelic.telemetry.metrics.Summary;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes metric batches sent by an exporter built with {@link
+ * NewRelicMetricExporter.Builder#columnarEncoding(java.net.URI)}, for a receiver, such as a
+ * collector or proxy, that forwards them on. The payload must already be decompressed. The
+ * encoding is described in the README.
+ *
+ * @since 0.14.0
+ */
+public final class ColumnarMetricDecoder {
+
+  private ColumnarMetricDecoder() {}
+
+  /**
+   * Decode a batch. Each metric gets its own copy of its attributes.
+   *
+   * @param payload the uncompressed payload.
+   * @return the batch, with the metrics in the order they were encoded.
+   * @throws IllegalArgumentException if the payload isn't a columnar metric batch of a version this
+   *     decoder knows, or is cut short.
+   */
+  public static MetricBatch decode(byte[] payload) {
+    try {
+      return decode(ByteBuffer.wrap(payload));
+    } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+      throw new IllegalArgumentException("Truncated or corrupt columnar metric batch", e);
+    }
+  }
+
+  private static MetricBatch decode(ByteBuffer in) {
+    byte[] magic = new byte[MAGIC.length];
+    in.get(magic);
+    for (int i = 0; i < MAGIC.length; i++) {
+      if (magic[i] != MAGIC[i]) {
+        throw new IllegalArgumentException("Not a columnar metric batch");
+      }
+    }
+    byte version = in.get();
+    if (version != VERSION) {
+      throw new IllegalArgumentException("Unsupported columnar metric version " + version);
+    }
+    List<String> dictionary = readDictionary(in);
+    List<Attributes> attributeSets = readAttributeSets(in, dictionary);
+    Attributes common = attributeSets.get(readIndex(in)).copy();
+    int count = readIndex(in);
+
+    ByteBuffer types = readBlock(in);
+    ByteBuffer names = readBlock(in);
+    ByteBuffer timestamps = readBlock(in);
+    ByteBuffer intervals = readBlock(in);
+    ByteBuffer attributes = readBlock(in);
+    ByteBuffer values = readBlock(in);
+
+    List<Metric> metrics = new ArrayList<>(count);
+    long timestamp = 0;
+    for (int i = 0; i < count; i++) {
+      byte type = types.get();
+      String name = dictionary.get(readIndex(names));
+      timestamp += readZigzag(timestamps);
+      long intervalMs = readVarint(intervals);
+      Attributes metricAttributes = attributeSets.get(readIndex(attributes)).copy();
+      switch (type) {
+        case GAUGE:
+          metrics.add(new Gauge(name, values.getDouble(), timestamp, metricAttributes));
+          break;
+        case COUNT:
+          metrics.add(
+              new Count(
+                  name, values.getDouble(), timestamp - intervalMs, timestamp, metricAttributes));
+          break;
+        case SUMMARY:
+          metrics.add(
+              new Summary(
+                  name,
+                  (int) readVarint(values),
+                  values.getDouble(),
+                  values.getDouble(),
+                  values.getDouble(),
+                  timestamp - intervalMs,
+                  timestamp,
+                  metricAttributes));
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown metric type " + type);
+      }
+    }
+    return new MetricBatch(metrics, common);
+  }
+
+  private static List<String> readDictionary(ByteBuffer in) {
+    int size = readIndex(in);
+    List<String> dictionary = new ArrayList<>(Math.min(size, in.remaining()));
+    for (int i = 0; i < size; i++) {
+      byte[] utf8 = new byte[readLength(in)];
+      in.get(utf8);
+      dictionary.add(new String(utf8, StandardCharsets.UTF_8));
+    }
+    return dictionary;
+  }
+
+  private static List<Attributes> readAttributeSets(ByteBuffer in, List<String> dictionary) {
+    int size = readIndex(in);
+    List<Attributes> attributeSets = new ArrayList<>(Math.min(size, in.remaining()));
+    for (int i = 0; i < size; i++) {
+      int pairs = readIndex(in);
+      Attributes attributes = new Attributes();
+      for (int j = 0; j < pairs; j++) {
+        String key = dictionary.get(readIndex(in));
+        byte type = in.get();
+        switch (type) {
+          case STRING_VALUE:
+            attributes.put(key, dictionary.get(readIndex(in)));
+            break;
+          case LONG_VALUE:
+            attributes.put(key, readZigzag(in));
+            break;
+          case DOUBLE_VALUE:
+            attributes.put(key, in.getDouble());
+            break;
+          case BOOLEAN_VALUE:
+            attributes.put(key, in.get() != 0);
+            break;
+          default:
+            throw new IllegalArgumentException("Unknown attribute value type " + type);
+        }
+      }
+      attributeSets.add(attributes);
+    }
+    return attributeSets;
+  }
+
+  private static ByteBuffer readBlock(ByteBuffer in) {
+    int length = readLength(in);
+    ByteBuffer block = in.slice();
+    block.limit(length);
+    in.position(in.position() + length);
+    return block;
+  }
+
+  // sizes, lengths and indexes, which must fit in an int.
+  private static int readIndex(ByteBuffer in) {
+    long value = readVarint(in);
+    if (value < 0 || value > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Index or length out of range: " + value);
+    }
+    return (int) value;
+  }
+
+  private static int readLength(ByteBuffer in) {
+    int length = readIndex(in);
+    if (length > in.remaining()) {
+      throw new BufferUnderflowException();
+    }
+    return length;
+  }
+
+  private static long readVarint(ByteBuffer in) {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = in.get();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("Varint longer than 10 bytes");
+  }
+
+  private static long readZigzag(ByteBuffer in) {
+    long value = readVarint(in);
+    return (value >>> 1) ^ -(value & 1);
+  }
+}
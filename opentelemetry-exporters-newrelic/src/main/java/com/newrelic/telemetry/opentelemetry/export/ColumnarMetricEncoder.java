@@ -0,0 +1,253 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import com.newrelic.telemetry.Attributes;
+import com.newrelic.telemetry.metrics.Count;
+import com.newrelic.telemetry.metrics.Gauge;
+import com.newrelic.telemetry.metrics.Metric;
+import com.newrelic.telemetry.metrics.MetricBatch;
+import com.newrelic.telemetry.metrics.Summary;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes a {@link MetricBatch} column by column, rather than as one JSON object per metric.
+ * Metric names, attribute keys and string attribute values are written once, in a dictionary, and
+ * each distinct set of attributes is written once and referred to by index, so a batch of many
+ * series that share most of their attributes encodes to a small fraction of its JSON size. {@link
+ * ColumnarMetricDecoder} reads batches back.
+ *
+ * <p>The payload is laid out as follows, where a varint is an unsigned LEB128 integer, a zigzag is
+ * a signed integer zigzag-encoded into a varint, and a double is 8 bytes, big-endian:
+ *
+ * <pre>
+ * payload       = "NRCM" version:byte dictionary attributeSets common:varint count:varint columns
+ * dictionary    = size:varint (length:varint utf8-bytes)*
+ * attributeSets = size:varint (pairs:varint (key:varint type:byte value)*)*
+ * value         = type 0: string, as a dictionary index (varint)
+ *                 type 1: long (zigzag)
+ *                 type 2: double
+ *                 type 3: boolean (byte)
+ * columns       = (length:varint bytes) for each of the columns below, in this order
+ * </pre>
+ *
+ * <p>The columns hold one entry per metric, in the same order:
+ *
+ * <ol>
+ *   <li>type: a byte, 0 for a gauge, 1 for a count and 2 for a summary.
+ *   <li>name: a dictionary index (varint).
+ *   <li>timestamp: the metric's timestamp, or for counts and summaries the end of its interval, in
+ *       epoch milliseconds, as the difference from the previous metric's (zigzag), starting from 0.
+ *   <li>interval: the length of the metric's interval in milliseconds (varint), 0 for gauges.
+ *   <li>attributes: an attribute set index (varint).
+ *   <li>value: a double for gauges and counts, and for summaries the count (varint) followed by the
+ *       sum, min and max (doubles).
+ * </ol>
+ */
+class ColumnarMetricEncoder {
+
+  static final byte VERSION = 1;
+  static final byte GAUGE = 0;
+  static final byte COUNT = 1;
+  static final byte SUMMARY = 2;
+  static final byte STRING_VALUE = 0;
+  static final byte LONG_VALUE = 1;
+  static final byte DOUBLE_VALUE = 2;
+  static final byte BOOLEAN_VALUE = 3;
+
+  static final byte[] MAGIC = {'N', 'R', 'C', 'M'};
+
+  /**
+   * Encode the batch. Metrics of a type this encoder doesn't know are left out.
+   *
+   * @param batch the batch to encode.
+   * @return the encoded batch.
+   */
+  byte[] encode(MetricBatch batch) {
+    Dictionary dictionary = new Dictionary();
+    Columns columns = new Columns(batch.size());
+    int common = dictionary.attributeSet(batch.getCommonAttributes());
+    long previousTimestamp = 0;
+    for (Metric metric : batch.getTelemetry()) {
+      long timestamp;
+      if (metric instanceof Gauge) {
+        Gauge gauge = (Gauge) metric;
+        timestamp = gauge.getTimestamp();
+        columns.add(GAUGE, dictionary.string(gauge.getName()), 0);
+        columns.attributes(dictionary.attributeSet(gauge.getAttributes()));
+        writeDouble(columns.values, gauge.getValue());
+      } else if (metric instanceof Count) {
+        Count count = (Count) metric;
+        timestamp = count.getEndTimeMs();
+        columns.add(
+            COUNT, dictionary.string(count.getName()), timestamp - count.getStartTimeMs());
+        columns.attributes(dictionary.attributeSet(count.getAttributes()));
+        writeDouble(columns.values, count.getValue());
+      } else if (metric instanceof Summary) {
+        Summary summary = (Summary) metric;
+        timestamp = summary.getEndTimeMs();
+        columns.add(
+            SUMMARY, dictionary.string(summary.getName()), timestamp - summary.getStartTimeMs());
+        columns.attributes(dictionary.attributeSet(summary.getAttributes()));
+        writeVarint(columns.values, summary.getCount());
+        writeDouble(columns.values, summary.getSum());
+        writeDouble(columns.values, summary.getMin());
+        writeDouble(columns.values, summary.getMax());
+      } else {
+        continue;
+      }
+      writeZigzag(columns.timestamps, timestamp - previousTimestamp);
+      previousTimestamp = timestamp;
+    }
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream(columns.sizeInBytes() + 1024);
+    out.write(MAGIC, 0, MAGIC.length);
+    out.write(VERSION);
+    dictionary.writeTo(out);
+    writeVarint(out, common);
+    writeVarint(out, columns.count);
+    columns.writeTo(out);
+    return out.toByteArray();
+  }
+
+  static void writeVarint(ByteArrayOutputStream out, long value) {
+    while ((value & ~0x7FL) != 0) {
+      out.write((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.write((int) value);
+  }
+
+  static void writeZigzag(ByteArrayOutputStream out, long value) {
+    writeVarint(out, (value << 1) ^ (value >> 63));
+  }
+
+  static void writeDouble(ByteArrayOutputStream out, double value) {
+    long bits = Double.doubleToLongBits(value);
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      out.write((int) (bits >>> shift));
+    }
+  }
+
+  private static void writeBlock(ByteArrayOutputStream out, ByteArrayOutputStream block) {
+    writeVarint(out, block.size());
+    out.write(block.toByteArray(), 0, block.size());
+  }
+
+  /** The strings and attribute sets of a batch, each numbered in the order it was first seen. */
+  private static final class Dictionary {
+    private final Map<String, Integer> strings = new HashMap<>();
+    private final List<String> stringsInOrder = new ArrayList<>();
+    private final Map<Map<String, Object>, Integer> attributeSets = new HashMap<>();
+    private final ByteArrayOutputStream encodedAttributeSets = new ByteArrayOutputStream();
+
+    int string(String value) {
+      Integer index = strings.get(value);
+      if (index == null) {
+        index = stringsInOrder.size();
+        strings.put(value, index);
+        stringsInOrder.add(value);
+      }
+      return index;
+    }
+
+    int attributeSet(Attributes attributes) {
+      Map<String, Object> values = attributes.asMap();
+      Integer index = attributeSets.get(values);
+      if (index != null) {
+        return index;
+      }
+      index = attributeSets.size();
+      attributeSets.put(values, index);
+      writeVarint(encodedAttributeSets, values.size());
+      for (Map.Entry<String, Object> entry : values.entrySet()) {
+        writeVarint(encodedAttributeSets, string(entry.getKey()));
+        writeValue(entry.getValue());
+      }
+      return index;
+    }
+
+    private void writeValue(Object value) {
+      if (value instanceof Boolean) {
+        encodedAttributeSets.write(BOOLEAN_VALUE);
+        encodedAttributeSets.write((Boolean) value ? 1 : 0);
+      } else if (value instanceof Double || value instanceof Float) {
+        encodedAttributeSets.write(DOUBLE_VALUE);
+        writeDouble(encodedAttributeSets, ((Number) value).doubleValue());
+      } else if (value instanceof Number) {
+        encodedAttributeSets.write(LONG_VALUE);
+        writeZigzag(encodedAttributeSets, ((Number) value).longValue());
+      } else {
+        encodedAttributeSets.write(STRING_VALUE);
+        writeVarint(encodedAttributeSets, string(String.valueOf(value)));
+      }
+    }
+
+    void writeTo(ByteArrayOutputStream out) {
+      writeVarint(out, stringsInOrder.size());
+      for (String value : stringsInOrder) {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, utf8.length);
+        out.write(utf8, 0, utf8.length);
+      }
+      writeVarint(out, attributeSets.size());
+      out.write(encodedAttributeSets.toByteArray(), 0, encodedAttributeSets.size());
+    }
+  }
+
+  private static final class Columns {
+    private int count = 0;
+    private final ByteArrayOutputStream types;
+    private final ByteArrayOutputStream names;
+    private final ByteArrayOutputStream timestamps;
+    private final ByteArrayOutputStream intervals;
+    private final ByteArrayOutputStream attributes;
+    private final ByteArrayOutputStream values;
+
+    Columns(int expectedCount) {
+      types = new ByteArrayOutputStream(expectedCount);
+      names = new ByteArrayOutputStream(expectedCount * 2);
+      timestamps = new ByteArrayOutputStream(expectedCount * 2);
+      intervals = new ByteArrayOutputStream(expectedCount * 3);
+      attributes = new ByteArrayOutputStream(expectedCount * 2);
+      values = new ByteArrayOutputStream(expectedCount * 8);
+    }
+
+    void add(byte type, int name, long intervalMs) {
+      count++;
+      types.write(type);
+      writeVarint(names, name);
+      writeVarint(intervals, intervalMs);
+    }
+
+    void attributes(int attributeSet) {
+      writeVarint(attributes, attributeSet);
+    }
+
+    int sizeInBytes() {
+      return types.size()
+          + names.size()
+          + timestamps.size()
+          + intervals.size()
+          + attributes.size()
+          + values.size();
+    }
+
+    void writeTo(ByteArrayOutputStream out) {
+      writeBlock(out, types);
+      writeBlock(out, names);
+      writeBlock(out, timestamps);
+      writeBlock(out, intervals);
+      writeBlock(out, attributes);
+      writeBlock(out, values);
+    }
+  }
+}
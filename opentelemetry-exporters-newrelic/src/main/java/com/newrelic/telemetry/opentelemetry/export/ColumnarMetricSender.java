@@ -0,0 +1,89 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import com.newrelic.telemetry.Response;
+import com.newrelic.telemetry.exceptions.DiscardBatchException;
+import com.newrelic.telemetry.exceptions.ResponseException;
+import com.newrelic.telemetry.exceptions.RetryWithBackoffException;
+import com.newrelic.telemetry.http.HttpPoster;
+import com.newrelic.telemetry.http.HttpResponse;
+import com.newrelic.telemetry.metrics.MetricBatch;
+import java.io.IOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends metric batches encoded by a {@link ColumnarMetricEncoder}, usually gzipped, to an endpoint
+ * that accepts them.
+ */
+class ColumnarMetricSender {
+  private static final Logger logger = LoggerFactory.getLogger(ColumnarMetricSender.class);
+
+  static final String MEDIA_TYPE = "application/vnd.newrelic.columnar-metrics";
+
+  private final HttpPoster poster;
+  private final URL endpoint;
+  private final Map<String, String> headers;
+  private final boolean gzip;
+  private final ColumnarMetricEncoder encoder = new ColumnarMetricEncoder();
+
+  ColumnarMetricSender(HttpPoster poster, URL endpoint, String apiKey, String userAgent) {
+    this(poster, endpoint, apiKey, userAgent, true);
+  }
+
+  /**
+   * @param gzip whether to gzip batches, or to leave them uncompressed for the poster to compress,
+   *     as a {@link ZstdHttpPoster} does.
+   */
+  ColumnarMetricSender(
+      HttpPoster poster, URL endpoint, String apiKey, String userAgent, boolean gzip) {
+    this.poster = poster;
+    this.endpoint = endpoint;
+    this.gzip = gzip;
+    Map<String, String> headers = new HashMap<>();
+    if (apiKey != null) {
+      headers.put("Api-Key", apiKey);
+    }
+    if (gzip) {
+      headers.put("Content-Encoding", "gzip");
+    }
+    headers.put("User-Agent", userAgent);
+    this.headers = headers;
+  }
+
+  /**
+   * Encode and send a batch.
+   *
+   * @param batch the batch to send.
+   * @return the endpoint's response, if it accepted the batch.
+   * @throws ResponseException if the batch should be split, retried later, or dropped.
+   */
+  Response sendBatch(MetricBatch batch) throws ResponseException {
+    byte[] payload;
+    try {
+      byte[] encoded = encoder.encode(batch);
+      payload = gzip ? IngestResponses.gzip(encoded, encoded.length) : encoded;
+    } catch (IOException e) {
+      throw new DiscardBatchException();
+    }
+    HttpResponse response;
+    try {
+      response = poster.post(endpoint, headers, payload, MEDIA_TYPE);
+    } catch (IOException e) {
+      logger.debug("Failed to post a columnar metric batch", e);
+      throw new RetryWithBackoffException();
+    }
+    if (response.getCode() >= 300) {
+      logger.debug(
+          "Columnar metric endpoint responded " + response.getCode() + ": " + response.getBody());
+    }
+    return IngestResponses.check(response);
+  }
+}
@@ -7,17 +7,53 @@ package com.newrelic.telemetry.opentelemetry.export;
 
 import io.opentelemetry.sdk.metrics.data.MetricData.DoublePoint;
 
+/**
+ * Converts the cumulative values of a single monotonic series into deltas. A change in the point's
+ * start time (the process or instrument restarted) or a drop in value is treated as a reset, and
+ * the new cumulative value is reported as-is rather than as a negative delta.
+ *
+ * <p>The same series can be collected by more than one reader, so callers should hold the
+ * counter's lock across {@link #isStale}, {@code delta} and {@link #getIntervalStartEpochNanos()}.
+ */
 public class DeltaDoubleCounter {
 
   private DoublePoint previousValue = null;
+  private long intervalStartEpochNanos;
 
   double delta(DoublePoint newValue) {
-    if (previousValue == null) {
+    if (previousValue == null
+        || previousValue.getStartEpochNanos() != newValue.getStartEpochNanos()) {
+      // the cumulative value covers everything since the series started
+      intervalStartEpochNanos = newValue.getStartEpochNanos();
       previousValue = newValue;
-      return previousValue.getValue();
+      return newValue.getValue();
     }
+    intervalStartEpochNanos = previousValue.getEpochNanos();
     double result = newValue.getValue() - previousValue.getValue();
     previousValue = newValue;
-    return result;
+    // a monotonic sum can only go down if it was reset without a new start time.
+    return result < 0 ? newValue.getValue() : result;
+  }
+
+  /**
+   * Whether this point is no newer than one already seen, e.g. because another reader exported it
+   * first. Stale points must be dropped, or their interval would overlap one already reported.
+   *
+   * @param newValue the point about to be converted
+   * @return true if the point should be skipped
+   */
+  boolean isStale(DoublePoint newValue) {
+    return previousValue != null
+        && (newValue.getStartEpochNanos() < previousValue.getStartEpochNanos()
+            || newValue.getEpochNanos() <= previousValue.getEpochNanos());
+  }
+
+  /**
+   * The start of the interval covered by the most recent result of {@link #delta(DoublePoint)}.
+   *
+   * @return epoch nanos
+   */
+  long getIntervalStartEpochNanos() {
+    return intervalStartEpochNanos;
   }
 }
@@ -0,0 +1,511 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import com.newrelic.telemetry.Response;
+import com.newrelic.telemetry.TelemetryClient;
+import com.newrelic.telemetry.events.Event;
+import com.newrelic.telemetry.events.EventBatch;
+import com.newrelic.telemetry.events.EventBatchSender;
+import com.newrelic.telemetry.exceptions.DiscardBatchException;
+import com.newrelic.telemetry.exceptions.ResponseException;
+import com.newrelic.telemetry.exceptions.RetryWithBackoffException;
+import com.newrelic.telemetry.exceptions.RetryWithRequestedWaitException;
+import com.newrelic.telemetry.exceptions.RetryWithSplitException;
+import com.newrelic.telemetry.metrics.Metric;
+import com.newrelic.telemetry.metrics.MetricBatch;
+import com.newrelic.telemetry.metrics.MetricBatchSender;
+import com.newrelic.telemetry.spans.Span;
+import com.newrelic.telemetry.spans.SpanBatch;
+import com.newrelic.telemetry.spans.SpanBatchSender;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.internal.DaemonThreadFactory;
+import io.opentelemetry.sdk.internal.SystemClock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link TelemetryClient} that sends batches on an executor supplied by the exporter, rather than
+ * on the single platform thread owned by the telemetry SDK. This lets the exporters use virtual
+ * threads, so that many batches can be in flight at once without a large platform thread pool.
+ *
+ * <p>Retries follow the same rules as the telemetry SDK: batches are split when they are too
+ * large, re-sent after the wait requested by the ingest API, or re-sent with an exponential
+ * backoff after a transient failure. The number of sends in flight at once is bounded by an {@link
+ * AdaptiveConcurrencyLimiter}, which backs off when the ingest API slows down or pushes back.
+ *
+ * <p>Every batch is tracked from the moment it is handed over until it is sent or given up on,
+ * including while it waits to be retried, so that {@link #flush(long, TimeUnit)} can tell when
+ * everything handed over so far has drained, and {@link #shutdown(long, TimeUnit)} can report how
+ * much telemetry was dropped.
+ */
+class DispatchingTelemetryClient extends TelemetryClient {
+  private static final Logger logger = LoggerFactory.getLogger(DispatchingTelemetryClient.class);
+
+  private static final int MAX_RETRIES = 8;
+  private static final long MAX_BACKOFF_SECONDS = 16;
+  static final long DEFAULT_FLUSH_TIMEOUT_SECONDS = 10;
+  static final long DEFAULT_SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+  private final MetricBatchSender metricBatchSender;
+  private final SpanBatchSender spanBatchSender;
+  private final EventBatchSender eventBatchSender;
+  private final ExecutorService sendExecutor;
+  private final AdaptiveConcurrencyLimiter limiter;
+  private final long shutdownTimeoutNanos;
+  private final int maxBatchSize;
+  private final ScheduledExecutorService retryScheduler;
+  private final AtomicInteger outstanding = new AtomicInteger();
+  private final AtomicLong outstandingItems = new AtomicLong();
+  private final AtomicLong droppedItems = new AtomicLong();
+  private final List<CompletableResultCode> pendingFlushes = new ArrayList<>();
+  private volatile boolean closed = false;
+  private volatile boolean hasShutdownDeadline = false;
+  private volatile long shutdownDeadlineNanos;
+
+  /**
+   * Batches with more than {@code maxBatchSize} metrics, spans or events are split before they are
+   * sent, rather than after the ingest API rejects them as too large.
+   */
+  DispatchingTelemetryClient(
+      MetricBatchSender metricBatchSender,
+      SpanBatchSender spanBatchSender,
+      EventBatchSender eventBatchSender,
+      ExecutorService sendExecutor,
+      AdaptiveConcurrencyLimiter limiter,
+      long shutdownTimeoutNanos,
+      int maxBatchSize) {
+    super(metricBatchSender, spanBatchSender, eventBatchSender, null);
+    this.metricBatchSender = metricBatchSender;
+    this.spanBatchSender = spanBatchSender;
+    this.eventBatchSender = eventBatchSender;
+    this.sendExecutor = sendExecutor;
+    this.limiter = limiter;
+    this.shutdownTimeoutNanos = shutdownTimeoutNanos;
+    this.maxBatchSize = maxBatchSize;
+    this.retryScheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            new DaemonThreadFactory("newrelic-exporter-retry"));
+  }
+
+  /**
+   * Creates a client that sends on virtual threads or on a platform thread pool, with up to {@code
+   * maxConcurrentSends} batches of at most {@code maxBatchSize} items in flight at once, and that
+   * waits up to {@code shutdownTimeoutNanos} for outstanding batches when it is shut down.
+   */
+  static DispatchingTelemetryClient create(
+      MetricBatchSender metricBatchSender,
+      SpanBatchSender spanBatchSender,
+      EventBatchSender eventBatchSender,
+      boolean useVirtualThreads,
+      int maxConcurrentSends,
+      int maxBatchSize,
+      long shutdownTimeoutNanos) {
+    return new DispatchingTelemetryClient(
+        metricBatchSender,
+        spanBatchSender,
+        eventBatchSender,
+        newSendExecutor(useVirtualThreads, maxConcurrentSends),
+        newLimiter(maxConcurrentSends),
+        shutdownTimeoutNanos,
+        maxBatchSize);
+  }
+
+  static ExecutorService newSendExecutor(boolean useVirtualThreads, int maxConcurrentSends) {
+    return useVirtualThreads
+        ? SendExecutors.newVirtualThreadExecutor(maxConcurrentSends)
+        : SendExecutors.newPlatformThreadExecutor(maxConcurrentSends);
+  }
+
+  static AdaptiveConcurrencyLimiter newLimiter(int maxConcurrentSends) {
+    return new AdaptiveConcurrencyLimiter(SystemClock.getInstance(), 1, maxConcurrentSends);
+  }
+
+  @Override
+  public void sendBatch(MetricBatch batch) {
+    if (metricBatchSender == null) {
+      logger.warn("No MetricBatchSender configured, dropping " + batch.size() + " metrics");
+      return;
+    }
+    submit(
+        new Send<>(
+            batch,
+            metricBatchSender::sendBatch,
+            DispatchingTelemetryClient::splitMetrics,
+            MetricBatch::size,
+            0));
+  }
+
+  @Override
+  public void sendBatch(SpanBatch batch) {
+    if (spanBatchSender == null) {
+      logger.warn("No SpanBatchSender configured, dropping " + batch.size() + " spans");
+      return;
+    }
+    submit(
+        new Send<>(
+            batch,
+            spanBatchSender::sendBatch,
+            DispatchingTelemetryClient::splitSpans,
+            SpanBatch::size,
+            0));
+  }
+
+  @Override
+  public void sendBatch(EventBatch batch) {
+    if (eventBatchSender == null) {
+      logger.warn("No EventBatchSender configured, dropping " + batch.size() + " events");
+      return;
+    }
+    submit(
+        new Send<>(
+            batch,
+            eventBatchSender::sendBatch,
+            DispatchingTelemetryClient::splitEvents,
+            EventBatch::size,
+            0));
+  }
+
+  /**
+   * Send a batch that is encoded by its own sender rather than by the telemetry SDK, such as a
+   * batch of OTLP spans or metrics, with the same concurrency limit, retries and splitting as the
+   * rest.
+   *
+   * @param batch the items to send.
+   * @param sender encodes and sends the items.
+   * @param <T> the type of the items.
+   */
+  <T> void sendBatch(List<T> batch, BatchSend<List<T>> sender) {
+    submit(new Send<>(batch, sender, DispatchingTelemetryClient::halves, List::size, 0));
+  }
+
+  /**
+   * Send a metric batch with its own sender rather than the MetricBatchSender, such as one that
+   * sends it in the columnar encoding, with the same concurrency limit, retries and splitting as
+   * the rest.
+   *
+   * @param batch the metrics to send.
+   * @param sender encodes and sends the metrics.
+   */
+  void sendBatch(MetricBatch batch, BatchSend<MetricBatch> sender) {
+    submit(
+        new Send<>(
+            batch, sender, DispatchingTelemetryClient::splitMetrics, MetricBatch::size, 0));
+  }
+
+  /**
+   * The number of batches currently allowed in flight to the ingest API.
+   *
+   * @return the current concurrency limit
+   */
+  int getConcurrencyLimit() {
+    return limiter.getLimit();
+  }
+
+  /**
+   * Wait for every batch handed over so far, including any waiting to be retried, to be sent or
+   * given up on.
+   *
+   * @param timeout how long to wait before giving up on the flush.
+   * @param unit the unit of the timeout.
+   * @return a result that succeeds once no batches are outstanding, or fails if the timeout passes
+   *     first.
+   */
+  CompletableResultCode flush(long timeout, TimeUnit unit) {
+    CompletableResultCode result = new CompletableResultCode();
+    synchronized (pendingFlushes) {
+      if (outstanding.get() == 0) {
+        return result.succeed();
+      }
+      pendingFlushes.add(result);
+    }
+    try {
+      retryScheduler.schedule(() -> timeOutFlush(result), timeout, unit);
+    } catch (RejectedExecutionException e) {
+      timeOutFlush(result);
+    }
+    return result;
+  }
+
+  private void timeOutFlush(CompletableResultCode flush) {
+    boolean timedOut;
+    synchronized (pendingFlushes) {
+      timedOut = pendingFlushes.remove(flush);
+    }
+    if (timedOut) {
+      logger.warn("Timed out flushing, " + outstanding.get() + " batches are still outstanding");
+      flush.fail();
+    }
+  }
+
+  /**
+   * The number of metrics or spans that were dropped without being sent, including any that were
+   * still outstanding when the client was shut down.
+   *
+   * @return the number of dropped metrics or spans
+   */
+  long getDroppedCount() {
+    return droppedItems.get();
+  }
+
+  /**
+   * @return the time left until the shutdown deadline, if one has been set, and the configured
+   *     shutdown timeout otherwise.
+   */
+  long getShutdownTimeoutNanos() {
+    if (hasShutdownDeadline) {
+      return Math.max(0, shutdownDeadlineNanos - System.nanoTime());
+    }
+    return shutdownTimeoutNanos;
+  }
+
+  /**
+   * Make the next shutdown without a timeout finish by the given time, rather than waiting the
+   * configured shutdown timeout, for callers that shut down through the OpenTelemetry SDK and
+   * can't pass a timeout along.
+   *
+   * @param deadlineNanos the {@link System#nanoTime()} by which shutdown should finish.
+   */
+  void setShutdownDeadline(long deadlineNanos) {
+    shutdownDeadlineNanos = deadlineNanos;
+    hasShutdownDeadline = true;
+  }
+
+  private Send<?> started(Send<?> send) {
+    outstanding.incrementAndGet();
+    outstandingItems.addAndGet(send.size());
+    return send;
+  }
+
+  // called exactly once for every batch passed to started().
+  private void finished(Send<?> send, boolean dropped) {
+    outstandingItems.addAndGet(-send.size());
+    if (dropped && !closed) {
+      droppedItems.addAndGet(send.size());
+    }
+    if (outstanding.decrementAndGet() > 0) {
+      return;
+    }
+    List<CompletableResultCode> drained;
+    synchronized (pendingFlushes) {
+      if (outstanding.get() > 0) {
+        return;
+      }
+      drained = new ArrayList<>(pendingFlushes);
+      pendingFlushes.clear();
+    }
+    drained.forEach(CompletableResultCode::succeed);
+  }
+
+  /** Shuts down the client, waiting up to its shutdown deadline or configured timeout. */
+  @Override
+  public void shutdown() {
+    shutdown(getShutdownTimeoutNanos(), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Shuts down the client once every outstanding batch has been sent or given up on, or once the
+   * timeout has passed, whichever comes first. Batches that are still in flight or waiting to be
+   * retried at that point are abandoned, and counted in {@link #getDroppedCount()}.
+   *
+   * @param timeout how long to wait for outstanding batches.
+   * @param unit the unit of the timeout.
+   * @return a result that succeeds if nothing was dropped, and fails otherwise.
+   */
+  CompletableResultCode shutdown(long timeout, TimeUnit unit) {
+    boolean drained = flush(timeout, unit).join(timeout, unit).isSuccess();
+    closed = true;
+    droppedItems.addAndGet(outstandingItems.get());
+    retryScheduler.shutdownNow();
+    sendExecutor.shutdownNow();
+    List<CompletableResultCode> abandoned;
+    synchronized (pendingFlushes) {
+      abandoned = new ArrayList<>(pendingFlushes);
+      pendingFlushes.clear();
+    }
+    abandoned.forEach(CompletableResultCode::fail);
+    super.shutdown();
+    return drained && droppedItems.get() == 0
+        ? CompletableResultCode.ofSuccess()
+        : CompletableResultCode.ofFailure();
+  }
+
+  private <B> void submit(Send<B> send) {
+    if (send.size() > maxBatchSize) {
+      List<B> halves = send.splitter.split(send.batch);
+      if (!halves.isEmpty()) {
+        halves.forEach(half -> submit(send.withBatch(half)));
+        return;
+      }
+    }
+    dispatch(started(send));
+  }
+
+  private void dispatch(Send<?> send) {
+    try {
+      sendExecutor.execute(send);
+    } catch (RejectedExecutionException e) {
+      logger.warn("The exporter has been shut down, dropping a batch");
+      finished(send, true);
+    }
+  }
+
+  private void retryLater(Send<?> send, long delayMillis) {
+    if (send.attempt >= MAX_RETRIES) {
+      logger.warn("Giving up on a batch after " + MAX_RETRIES + " retries");
+      finished(send, true);
+      return;
+    }
+    try {
+      retryScheduler.schedule(
+          () -> dispatch(send.nextAttempt()), delayMillis, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      logger.warn("The exporter has been shut down, dropping a batch awaiting retry");
+      finished(send, true);
+    }
+  }
+
+  static long backoffMillis(int attempt) {
+    long seconds = Math.min(MAX_BACKOFF_SECONDS, 1L << Math.min(attempt, 30));
+    return TimeUnit.SECONDS.toMillis(seconds);
+  }
+
+  private static List<MetricBatch> splitMetrics(MetricBatch batch) {
+    List<MetricBatch> result = new ArrayList<>(2);
+    for (List<Metric> half : halves(batch.getTelemetry())) {
+      result.add(new MetricBatch(half, batch.getCommonAttributes()));
+    }
+    return result;
+  }
+
+  private static List<SpanBatch> splitSpans(SpanBatch batch) {
+    List<SpanBatch> result = new ArrayList<>(2);
+    for (List<Span> half : halves(batch.getTelemetry())) {
+      result.add(new SpanBatch(half, batch.getCommonAttributes()));
+    }
+    return result;
+  }
+
+  private static List<EventBatch> splitEvents(EventBatch batch) {
+    List<EventBatch> result = new ArrayList<>(2);
+    for (List<Event> half : halves(batch.getTelemetry())) {
+      result.add(new EventBatch(half, batch.getCommonAttributes()));
+    }
+    return result;
+  }
+
+  private static <T> List<List<T>> halves(Collection<T> telemetry) {
+    if (telemetry.size() < 2) {
+      return Collections.emptyList();
+    }
+    List<T> all = new ArrayList<>(telemetry);
+    int middle = all.size() / 2;
+    return Arrays.asList(all.subList(0, middle), all.subList(middle, all.size()));
+  }
+
+  interface BatchSend<B> {
+    Response send(B batch) throws ResponseException;
+  }
+
+  private interface BatchSplit<B> {
+    List<B> split(B batch);
+  }
+
+  private interface BatchSize<B> {
+    int size(B batch);
+  }
+
+  /** A single attempt at sending a batch. */
+  private final class Send<B> implements Runnable {
+    private final B batch;
+    private final BatchSend<B> sender;
+    private final BatchSplit<B> splitter;
+    private final BatchSize<B> sizer;
+    private final int attempt;
+
+    private Send(
+        B batch, BatchSend<B> sender, BatchSplit<B> splitter, BatchSize<B> sizer, int attempt) {
+      this.batch = batch;
+      this.sender = sender;
+      this.splitter = splitter;
+      this.sizer = sizer;
+      this.attempt = attempt;
+    }
+
+    private Send<B> nextAttempt() {
+      return new Send<>(batch, sender, splitter, sizer, attempt + 1);
+    }
+
+    private Send<B> withBatch(B part) {
+      return new Send<>(part, sender, splitter, sizer, attempt);
+    }
+
+    private int size() {
+      return sizer.size(batch);
+    }
+
+    @Override
+    public void run() {
+      try {
+        limiter.acquire();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        logger.warn("Interrupted while waiting to send, dropping a batch");
+        finished(this, true);
+        return;
+      }
+      long startNanos = System.nanoTime();
+      // a batch that is split or retried stays outstanding until its last attempt is done.
+      boolean done = true;
+      boolean dropped = false;
+      try {
+        Response response = sender.send(batch);
+        limiter.onSuccess(System.nanoTime() - startNanos);
+        logger.debug("Batch sent, response code: " + response.getStatusCode());
+      } catch (RetryWithSplitException e) {
+        List<B> halves = splitter.split(batch);
+        if (halves.isEmpty()) {
+          logger.warn("Batch was too large to send, but can't be split any further. Dropping it.");
+          dropped = true;
+        }
+        for (B half : halves) {
+          dispatch(started(withBatch(half)));
+        }
+      } catch (RetryWithRequestedWaitException e) {
+        limiter.onRetryAfter(e.getWaitTime(), e.getTimeUnit());
+        done = false;
+        retryLater(this, e.getTimeUnit().toMillis(e.getWaitTime()));
+      } catch (RetryWithBackoffException e) {
+        limiter.onOverload();
+        done = false;
+        retryLater(this, backoffMillis(attempt));
+      } catch (DiscardBatchException e) {
+        logger.warn("The ingest API rejected a batch, discarding it", e);
+        dropped = true;
+      } catch (ResponseException | RuntimeException e) {
+        logger.warn("Failed to send a batch, discarding it", e);
+        dropped = true;
+      } finally {
+        limiter.release();
+        if (done) {
+          finished(this, dropped);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import com.newrelic.telemetry.http.HttpPoster;
+import com.newrelic.telemetry.http.HttpResponse;
+import io.opentelemetry.sdk.common.Clock;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link HttpPoster} that moves traffic from the sender's endpoint to a failover endpoint while
+ * the sender's endpoint is unhealthy, and back once it recovers.
+ *
+ * <p>Health is judged passively, from the posts themselves: each endpoint keeps an exponentially
+ * weighted moving average of its latency and of its error rate, where an error is an I/O failure,
+ * a 5xx or a 429. Traffic fails over when the primary endpoint's error rate passes one half, or its
+ * latency passes the configured maximum, as long as the failover endpoint looks better. While
+ * failed over, one post every few seconds still goes to the primary endpoint, and traffic returns
+ * to it once those posts show its error rate and latency well below the limits again.
+ */
+class FailoverHttpPoster implements HttpPoster {
+  private static final Logger logger = LoggerFactory.getLogger(FailoverHttpPoster.class);
+
+  static final long PROBE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+  private static final double SMOOTHING = 0.3;
+  private static final double MAX_ERROR_RATE = 0.5;
+  // the primary has to be clearly better than the limits to get traffic back, so that an endpoint
+  // hovering around them doesn't make traffic flap between regions.
+  private static final double RECOVERED_ERROR_RATE = 0.2;
+  private static final double RECOVERED_LATENCY_FACTOR = 0.8;
+
+  private final HttpPoster delegate;
+  private final URL failoverUrl;
+  private final long maxLatencyNanos;
+  private final Clock clock;
+  private final EndpointHealth primaryHealth = new EndpointHealth();
+  private final EndpointHealth failoverHealth = new EndpointHealth();
+  private final AtomicLong nextProbeNanos = new AtomicLong();
+  private volatile boolean failedOver = false;
+
+  FailoverHttpPoster(HttpPoster delegate, URL failoverUrl, long maxLatencyNanos, Clock clock) {
+    this.delegate = delegate;
+    this.failoverUrl = failoverUrl;
+    this.maxLatencyNanos = maxLatencyNanos;
+    this.clock = clock;
+  }
+
+  @Override
+  public HttpResponse post(URL url, Map<String, String> headers, byte[] body, String mediaType)
+      throws IOException {
+    URL target = chooseTarget(url);
+    EndpointHealth health = target == url ? primaryHealth : failoverHealth;
+    long startNanos = clock.nanoTime();
+    HttpResponse response;
+    try {
+      response = delegate.post(target, headers, body, mediaType);
+    } catch (IOException | RuntimeException e) {
+      health.record(clock.nanoTime() - startNanos, true);
+      updateTarget(url);
+      throw e;
+    }
+    int code = response.getCode();
+    health.record(clock.nanoTime() - startNanos, code >= 500 || code == 429);
+    updateTarget(url);
+    return response;
+  }
+
+  private URL chooseTarget(URL primaryUrl) {
+    if (!failedOver) {
+      return primaryUrl;
+    }
+    long now = clock.nanoTime();
+    long probeAt = nextProbeNanos.get();
+    if (now - probeAt >= 0 && nextProbeNanos.compareAndSet(probeAt, now + PROBE_INTERVAL_NANOS)) {
+      return primaryUrl;
+    }
+    return failoverUrl;
+  }
+
+  private synchronized void updateTarget(URL primaryUrl) {
+    if (!failedOver) {
+      if (!primaryHealth.isWithin(MAX_ERROR_RATE, maxLatencyNanos)
+          && failoverHealth.isWithin(MAX_ERROR_RATE, maxLatencyNanos)) {
+        failedOver = true;
+        nextProbeNanos.set(clock.nanoTime() + PROBE_INTERVAL_NANOS);
+        logger.warn(
+            "Failing over from " + primaryUrl + " to " + failoverUrl + " (" + primaryHealth + ")");
+      }
+    } else if (primaryHealth.isWithin(
+        RECOVERED_ERROR_RATE, (long) (maxLatencyNanos * RECOVERED_LATENCY_FACTOR))) {
+      failedOver = false;
+      logger.info("Sending to " + primaryUrl + " again (" + primaryHealth + ")");
+    }
+  }
+
+  boolean isFailedOver() {
+    return failedOver;
+  }
+
+  /** Moving averages of the latency and error rate of the posts to one endpoint. */
+  private static class EndpointHealth {
+    private double latencyNanos = 0;
+    private double errorRate = 0;
+
+    synchronized void record(long latencyNanos, boolean error) {
+      this.latencyNanos += SMOOTHING * (latencyNanos - this.latencyNanos);
+      this.errorRate += SMOOTHING * ((error ? 1 : 0) - this.errorRate);
+    }
+
+    synchronized boolean isWithin(double maxErrorRate, long maxLatencyNanos) {
+      return errorRate <= maxErrorRate && latencyNanos <= maxLatencyNanos;
+    }
+
+    @Override
+    public synchronized String toString() {
+      return String.format(
+          "error rate %.2f, latency %d ms",
+          errorRate, TimeUnit.NANOSECONDS.toMillis((long) latencyNanos));
+    }
+  }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import com.newrelic.telemetry.http.HttpPoster;
+import com.newrelic.telemetry.http.HttpResponse;
+import io.opentelemetry.sdk.internal.DaemonThreadFactory;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link HttpPoster} that sends a second copy of a request when the first one is slower than
+ * most recent requests, so that a batch stuck on a slow connection still reaches the ingest API.
+ *
+ * <p>The original request is sent on the caller's thread, which waits for it as it would without
+ * hedging. If it is still outstanding after the wait, the hedge is sent from a thread of the shared
+ * hedge executor. The original's response is returned if it succeeds; if it fails, the hedge's
+ * response is returned instead, if that succeeds.
+ *
+ * <p>The wait before hedging is a percentile of the latencies of recent requests, so only the slow
+ * tail is hedged. Both copies carry the same {@value #BATCH_ID_HEADER} header, so that a receiver
+ * that deduplicates on it stores the batch once. The number of hedges is bounded by a budget that
+ * grows by a fixed fraction of a hedge with every request, which keeps the extra load on the ingest
+ * API to that fraction even when it is slow across the board.
+ */
+class HedgingHttpPoster implements HttpPoster {
+  private static final Logger logger = LoggerFactory.getLogger(HedgingHttpPoster.class);
+
+  static final String BATCH_ID_HEADER = "X-Batch-Id";
+  // hedging starts once there are enough samples for the percentile to mean something.
+  static final int MIN_SAMPLES = 20;
+  private static final int MAX_SAMPLES = 128;
+  // lets a short burst of slow requests all be hedged, without saving up an unbounded number.
+  private static final double MAX_BUDGET = 10;
+  // the budget keeps hedges this few at a time, bar the odd one still running from earlier.
+  private static final int HEDGE_THREADS = (int) MAX_BUDGET;
+
+  private final HttpPoster delegate;
+  private final double latencyPercentile;
+  private final double hedgeRatio;
+  private final ScheduledExecutorService executor;
+  private final long[] latencySamples = new long[MAX_SAMPLES];
+  private int sampleCount = 0;
+  private int nextSample = 0;
+  private double budget = 0;
+  private final AtomicLong hedgeCount = new AtomicLong();
+
+  /**
+   * @param executor the executor to time and send hedges on, which may be shared by several
+   *     posters, and which the owner shuts down. See {@link #newExecutor()}.
+   */
+  HedgingHttpPoster(
+      HttpPoster delegate,
+      double latencyPercentile,
+      double hedgeRatio,
+      ScheduledExecutorService executor) {
+    this.delegate = delegate;
+    this.latencyPercentile = latencyPercentile;
+    this.hedgeRatio = hedgeRatio;
+    this.executor = executor;
+  }
+
+  /**
+   * Creates an executor for hedges, whose threads are started when hedges are sent, and stop again
+   * once they have been idle for a minute.
+   *
+   * @return the executor, which the caller must shut down.
+   */
+  static ScheduledExecutorService newExecutor() {
+    ScheduledThreadPoolExecutor executor =
+        new ScheduledThreadPoolExecutor(
+            HEDGE_THREADS, new DaemonThreadFactory("newrelic-hedged-post"));
+    executor.setKeepAliveTime(1, TimeUnit.MINUTES);
+    executor.allowCoreThreadTimeOut(true);
+    // most hedges are cancelled because the original finished in time, so don't keep them queued.
+    executor.setRemoveOnCancelPolicy(true);
+    return executor;
+  }
+
+  @Override
+  public HttpResponse post(URL url, Map<String, String> headers, byte[] body, String mediaType)
+      throws IOException {
+    Map<String, String> identifiedHeaders = new HashMap<>(headers);
+    identifiedHeaders.put(BATCH_ID_HEADER, UUID.randomUUID().toString());
+    long startNanos = System.nanoTime();
+    long hedgeAfterNanos = admitRequest();
+    if (hedgeAfterNanos < 0) {
+      return record(startNanos, delegate.post(url, identifiedHeaders, body, mediaType));
+    }
+    Hedge hedge = new Hedge(url, identifiedHeaders, body, mediaType, hedgeAfterNanos);
+    ScheduledFuture<?> timer;
+    try {
+      timer = executor.schedule(hedge, hedgeAfterNanos, TimeUnit.NANOSECONDS);
+    } catch (RejectedExecutionException e) {
+      // the executor has been shut down along with the exporter.
+      return record(startNanos, delegate.post(url, identifiedHeaders, body, mediaType));
+    }
+    HttpResponse response;
+    try {
+      response = delegate.post(url, identifiedHeaders, body, mediaType);
+    } catch (IOException | RuntimeException e) {
+      timer.cancel(false);
+      HttpResponse hedged = hedge.awaitSuccess();
+      if (hedged == null) {
+        throw e;
+      }
+      return record(startNanos, hedged);
+    }
+    timer.cancel(false);
+    if (isSuccess(response)) {
+      hedge.cancel();
+    } else {
+      HttpResponse hedged = hedge.awaitSuccess();
+      if (hedged != null) {
+        return record(startNanos, hedged);
+      }
+    }
+    return record(startNanos, response);
+  }
+
+  private static boolean isSuccess(HttpResponse response) {
+    return response.getCode() >= 200 && response.getCode() < 300;
+  }
+
+  /** The second copy of a request, sent if the original is still outstanding when it runs. */
+  private final class Hedge implements Runnable {
+    private final URL url;
+    private final Map<String, String> headers;
+    private final byte[] body;
+    private final String mediaType;
+    private final long hedgeAfterNanos;
+    // completes with null if the hedge wasn't sent for lack of budget.
+    private final CompletableFuture<HttpResponse> response = new CompletableFuture<>();
+    // claimed by whichever comes first: the hedge starting, or the original finishing.
+    private final AtomicBoolean claimed = new AtomicBoolean();
+
+    private Hedge(
+        URL url, Map<String, String> headers, byte[] body, String mediaType, long hedgeAfterNanos) {
+      this.url = url;
+      this.headers = headers;
+      this.body = body;
+      this.mediaType = mediaType;
+      this.hedgeAfterNanos = hedgeAfterNanos;
+    }
+
+    @Override
+    public void run() {
+      if (!claimed.compareAndSet(false, true)) {
+        return;
+      }
+      if (!takeHedge()) {
+        response.complete(null);
+        return;
+      }
+      hedgeCount.incrementAndGet();
+      logger.debug("Hedging a request that took longer than " + hedgeAfterNanos + " ns");
+      try {
+        response.complete(delegate.post(url, headers, body, mediaType));
+      } catch (Throwable t) {
+        response.completeExceptionally(t);
+      }
+    }
+
+    /** Stops the hedge from being sent, if it hasn't started yet. */
+    private void cancel() {
+      claimed.compareAndSet(false, true);
+    }
+
+    /**
+     * Stops the hedge from being sent if it hasn't started yet, or else waits for it.
+     *
+     * @return the hedge's response if it was sent and succeeded, or null otherwise.
+     */
+    private HttpResponse awaitSuccess() throws InterruptedIOException {
+      if (claimed.compareAndSet(false, true)) {
+        return null;
+      }
+      try {
+        HttpResponse hedged = response.get();
+        return hedged != null && isSuccess(hedged) ? hedged : null;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for a hedged post");
+      } catch (ExecutionException e) {
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Adds this request's share to the hedging budget.
+   *
+   * @return how long to wait before hedging, or -1 if there are too few samples to tell.
+   */
+  private synchronized long admitRequest() {
+    budget = Math.min(MAX_BUDGET, budget + hedgeRatio);
+    if (sampleCount < MIN_SAMPLES) {
+      return -1;
+    }
+    long[] sorted = Arrays.copyOf(latencySamples, sampleCount);
+    Arrays.sort(sorted);
+    return sorted[(int) Math.ceil(latencyPercentile * (sampleCount - 1))];
+  }
+
+  private synchronized boolean takeHedge() {
+    if (budget < 1) {
+      return false;
+    }
+    budget -= 1;
+    return true;
+  }
+
+  private synchronized HttpResponse record(long startNanos, HttpResponse response) {
+    latencySamples[nextSample] = System.nanoTime() - startNanos;
+    nextSample = (nextSample + 1) % MAX_SAMPLES;
+    sampleCount = Math.min(MAX_SAMPLES, sampleCount + 1);
+    return response;
+  }
+
+  /**
+   * The number of requests that have been hedged.
+   *
+   * @return the hedge count
+   */
+  long getHedgeCount() {
+    return hedgeCount.get();
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import com.newrelic.telemetry.OkHttpPoster;
+import com.newrelic.telemetry.http.HttpPoster;
+import io.opentelemetry.sdk.internal.SystemClock;
+import java.net.URL;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Chooses the HTTP client that batches are posted with. OkHttp is used when it is on the classpath,
+ * and the JDK's client otherwise, so that a shaded jar can leave out OkHttp, Okio and the Kotlin
+ * standard library.
+ */
+class HttpPosters {
+
+  private static final Logger logger = LoggerFactory.getLogger(HttpPosters.class);
+
+  private static final boolean OK_HTTP_AVAILABLE = isOkHttpAvailable();
+  private static final boolean ZSTD_AVAILABLE = isZstdAvailable();
+  private static final boolean PROTOBUF_AVAILABLE = isProtobufAvailable();
+
+  private HttpPosters() {}
+
+  /**
+   * @param useJdkHttpClient whether to use the JDK's client even if OkHttp is available.
+   * @return a factory for the poster to send with.
+   */
+  static Supplier<HttpPoster> factory(boolean useJdkHttpClient) {
+    if (useJdkHttpClient || !OK_HTTP_AVAILABLE) {
+      return JdkHttpPoster::new;
+    }
+    return HttpPosters::newOkHttpPoster;
+  }
+
+  /**
+   * @param poster the poster to send with.
+   * @param failoverUrl the endpoint to move posts to while the sender's own endpoint is unhealthy,
+   *     or null to always post to the sender's endpoint.
+   * @param maxLatency the latency beyond which an endpoint counts as unhealthy.
+   * @return the poster, wrapped in a {@link FailoverHttpPoster} if there is a failover endpoint.
+   */
+  static HttpPoster withFailover(HttpPoster poster, URL failoverUrl, Duration maxLatency) {
+    if (failoverUrl == null) {
+      return poster;
+    }
+    return new FailoverHttpPoster(
+        poster, failoverUrl, maxLatency.toNanos(), SystemClock.getInstance());
+  }
+
+  /**
+   * @param poster the poster to send with.
+   * @param latencyPercentile the percentile of recent latencies after which a request is hedged.
+   * @param hedgeRatio the largest share of requests that may be hedged, or 0 never to hedge.
+   * @param executor the executor to send hedges on, from {@link HedgingHttpPoster#newExecutor()},
+   *     or null if requests are never hedged.
+   * @return the poster, wrapped in a {@link HedgingHttpPoster} if requests may be hedged.
+   */
+  static HttpPoster withHedging(
+      HttpPoster poster,
+      double latencyPercentile,
+      double hedgeRatio,
+      ScheduledExecutorService executor) {
+    if (hedgeRatio <= 0) {
+      return poster;
+    }
+    return new HedgingHttpPoster(poster, latencyPercentile, hedgeRatio, executor);
+  }
+
+  /**
+   * @param poster the poster to send with.
+   * @param dictionary the zstd dictionary to compress request bodies with, or null to send them
+   *     gzipped.
+   * @return the poster, wrapped in a {@link ZstdHttpPoster} if there is a dictionary and zstd-jni
+   *     is available.
+   */
+  static HttpPoster withZstd(HttpPoster poster, byte[] dictionary) {
+    if (dictionary == null) {
+      return poster;
+    }
+    if (!ZSTD_AVAILABLE) {
+      logger.warn("zstd-jni isn't on the classpath, or can't load, so payloads are sent gzipped");
+      return poster;
+    }
+    return newZstdHttpPoster(poster, dictionary);
+  }
+
+  /**
+   * @param poster the poster to send with.
+   * @param directory the directory to record samples of request bodies in, or null not to.
+   * @param maxSamples the number of request bodies to record.
+   * @return the poster, wrapped in a {@link PayloadSampleRecorder} if there is a directory.
+   */
+  static HttpPoster withSampleRecorder(HttpPoster poster, Path directory, int maxSamples) {
+    if (directory == null) {
+      return poster;
+    }
+    return new PayloadSampleRecorder(poster, directory, maxSamples);
+  }
+
+  /**
+   * OTLP bodies are written with protobuf-java, which is an optional dependency.
+   *
+   * @throws IllegalStateException if protobuf-java isn't on the classpath.
+   */
+  static void checkOtlpAvailable() {
+    if (!PROTOBUF_AVAILABLE) {
+      throw new IllegalStateException(
+          "OTLP export needs com.google.protobuf:protobuf-java on the classpath");
+    }
+  }
+
+  // kept out of withZstd() so that ZstdHttpPoster is only loaded when zstd-jni is there.
+  private static HttpPoster newZstdHttpPoster(HttpPoster poster, byte[] dictionary) {
+    return new ZstdHttpPoster(poster, dictionary, ZstdHttpPoster.DEFAULT_LEVEL);
+  }
+
+  // kept out of factory() so that OkHttpPoster is only loaded when OkHttp is there to back it.
+  private static HttpPoster newOkHttpPoster() {
+    return new OkHttpPoster();
+  }
+
+  // zstd-jni is an optional dependency, and its native library may not exist for this platform.
+  private static boolean isZstdAvailable() {
+    try {
+      Class.forName("com.github.luben.zstd.Zstd", true, HttpPosters.class.getClassLoader());
+      return true;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+
+  private static boolean isProtobufAvailable() {
+    try {
+      Class.forName(
+          "com.google.protobuf.CodedOutputStream", false, HttpPosters.class.getClassLoader());
+      return true;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+
+  private static boolean isOkHttpAvailable() {
+    try {
+      Class.forName("okhttp3.OkHttpClient", false, HttpPosters.class.getClassLoader());
+      Class.forName(
+          "com.newrelic.telemetry.OkHttpPoster", false, HttpPosters.class.getClassLoader());
+      return true;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import com.newrelic.telemetry.Response;
+import com.newrelic.telemetry.exceptions.DiscardBatchException;
+import com.newrelic.telemetry.exceptions.ResponseException;
+import com.newrelic.telemetry.exceptions.RetryWithBackoffException;
+import com.newrelic.telemetry.exceptions.RetryWithRequestedWaitException;
+import com.newrelic.telemetry.exceptions.RetryWithSplitException;
+import com.newrelic.telemetry.http.HttpResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Helpers for the senders that encode batches themselves, rather than through the telemetry SDK's
+ * batch senders. Responses are turned into the same exceptions as the SDK's own senders throw, so
+ * that batches are split, retried and dropped the same way.
+ */
+class IngestResponses {
+
+  private IngestResponses() {}
+
+  /**
+   * Check the response to a post.
+   *
+   * @param response the response from the ingest endpoint.
+   * @return the response, if the endpoint accepted the batch.
+   * @throws ResponseException if the batch should be split, retried later, or dropped.
+   */
+  static Response check(HttpResponse response) throws ResponseException {
+    int code = response.getCode();
+    if (code >= 200 && code < 300) {
+      return new Response(code, response.getMessage(), response.getBody());
+    }
+    switch (code) {
+      case 400:
+      case 401:
+      case 403:
+      case 404:
+      case 405:
+      case 411:
+      case 415:
+        throw new DiscardBatchException();
+      case 413:
+        throw new RetryWithSplitException();
+      case 429:
+        Integer retryAfterSeconds = retryAfterSeconds(response);
+        if (retryAfterSeconds != null) {
+          throw new RetryWithRequestedWaitException(retryAfterSeconds, TimeUnit.SECONDS);
+        }
+        throw new RetryWithBackoffException();
+      default:
+        throw new RetryWithBackoffException();
+    }
+  }
+
+  private static Integer retryAfterSeconds(HttpResponse response) {
+    for (Map.Entry<String, List<String>> header : response.getHeaders().entrySet()) {
+      if ("Retry-After".equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+        try {
+          return Integer.parseInt(header.getValue().get(0).trim());
+        } catch (NumberFormatException e) {
+          return null;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Gzip part of a buffer.
+   *
+   * @param buffer the buffer holding the payload.
+   * @param length the length of the payload, from the start of the buffer.
+   * @return the compressed payload
+   * @throws IOException if the payload could not be compressed.
+   */
+  static byte[] gzip(byte[] buffer, int length) throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 4 + 64);
+    try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+      gzip.write(buffer, 0, length);
+    }
+    return compressed.toByteArray();
+  }
+
+  /**
+   * Inflate a gzipped payload.
+   *
+   * @param payload the gzipped payload.
+   * @return the uncompressed payload
+   * @throws IOException if the payload isn't valid gzip.
+   */
+  static byte[] gunzip(byte[] payload) throws IOException {
+    ByteArrayOutputStream uncompressed = new ByteArrayOutputStream(payload.length * 4);
+    try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+      byte[] chunk = new byte[8192];
+      int read;
+      while ((read = gzip.read(chunk)) != -1) {
+        uncompressed.write(chunk, 0, read);
+      }
+    }
+    return uncompressed.toByteArray();
+  }
+
+  /**
+   * @param payload a request body.
+   * @return whether the body starts with the gzip magic bytes.
+   */
+  static boolean isGzipped(byte[] payload) {
+    return payload.length >= 2 && (payload[0] & 0xff) == 0x1f && (payload[1] & 0xff) == 0x8b;
+  }
+}
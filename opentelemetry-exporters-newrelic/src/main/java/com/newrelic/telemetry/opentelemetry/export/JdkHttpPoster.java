@@ -0,0 +1,91 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import com.newrelic.telemetry.http.HttpPoster;
+import com.newrelic.telemetry.http.HttpResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An {@link HttpPoster} built on the JDK's {@link HttpURLConnection}, for when OkHttp isn't on the
+ * classpath. Connections are kept alive and reused by the JDK, as long as every response is read
+ * to the end, which this poster always does.
+ */
+class JdkHttpPoster implements HttpPoster {
+
+  static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
+
+  private final int timeoutMillis;
+
+  JdkHttpPoster() {
+    this(DEFAULT_TIMEOUT);
+  }
+
+  /** @param timeout how long to wait to connect, and then for each read of the response. */
+  JdkHttpPoster(Duration timeout) {
+    this.timeoutMillis = (int) Math.min(Integer.MAX_VALUE, timeout.toMillis());
+  }
+
+  @Override
+  public HttpResponse post(URL url, Map<String, String> headers, byte[] body, String mediaType)
+      throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setRequestMethod("POST");
+    connection.setDoOutput(true);
+    connection.setConnectTimeout(timeoutMillis);
+    connection.setReadTimeout(timeoutMillis);
+    connection.setFixedLengthStreamingMode(body.length);
+    connection.setRequestProperty("Content-Type", mediaType);
+    headers.forEach(connection::setRequestProperty);
+    try (OutputStream out = connection.getOutputStream()) {
+      out.write(body);
+    }
+    int code = connection.getResponseCode();
+    String responseBody =
+        readFully(code >= 400 ? connection.getErrorStream() : connection.getInputStream());
+    return new HttpResponse(
+        responseBody, code, connection.getResponseMessage(), headers(connection));
+  }
+
+  private static Map<String, List<String>> headers(HttpURLConnection connection) {
+    Map<String, List<String>> headers = new HashMap<>();
+    connection
+        .getHeaderFields()
+        .forEach(
+            (name, values) -> {
+              // the status line is returned under a null name
+              if (name != null) {
+                headers.put(name, values);
+              }
+            });
+    return headers;
+  }
+
+  private static String readFully(InputStream in) throws IOException {
+    if (in == null) {
+      return "";
+    }
+    try (InputStream body = in) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      int read;
+      while ((read = body.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+      return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import com.newrelic.telemetry.http.HttpPoster;
+import com.newrelic.telemetry.http.HttpResponse;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * An {@link HttpPoster} that doesn't create the real poster until the first batch is posted. HTTP
+ * clients such as OkHttp set up connection pools and TLS on construction, which is wasted startup
+ * time for an exporter that is built but never sends, and is better spent on a send thread than on
+ * the thread that builds the exporter.
+ */
+class LazyHttpPoster implements HttpPoster {
+
+  private final Supplier<HttpPoster> factory;
+  private volatile HttpPoster delegate;
+
+  LazyHttpPoster(Supplier<HttpPoster> factory) {
+    this.factory = factory;
+  }
+
+  @Override
+  public HttpResponse post(URL url, Map<String, String> headers, byte[] body, String mediaType)
+      throws IOException {
+    return delegate().post(url, headers, body, mediaType);
+  }
+
+  boolean isInitialized() {
+    return delegate != null;
+  }
+
+  private HttpPoster delegate() {
+    HttpPoster result = delegate;
+    if (result == null) {
+      synchronized (this) {
+        result = delegate;
+        if (result == null) {
+          result = factory.get();
+          delegate = result;
+        }
+      }
+    }
+    return result;
+  }
+}
@@ -5,6 +5,8 @@
 
 package com.newrelic.telemetry.opentelemetry.export;
 
+import static io.opentelemetry.sdk.metrics.data.MetricData.AggregationTemporality.CUMULATIVE;
+import static io.opentelemetry.sdk.metrics.data.MetricData.AggregationTemporality.DELTA;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singleton;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
@@ -15,6 +17,7 @@ import com.newrelic.telemetry.metrics.Gauge;
 import com.newrelic.telemetry.metrics.Metric;
 import com.newrelic.telemetry.metrics.Summary;
 import io.opentelemetry.api.common.Labels;
+import io.opentelemetry.sdk.common.InstrumentationLibraryInfo;
 import io.opentelemetry.sdk.metrics.data.MetricData;
 import io.opentelemetry.sdk.metrics.data.MetricData.DoublePoint;
 import io.opentelemetry.sdk.metrics.data.MetricData.DoubleSummaryPoint;
@@ -22,22 +25,45 @@ import io.opentelemetry.sdk.metrics.data.MetricData.LongPoint;
 import io.opentelemetry.sdk.metrics.data.MetricData.Point;
 import io.opentelemetry.sdk.metrics.data.MetricData.Type;
 import io.opentelemetry.sdk.metrics.data.MetricData.ValueAtPercentile;
+import io.opentelemetry.sdk.resources.Resource;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class MetricPointAdapter {
 
   // Ideally, we would not have to do this work, and the OTel SDK would be configurable to
-  // make deltas for us automatically.
-  private final Map<Key, DeltaLongCounter> deltaLongCountersByDescriptor = new HashMap<>();
-  private final Map<Key, DeltaDoubleCounter> deltaDoubleCountersByDescriptor = new HashMap<>();
-  private final TimeTracker timeTracker;
+  // make deltas for us automatically. The interval for each Count is tracked alongside the delta
+  // state of its series, so it does not depend on when, or by how many readers, exports happen.
+  private final Map<Key, DeltaLongCounter> deltaLongCountersByDescriptor =
+      new ConcurrentHashMap<>();
+  private final Map<Key, DeltaDoubleCounter> deltaDoubleCountersByDescriptor =
+      new ConcurrentHashMap<>();
+  // when set, every cumulative point is looked up with a per-thread key, and a key is only
+  // allocated the first time a series is seen.
+  private final ThreadLocal<Key> lookupKeys;
 
+  public MetricPointAdapter() {
+    this(false);
+  }
+
+  MetricPointAdapter(boolean useThreadLocalPools) {
+    this.lookupKeys = useThreadLocalPools ? ThreadLocal.withInitial(Key::new) : null;
+  }
+
+  /**
+   * Count intervals are now taken from each series' own points, so the {@link TimeTracker} is no
+   * longer consulted.
+   *
+   * @param timeTracker ignored
+   * @deprecated use {@link #MetricPointAdapter()}
+   */
+  @Deprecated
   public MetricPointAdapter(TimeTracker timeTracker) {
-    this.timeTracker = timeTracker;
+    this();
   }
 
   Collection<Metric> buildMetricsFromPoint(MetricData metric, Attributes attributes, Point point) {
@@ -66,30 +92,153 @@ public class MetricPointAdapter {
     return false;
   }
 
+  // Only cumulative monotonic sums need to be turned into deltas. Delta sums already cover the
+  // interval between their start and end times.
+  private boolean isCumulative(MetricData metric) {
+    Type type = metric.getType();
+    if (type == Type.LONG_SUM) {
+      return metric.getLongSumData().getAggregationTemporality() == CUMULATIVE;
+    }
+    if (type == Type.DOUBLE_SUM) {
+      return metric.getDoubleSumData().getAggregationTemporality() == CUMULATIVE;
+    }
+    return false;
+  }
+
   private Collection<Metric> buildDoublePointMetrics(
       MetricData metric, Attributes attributes, DoublePoint point) {
-    double value = point.getValue();
-    if (isNonMonotonic(metric)) {
-      DeltaDoubleCounter deltaDoubleCounter =
-          deltaDoubleCountersByDescriptor.computeIfAbsent(
-              new Key(metric, point.getLabels()), d -> new DeltaDoubleCounter());
+    if (isNonMonotonic(metric) || !isCumulative(metric)) {
+      return buildMetricsFromSimpleType(
+          metric, attributes, point.getValue(), point.getEpochNanos(), point.getStartEpochNanos());
+    }
+    DeltaDoubleCounter deltaDoubleCounter = doubleCounterFor(metric, point);
+    double value;
+    long startEpochNanos;
+    synchronized (deltaDoubleCounter) {
+      if (deltaDoubleCounter.isStale(point)) {
+        return emptyList();
+      }
       value = deltaDoubleCounter.delta(point);
+      startEpochNanos = deltaDoubleCounter.getIntervalStartEpochNanos();
     }
     return buildMetricsFromSimpleType(
-        metric, attributes, value, point.getEpochNanos(), timeTracker.getPreviousTime());
+        metric, attributes, value, point.getEpochNanos(), startEpochNanos);
   }
 
   private Collection<Metric> buildLongPointMetrics(
       MetricData metric, Attributes attributes, LongPoint point) {
-    long value = point.getValue();
-    if (isNonMonotonic(metric)) {
-      DeltaLongCounter deltaLongCounter =
-          deltaLongCountersByDescriptor.computeIfAbsent(
-              new Key(metric, point.getLabels()), d -> new DeltaLongCounter());
+    if (isNonMonotonic(metric) || !isCumulative(metric)) {
+      return buildMetricsFromSimpleType(
+          metric, attributes, point.getValue(), point.getEpochNanos(), point.getStartEpochNanos());
+    }
+    DeltaLongCounter deltaLongCounter = longCounterFor(metric, point);
+    long value;
+    long startEpochNanos;
+    synchronized (deltaLongCounter) {
+      if (deltaLongCounter.isStale(point)) {
+        return emptyList();
+      }
       value = deltaLongCounter.delta(point);
+      startEpochNanos = deltaLongCounter.getIntervalStartEpochNanos();
     }
     return buildMetricsFromSimpleType(
-        metric, attributes, value, point.getEpochNanos(), timeTracker.getPreviousTime());
+        metric, attributes, value, point.getEpochNanos(), startEpochNanos);
+  }
+
+  /**
+   * Turns a cumulative monotonic sum into a delta sum, for exporters that send the OpenTelemetry
+   * data itself rather than New Relic metrics. The deltas come from the same per-series state as
+   * {@link #buildMetricsFromPoint}, so a series gets the same values whichever way it is sent.
+   * Points that are no newer than ones already seen are left out. Other metrics are returned as
+   * they are.
+   *
+   * @param metric the metric to convert.
+   * @return the metric, with delta temporality if it was a cumulative monotonic sum.
+   */
+  MetricData toDeltaSum(MetricData metric) {
+    if (isNonMonotonic(metric) || !isCumulative(metric)) {
+      return metric;
+    }
+    Collection<Point> points = metric.getPoints();
+    if (metric.getType() == Type.LONG_SUM) {
+      List<LongPoint> deltas = new ArrayList<>(points.size());
+      for (Point point : points) {
+        DeltaLongCounter deltaLongCounter = longCounterFor(metric, point);
+        synchronized (deltaLongCounter) {
+          if (!deltaLongCounter.isStale((LongPoint) point)) {
+            long value = deltaLongCounter.delta((LongPoint) point);
+            deltas.add(
+                LongPoint.create(
+                    deltaLongCounter.getIntervalStartEpochNanos(),
+                    point.getEpochNanos(),
+                    point.getLabels(),
+                    value));
+          }
+        }
+      }
+      return MetricData.createLongSum(
+          metric.getResource(),
+          metric.getInstrumentationLibraryInfo(),
+          metric.getName(),
+          metric.getDescription(),
+          metric.getUnit(),
+          MetricData.LongSumData.create(true, DELTA, deltas));
+    }
+    List<DoublePoint> deltas = new ArrayList<>(points.size());
+    for (Point point : points) {
+      DeltaDoubleCounter deltaDoubleCounter = doubleCounterFor(metric, point);
+      synchronized (deltaDoubleCounter) {
+        if (!deltaDoubleCounter.isStale((DoublePoint) point)) {
+          double value = deltaDoubleCounter.delta((DoublePoint) point);
+          deltas.add(
+              DoublePoint.create(
+                  deltaDoubleCounter.getIntervalStartEpochNanos(),
+                  point.getEpochNanos(),
+                  point.getLabels(),
+                  value));
+        }
+      }
+    }
+    return MetricData.createDoubleSum(
+        metric.getResource(),
+        metric.getInstrumentationLibraryInfo(),
+        metric.getName(),
+        metric.getDescription(),
+        metric.getUnit(),
+        MetricData.DoubleSumData.create(true, DELTA, deltas));
+  }
+
+  private DeltaLongCounter longCounterFor(MetricData metric, Point point) {
+    DeltaLongCounter deltaLongCounter = lookup(deltaLongCountersByDescriptor, metric, point);
+    if (deltaLongCounter == null) {
+      deltaLongCounter =
+          deltaLongCountersByDescriptor.computeIfAbsent(
+              new Key(metric, point.getLabels()), d -> new DeltaLongCounter());
+    }
+    return deltaLongCounter;
+  }
+
+  private DeltaDoubleCounter doubleCounterFor(MetricData metric, Point point) {
+    DeltaDoubleCounter deltaDoubleCounter = lookup(deltaDoubleCountersByDescriptor, metric, point);
+    if (deltaDoubleCounter == null) {
+      deltaDoubleCounter =
+          deltaDoubleCountersByDescriptor.computeIfAbsent(
+              new Key(metric, point.getLabels()), d -> new DeltaDoubleCounter());
+    }
+    return deltaDoubleCounter;
+  }
+
+  private <T> T lookup(Map<Key, T> countersByDescriptor, MetricData metric, Point point) {
+    if (lookupKeys == null) {
+      return null;
+    }
+    Key lookupKey = lookupKeys.get().of(metric, point.getLabels());
+    try {
+      return countersByDescriptor.get(lookupKey);
+    } finally {
+      // don't keep the metric reachable from the thread between exports.
+      lookupKey.clear();
+    }
   }
 
   private Collection<Metric> buildMetricsFromSimpleType(
@@ -99,6 +248,7 @@ public class MetricPointAdapter {
       long epochNanos,
       long startEpochNanos) {
 
+    // non-monotonic sums (up-down counters) report their current value, not a rate.
     if (isNonMonotonic(metric)) {
       return singleton(
           new Gauge(metric.getName(), value, NANOSECONDS.toMillis(epochNanos), attributes));
@@ -145,23 +295,52 @@ public class MetricPointAdapter {
             attributes));
   }
 
+  // A series is identified by its producer (resource and instrumentation library) as well as by
+  // the metric descriptor and labels, so identical metrics from two producers don't share state.
   private static class Key {
-    private final String name;
-    private final String description;
-    private final String unit;
-    private final Type type;
-    private final Labels labels;
+    // only modified on lookup keys, which are never stored in a map.
+    private Resource resource;
+    private InstrumentationLibraryInfo instrumentationLibraryInfo;
+    private String name;
+    private String description;
+    private String unit;
+    private Type type;
+    private Labels labels;
+    private int hashCode;
+
+    private Key() {}
 
     public Key(MetricData metric, Labels labels) {
-      this(metric.getName(), metric.getDescription(), metric.getUnit(), metric.getType(), labels);
+      of(metric, labels);
     }
 
-    public Key(String name, String description, String unit, Type type, Labels labels) {
-      this.name = name;
-      this.description = description;
-      this.unit = unit;
-      this.type = type;
+    private Key of(MetricData metric, Labels labels) {
+      this.resource = metric.getResource();
+      this.instrumentationLibraryInfo = metric.getInstrumentationLibraryInfo();
+      this.name = metric.getName();
+      this.description = metric.getDescription();
+      this.unit = metric.getUnit();
+      this.type = metric.getType();
       this.labels = labels;
+      // worked out once here, and without the varargs array that Objects.hash would allocate.
+      int hash = Objects.hashCode(resource);
+      hash = 31 * hash + Objects.hashCode(instrumentationLibraryInfo);
+      hash = 31 * hash + Objects.hashCode(name);
+      hash = 31 * hash + Objects.hashCode(description);
+      hash = 31 * hash + Objects.hashCode(unit);
+      hash = 31 * hash + Objects.hashCode(type);
+      this.hashCode = 31 * hash + Objects.hashCode(labels);
+      return this;
+    }
+
+    private void clear() {
+      resource = null;
+      instrumentationLibraryInfo = null;
+      name = null;
+      description = null;
+      unit = null;
+      type = null;
+      labels = null;
     }
 
     @Override
@@ -170,6 +349,8 @@ public class MetricPointAdapter {
       if (o == null || getClass() != o.getClass()) return false;
       Key key = (Key) o;
       return name.equals(key.name)
+          && Objects.equals(resource, key.resource)
+          && Objects.equals(instrumentationLibraryInfo, key.instrumentationLibraryInfo)
           && Objects.equals(description, key.description)
           && Objects.equals(unit, key.unit)
           && type == key.type
@@ -178,7 +359,7 @@ public class MetricPointAdapter {
 
     @Override
     public int hashCode() {
-      return Objects.hash(name, description, unit, type, labels);
+      return hashCode;
     }
   }
 }
@@ -5,19 +5,33 @@
 
 package com.newrelic.telemetry.opentelemetry.export;
 
+import static java.util.Arrays.asList;
 import static java.util.Collections.singleton;
 
 import com.newrelic.telemetry.Attributes;
 import com.newrelic.telemetry.opentelemetry.export.NewRelicSpanExporter.Builder;
 import io.opentelemetry.api.metrics.GlobalMetricsProvider;
 import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.internal.DaemonThreadFactory;
 import io.opentelemetry.sdk.metrics.SdkMeterProvider;
 import io.opentelemetry.sdk.metrics.export.IntervalMetricReader;
 import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class NewRelicExporters {
+  private static final Logger logger = LoggerFactory.getLogger(NewRelicExporters.class);
 
   private static IntervalMetricReader intervalMetricReader;
+  private static NewRelicSpanExporter spanExporter;
+  private static NewRelicMetricExporter metricExporter;
+  private static int shutdownTimeoutSeconds =
+      (int) DispatchingTelemetryClient.DEFAULT_SHUTDOWN_TIMEOUT_SECONDS;
 
   /**
    * Start up the New Relic Metric and Span exporters with the provided API key and service name.
@@ -35,51 +49,174 @@ public class NewRelicExporters {
    * @param configuration Configuration
    */
   public static void start(Configuration configuration) {
+    if (configuration.maxExportBatchSize > configuration.maxQueueSize) {
+      throw new IllegalArgumentException(
+          "maxExportBatchSize ("
+              + configuration.maxExportBatchSize
+              + ") must not be larger than maxQueueSize ("
+              + configuration.maxQueueSize
+              + ")");
+    }
     Attributes serviceNameAttributes =
         new Attributes().put("service.name", configuration.serviceName);
 
+    Duration shutdownTimeout = Duration.ofSeconds(configuration.shutdownTimeoutSeconds);
+    shutdownTimeoutSeconds = configuration.shutdownTimeoutSeconds;
+
     Builder spanExporterBuilder =
         NewRelicSpanExporter.newBuilder()
             .apiKey(configuration.apiKey)
-            .commonAttributes(serviceNameAttributes);
+            .commonAttributes(serviceNameAttributes)
+            .shutdownTimeout(shutdownTimeout)
+            .maxConcurrentSends(configuration.maxConcurrentSends);
     if (configuration.enableAuditLogging) {
       spanExporterBuilder.enableAuditLogging();
     }
+    if (configuration.useVirtualThreads) {
+      spanExporterBuilder.useVirtualThreads();
+    }
 
+    spanExporter = spanExporterBuilder.build();
     BatchSpanProcessor spanProcessor =
-        BatchSpanProcessor.builder(spanExporterBuilder.build())
+        BatchSpanProcessor.builder(spanExporter)
             .setScheduleDelayMillis(configuration.collectionIntervalSeconds * 1000)
+            .setMaxQueueSize(configuration.maxQueueSize)
+            .setMaxExportBatchSize(configuration.maxExportBatchSize)
+            .setExporterTimeoutMillis(configuration.exportTimeoutMillis)
             .build();
     OpenTelemetrySdk.getGlobalTracerManagement().addSpanProcessor(spanProcessor);
 
     NewRelicMetricExporter.Builder metricExporterBuilder =
         NewRelicMetricExporter.newBuilder()
             .apiKey(configuration.apiKey)
-            .commonAttributes(serviceNameAttributes);
+            .commonAttributes(serviceNameAttributes)
+            .shutdownTimeout(shutdownTimeout)
+            .maxConcurrentSends(configuration.maxConcurrentSends);
     if (configuration.enableAuditLogging) {
       metricExporterBuilder.enableAuditLogging();
     }
+    if (configuration.useVirtualThreads) {
+      metricExporterBuilder.useVirtualThreads();
+    }
+    metricExporter = metricExporterBuilder.build();
     intervalMetricReader =
         IntervalMetricReader.builder()
-            .setExportIntervalMillis(configuration.collectionIntervalSeconds * 1000)
-            .setMetricExporter(metricExporterBuilder.build())
+            .setExportIntervalMillis(configuration.getMetricExportIntervalSeconds() * 1000L)
+            .setMetricExporter(metricExporter)
             .setMetricProducers(
                 singleton(((SdkMeterProvider) GlobalMetricsProvider.get()).getMetricProducer()))
             .build();
   }
 
-  /** Shutdown the OpenTelemetry SDK and the NewRelic exporters. */
+  /**
+   * Shutdown the OpenTelemetry SDK and the NewRelic exporters, waiting no longer than the shutdown
+   * timeout in the {@link Configuration} for outstanding spans and metrics to be sent.
+   */
   public static void shutdown() {
-    OpenTelemetrySdk.getGlobalTracerManagement().shutdown();
-    intervalMetricReader.shutdown();
+    shutdown(shutdownTimeoutSeconds, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Shutdown the OpenTelemetry SDK and the NewRelic exporters. The span and metric pipelines are
+   * flushed and shut down at the same time, and this method returns once both are done, or once the
+   * timeout has passed, whichever comes first. The exporters give up on whatever is still unsent at
+   * that point, in place of their own shutdown timeouts, and the number of spans and metrics that
+   * could not be sent in time is logged. This does nothing if the exporters were never started.
+   *
+   * @param timeout the longest time to wait for both pipelines to shut down.
+   * @param unit the unit of the timeout.
+   * @return a result that succeeds if everything was sent, and fails if anything was dropped or the
+   *     timeout passed first.
+   */
+  public static CompletableResultCode shutdown(long timeout, TimeUnit unit) {
+    if (spanExporter == null || metricExporter == null) {
+      logger.debug("The New Relic exporters were never started, so there is nothing to shut down");
+      return CompletableResultCode.ofSuccess();
+    }
+    // the SDK shuts the exporters down without a timeout, so they are told the deadline up front.
+    long deadlineNanos = System.nanoTime() + unit.toNanos(timeout);
+    spanExporter.setShutdownDeadline(deadlineNanos);
+    metricExporter.setShutdownDeadline(deadlineNanos);
+    ExecutorService drain =
+        Executors.newFixedThreadPool(2, new DaemonThreadFactory("newrelic-exporter-shutdown"));
+    CompletableResultCode spans = new CompletableResultCode();
+    CompletableResultCode metrics = new CompletableResultCode();
+    drain.execute(
+        () -> {
+          try {
+            OpenTelemetrySdk.getGlobalTracerManagement().shutdown();
+          } finally {
+            spans.succeed();
+          }
+        });
+    drain.execute(
+        () -> {
+          try {
+            intervalMetricReader.shutdown();
+          } finally {
+            metrics.succeed();
+          }
+        });
+    drain.shutdown();
+
+    boolean finished =
+        CompletableResultCode.ofAll(asList(spans, metrics)).join(timeout, unit).isDone();
+    long droppedSpans = Math.max(0, spanExporter.getDroppedCount());
+    long droppedMetrics = Math.max(0, metricExporter.getDroppedCount());
+    if (!finished) {
+      logger.warn(
+          "Timed out shutting down the New Relic exporters, unsent spans and metrics may be lost");
+    }
+    if (droppedSpans > 0 || droppedMetrics > 0) {
+      logger.warn(
+          "Dropped "
+              + droppedSpans
+              + " spans and "
+              + droppedMetrics
+              + " metrics while shutting down the New Relic exporters");
+    }
+    return finished && droppedSpans == 0 && droppedMetrics == 0
+        ? CompletableResultCode.ofSuccess()
+        : CompletableResultCode.ofFailure();
   }
 
-  /** Basic Configuration options for the New Relic Exporters. */
+  /**
+   * Basic Configuration options for the New Relic Exporters.
+   *
+   * <p>The span queue and batch settings can be sized from the peak rate of spans a service ends,
+   * R spans per second, and the collection interval, T seconds:
+   *
+   * <ul>
+   *   <li>{@link #maxQueueSize(int)} should be at least 2 * R * T, so that a full interval of spans
+   *       fits in the queue while the previous one is being exported. Spans that arrive when the
+   *       queue is full are dropped. Each queued span takes roughly 1 KB of heap, more if it has
+   *       many attributes.
+   *   <li>{@link #maxExportBatchSize(int)} is how many spans are taken from the queue per export.
+   *       The processor exports as soon as this many spans are queued, so a batch of a few thousand
+   *       keeps the queue short at high rates without producing payloads that the ingest API has to
+   *       ask to be split.
+   *   <li>{@link #maxConcurrentSends(int)} should be at least (R / maxExportBatchSize) * L, where L
+   *       is the typical time in seconds to send one batch, and about twice that to absorb slow
+   *       responses.
+   * </ul>
+   *
+   * <p>For example, a service ending 50,000 spans per second with a 1 second interval needs a queue
+   * of 100,000 spans (about 100 MB), and with batches of 5,000 spans sent in 300 ms, 3 to 6
+   * concurrent sends.
+   */
   public static class Configuration {
     private final String apiKey;
     private final String serviceName;
     private boolean enableAuditLogging = false;
     private int collectionIntervalSeconds = 5;
+    private int shutdownTimeoutSeconds =
+        (int) DispatchingTelemetryClient.DEFAULT_SHUTDOWN_TIMEOUT_SECONDS;
+    private int maxQueueSize = 2048;
+    private int maxExportBatchSize = 512;
+    private int exportTimeoutMillis = 30_000;
+    private Integer metricExportIntervalSeconds;
+    private int maxConcurrentSends = SendExecutors.DEFAULT_PLATFORM_THREADS;
+    private boolean useVirtualThreads = false;
 
     /**
      * Create a new configuration. Both parameters are required.
@@ -117,5 +254,113 @@ public class NewRelicExporters {
       collectionIntervalSeconds = interval;
       return this;
     }
+
+    /**
+     * Set how long, in seconds, {@link NewRelicExporters#shutdown()} waits for outstanding spans
+     * and metrics to be sent. Defaults to 10 seconds.
+     *
+     * @param timeout Timeout in seconds
+     * @return Configuration
+     */
+    public Configuration shutdownTimeoutSeconds(int timeout) {
+      if (timeout < 0) {
+        throw new IllegalArgumentException("The shutdown timeout must not be negative");
+      }
+      shutdownTimeoutSeconds = timeout;
+      return this;
+    }
+
+    /**
+     * Set the most spans that may wait in the span processor's queue to be exported. Spans that end
+     * while the queue is full are dropped. Defaults to 2048.
+     *
+     * @param maxQueueSize the queue size, at least 1.
+     * @return Configuration
+     */
+    public Configuration maxQueueSize(int maxQueueSize) {
+      if (maxQueueSize < 1) {
+        throw new IllegalArgumentException("maxQueueSize must be at least 1");
+      }
+      this.maxQueueSize = maxQueueSize;
+      return this;
+    }
+
+    /**
+     * Set the most spans handed to the span exporter at once. Must not be larger than the queue
+     * size. Defaults to 512.
+     *
+     * @param maxExportBatchSize the batch size, at least 1.
+     * @return Configuration
+     */
+    public Configuration maxExportBatchSize(int maxExportBatchSize) {
+      if (maxExportBatchSize < 1) {
+        throw new IllegalArgumentException("maxExportBatchSize must be at least 1");
+      }
+      this.maxExportBatchSize = maxExportBatchSize;
+      return this;
+    }
+
+    /**
+     * Set how long, in milliseconds, the span processor waits for one export before moving on.
+     * Defaults to 30 seconds.
+     *
+     * @param exportTimeoutMillis the timeout in milliseconds, at least 1.
+     * @return Configuration
+     */
+    public Configuration exportTimeoutMillis(int exportTimeoutMillis) {
+      if (exportTimeoutMillis < 1) {
+        throw new IllegalArgumentException("exportTimeoutMillis must be at least 1");
+      }
+      this.exportTimeoutMillis = exportTimeoutMillis;
+      return this;
+    }
+
+    /**
+     * Set the interval, in seconds, at which metrics are collected and exported, separately from
+     * spans. Defaults to the collection interval.
+     *
+     * @param interval Interval in seconds, at least 1.
+     * @return Configuration
+     */
+    public Configuration metricExportIntervalSeconds(int interval) {
+      if (interval < 1) {
+        throw new IllegalArgumentException("The metric export interval must be at least 1 second");
+      }
+      metricExportIntervalSeconds = interval;
+      return this;
+    }
+
+    /**
+     * Set the maximum number of batches each exporter may have in flight to the New Relic ingest
+     * API at once. Defaults to the number of available processors.
+     *
+     * @param maxConcurrentSends the maximum number of concurrent sends, at least 1.
+     * @return Configuration
+     * @see NewRelicSpanExporter.Builder#maxConcurrentSends(int)
+     */
+    public Configuration maxConcurrentSends(int maxConcurrentSends) {
+      if (maxConcurrentSends < 1) {
+        throw new IllegalArgumentException("maxConcurrentSends must be at least 1");
+      }
+      this.maxConcurrentSends = maxConcurrentSends;
+      return this;
+    }
+
+    /**
+     * Send batches on virtual threads where the JVM supports them. Defaults to being off.
+     *
+     * @return Configuration
+     * @see NewRelicSpanExporter.Builder#useVirtualThreads()
+     */
+    public Configuration useVirtualThreads() {
+      this.useVirtualThreads = true;
+      return this;
+    }
+
+    private int getMetricExportIntervalSeconds() {
+      return metricExportIntervalSeconds == null
+          ? collectionIntervalSeconds
+          : metricExportIntervalSeconds;
+    }
   }
 }
@@ -13,20 +13,27 @@ import static com.newrelic.telemetry.opentelemetry.export.AttributeNames.SERVICE
 
 import com.newrelic.telemetry.Attributes;
 import com.newrelic.telemetry.MetricBatchSenderFactory;
-import com.newrelic.telemetry.OkHttpPoster;
 import com.newrelic.telemetry.SenderConfiguration;
 import com.newrelic.telemetry.TelemetryClient;
+import com.newrelic.telemetry.http.HttpPoster;
 import com.newrelic.telemetry.metrics.Metric;
 import com.newrelic.telemetry.metrics.MetricBatchSender;
 import com.newrelic.telemetry.metrics.MetricBuffer;
 import io.opentelemetry.sdk.common.CompletableResultCode;
-import io.opentelemetry.sdk.internal.SystemClock;
 import io.opentelemetry.sdk.metrics.data.MetricData;
 import io.opentelemetry.sdk.metrics.data.MetricData.Point;
 import io.opentelemetry.sdk.metrics.export.MetricExporter;
 import java.net.MalformedURLException;
 import java.net.URI;
+import java.net.URL;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * The NewRelicMetricExporter takes a collection of MetricData objects, converts them into a New
@@ -39,11 +46,13 @@ import java.util.Collection;
  * @since 0.3.0
  */
 public class NewRelicMetricExporter implements MetricExporter {
+  private static final Logger logger = LoggerFactory.getLogger(NewRelicMetricExporter.class);
 
   private final Attributes commonAttributes;
   private final TelemetryClient telemetryClient;
-  private final TimeTracker timeTracker;
   private final MetricPointAdapter metricPointAdapter;
+  private final OtlpSender<MetricData> otlpSender;
+  private final ColumnarMetricSender columnarSender;
 
   /**
    * Create a metric exporter with the given components.
@@ -51,10 +60,9 @@ public class NewRelicMetricExporter implements MetricExporter {
    * @param telemetryClient A {@link TelemetryClient} instance
    * @param serviceAttributes A set of attributes to be appended to all metrics generated by this
    *     exporter.
-   * @param timeTracker A {@link TimeTracker} used to compute delta values from cumulative values,
-   *     where necessary.
    * @param metricPointAdapter The {@link MetricPointAdapter} that converts OpenTelemetry Point
-   *     instances into New Relic {@link Metric}s.
+   *     instances into New Relic {@link Metric}s, computing delta values from cumulative values
+   *     where necessary.
    * @param serviceInstanceId The unique identifier for the instance of the service that this is
    *     reporting telemetry for. This will be overridden by the same attribute in the OTel
    *     Resource, if it is there.
@@ -62,11 +70,37 @@ public class NewRelicMetricExporter implements MetricExporter {
   NewRelicMetricExporter(
       TelemetryClient telemetryClient,
       Attributes serviceAttributes,
-      TimeTracker timeTracker,
       MetricPointAdapter metricPointAdapter,
       String serviceInstanceId) {
+    this(telemetryClient, serviceAttributes, metricPointAdapter, serviceInstanceId, null, null);
+  }
+
+  /**
+   * Create a metric exporter that sends metrics as OTLP, rather than converting them to New Relic
+   * metrics.
+   *
+   * @param otlpSender the sender to encode and send metrics with, or null to send New Relic
+   *     metrics. If given, the telemetry client must be a {@link DispatchingTelemetryClient}.
+   * @param columnarSender the sender to send New Relic metric batches with in the columnar
+   *     encoding, or null to send them as JSON. If given, the telemetry client must be a {@link
+   *     DispatchingTelemetryClient}.
+   */
+  NewRelicMetricExporter(
+      TelemetryClient telemetryClient,
+      Attributes serviceAttributes,
+      MetricPointAdapter metricPointAdapter,
+      String serviceInstanceId,
+      OtlpSender<MetricData> otlpSender,
+      ColumnarMetricSender columnarSender) {
+    if (otlpSender != null && !(telemetryClient instanceof DispatchingTelemetryClient)) {
+      throw new IllegalArgumentException("OTLP export needs a DispatchingTelemetryClient");
+    }
+    if (columnarSender != null && !(telemetryClient instanceof DispatchingTelemetryClient)) {
+      throw new IllegalArgumentException("Columnar export needs a DispatchingTelemetryClient");
+    }
     this.telemetryClient = telemetryClient;
-    this.timeTracker = timeTracker;
+    this.otlpSender = otlpSender;
+    this.columnarSender = columnarSender;
     // todo: these two attributes are the same as the ones in the SpanBatchAdapter. Move to
     // somewhere common.
     this.commonAttributes =
@@ -89,6 +123,18 @@ public class NewRelicMetricExporter implements MetricExporter {
 
   @Override
   public CompletableResultCode export(Collection<MetricData> metrics) {
+    if (otlpSender != null) {
+      if (!metrics.isEmpty()) {
+        // converted here rather than when encoding, so a retried batch isn't converted twice.
+        List<MetricData> deltaMetrics = new ArrayList<>(metrics.size());
+        for (MetricData metric : metrics) {
+          deltaMetrics.add(metricPointAdapter.toDeltaSum(metric));
+        }
+        ((DispatchingTelemetryClient) telemetryClient)
+            .sendBatch(deltaMetrics, otlpSender::sendBatch);
+      }
+      return CompletableResultCode.ofSuccess();
+    }
     MetricBuffer buffer = MetricBuffer.builder().attributes(commonAttributes).build();
     for (MetricData metric : metrics) {
 
@@ -101,23 +147,113 @@ public class NewRelicMetricExporter implements MetricExporter {
         metricsFromPoint.forEach(buffer::addMetric);
       }
     }
-    timeTracker.tick();
-    telemetryClient.sendBatch(buffer.createBatch());
+    if (columnarSender != null) {
+      ((DispatchingTelemetryClient) telemetryClient)
+          .sendBatch(buffer.createBatch(), columnarSender::sendBatch);
+    } else {
+      telemetryClient.sendBatch(buffer.createBatch());
+    }
     return CompletableResultCode.ofSuccess();
   }
 
+  /**
+   * Waits for the batches already handed to the New Relic sender to be sent, including any that
+   * are waiting to be retried, for up to 10 seconds.
+   *
+   * @return a result that succeeds when there is nothing left to send, or fails if the wait timed
+   *     out.
+   */
   @Override
   public CompletableResultCode flush() {
-    // no-op for this exporter
+    if (telemetryClient instanceof DispatchingTelemetryClient) {
+      return ((DispatchingTelemetryClient) telemetryClient)
+          .flush(DispatchingTelemetryClient.DEFAULT_FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+    // a custom TelemetryClient gives us no way to tell when its batches have been sent.
     return CompletableResultCode.ofSuccess();
   }
 
+  /**
+   * Shuts down the exporter, waiting for outstanding batches to be sent for up to the shutdown
+   * timeout set on the builder.
+   *
+   * @return a result that succeeds if nothing was dropped, and fails otherwise.
+   */
   @Override
   public CompletableResultCode shutdown() {
+    if (telemetryClient instanceof DispatchingTelemetryClient) {
+      return shutdown(
+          ((DispatchingTelemetryClient) telemetryClient).getShutdownTimeoutNanos(),
+          TimeUnit.NANOSECONDS);
+    }
     telemetryClient.shutdown();
     return CompletableResultCode.ofSuccess();
   }
 
+  /**
+   * Shuts down the exporter once every outstanding batch has been sent or given up on, or once the
+   * timeout has passed, whichever comes first. Anything still unsent at that point is dropped, and
+   * counted in {@link #getDroppedCount()}.
+   *
+   * @param timeout how long to wait for outstanding batches.
+   * @param unit the unit of the timeout.
+   * @return a result that succeeds if nothing was dropped, and fails otherwise.
+   */
+  public CompletableResultCode shutdown(long timeout, TimeUnit unit) {
+    if (telemetryClient instanceof DispatchingTelemetryClient) {
+      DispatchingTelemetryClient client = (DispatchingTelemetryClient) telemetryClient;
+      CompletableResultCode result = client.shutdown(timeout, unit);
+      long dropped = client.getDroppedCount();
+      if (dropped > 0) {
+        logger.warn("Shut down after dropping " + dropped + " metrics that could not be sent");
+      }
+      return result;
+    }
+    telemetryClient.shutdown();
+    return CompletableResultCode.ofSuccess();
+  }
+
+  /**
+   * Make the next {@link #shutdown()} finish by the given time, rather than waiting the shutdown
+   * timeout set on the builder. This has no effect if a custom {@link TelemetryClient} was
+   * provided.
+   *
+   * @param deadlineNanos the {@link System#nanoTime()} by which shutdown should finish.
+   */
+  void setShutdownDeadline(long deadlineNanos) {
+    if (telemetryClient instanceof DispatchingTelemetryClient) {
+      ((DispatchingTelemetryClient) telemetryClient).setShutdownDeadline(deadlineNanos);
+    }
+  }
+
+  /**
+   * The number of metrics this exporter has dropped without sending, because the New Relic ingest
+   * API rejected them, they ran out of retries, or they were still unsent when the exporter was
+   * shut down.
+   *
+   * @return the number of dropped metrics, or -1 if a custom {@link TelemetryClient} was provided.
+   */
+  public long getDroppedCount() {
+    if (telemetryClient instanceof DispatchingTelemetryClient) {
+      return ((DispatchingTelemetryClient) telemetryClient).getDroppedCount();
+    }
+    return -1;
+  }
+
+  /**
+   * The number of batches this exporter currently allows in flight to the New Relic ingest API.
+   * The limit shrinks when the ingest API slows down or asks for sends to be retried later, and
+   * grows back while it responds quickly.
+   *
+   * @return the current limit, or -1 if a custom {@link TelemetryClient} was provided.
+   */
+  public int getSendConcurrencyLimit() {
+    if (telemetryClient instanceof DispatchingTelemetryClient) {
+      return ((DispatchingTelemetryClient) telemetryClient).getConcurrencyLimit();
+    }
+    return -1;
+  }
+
   private Attributes buildCommonAttributes(MetricData metric) {
     Attributes attributes = new Attributes();
     AttributesSupport.addResourceAttributes(attributes, metric.getResource());
@@ -141,6 +277,20 @@ public class NewRelicMetricExporter implements MetricExporter {
     private String apiKey;
     private boolean enableAuditLogging = false;
     private URI uriOverride;
+    private boolean useVirtualThreads = false;
+    private boolean useJdkHttpClient = false;
+    private boolean useThreadLocalPools = false;
+    private URL failoverUrl;
+    private Duration failoverMaxLatency;
+    private URL columnarUrl;
+    private boolean useOtlp = false;
+    private byte[] zstdDictionary;
+    private Path sampleDirectory;
+    private int maxSamples;
+    private int maxConcurrentSends = SendExecutors.DEFAULT_PLATFORM_THREADS;
+    private int maxBatchSize = Integer.MAX_VALUE;
+    private Duration shutdownTimeout =
+        Duration.ofSeconds(DispatchingTelemetryClient.DEFAULT_SHUTDOWN_TIMEOUT_SECONDS);
 
     /**
      * A TelemetryClient from the New Relic Telemetry SDK. This allows you to provide your own
@@ -202,23 +352,305 @@ public class NewRelicMetricExporter implements MetricExporter {
       return this;
     }
 
+    /**
+     * Send batches on virtual threads rather than on a pool of platform threads, so that many
+     * batches can be in flight at once without tying up a thread each. On JVMs without virtual
+     * threads, batches are sent on a pool of platform threads, one per allowed concurrent send.
+     *
+     * <p>This has no effect if a custom {@link TelemetryClient} is provided.
+     *
+     * @return this builder's instance
+     */
+    public NewRelicMetricExporter.Builder useVirtualThreads() {
+      useVirtualThreads = true;
+      return this;
+    }
+
+    /**
+     * Send batches with the JDK's built-in HTTP client rather than OkHttp. The JDK's client is
+     * always used when OkHttp is not on the classpath, so OkHttp, Okio and the Kotlin standard
+     * library can be left out of applications and shaded jars that use this option.
+     *
+     * <p>This has no effect if a custom {@link TelemetryClient} is provided.
+     *
+     * @return this builder's instance
+     */
+    public NewRelicMetricExporter.Builder useJdkHttpClient() {
+      useJdkHttpClient = true;
+      return this;
+    }
+
+    /**
+     * Look up the delta state of cumulative series with a key kept per exporting thread and
+     * reused, rather than allocating a new key for every point on every export. This lowers the
+     * allocation rate when there are many series.
+     *
+     * @return this builder's instance
+     */
+    public NewRelicMetricExporter.Builder useThreadLocalPools() {
+      useThreadLocalPools = true;
+      return this;
+    }
+
+    /**
+     * Set the maximum number of batches that may be in flight to the New Relic ingest API at once.
+     * The exporter adapts the actual number between 1 and this maximum, based on how quickly the
+     * ingest API responds and whether it asks for sends to be retried later. Defaults to the
+     * number of available processors.
+     *
+     * <p>This has no effect if a custom {@link TelemetryClient} is provided.
+     *
+     * @param maxConcurrentSends the maximum number of concurrent sends, at least 1.
+     * @return this builder's instance
+     */
+    public NewRelicMetricExporter.Builder maxConcurrentSends(int maxConcurrentSends) {
+      if (maxConcurrentSends < 1) {
+        throw new IllegalArgumentException("maxConcurrentSends must be at least 1");
+      }
+      this.maxConcurrentSends = maxConcurrentSends;
+      return this;
+    }
+
+    /**
+     * Set the most metrics sent to New Relic in one request. Larger batches are split before
+     * they are sent, rather than after the ingest API rejects them as too large. By default
+     * batches are only split when the ingest API asks for it.
+     *
+     * <p>This has no effect if a custom {@link TelemetryClient} is provided.
+     *
+     * @param maxBatchSize the most metrics per request, at least 1.
+     * @return this builder's instance
+     */
+    public NewRelicMetricExporter.Builder maxBatchSize(int maxBatchSize) {
+      if (maxBatchSize < 1) {
+        throw new IllegalArgumentException("maxBatchSize must be at least 1");
+      }
+      this.maxBatchSize = maxBatchSize;
+      return this;
+    }
+
+    /**
+     * Set an endpoint to send metrics to while the endpoint set with {@link #uriOverride(URI)} (or
+     * the default US endpoint) is unhealthy, for example the other region's endpoint, or a proxy in
+     * another region. The failover endpoint must accept this builder's API key.
+     *
+     * <p>Endpoint health is judged from the exporter's own requests: traffic moves to the failover
+     * endpoint when more than half of recent requests fail with an I/O error, a 5xx or a 429, or
+     * their average latency passes {@code maxLatency}. While failed over, a request every 5 seconds
+     * still goes to the primary endpoint, and traffic moves back once it has recovered.
+     *
+     * <p>This has no effect if a custom {@link TelemetryClient} is provided.
+     *
+     * @param failoverUri the endpoint to fail over to.
+     * @param maxLatency the average latency beyond which an endpoint counts as unhealthy.
+     * @return this builder's instance
+     */
+    public NewRelicMetricExporter.Builder failoverUri(URI failoverUri, Duration maxLatency) {
+      if (failoverUri == null) {
+        throw new IllegalArgumentException("failoverUri must not be null");
+      }
+      if (maxLatency == null || maxLatency.isNegative() || maxLatency.isZero()) {
+        throw new IllegalArgumentException("maxLatency must be positive");
+      }
+      try {
+        this.failoverUrl = failoverUri.toURL();
+      } catch (MalformedURLException | IllegalArgumentException e) {
+        throw new IllegalArgumentException("Failover URI must be a valid URL: " + failoverUri, e);
+      }
+      this.failoverMaxLatency = maxLatency;
+      return this;
+    }
+
+    /**
+     * Send metrics in a compact columnar encoding to the given endpoint, rather than as New Relic
+     * metric JSON. Metric names, attribute keys and attribute values are written once per batch in
+     * a dictionary, identical sets of attributes are written once, and timestamps are written as
+     * differences from the previous metric's, so batches of many series that share most of their
+     * attributes are much smaller and cheaper to encode. The encoding is described in the README.
+     *
+     * <p>The endpoint must be a receiver, such as a collector or proxy, that accepts the {@code
+     * application/vnd.newrelic.columnar-metrics} media type; the New Relic metric API does not. A
+     * Java receiver can decode batches with {@link ColumnarMetricDecoder}. The API key, if one is
+     * set, is sent in the {@code Api-Key} header. Failover, zstd, concurrency and batch size
+     * settings apply as they do to JSON sends. This can't be combined with {@link #useOtlp()}.
+     *
+     * <p>This has no effect if a custom {@link TelemetryClient} is provided.
+     *
+     * @param endpoint the endpoint to send columnar batches to.
+     * @return this builder's instance
+     */
+    public NewRelicMetricExporter.Builder columnarEncoding(URI endpoint) {
+      if (endpoint == null) {
+        throw new IllegalArgumentException("endpoint must not be null");
+      }
+      try {
+        this.columnarUrl = endpoint.toURL();
+      } catch (MalformedURLException | IllegalArgumentException e) {
+        throw new IllegalArgumentException("Columnar endpoint must be a valid URL: " + endpoint, e);
+      }
+      return this;
+    }
+
+    /**
+     * Send metrics to New Relic's OTLP endpoint as OTLP protobuf, rather than as New Relic metric
+     * JSON. OTLP is more compact and cheaper to encode, since metrics are written straight from
+     * the OpenTelemetry SDK's data without being converted first. Cumulative monotonic sums are
+     * turned into deltas, as they are for New Relic metrics, and sent with delta aggregation
+     * temporality; other sums keep the temporality they were recorded with.
+     *
+     * <p>Metrics are sent to {@code https://otlp.nr-data.net:4318/v1/metrics}, or to the endpoint
+     * set with {@link #uriOverride(URI)}, which must then be an OTLP/HTTP metrics endpoint.
+     * protobuf-java ({@code com.google.protobuf:protobuf-java}) must be on the classpath. This
+     * can't be combined with {@link #columnarEncoding(URI)}.
+     *
+     * <p>This has no effect if a custom {@link TelemetryClient} is provided.
+     *
+     * @return this builder's instance
+     * @throws IllegalStateException if protobuf-java isn't on the classpath.
+     */
+    public NewRelicMetricExporter.Builder useOtlp() {
+      HttpPosters.checkOtlpAvailable();
+      useOtlp = true;
+      return this;
+    }
+
+    /**
+     * Compress metric batches with zstd and the given dictionary, rather than with gzip. Metric
+     * payloads repeat the same names and attribute keys and values from batch to batch, so a
+     * dictionary trained on earlier batches compresses them smaller than gzip does. Train
+     * the dictionary with {@link ZstdDictionaryTrainer}, from samples recorded with {@link
+     * #recordPayloadSamples(Path, int)}. The endpoint must have the same dictionary to decompress
+     * the batches.
+     *
+     * <p>Batches are sent with {@code Content-Encoding: zstd}. If the endpoint responds 415
+     * (Unsupported Media Type), or 400 (Bad Request) naming the content encoding, that batch and
+     * every later one is sent gzipped instead. zstd-jni ({@code com.github.luben:zstd-jni})
+     * must be on the classpath; if it isn't, batches are sent gzipped.
+     *
+     * <p>The telemetry SDK always gzips New Relic JSON, so without {@link #useOtlp()} or {@link
+     * #columnarEncoding(URI)} each batch is gzipped, inflated again and then compressed with zstd,
+     * which costs more CPU than gzip alone. With either of them, batches are only compressed once,
+     * with zstd.
+     *
+     * <p>This has no effect if a custom {@link TelemetryClient} is provided.
+     *
+     * @param dictionary the zstd dictionary.
+     * @return this builder's instance
+     */
+    public NewRelicMetricExporter.Builder zstdDictionary(byte[] dictionary) {
+      if (dictionary == null || dictionary.length == 0) {
+        throw new IllegalArgumentException("dictionary must not be null or empty");
+      }
+      this.zstdDictionary = dictionary;
+      return this;
+    }
+
+    /**
+     * Write the uncompressed payloads of the first {@code maxSamples} metric requests to files in
+     * the given directory, to train a zstd dictionary from with {@link ZstdDictionaryTrainer}.
+     * Requests are sent as usual.
+     *
+     * <p>This has no effect if a custom {@link TelemetryClient} is provided.
+     *
+     * @param directory the directory to write the samples to, which is created if needed.
+     * @param maxSamples the number of payloads to write, at least 1.
+     * @return this builder's instance
+     */
+    public NewRelicMetricExporter.Builder recordPayloadSamples(Path directory, int maxSamples) {
+      if (directory == null) {
+        throw new IllegalArgumentException("directory must not be null");
+      }
+      if (maxSamples < 1) {
+        throw new IllegalArgumentException("maxSamples must be at least 1");
+      }
+      this.sampleDirectory = directory;
+      this.maxSamples = maxSamples;
+      return this;
+    }
+
+    /**
+     * Set how long {@link #shutdown()} waits for outstanding batches, including batches waiting to
+     * be retried, before dropping them. Defaults to 10 seconds.
+     *
+     * <p>This has no effect if a custom {@link TelemetryClient} is provided.
+     *
+     * @param shutdownTimeout how long to wait, which must not be negative.
+     * @return this builder's instance
+     */
+    public NewRelicMetricExporter.Builder shutdownTimeout(Duration shutdownTimeout) {
+      if (shutdownTimeout == null || shutdownTimeout.isNegative()) {
+        throw new IllegalArgumentException("shutdownTimeout must not be null or negative");
+      }
+      this.shutdownTimeout = shutdownTimeout;
+      return this;
+    }
+
     /**
      * Constructs a new instance of the exporter based on the builder's values.
      *
      * @return a new {@link NewRelicMetricExporter} instance
      */
     public NewRelicMetricExporter build() {
-      TimeTracker timeTracker = new TimeTracker(SystemClock.getInstance());
       if (telemetryClient != null) {
         return new NewRelicMetricExporter(
             telemetryClient,
             commonAttributes,
-            timeTracker,
-            new MetricPointAdapter(timeTracker),
+            new MetricPointAdapter(useThreadLocalPools),
             AttributesSupport.SERVICE_INSTANCE_ID);
       }
+      if (useOtlp && columnarUrl != null) {
+        throw new IllegalStateException("OTLP and columnar encoding can't be used together");
+      }
+      if (useOtlp) {
+        OtlpSender<MetricData> otlpSender =
+            new OtlpSender<>(
+                newPoster(),
+                otlpUrl(),
+                OtlpMetricEncoder::encode,
+                apiKey,
+                "NewRelic-OpenTelemetry-Exporter/" + VersionFinder.readVersion(),
+                zstdDictionary == null,
+                maxConcurrentSends);
+        return new NewRelicMetricExporter(
+            DispatchingTelemetryClient.create(
+                null,
+                null,
+                null,
+                useVirtualThreads,
+                maxConcurrentSends,
+                maxBatchSize,
+                shutdownTimeout.toNanos()),
+            commonAttributes,
+            new MetricPointAdapter(useThreadLocalPools),
+            AttributesSupport.SERVICE_INSTANCE_ID,
+            otlpSender,
+            null);
+      }
+      if (columnarUrl != null) {
+        ColumnarMetricSender columnarSender =
+            new ColumnarMetricSender(
+                newPoster(),
+                columnarUrl,
+                apiKey,
+                "NewRelic-OpenTelemetry-Exporter/" + VersionFinder.readVersion(),
+                zstdDictionary == null);
+        return new NewRelicMetricExporter(
+            DispatchingTelemetryClient.create(
+                null,
+                null,
+                null,
+                useVirtualThreads,
+                maxConcurrentSends,
+                maxBatchSize,
+                shutdownTimeout.toNanos()),
+            commonAttributes,
+            new MetricPointAdapter(useThreadLocalPools),
+            AttributesSupport.SERVICE_INSTANCE_ID,
+            null,
+            columnarSender);
+      }
       SenderConfiguration.SenderConfigurationBuilder builder =
-          MetricBatchSenderFactory.fromHttpImplementation(OkHttpPoster::new)
+          MetricBatchSenderFactory.fromHttpImplementation(this::newPoster)
               .configureWith(apiKey)
               .secondaryUserAgent("NewRelic-OpenTelemetry-Exporter/" + VersionFinder.readVersion())
               .auditLoggingEnabled(enableAuditLogging);
@@ -230,14 +662,42 @@ public class NewRelicMetricExporter implements MetricExporter {
           throw new IllegalArgumentException("Invalid URI for the metric API : " + uriOverride, e);
         }
       }
+      MetricBatchSender metricBatchSender = MetricBatchSender.create(builder.build());
       telemetryClient =
-          new TelemetryClient(MetricBatchSender.create(builder.build()), null, null, null);
+          DispatchingTelemetryClient.create(
+              metricBatchSender,
+              null,
+              null,
+              useVirtualThreads,
+              maxConcurrentSends,
+              maxBatchSize,
+              shutdownTimeout.toNanos());
       return new NewRelicMetricExporter(
           telemetryClient,
           commonAttributes,
-          timeTracker,
-          new MetricPointAdapter(timeTracker),
+          new MetricPointAdapter(useThreadLocalPools),
           AttributesSupport.SERVICE_INSTANCE_ID);
     }
+
+    // the SDK's batch senders always gzip, so the zstd poster inflates their batches first.
+    private HttpPoster newPoster() {
+      return HttpPosters.withSampleRecorder(
+          HttpPosters.withZstd(
+              HttpPosters.withFailover(
+                  new LazyHttpPoster(HttpPosters.factory(useJdkHttpClient)),
+                  failoverUrl,
+                  failoverMaxLatency),
+              zstdDictionary),
+          sampleDirectory,
+          maxSamples);
+    }
+
+    private URL otlpUrl() {
+      try {
+        return uriOverride == null ? new URL(OtlpSender.DEFAULT_METRICS_URL) : uriOverride.toURL();
+      } catch (MalformedURLException | IllegalArgumentException e) {
+        throw new IllegalArgumentException("Invalid URI for the OTLP endpoint: " + uriOverride, e);
+      }
+    }
   }
 }
@@ -6,19 +6,34 @@
 package com.newrelic.telemetry.opentelemetry.export;
 
 import com.newrelic.telemetry.Attributes;
-import com.newrelic.telemetry.OkHttpPoster;
+import com.newrelic.telemetry.EventBatchSenderFactory;
+import com.newrelic.telemetry.MetricBatchSenderFactory;
 import com.newrelic.telemetry.SenderConfiguration;
 import com.newrelic.telemetry.SenderConfiguration.SenderConfigurationBuilder;
 import com.newrelic.telemetry.SpanBatchSenderFactory;
 import com.newrelic.telemetry.TelemetryClient;
+import com.newrelic.telemetry.events.EventBatchSender;
+import com.newrelic.telemetry.http.HttpPoster;
+import com.newrelic.telemetry.metrics.MetricBatchSender;
 import com.newrelic.telemetry.spans.SpanBatch;
 import com.newrelic.telemetry.spans.SpanBatchSender;
+import io.opentelemetry.api.trace.TraceId;
 import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.internal.DaemonThreadFactory;
+import io.opentelemetry.sdk.internal.SystemClock;
 import io.opentelemetry.sdk.trace.data.SpanData;
 import io.opentelemetry.sdk.trace.export.SpanExporter;
 import java.net.MalformedURLException;
 import java.net.URI;
+import java.net.URL;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,8 +45,17 @@ import org.slf4j.LoggerFactory;
  */
 public class NewRelicSpanExporter implements SpanExporter {
   private static final Logger logger = LoggerFactory.getLogger(NewRelicSpanExporter.class);
+  static final long DEFAULT_SPAN_METRICS_INTERVAL_SECONDS = 60;
   private final SpanBatchAdapter adapter;
   private final TelemetryClient telemetryClient;
+  private final TraceLocalityBuffer traceBuffer;
+  private final ScheduledExecutorService traceBufferTimer;
+  private final SpanMetricsAggregator spanMetricsAggregator;
+  private final ScheduledExecutorService spanMetricsTimer;
+  private final long sampleUpperBound;
+  private final SpanDeduplicator spanDeduplicator;
+  private final OtlpSender<SpanData> otlpSender;
+  private final ScheduledExecutorService hedgeExecutor;
 
   /**
    * Constructor for the NewRelicSpanExporter.
@@ -39,14 +63,73 @@ public class NewRelicSpanExporter implements SpanExporter {
    * @param adapter An instance of SpanBatchAdapter that can turn list of open telemetry spans into
    *     New Relic SpanBatch.
    * @param telemetryClient An instance that sends a SpanBatch to the New Relic trace ingest API
+   * @param traceBuffer the buffer to hold spans in, so that the spans of a trace are sent
+   *     together, or null to send spans as they are exported.
+   * @param expiryCheckNanos how often to send traces whose window has passed.
+   * @param spanMetricsAggregator the aggregator to send span metrics from, or null to send none.
+   * @param spanMetricsIntervalNanos how often to send the span metrics aggregated since the last
+   *     send.
+   * @param spanSampleRatio the fraction of traces whose spans are sent, from 0 to 1.
+   * @param spanDeduplicator the deduplicator to filter spans through before they are aggregated or
+   *     converted, or null to keep them all.
+   * @param otlpSender the sender to encode and send spans with, or null to send New Relic spans.
+   *     If given, the telemetry client must be a {@link DispatchingTelemetryClient}.
+   * @param hedgeExecutor the executor that hedged span requests are sent on, which is shut down
+   *     with the exporter, or null if requests aren't hedged.
    * @since 0.1.0
    */
-  NewRelicSpanExporter(SpanBatchAdapter adapter, TelemetryClient telemetryClient) {
+  NewRelicSpanExporter(
+      SpanBatchAdapter adapter,
+      TelemetryClient telemetryClient,
+      TraceLocalityBuffer traceBuffer,
+      long expiryCheckNanos,
+      SpanMetricsAggregator spanMetricsAggregator,
+      long spanMetricsIntervalNanos,
+      double spanSampleRatio,
+      SpanDeduplicator spanDeduplicator,
+      OtlpSender<SpanData> otlpSender,
+      ScheduledExecutorService hedgeExecutor) {
     if (telemetryClient == null) {
       throw new IllegalArgumentException("You must provide a non-null telemetryClient");
     }
+    if (otlpSender != null && !(telemetryClient instanceof DispatchingTelemetryClient)) {
+      throw new IllegalArgumentException("OTLP export needs a DispatchingTelemetryClient");
+    }
+    this.otlpSender = otlpSender;
+    this.hedgeExecutor = hedgeExecutor;
     this.adapter = adapter;
     this.telemetryClient = telemetryClient;
+    this.traceBuffer = traceBuffer;
+    this.spanMetricsAggregator = spanMetricsAggregator;
+    // like the SDK's sampler, a ratio of 0 uses Long.MIN_VALUE, which no absolute value is below.
+    this.sampleUpperBound =
+        spanSampleRatio == 0.0 ? Long.MIN_VALUE : (long) (spanSampleRatio * Long.MAX_VALUE);
+    this.spanDeduplicator = spanDeduplicator;
+    if (traceBuffer == null) {
+      this.traceBufferTimer = null;
+    } else {
+      this.traceBufferTimer =
+          Executors.newSingleThreadScheduledExecutor(
+              new DaemonThreadFactory("newrelic-trace-buffer"));
+      // export() isn't called again until more spans end, so expired traces are sent from here.
+      traceBufferTimer.scheduleWithFixedDelay(
+          () -> send(traceBuffer.takeExpired()),
+          expiryCheckNanos,
+          expiryCheckNanos,
+          TimeUnit.NANOSECONDS);
+    }
+    if (spanMetricsAggregator == null) {
+      this.spanMetricsTimer = null;
+    } else {
+      this.spanMetricsTimer =
+          Executors.newSingleThreadScheduledExecutor(
+              new DaemonThreadFactory("newrelic-span-metrics"));
+      spanMetricsTimer.scheduleAtFixedRate(
+          this::sendSpanMetrics,
+          spanMetricsIntervalNanos,
+          spanMetricsIntervalNanos,
+          TimeUnit.NANOSECONDS);
+    }
   }
 
   /**
@@ -58,26 +141,212 @@ public class NewRelicSpanExporter implements SpanExporter {
    */
   @Override
   public CompletableResultCode export(Collection<SpanData> openTelemetrySpans) {
+    if (spanDeduplicator != null) {
+      int exported = openTelemetrySpans.size();
+      openTelemetrySpans = spanDeduplicator.removeDuplicates(openTelemetrySpans);
+      if (openTelemetrySpans.size() < exported) {
+        logger.debug("Dropped " + (exported - openTelemetrySpans.size()) + " duplicate spans");
+      }
+    }
+    if (spanMetricsAggregator != null) {
+      spanMetricsAggregator.record(openTelemetrySpans);
+    }
+    if (sampleUpperBound < Long.MAX_VALUE) {
+      openTelemetrySpans = sample(openTelemetrySpans);
+    }
+    if (traceBuffer != null) {
+      send(traceBuffer.add(openTelemetrySpans));
+    } else {
+      send(openTelemetrySpans);
+    }
+    return CompletableResultCode.ofSuccess();
+  }
+
+  private Collection<SpanData> sample(Collection<SpanData> openTelemetrySpans) {
+    List<SpanData> sampled = new ArrayList<>(openTelemetrySpans.size());
+    for (SpanData span : openTelemetrySpans) {
+      if (isSampled(span.getTraceId(), sampleUpperBound)) {
+        sampled.add(span);
+      }
+    }
+    return sampled;
+  }
+
+  /**
+   * Decides whether to keep a trace the same way OpenTelemetry's trace id ratio sampler does, from
+   * the random lower half of the trace id, so that every span of a trace gets the same decision.
+   */
+  static boolean isSampled(String traceId, long sampleUpperBound) {
+    if (!TraceId.isValid(traceId)) {
+      return true;
+    }
+    long randomPart = Long.parseUnsignedLong(traceId.substring(16), 16);
+    return Math.abs(randomPart) < sampleUpperBound;
+  }
+
+  private void send(Collection<SpanData> openTelemetrySpans) {
+    if (openTelemetrySpans.isEmpty()) {
+      return;
+    }
+    if (otlpSender != null) {
+      // events and links are part of OTLP spans, so there are no event batches to send.
+      ((DispatchingTelemetryClient) telemetryClient)
+          .sendBatch(new ArrayList<>(openTelemetrySpans), otlpSender::sendBatch);
+      return;
+    }
     Collection<SpanBatch> spanBatch = adapter.adaptToSpanBatches(openTelemetrySpans);
     if (spanBatch.isEmpty()) {
       logger.debug("spanBatch is empty");
     }
     spanBatch.forEach(telemetryClient::sendBatch);
-    return CompletableResultCode.ofSuccess();
+    adapter.adaptToEventBatches(openTelemetrySpans).forEach(telemetryClient::sendBatch);
   }
 
+  private void sendSpanMetrics() {
+    spanMetricsAggregator.harvest().forEach(telemetryClient::sendBatch);
+  }
+
+  /**
+   * Sends any span metrics aggregated so far, then waits for the batches already handed to the New
+   * Relic sender to be sent, including any that are waiting to be retried, for up to 10 seconds.
+   *
+   * @return a result that succeeds when there is nothing left to send, or fails if the wait timed
+   *     out.
+   */
   @Override
   public CompletableResultCode flush() {
-    // no-op for this exporter
+    if (traceBuffer != null) {
+      send(traceBuffer.drain());
+    }
+    if (spanMetricsAggregator != null) {
+      sendSpanMetrics();
+    }
+    if (telemetryClient instanceof DispatchingTelemetryClient) {
+      return ((DispatchingTelemetryClient) telemetryClient)
+          .flush(DispatchingTelemetryClient.DEFAULT_FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+    // a custom TelemetryClient gives us no way to tell when its batches have been sent.
     return CompletableResultCode.ofSuccess();
   }
 
+  /**
+   * Shuts down the exporter, waiting for outstanding batches to be sent for up to the shutdown
+   * timeout set on the builder.
+   *
+   * @return a result that succeeds if nothing was dropped, and fails otherwise.
+   */
   @Override
   public CompletableResultCode shutdown() {
+    if (telemetryClient instanceof DispatchingTelemetryClient) {
+      return shutdown(getShutdownTimeoutNanos(), TimeUnit.NANOSECONDS);
+    }
+    stopTraceBuffer();
+    stopSpanMetrics();
     telemetryClient.shutdown();
+    stopHedging();
     return CompletableResultCode.ofSuccess();
   }
 
+  /**
+   * @return the shutdown timeout set on the builder, or the default one if a custom {@link
+   *     TelemetryClient} was provided.
+   */
+  long getShutdownTimeoutNanos() {
+    if (telemetryClient instanceof DispatchingTelemetryClient) {
+      return ((DispatchingTelemetryClient) telemetryClient).getShutdownTimeoutNanos();
+    }
+    return TimeUnit.SECONDS.toNanos(DispatchingTelemetryClient.DEFAULT_SHUTDOWN_TIMEOUT_SECONDS);
+  }
+
+  /**
+   * Shuts down the exporter once every outstanding batch has been sent or given up on, or once the
+   * timeout has passed, whichever comes first. Anything still unsent at that point is dropped, and
+   * counted in {@link #getDroppedCount()}.
+   *
+   * @param timeout how long to wait for outstanding batches.
+   * @param unit the unit of the timeout.
+   * @return a result that succeeds if nothing was dropped, and fails otherwise.
+   */
+  public CompletableResultCode shutdown(long timeout, TimeUnit unit) {
+    stopTraceBuffer();
+    stopSpanMetrics();
+    if (telemetryClient instanceof DispatchingTelemetryClient) {
+      DispatchingTelemetryClient client = (DispatchingTelemetryClient) telemetryClient;
+      CompletableResultCode result = client.shutdown(timeout, unit);
+      stopHedging();
+      long dropped = client.getDroppedCount();
+      if (dropped > 0) {
+        logger.warn("Shut down after dropping " + dropped + " spans that could not be sent");
+      }
+      return result;
+    }
+    telemetryClient.shutdown();
+    stopHedging();
+    return CompletableResultCode.ofSuccess();
+  }
+
+  // after the client has shut down, so that no more requests are hedged.
+  private void stopHedging() {
+    if (hedgeExecutor != null) {
+      hedgeExecutor.shutdownNow();
+    }
+  }
+
+  private void stopTraceBuffer() {
+    if (traceBuffer != null) {
+      traceBufferTimer.shutdownNow();
+      send(traceBuffer.drain());
+    }
+  }
+
+  private void stopSpanMetrics() {
+    if (spanMetricsAggregator != null) {
+      spanMetricsTimer.shutdownNow();
+      sendSpanMetrics();
+    }
+  }
+
+  /**
+   * Make the next {@link #shutdown()} finish by the given time, rather than waiting the shutdown
+   * timeout set on the builder. This has no effect if a custom {@link TelemetryClient} was
+   * provided.
+   *
+   * @param deadlineNanos the {@link System#nanoTime()} by which shutdown should finish.
+   */
+  void setShutdownDeadline(long deadlineNanos) {
+    if (telemetryClient instanceof DispatchingTelemetryClient) {
+      ((DispatchingTelemetryClient) telemetryClient).setShutdownDeadline(deadlineNanos);
+    }
+  }
+
+  /**
+   * The number of spans this exporter has dropped without sending, because the New Relic ingest API
+   * rejected them, they ran out of retries, or they were still unsent when the exporter was shut
+   * down.
+   *
+   * @return the number of dropped spans, or -1 if a custom {@link TelemetryClient} was provided.
+   */
+  public long getDroppedCount() {
+    if (telemetryClient instanceof DispatchingTelemetryClient) {
+      return ((DispatchingTelemetryClient) telemetryClient).getDroppedCount();
+    }
+    return -1;
+  }
+
+  /**
+   * The number of batches this exporter currently allows in flight to the New Relic ingest API.
+   * The limit shrinks when the ingest API slows down or asks for sends to be retried later, and
+   * grows back while it responds quickly.
+   *
+   * @return the current limit, or -1 if a custom {@link TelemetryClient} was provided.
+   */
+  public int getSendConcurrencyLimit() {
+    if (telemetryClient instanceof DispatchingTelemetryClient) {
+      return ((DispatchingTelemetryClient) telemetryClient).getConcurrencyLimit();
+    }
+    return -1;
+  }
+
   /**
    * Creates a new builder instance.
    *
@@ -100,6 +369,35 @@ public class NewRelicSpanExporter implements SpanExporter {
     private String apiKey;
     private boolean enableAuditLogging = false;
     private URI uriOverride;
+    private boolean useVirtualThreads = false;
+    private boolean useJdkHttpClient = false;
+    private boolean useThreadLocalPools = false;
+    private int maxConcurrentSends = SendExecutors.DEFAULT_PLATFORM_THREADS;
+    private int maxBatchSize = Integer.MAX_VALUE;
+    private boolean groupByInstrumentationLibrary = false;
+    private boolean exportSpanEventsAndLinks = false;
+    private URI eventUriOverride;
+    private Duration traceLocalityWindow;
+    private int maxBufferedSpans;
+    private boolean aggregateSpanMetrics = false;
+    private Duration spanMetricsInterval =
+        Duration.ofSeconds(DEFAULT_SPAN_METRICS_INTERVAL_SECONDS);
+    private double spanSampleRatio = 1.0;
+    private URI metricUriOverride;
+    private int deduplicationCapacity;
+    private double deduplicationFalsePositiveRate;
+    private final List<ResourceRoute> routes = new ArrayList<>();
+    private URL failoverUrl;
+    private Duration failoverMaxLatency;
+    private double hedgeLatencyPercentile;
+    private double hedgeRatio;
+    private boolean useOtlp = false;
+    private byte[] zstdDictionary;
+    private Path sampleDirectory;
+    private int maxSamples;
+    private ScheduledExecutorService hedgeExecutor;
+    private Duration shutdownTimeout =
+        Duration.ofSeconds(DispatchingTelemetryClient.DEFAULT_SHUTDOWN_TIMEOUT_SECONDS);
 
     /**
      * A TelemetryClient from the New Relic Telemetry SDK. This allows you to provide your own
@@ -162,6 +460,410 @@ public class NewRelicSpanExporter implements SpanExporter {
       return this;
     }
 
+    /**
+     * Batch spans by their instrumentation library as well as their resource, and send the
+     * instrumentation name and version once per batch instead of on every span. This makes both
+     * the payload and each span's attributes smaller, at the cost of sending a few more batches
+     * when spans come from many different instrumentation libraries. The spans look the same in
+     * New Relic either way.
+     *
+     * @return this builder's instance
+     */
+    public Builder groupByInstrumentationLibrary() {
+      groupByInstrumentationLibrary = true;
+      return this;
+    }
+
+    /**
+     * Also send the events and links recorded on each span, such as recorded exceptions, to the
+     * New Relic Event API as SpanEvent and SpanLink events. Each event carries its own attributes
+     * and the trace and span ids that tie it to its span; the span's attributes are not repeated.
+     *
+     * <p>If a custom {@link TelemetryClient} is provided, it must include an {@link
+     * EventBatchSender} for the events to be sent.
+     *
+     * @return this builder's instance
+     */
+    public Builder exportSpanEventsAndLinks() {
+      exportSpanEventsAndLinks = true;
+      return this;
+    }
+
+    /**
+     * Set a URI to override the default Event API endpoint that span events and links are sent
+     * to. If not provided, the telemetry SDK will default to the US production endpoint.
+     *
+     * @param eventUriOverride The fully qualified URI for the events API endpoint.
+     * @return the Builder
+     */
+    public Builder eventUriOverride(URI eventUriOverride) {
+      this.eventUriOverride = eventUriOverride;
+      return this;
+    }
+
+    /**
+     * Aggregate every exported span into {@code span.duration} summary metrics, per service, span
+     * name, span kind and status code, and send them to the New Relic Metric API. The count, sum,
+     * min and max of each summary give request rate, error rate and duration without having to
+     * send every span, so they stay accurate when combined with {@link #spanSampleRatio(double)}.
+     *
+     * <p>Summaries are sent once a minute, each covering the spans exported in that minute, and
+     * again on flush and shutdown. If a custom {@link TelemetryClient} is provided, it must include
+     * a {@link MetricBatchSender} for the metrics to be sent.
+     *
+     * @return this builder's instance
+     */
+    public Builder aggregateSpanMetrics() {
+      return aggregateSpanMetrics(Duration.ofSeconds(DEFAULT_SPAN_METRICS_INTERVAL_SECONDS));
+    }
+
+    /**
+     * Aggregate every exported span into {@code span.duration} summary metrics, as {@link
+     * #aggregateSpanMetrics()} does, and send them on the given interval rather than once a minute.
+     *
+     * @param interval how often to send the summaries aggregated since the last send.
+     * @return this builder's instance
+     */
+    public Builder aggregateSpanMetrics(Duration interval) {
+      if (interval == null || interval.isNegative() || interval.isZero()) {
+        throw new IllegalArgumentException("interval must be positive");
+      }
+      aggregateSpanMetrics = true;
+      spanMetricsInterval = interval;
+      return this;
+    }
+
+    /**
+     * Send only this fraction of traces to New Relic, after span metrics have been aggregated.
+     * Traces are chosen by trace id, so each trace is either sent whole or not at all. Defaults to
+     * 1, which sends every span.
+     *
+     * @param spanSampleRatio the fraction of traces to send, from 0 to 1.
+     * @return this builder's instance
+     * @see #aggregateSpanMetrics()
+     */
+    public Builder spanSampleRatio(double spanSampleRatio) {
+      if (!(spanSampleRatio >= 0 && spanSampleRatio <= 1)) {
+        throw new IllegalArgumentException("spanSampleRatio must be between 0 and 1");
+      }
+      this.spanSampleRatio = spanSampleRatio;
+      return this;
+    }
+
+    /**
+     * Set a URI to override the default Metric API endpoint that span metrics are sent to. If not
+     * provided, the telemetry SDK will default to the US production endpoint.
+     *
+     * @param metricUriOverride The fully qualified URI for the metrics API endpoint.
+     * @return the Builder
+     */
+    public Builder metricUriOverride(URI metricUriOverride) {
+      this.metricUriOverride = metricUriOverride;
+      return this;
+    }
+
+    /**
+     * Drop spans whose trace id and span id have already been exported, such as spans replayed
+     * after a retry, before they are converted and sent. Spans are remembered in a pair of
+     * rotating Bloom filters, so memory use is fixed regardless of throughput: about 5 bytes per
+     * span of capacity at a false positive rate of 0.0001, and 4 bytes at 0.001. A duplicate is
+     * recognized if it arrives within at least {@code capacity} spans of the original.
+     *
+     * <p>A false positive drops a span that was not a duplicate, so the rate should be small, for
+     * example 0.0001.
+     *
+     * @param capacity how many recent spans to remember, at least 1.
+     * @param falsePositiveRate the chance of dropping a span that was not a duplicate, between 0
+     *     and 1 exclusive.
+     * @return this builder's instance
+     */
+    public Builder deduplicateSpans(int capacity, double falsePositiveRate) {
+      if (capacity < 1 || !(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+        throw new IllegalArgumentException(
+            "capacity must be at least 1 and falsePositiveRate between 0 and 1");
+      }
+      this.deduplicationCapacity = capacity;
+      this.deduplicationFalsePositiveRate = falsePositiveRate;
+      return this;
+    }
+
+    /**
+     * Hold exported spans back for up to {@code window}, grouped by trace, so that the spans of
+     * each trace are sent to New Relic together instead of being spread over several exports. A
+     * trace is sent as soon as its local root span has been exported, or once the window has
+     * passed since its first span arrived, whichever comes first. If more than {@code
+     * maxBufferedSpans} spans are held, the oldest traces are sent early. Buffered spans are sent
+     * on {@link NewRelicSpanExporter#flush()} and on shutdown.
+     *
+     * @param window how long to hold the spans of an incomplete trace.
+     * @param maxBufferedSpans the most spans to hold at once, at least 1.
+     * @return this builder's instance
+     */
+    public Builder traceLocality(Duration window, int maxBufferedSpans) {
+      if (window == null || window.isNegative() || window.isZero() || maxBufferedSpans < 1) {
+        throw new IllegalArgumentException(
+            "The trace locality window must be positive and maxBufferedSpans at least 1");
+      }
+      this.traceLocalityWindow = window;
+      this.maxBufferedSpans = maxBufferedSpans;
+      return this;
+    }
+
+    /**
+     * Send batches on virtual threads rather than on a pool of platform threads, so that many
+     * batches can be in flight at once without tying up a thread each. On JVMs without virtual
+     * threads, batches are sent on a pool of platform threads, one per allowed concurrent send.
+     *
+     * <p>This has no effect if a custom {@link TelemetryClient} is provided.
+     *
+     * @return this builder's instance
+     */
+    public Builder useVirtualThreads() {
+      useVirtualThreads = true;
+      return this;
+    }
+
+    /**
+     * Send batches with the JDK's built-in HTTP client rather than OkHttp. The JDK's client is
+     * always used when OkHttp is not on the classpath, so OkHttp, Okio and the Kotlin standard
+     * library can be left out of applications and shaded jars that use this option.
+     *
+     * <p>This has no effect if a custom {@link TelemetryClient} is provided.
+     *
+     * @return this builder's instance
+     */
+    public Builder useJdkHttpClient() {
+      useJdkHttpClient = true;
+      return this;
+    }
+
+    /**
+     * Group spans into batches using a map and lists kept per exporting thread and reused, rather
+     * than allocating new ones on every export. This lowers the allocation rate at high span
+     * volumes, at the cost of a little memory held by each thread that exports.
+     *
+     * @return this builder's instance
+     */
+    public Builder useThreadLocalPools() {
+      useThreadLocalPools = true;
+      return this;
+    }
+
+    /**
+     * Set the maximum number of batches that may be in flight to the New Relic ingest API at once.
+     * The exporter adapts the actual number between 1 and this maximum, based on how quickly the
+     * ingest API responds and whether it asks for sends to be retried later. Defaults to the
+     * number of available processors.
+     *
+     * <p>This has no effect if a custom {@link TelemetryClient} is provided.
+     *
+     * @param maxConcurrentSends the maximum number of concurrent sends, at least 1.
+     * @return this builder's instance
+     */
+    public Builder maxConcurrentSends(int maxConcurrentSends) {
+      if (maxConcurrentSends < 1) {
+        throw new IllegalArgumentException("maxConcurrentSends must be at least 1");
+      }
+      this.maxConcurrentSends = maxConcurrentSends;
+      return this;
+    }
+
+    /**
+     * Set the most spans or events sent to New Relic in one request. Larger batches are split
+     * before they are sent, rather than after the ingest API rejects them as too large. By default
+     * batches are only split when the ingest API asks for it.
+     *
+     * <p>This has no effect if a custom {@link TelemetryClient} is provided.
+     *
+     * @param maxBatchSize the most spans or events per request, at least 1.
+     * @return this builder's instance
+     */
+    public Builder maxBatchSize(int maxBatchSize) {
+      if (maxBatchSize < 1) {
+        throw new IllegalArgumentException("maxBatchSize must be at least 1");
+      }
+      this.maxBatchSize = maxBatchSize;
+      return this;
+    }
+
+    /**
+     * Set an endpoint to send spans to while the endpoint set with {@link #uriOverride(URI)} (or
+     * the default US endpoint) is unhealthy, for example the other region's endpoint, or a proxy in
+     * another region. The failover endpoint must accept this builder's API key.
+     *
+     * <p>Endpoint health is judged from the exporter's own requests: traffic moves to the failover
+     * endpoint when more than half of recent requests fail with an I/O error, a 5xx or a 429, or
+     * their average latency passes {@code maxLatency}. While failed over, a request every 5 seconds
+     * still goes to the primary endpoint, and traffic moves back once it has recovered.
+     *
+     * <p>Only spans sent with this builder's API key fail over. Span events, span metrics and
+     * spans sent through a {@link #addRoute(ResourceRoute) route} keep to their own endpoints.
+     *
+     * <p>This has no effect if a custom {@link TelemetryClient} is provided.
+     *
+     * @param failoverUri the endpoint to fail over to.
+     * @param maxLatency the average latency beyond which an endpoint counts as unhealthy.
+     * @return this builder's instance
+     */
+    public Builder failoverUri(URI failoverUri, Duration maxLatency) {
+      if (failoverUri == null) {
+        throw new IllegalArgumentException("failoverUri must not be null");
+      }
+      if (maxLatency == null || maxLatency.isNegative() || maxLatency.isZero()) {
+        throw new IllegalArgumentException("maxLatency must be positive");
+      }
+      try {
+        this.failoverUrl = failoverUri.toURL();
+      } catch (MalformedURLException | IllegalArgumentException e) {
+        throw new IllegalArgumentException("Failover URI must be a valid URL: " + failoverUri, e);
+      }
+      this.failoverMaxLatency = maxLatency;
+      return this;
+    }
+
+    /**
+     * Send a second copy of a span request that is slower than the given percentile of recent
+     * requests, and use it if the first copy fails. The first copy is sent on the exporting
+     * thread, and the second on a small pool of daemon threads that is shut down with the
+     * exporter. Both copies carry the same {@code X-Batch-Id} header.
+     *
+     * <p>No more than {@code maxHedgeRatio} of requests are hedged over time, so that the extra
+     * load stays bounded when the ingest API is slow across the board. Hedging starts after the
+     * first 20 requests, once there are latencies to take the percentile of.
+     *
+     * <p>This has no effect if a custom {@link TelemetryClient} is provided.
+     *
+     * @param latencyPercentile the percentile to hedge after, between 0 and 1, for example 0.95.
+     * @param maxHedgeRatio the largest share of requests to hedge, between 0 and 1, for example
+     *     0.05.
+     * @return this builder's instance
+     */
+    public Builder hedgeSpanRequests(double latencyPercentile, double maxHedgeRatio) {
+      if (!(latencyPercentile >= 0 && latencyPercentile <= 1)) {
+        throw new IllegalArgumentException("latencyPercentile must be between 0 and 1");
+      }
+      if (!(maxHedgeRatio > 0 && maxHedgeRatio <= 1)) {
+        throw new IllegalArgumentException("maxHedgeRatio must be greater than 0 and at most 1");
+      }
+      this.hedgeLatencyPercentile = latencyPercentile;
+      this.hedgeRatio = maxHedgeRatio;
+      return this;
+    }
+
+    /**
+     * Send spans to New Relic's OTLP endpoint as OTLP protobuf, rather than as New Relic span
+     * JSON. OTLP is more compact and cheaper to encode, since spans are written straight from the
+     * OpenTelemetry SDK's data without being converted first. Span events and links are always
+     * sent, as part of their spans.
+     *
+     * <p>Spans are sent to {@code https://otlp.nr-data.net:4318/v1/traces}, or to the endpoint set
+     * with {@link #uriOverride(URI)}, which must then be an OTLP/HTTP traces endpoint. Span
+     * metrics, if enabled, are still sent to the New Relic metric API. This can't be combined with
+     * {@link #addRoute(ResourceRoute)}. protobuf-java ({@code com.google.protobuf:protobuf-java})
+     * must be on the classpath.
+     *
+     * <p>This has no effect if a custom {@link TelemetryClient} is provided.
+     *
+     * @return this builder's instance
+     * @throws IllegalStateException if protobuf-java isn't on the classpath.
+     */
+    public Builder useOtlp() {
+      HttpPosters.checkOtlpAvailable();
+      useOtlp = true;
+      return this;
+    }
+
+    /**
+     * Compress span batches with zstd and the given dictionary, rather than with gzip. Span
+     * payloads repeat the same attribute keys, service names and library names from batch to
+     * batch, so a dictionary trained on earlier batches compresses them smaller than gzip does.
+     * Train the dictionary with {@link ZstdDictionaryTrainer}, from samples recorded with
+     * {@link #recordPayloadSamples(Path, int)}. The endpoint must have the same dictionary to
+     * decompress the batches.
+     *
+     * <p>Batches are sent with {@code Content-Encoding: zstd}. If the endpoint responds 415
+     * (Unsupported Media Type), or 400 (Bad Request) naming the content encoding, that batch and
+     * every later one is sent gzipped instead. zstd-jni ({@code com.github.luben:zstd-jni})
+     * must be on the classpath; if it isn't, batches are sent gzipped. Span events and span metrics
+     * are always sent gzipped.
+     *
+     * <p>The telemetry SDK always gzips New Relic JSON, so without {@link #useOtlp()} each batch is
+     * gzipped, inflated again and then compressed with zstd, which costs more CPU than gzip alone.
+     * With {@link #useOtlp()}, batches are only compressed once, with zstd.
+     *
+     * <p>This has no effect if a custom {@link TelemetryClient} is provided.
+     *
+     * @param dictionary the zstd dictionary.
+     * @return this builder's instance
+     */
+    public Builder zstdDictionary(byte[] dictionary) {
+      if (dictionary == null || dictionary.length == 0) {
+        throw new IllegalArgumentException("dictionary must not be null or empty");
+      }
+      this.zstdDictionary = dictionary;
+      return this;
+    }
+
+    /**
+     * Write the uncompressed payloads of the first {@code maxSamples} span requests to files in
+     * the given directory, to train a zstd dictionary from with {@link ZstdDictionaryTrainer}.
+     * Requests are sent as usual.
+     *
+     * <p>This has no effect if a custom {@link TelemetryClient} is provided.
+     *
+     * @param directory the directory to write the samples to, which is created if needed.
+     * @param maxSamples the number of payloads to write, at least 1.
+     * @return this builder's instance
+     */
+    public Builder recordPayloadSamples(Path directory, int maxSamples) {
+      if (directory == null) {
+        throw new IllegalArgumentException("directory must not be null");
+      }
+      if (maxSamples < 1) {
+        throw new IllegalArgumentException("maxSamples must be at least 1");
+      }
+      this.sampleDirectory = directory;
+      this.maxSamples = maxSamples;
+      return this;
+    }
+
+    /**
+     * Send the spans of resources that match the route to the route's own account and endpoints,
+     * rather than with this builder's API key. Each route gets its own senders and queue of
+     * batches, so a slow or unavailable account or region only delays its own spans. Routes are
+     * checked in the order they were added, and spans that match none are sent as usual. Span
+     * metrics and span events are routed with their spans.
+     *
+     * <p>This has no effect if a custom {@link TelemetryClient} is provided.
+     *
+     * @param route the route to add.
+     * @return this builder's instance
+     */
+    public Builder addRoute(ResourceRoute route) {
+      if (route == null) {
+        throw new IllegalArgumentException("route must not be null");
+      }
+      routes.add(route);
+      return this;
+    }
+
+    /**
+     * Set how long {@link #shutdown()} waits for outstanding batches, including batches waiting to
+     * be retried, before dropping them. Defaults to 10 seconds.
+     *
+     * <p>This has no effect if a custom {@link TelemetryClient} is provided.
+     *
+     * @param shutdownTimeout how long to wait, which must not be negative.
+     * @return this builder's instance
+     */
+    public Builder shutdownTimeout(Duration shutdownTimeout) {
+      if (shutdownTimeout == null || shutdownTimeout.isNegative()) {
+        throw new IllegalArgumentException("shutdownTimeout must not be null or negative");
+      }
+      this.shutdownTimeout = shutdownTimeout;
+      return this;
+    }
+
     /**
      * Constructs a new instance of the exporter based on the builder's values.
      *
@@ -169,12 +871,124 @@ public class NewRelicSpanExporter implements SpanExporter {
      */
     public NewRelicSpanExporter build() {
       SpanBatchAdapter spanBatchAdapter =
-          new SpanBatchAdapter(commonAttributes, AttributesSupport.SERVICE_INSTANCE_ID);
+          new SpanBatchAdapter(
+              commonAttributes,
+              AttributesSupport.SERVICE_INSTANCE_ID,
+              groupByInstrumentationLibrary,
+              exportSpanEventsAndLinks,
+              useThreadLocalPools);
+      // shared by the span posters of this exporter, and shut down with it.
+      hedgeExecutor =
+          telemetryClient == null && hedgeRatio > 0 ? HedgingHttpPoster.newExecutor() : null;
       if (telemetryClient != null) {
-        return new NewRelicSpanExporter(spanBatchAdapter, telemetryClient);
+        return newExporter(spanBatchAdapter, telemetryClient, null);
+      }
+      if (useOtlp) {
+        if (!routes.isEmpty()) {
+          throw new IllegalStateException("Routes can't be used with OTLP export");
+        }
+        telemetryClient =
+            DispatchingTelemetryClient.create(
+                aggregateSpanMetrics ? buildMetricSender(apiKey, metricUriOverride) : null,
+                null,
+                null,
+                useVirtualThreads,
+                maxConcurrentSends,
+                maxBatchSize,
+                shutdownTimeout.toNanos());
+        return newExporter(spanBatchAdapter, telemetryClient, buildOtlpSender());
+      }
+      SpanBatchSender spanBatchSender = buildSpanSender(apiKey, uriOverride, failoverUrl);
+      EventBatchSender eventBatchSender =
+          exportSpanEventsAndLinks ? buildEventSender(apiKey, eventUriOverride) : null;
+      MetricBatchSender metricBatchSender =
+          aggregateSpanMetrics ? buildMetricSender(apiKey, metricUriOverride) : null;
+      if (routes.isEmpty()) {
+        telemetryClient =
+            DispatchingTelemetryClient.create(
+                metricBatchSender,
+                spanBatchSender,
+                eventBatchSender,
+                useVirtualThreads,
+                maxConcurrentSends,
+                maxBatchSize,
+                shutdownTimeout.toNanos());
+      } else {
+        telemetryClient =
+            RoutingTelemetryClient.create(
+                metricBatchSender,
+                spanBatchSender,
+                eventBatchSender,
+                useVirtualThreads,
+                maxConcurrentSends,
+                maxBatchSize,
+                shutdownTimeout.toNanos(),
+                buildRoutes());
+      }
+      return newExporter(spanBatchAdapter, telemetryClient, null);
+    }
+
+    private OtlpSender<SpanData> buildOtlpSender() {
+      URL endpoint;
+      try {
+        endpoint =
+            uriOverride == null ? new URL(OtlpSender.DEFAULT_TRACES_URL) : uriOverride.toURL();
+      } catch (MalformedURLException | IllegalArgumentException e) {
+        throw new IllegalArgumentException("URI Override value must be a valid URI.", e);
       }
+      return new OtlpSender<>(
+          newSpanPoster(failoverUrl),
+          endpoint,
+          OtlpSpanEncoder::encode,
+          apiKey,
+          "NewRelic-OpenTelemetry-Exporter/" + VersionFinder.readVersion(),
+          zstdDictionary == null,
+          maxConcurrentSends);
+    }
+
+    // the SDK's span sender always gzips, so the zstd poster inflates its batches first.
+    private HttpPoster newSpanPoster(URL failoverUrl) {
+      return HttpPosters.withSampleRecorder(
+          HttpPosters.withZstd(
+              HttpPosters.withHedging(
+                  HttpPosters.withFailover(
+                      new LazyHttpPoster(HttpPosters.factory(useJdkHttpClient)),
+                      failoverUrl,
+                      failoverMaxLatency),
+                  hedgeLatencyPercentile,
+                  hedgeRatio,
+                  hedgeExecutor),
+              zstdDictionary),
+          sampleDirectory,
+          maxSamples);
+    }
+
+    private List<RoutingTelemetryClient.Route> buildRoutes() {
+      List<RoutingTelemetryClient.Route> built = new ArrayList<>(routes.size());
+      for (ResourceRoute route : routes) {
+        DispatchingTelemetryClient client =
+            DispatchingTelemetryClient.create(
+                aggregateSpanMetrics
+                    ? buildMetricSender(route.getApiKey(), route.getMetricUriOverride())
+                    : null,
+                buildSpanSender(route.getApiKey(), route.getUriOverride(), null),
+                exportSpanEventsAndLinks
+                    ? buildEventSender(route.getApiKey(), route.getEventUriOverride())
+                    : null,
+                useVirtualThreads,
+                maxConcurrentSends,
+                maxBatchSize,
+                shutdownTimeout.toNanos());
+        built.add(
+            new RoutingTelemetryClient.Route(
+                route.getAttributeKey(), route.getAttributeValue(), client));
+      }
+      return built;
+    }
+
+    private SpanBatchSender buildSpanSender(String apiKey, URI uriOverride, URL failoverUrl) {
       SenderConfigurationBuilder builder =
-          SpanBatchSenderFactory.fromHttpImplementation(OkHttpPoster::new)
+          SpanBatchSenderFactory.fromHttpImplementation(() -> newSpanPoster(failoverUrl))
               .configureWith(apiKey)
               .secondaryUserAgent("NewRelic-OpenTelemetry-Exporter/" + VersionFinder.readVersion());
       if (enableAuditLogging) {
@@ -188,9 +1002,76 @@ public class NewRelicSpanExporter implements SpanExporter {
         }
       }
       SenderConfiguration configuration = builder.build();
-      telemetryClient =
-          new TelemetryClient(null, SpanBatchSender.create(configuration), null, null);
-      return new NewRelicSpanExporter(spanBatchAdapter, telemetryClient);
+      return SpanBatchSender.create(configuration);
+    }
+
+    private EventBatchSender buildEventSender(String apiKey, URI eventUriOverride) {
+      SenderConfigurationBuilder builder =
+          EventBatchSenderFactory.fromHttpImplementation(
+                  () -> new LazyHttpPoster(HttpPosters.factory(useJdkHttpClient)))
+              .configureWith(apiKey)
+              .secondaryUserAgent("NewRelic-OpenTelemetry-Exporter/" + VersionFinder.readVersion())
+              .auditLoggingEnabled(enableAuditLogging);
+      if (eventUriOverride != null) {
+        try {
+          builder.endpoint(eventUriOverride.toURL());
+        } catch (MalformedURLException e) {
+          throw new IllegalArgumentException("Event URI Override value must be a valid URI.", e);
+        }
+      }
+      return EventBatchSender.create(builder.build());
+    }
+
+    private MetricBatchSender buildMetricSender(String apiKey, URI metricUriOverride) {
+      SenderConfigurationBuilder builder =
+          MetricBatchSenderFactory.fromHttpImplementation(
+                  () -> new LazyHttpPoster(HttpPosters.factory(useJdkHttpClient)))
+              .configureWith(apiKey)
+              .secondaryUserAgent("NewRelic-OpenTelemetry-Exporter/" + VersionFinder.readVersion())
+              .auditLoggingEnabled(enableAuditLogging);
+      if (metricUriOverride != null) {
+        try {
+          builder.endpoint(metricUriOverride.toURL());
+        } catch (MalformedURLException e) {
+          throw new IllegalArgumentException("Metric URI Override value must be a valid URI.", e);
+        }
+      }
+      return MetricBatchSender.create(builder.build());
+    }
+
+    private NewRelicSpanExporter newExporter(
+        SpanBatchAdapter spanBatchAdapter,
+        TelemetryClient telemetryClient,
+        OtlpSender<SpanData> otlpSender) {
+      SpanMetricsAggregator spanMetricsAggregator =
+          aggregateSpanMetrics
+              ? new SpanMetricsAggregator(
+                  spanBatchAdapter.getCommonAttributes(), SystemClock.getInstance())
+              : null;
+      SpanDeduplicator spanDeduplicator =
+          deduplicationCapacity > 0
+              ? new SpanDeduplicator(deduplicationCapacity, deduplicationFalsePositiveRate)
+              : null;
+      TraceLocalityBuffer traceBuffer = null;
+      long expiryCheckNanos = 0;
+      if (traceLocalityWindow != null) {
+        long windowNanos = traceLocalityWindow.toNanos();
+        traceBuffer =
+            new TraceLocalityBuffer(SystemClock.getInstance(), windowNanos, maxBufferedSpans);
+        // checking twice per window keeps traces from being held much longer than the window.
+        expiryCheckNanos = Math.max(1, windowNanos / 2);
+      }
+      return new NewRelicSpanExporter(
+          spanBatchAdapter,
+          telemetryClient,
+          traceBuffer,
+          expiryCheckNanos,
+          spanMetricsAggregator,
+          spanMetricsInterval.toNanos(),
+          spanSampleRatio,
+          spanDeduplicator,
+          otlpSender,
+          hedgeExecutor);
     }
   }
 }
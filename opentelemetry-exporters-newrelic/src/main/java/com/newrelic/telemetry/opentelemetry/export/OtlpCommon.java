@@ -0,0 +1,135 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.common.Labels;
+import io.opentelemetry.sdk.common.InstrumentationLibraryInfo;
+import io.opentelemetry.sdk.resources.Resource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/** Writes the OTLP messages that spans and metrics have in common. */
+final class OtlpCommon {
+
+  // Resource
+  private static final int RESOURCE_ATTRIBUTES = 1;
+  // InstrumentationLibrary
+  private static final int LIBRARY_NAME = 1;
+  private static final int LIBRARY_VERSION = 2;
+  // KeyValue and StringKeyValue
+  private static final int KEY = 1;
+  private static final int VALUE = 2;
+  // AnyValue
+  private static final int STRING_VALUE = 1;
+  private static final int BOOL_VALUE = 2;
+  private static final int INT_VALUE = 3;
+  private static final int DOUBLE_VALUE = 4;
+  private static final int ARRAY_VALUE = 5;
+  // ArrayValue
+  private static final int ARRAY_VALUES = 1;
+
+  private OtlpCommon() {}
+
+  static void writeResource(ProtobufWriter writer, int field, Resource resource)
+      throws IOException {
+    writer.startMessage(field);
+    writeAttributes(writer, RESOURCE_ATTRIBUTES, resource.getAttributes());
+    writer.endMessage();
+  }
+
+  static void writeInstrumentationLibrary(
+      ProtobufWriter writer, int field, InstrumentationLibraryInfo library) throws IOException {
+    writer.startMessage(field);
+    writer.writeString(LIBRARY_NAME, library.getName());
+    if (library.getVersion() != null) {
+      writer.writeString(LIBRARY_VERSION, library.getVersion());
+    }
+    writer.endMessage();
+  }
+
+  /** Writes each attribute as a {@code KeyValue} in the given repeated field. */
+  static void writeAttributes(ProtobufWriter writer, int field, Attributes attributes)
+      throws IOException {
+    try {
+      attributes.forEach(
+          (key, value) -> {
+            try {
+              writer.startMessage(field);
+              writer.writeString(KEY, key.getKey());
+              writer.startMessage(VALUE);
+              writeValue(writer, value);
+              writer.endMessage();
+              writer.endMessage();
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /** Writes each label as a {@code StringKeyValue} in the given repeated field. */
+  static void writeLabels(ProtobufWriter writer, int field, Labels labels) throws IOException {
+    try {
+      labels.forEach(
+          (key, value) -> {
+            try {
+              writer.startMessage(field);
+              writer.writeString(KEY, key);
+              writer.writeString(VALUE, value);
+              writer.endMessage();
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  // the fields of an AnyValue, whose oneof is always written, even when it holds a default.
+  private static void writeValue(ProtobufWriter writer, Object value) throws IOException {
+    if (value instanceof String) {
+      writer.writeString(STRING_VALUE, (String) value);
+    } else if (value instanceof Boolean) {
+      writer.writeBool(BOOL_VALUE, (Boolean) value);
+    } else if (value instanceof Double || value instanceof Float) {
+      writer.writeDouble(DOUBLE_VALUE, ((Number) value).doubleValue());
+    } else if (value instanceof Number) {
+      writer.writeInt64(INT_VALUE, ((Number) value).longValue());
+    } else if (value instanceof List) {
+      writer.startMessage(ARRAY_VALUE);
+      for (Object element : (List<?>) value) {
+        writer.startMessage(ARRAY_VALUES);
+        writeValue(writer, element);
+        writer.endMessage();
+      }
+      writer.endMessage();
+    } else if (value != null) {
+      writer.writeString(STRING_VALUE, value.toString());
+    }
+  }
+
+  /**
+   * Converts a lowercase hex trace or span id to its bytes.
+   *
+   * @param hex the id, with an even number of hex digits.
+   * @return the id's bytes
+   */
+  static byte[] hexToBytes(String hex) {
+    byte[] bytes = new byte[hex.length() / 2];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] =
+          (byte)
+              ((Character.digit(hex.charAt(2 * i), 16) << 4)
+                  | Character.digit(hex.charAt(2 * i + 1), 16));
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import io.opentelemetry.sdk.common.InstrumentationLibraryInfo;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.metrics.data.MetricData.AggregationTemporality;
+import io.opentelemetry.sdk.metrics.data.MetricData.DoublePoint;
+import io.opentelemetry.sdk.metrics.data.MetricData.DoubleSummaryPoint;
+import io.opentelemetry.sdk.metrics.data.MetricData.LongPoint;
+import io.opentelemetry.sdk.metrics.data.MetricData.Point;
+import io.opentelemetry.sdk.metrics.data.MetricData.Type;
+import io.opentelemetry.sdk.metrics.data.MetricData.ValueAtPercentile;
+import io.opentelemetry.sdk.resources.Resource;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes metrics as an OTLP {@code ExportMetricsServiceRequest} (opentelemetry-proto 0.7),
+ * without building the generated protobuf classes in between. Sums are written with the
+ * aggregation temporality they carry; the exporter turns cumulative monotonic sums into deltas with
+ * {@link MetricPointAdapter#toDeltaSum(MetricData)} before they get here.
+ */
+final class OtlpMetricEncoder {
+
+  // ExportMetricsServiceRequest
+  private static final int RESOURCE_METRICS = 1;
+  // ResourceMetrics
+  private static final int RESOURCE = 1;
+  private static final int INSTRUMENTATION_LIBRARY_METRICS = 2;
+  // InstrumentationLibraryMetrics
+  private static final int INSTRUMENTATION_LIBRARY = 1;
+  private static final int METRICS = 2;
+  // Metric
+  private static final int NAME = 1;
+  private static final int DESCRIPTION = 2;
+  private static final int UNIT = 3;
+  private static final int INT_GAUGE = 4;
+  private static final int DOUBLE_GAUGE = 5;
+  private static final int INT_SUM = 6;
+  private static final int DOUBLE_SUM = 7;
+  private static final int DOUBLE_SUMMARY = 11;
+  // IntGauge, DoubleGauge, IntSum, DoubleSum and DoubleSummary
+  private static final int DATA_POINTS = 1;
+  private static final int AGGREGATION_TEMPORALITY = 2;
+  private static final int IS_MONOTONIC = 3;
+  // IntDataPoint, DoubleDataPoint and DoubleSummaryDataPoint
+  private static final int LABELS = 1;
+  private static final int START_TIME = 2;
+  private static final int TIME = 3;
+  private static final int VALUE = 4;
+  private static final int SUMMARY_COUNT = 4;
+  private static final int SUMMARY_SUM = 5;
+  private static final int QUANTILE_VALUES = 6;
+  // DoubleSummaryDataPoint.ValueAtQuantile
+  private static final int QUANTILE = 1;
+  private static final int QUANTILE_VALUE = 2;
+
+  private OtlpMetricEncoder() {}
+
+  /**
+   * Write the metrics to the writer's buffer.
+   *
+   * @param writer the writer to write with.
+   * @param metrics the metrics to write.
+   * @return the number of bytes written.
+   * @throws IOException if the metrics could not be written.
+   */
+  static int encode(ProtobufWriter writer, List<MetricData> metrics) throws IOException {
+    Map<Resource, Map<InstrumentationLibraryInfo, List<MetricData>>> grouped =
+        new LinkedHashMap<>();
+    for (MetricData metric : metrics) {
+      grouped
+          .computeIfAbsent(metric.getResource(), resource -> new LinkedHashMap<>())
+          .computeIfAbsent(metric.getInstrumentationLibraryInfo(), library -> new ArrayList<>())
+          .add(metric);
+    }
+    return writer.write(w -> writeRequest(w, grouped));
+  }
+
+  private static void writeRequest(
+      ProtobufWriter writer,
+      Map<Resource, Map<InstrumentationLibraryInfo, List<MetricData>>> grouped)
+      throws IOException {
+    for (Map.Entry<Resource, Map<InstrumentationLibraryInfo, List<MetricData>>> resourceMetrics :
+        grouped.entrySet()) {
+      writer.startMessage(RESOURCE_METRICS);
+      OtlpCommon.writeResource(writer, RESOURCE, resourceMetrics.getKey());
+      for (Map.Entry<InstrumentationLibraryInfo, List<MetricData>> libraryMetrics :
+          resourceMetrics.getValue().entrySet()) {
+        writer.startMessage(INSTRUMENTATION_LIBRARY_METRICS);
+        OtlpCommon.writeInstrumentationLibrary(
+            writer, INSTRUMENTATION_LIBRARY, libraryMetrics.getKey());
+        for (MetricData metric : libraryMetrics.getValue()) {
+          writeMetric(writer, metric);
+        }
+        writer.endMessage();
+      }
+      writer.endMessage();
+    }
+  }
+
+  private static void writeMetric(ProtobufWriter writer, MetricData metric) throws IOException {
+    Collection<Point> points = metric.getPoints();
+    if (points.isEmpty()) {
+      return;
+    }
+    writer.startMessage(METRICS);
+    writer.writeString(NAME, metric.getName());
+    writer.writeString(DESCRIPTION, metric.getDescription());
+    writer.writeString(UNIT, metric.getUnit());
+    Type type = metric.getType();
+    if (type == Type.LONG_SUM) {
+      writer.startMessage(INT_SUM);
+      writePoints(writer, points);
+      writeSumProperties(
+          writer,
+          metric.getLongSumData().getAggregationTemporality(),
+          metric.getLongSumData().isMonotonic());
+      writer.endMessage();
+    } else if (type == Type.DOUBLE_SUM) {
+      writer.startMessage(DOUBLE_SUM);
+      writePoints(writer, points);
+      writeSumProperties(
+          writer,
+          metric.getDoubleSumData().getAggregationTemporality(),
+          metric.getDoubleSumData().isMonotonic());
+      writer.endMessage();
+    } else {
+      Point first = points.iterator().next();
+      if (first instanceof DoubleSummaryPoint) {
+        writer.startMessage(DOUBLE_SUMMARY);
+      } else if (first instanceof LongPoint) {
+        writer.startMessage(INT_GAUGE);
+      } else {
+        writer.startMessage(DOUBLE_GAUGE);
+      }
+      writePoints(writer, points);
+      writer.endMessage();
+    }
+    writer.endMessage();
+  }
+
+  private static void writeSumProperties(
+      ProtobufWriter writer, AggregationTemporality temporality, boolean monotonic)
+      throws IOException {
+    writer.writeEnum(
+        AGGREGATION_TEMPORALITY, temporality == AggregationTemporality.DELTA ? 1 : 2);
+    writer.writeBool(IS_MONOTONIC, monotonic);
+  }
+
+  private static void writePoints(ProtobufWriter writer, Collection<Point> points)
+      throws IOException {
+    for (Point point : points) {
+      writer.startMessage(DATA_POINTS);
+      OtlpCommon.writeLabels(writer, LABELS, point.getLabels());
+      writer.writeFixed64(START_TIME, point.getStartEpochNanos());
+      writer.writeFixed64(TIME, point.getEpochNanos());
+      if (point instanceof LongPoint) {
+        writer.writeSFixed64(VALUE, ((LongPoint) point).getValue());
+      } else if (point instanceof DoublePoint) {
+        writer.writeDouble(VALUE, ((DoublePoint) point).getValue());
+      } else if (point instanceof DoubleSummaryPoint) {
+        DoubleSummaryPoint summary = (DoubleSummaryPoint) point;
+        writer.writeFixed64(SUMMARY_COUNT, summary.getCount());
+        writer.writeDouble(SUMMARY_SUM, summary.getSum());
+        for (ValueAtPercentile percentile : summary.getPercentileValues()) {
+          writer.startMessage(QUANTILE_VALUES);
+          // OpenTelemetry records percentiles, from 0 to 100, and OTLP expects quantiles.
+          writer.writeDouble(QUANTILE, percentile.getPercentile() / 100);
+          writer.writeDouble(QUANTILE_VALUE, percentile.getValue());
+          writer.endMessage();
+        }
+      }
+      writer.endMessage();
+    }
+  }
+}
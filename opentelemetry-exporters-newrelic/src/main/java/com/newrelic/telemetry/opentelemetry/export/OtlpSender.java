@@ -0,0 +1,120 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import com.newrelic.telemetry.Response;
+import com.newrelic.telemetry.exceptions.DiscardBatchException;
+import com.newrelic.telemetry.exceptions.ResponseException;
+import com.newrelic.telemetry.exceptions.RetryWithBackoffException;
+import com.newrelic.telemetry.http.HttpPoster;
+import com.newrelic.telemetry.http.HttpResponse;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends spans or metrics to an OTLP/HTTP endpoint, encoded as protobuf and, unless the poster
+ * compresses them itself, gzipped. Batches are encoded into {@link ProtobufWriter}s taken from a
+ * small pool, so that encoding buffers are reused from one batch to the next whichever thread,
+ * platform or virtual, sends them.
+ *
+ * @param <T> the type of telemetry sent, SpanData or MetricData.
+ */
+class OtlpSender<T> {
+  private static final Logger logger = LoggerFactory.getLogger(OtlpSender.class);
+
+  static final String DEFAULT_TRACES_URL = "https://otlp.nr-data.net:4318/v1/traces";
+  static final String DEFAULT_METRICS_URL = "https://otlp.nr-data.net:4318/v1/metrics";
+  static final String MEDIA_TYPE = "application/x-protobuf";
+
+  /** Writes a list of telemetry as an OTLP export request. */
+  interface Encoder<T> {
+    int encode(ProtobufWriter writer, List<T> batch) throws IOException;
+  }
+
+  private final HttpPoster poster;
+  private final URL endpoint;
+  private final Encoder<T> encoder;
+  private final Map<String, String> headers;
+  private final boolean gzip;
+  private final BlockingQueue<ProtobufWriter> writers;
+
+  /**
+   * @param gzip whether to gzip batches, or to leave them uncompressed for the poster to compress,
+   *     as a {@link ZstdHttpPoster} does.
+   * @param maxPooledWriters the most writers to keep for reuse, usually the number of batches that
+   *     may be sent at once.
+   */
+  OtlpSender(
+      HttpPoster poster,
+      URL endpoint,
+      Encoder<T> encoder,
+      String apiKey,
+      String userAgent,
+      boolean gzip,
+      int maxPooledWriters) {
+    this.writers = new ArrayBlockingQueue<>(maxPooledWriters);
+    this.poster = poster;
+    this.endpoint = endpoint;
+    this.encoder = encoder;
+    this.gzip = gzip;
+    Map<String, String> headers = new HashMap<>();
+    if (apiKey != null) {
+      headers.put("Api-Key", apiKey);
+    }
+    if (gzip) {
+      headers.put("Content-Encoding", "gzip");
+    }
+    headers.put("User-Agent", userAgent);
+    this.headers = headers;
+  }
+
+  /**
+   * Encode and send a batch.
+   *
+   * @param batch the spans or metrics to send.
+   * @return the endpoint's response, if it accepted the batch.
+   * @throws ResponseException if the batch should be split, retried later, or dropped.
+   */
+  Response sendBatch(List<T> batch) throws ResponseException {
+    byte[] payload;
+    ProtobufWriter writer = writers.poll();
+    if (writer == null) {
+      writer = new ProtobufWriter();
+    }
+    try {
+      int length = encoder.encode(writer, batch);
+      payload =
+          gzip
+              ? IngestResponses.gzip(writer.buffer(), length)
+              : Arrays.copyOf(writer.buffer(), length);
+    } catch (IOException | RuntimeException e) {
+      logger.warn("Failed to encode a batch as OTLP", e);
+      throw new DiscardBatchException();
+    } finally {
+      // the payload is a copy, so the writer can be reused while the batch is being posted.
+      writers.offer(writer);
+    }
+    HttpResponse response;
+    try {
+      response = poster.post(endpoint, headers, payload, MEDIA_TYPE);
+    } catch (IOException e) {
+      logger.debug("Failed to post an OTLP batch", e);
+      throw new RetryWithBackoffException();
+    }
+    if (response.getCode() >= 300) {
+      logger.debug("OTLP endpoint responded " + response.getCode() + ": " + response.getBody());
+    }
+    return IngestResponses.check(response);
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span.Kind;
+import io.opentelemetry.api.trace.SpanId;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.sdk.common.InstrumentationLibraryInfo;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes spans as an OTLP {@code ExportTraceServiceRequest} (opentelemetry-proto 0.7), without
+ * building the generated protobuf classes in between. Spans are grouped by resource, and then by
+ * instrumentation library, as OTLP requires.
+ */
+final class OtlpSpanEncoder {
+
+  // ExportTraceServiceRequest
+  private static final int RESOURCE_SPANS = 1;
+  // ResourceSpans
+  private static final int RESOURCE = 1;
+  private static final int INSTRUMENTATION_LIBRARY_SPANS = 2;
+  // InstrumentationLibrarySpans
+  private static final int INSTRUMENTATION_LIBRARY = 1;
+  private static final int SPANS = 2;
+  // Span
+  private static final int TRACE_ID = 1;
+  private static final int SPAN_ID = 2;
+  private static final int PARENT_SPAN_ID = 4;
+  private static final int NAME = 5;
+  private static final int KIND = 6;
+  private static final int START_TIME = 7;
+  private static final int END_TIME = 8;
+  private static final int ATTRIBUTES = 9;
+  private static final int DROPPED_ATTRIBUTES_COUNT = 10;
+  private static final int EVENTS = 11;
+  private static final int DROPPED_EVENTS_COUNT = 12;
+  private static final int LINKS = 13;
+  private static final int DROPPED_LINKS_COUNT = 14;
+  private static final int STATUS = 15;
+  // Span.Event
+  private static final int EVENT_TIME = 1;
+  private static final int EVENT_NAME = 2;
+  private static final int EVENT_ATTRIBUTES = 3;
+  private static final int EVENT_DROPPED_ATTRIBUTES_COUNT = 4;
+  // Span.Link
+  private static final int LINK_TRACE_ID = 1;
+  private static final int LINK_SPAN_ID = 2;
+  private static final int LINK_ATTRIBUTES = 4;
+  private static final int LINK_DROPPED_ATTRIBUTES_COUNT = 5;
+  // Status
+  private static final int STATUS_MESSAGE = 2;
+  private static final int STATUS_CODE = 3;
+
+  private OtlpSpanEncoder() {}
+
+  /**
+   * Write the spans to the writer's buffer.
+   *
+   * @param writer the writer to write with.
+   * @param spans the spans to write.
+   * @return the number of bytes written.
+   * @throws IOException if the spans could not be written.
+   */
+  static int encode(ProtobufWriter writer, List<SpanData> spans) throws IOException {
+    Map<Resource, Map<InstrumentationLibraryInfo, List<SpanData>>> grouped =
+        new LinkedHashMap<>();
+    for (SpanData span : spans) {
+      grouped
+          .computeIfAbsent(span.getResource(), resource -> new LinkedHashMap<>())
+          .computeIfAbsent(span.getInstrumentationLibraryInfo(), library -> new ArrayList<>())
+          .add(span);
+    }
+    return writer.write(w -> writeRequest(w, grouped));
+  }
+
+  private static void writeRequest(
+      ProtobufWriter writer, Map<Resource, Map<InstrumentationLibraryInfo, List<SpanData>>> grouped)
+      throws IOException {
+    for (Map.Entry<Resource, Map<InstrumentationLibraryInfo, List<SpanData>>> resourceSpans :
+        grouped.entrySet()) {
+      writer.startMessage(RESOURCE_SPANS);
+      OtlpCommon.writeResource(writer, RESOURCE, resourceSpans.getKey());
+      for (Map.Entry<InstrumentationLibraryInfo, List<SpanData>> librarySpans :
+          resourceSpans.getValue().entrySet()) {
+        writer.startMessage(INSTRUMENTATION_LIBRARY_SPANS);
+        OtlpCommon.writeInstrumentationLibrary(
+            writer, INSTRUMENTATION_LIBRARY, librarySpans.getKey());
+        for (SpanData span : librarySpans.getValue()) {
+          writeSpan(writer, span);
+        }
+        writer.endMessage();
+      }
+      writer.endMessage();
+    }
+  }
+
+  private static void writeSpan(ProtobufWriter writer, SpanData span) throws IOException {
+    writer.startMessage(SPANS);
+    writer.writeBytes(TRACE_ID, OtlpCommon.hexToBytes(span.getTraceId()));
+    writer.writeBytes(SPAN_ID, OtlpCommon.hexToBytes(span.getSpanId()));
+    if (SpanId.isValid(span.getParentSpanId())) {
+      writer.writeBytes(PARENT_SPAN_ID, OtlpCommon.hexToBytes(span.getParentSpanId()));
+    }
+    writer.writeString(NAME, span.getName());
+    writer.writeEnum(KIND, spanKind(span.getKind()));
+    writer.writeFixed64(START_TIME, span.getStartEpochNanos());
+    writer.writeFixed64(END_TIME, span.getEndEpochNanos());
+    Attributes attributes = span.getAttributes();
+    OtlpCommon.writeAttributes(writer, ATTRIBUTES, attributes);
+    writeDroppedCount(
+        writer, DROPPED_ATTRIBUTES_COUNT, span.getTotalAttributeCount() - attributes.size());
+
+    List<SpanData.Event> events = span.getEvents();
+    for (SpanData.Event event : events) {
+      writer.startMessage(EVENTS);
+      writer.writeFixed64(EVENT_TIME, event.getEpochNanos());
+      writer.writeString(EVENT_NAME, event.getName());
+      OtlpCommon.writeAttributes(writer, EVENT_ATTRIBUTES, event.getAttributes());
+      writeDroppedCount(
+          writer,
+          EVENT_DROPPED_ATTRIBUTES_COUNT,
+          event.getTotalAttributeCount() - event.getAttributes().size());
+      writer.endMessage();
+    }
+    writeDroppedCount(writer, DROPPED_EVENTS_COUNT, span.getTotalRecordedEvents() - events.size());
+
+    List<SpanData.Link> links = span.getLinks();
+    for (SpanData.Link link : links) {
+      writer.startMessage(LINKS);
+      writer.writeBytes(
+          LINK_TRACE_ID, OtlpCommon.hexToBytes(link.getContext().getTraceIdAsHexString()));
+      writer.writeBytes(
+          LINK_SPAN_ID, OtlpCommon.hexToBytes(link.getContext().getSpanIdAsHexString()));
+      OtlpCommon.writeAttributes(writer, LINK_ATTRIBUTES, link.getAttributes());
+      writeDroppedCount(
+          writer,
+          LINK_DROPPED_ATTRIBUTES_COUNT,
+          link.getTotalAttributeCount() - link.getAttributes().size());
+      writer.endMessage();
+    }
+    writeDroppedCount(writer, DROPPED_LINKS_COUNT, span.getTotalRecordedLinks() - links.size());
+
+    SpanData.Status status = span.getStatus();
+    writer.startMessage(STATUS);
+    String description = status.getDescription();
+    if (description != null && !description.isEmpty()) {
+      writer.writeString(STATUS_MESSAGE, description);
+    }
+    writer.writeEnum(STATUS_CODE, statusCode(status.getStatusCode()));
+    writer.endMessage();
+    writer.endMessage();
+  }
+
+  private static void writeDroppedCount(ProtobufWriter writer, int field, int dropped)
+      throws IOException {
+    if (dropped > 0) {
+      writer.writeUInt32(field, dropped);
+    }
+  }
+
+  private static int statusCode(StatusCode code) {
+    switch (code) {
+      case OK:
+        return 1;
+      case ERROR:
+        return 2;
+      default:
+        return 0;
+    }
+  }
+
+  // OTLP's SpanKind leaves 0 for "unspecified".
+  private static int spanKind(Kind kind) {
+    switch (kind) {
+      case INTERNAL:
+        return 1;
+      case SERVER:
+        return 2;
+      case CLIENT:
+        return 3;
+      case PRODUCER:
+        return 4;
+      case CONSUMER:
+        return 5;
+      default:
+        return 0;
+    }
+  }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.internal.DaemonThreadFactory;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link SpanExporter} that wraps a {@link NewRelicSpanExporter} and spreads the conversion and
+ * sending of each exported collection of spans across a pool of worker threads.
+ *
+ * <p>Span processors such as the {@link io.opentelemetry.sdk.trace.export.BatchSpanProcessor}
+ * export from a single thread, which limits throughput to roughly one core. This exporter splits
+ * every collection into shards by trace id, so that all the spans of a trace that are exported
+ * together still end up in the same New Relic batch, and hands each shard to its own worker.
+ *
+ * @since 0.14.0
+ */
+public class ParallelSpanExporter implements SpanExporter {
+  private static final Logger logger = LoggerFactory.getLogger(ParallelSpanExporter.class);
+
+  private final NewRelicSpanExporter delegate;
+  private final ExecutorService workers;
+  private final int workerCount;
+  private final int minShardSize;
+  private final Set<CompletableResultCode> pendingShards = ConcurrentHashMap.newKeySet();
+
+  ParallelSpanExporter(
+      NewRelicSpanExporter delegate, ExecutorService workers, int workerCount, int minShardSize) {
+    this.delegate = delegate;
+    this.workers = workers;
+    this.workerCount = workerCount;
+    this.minShardSize = minShardSize;
+  }
+
+  /**
+   * Creates a new builder that wraps the given exporter.
+   *
+   * @param delegate the exporter that converts and sends each shard of spans.
+   * @return a new builder instance.
+   */
+  public static Builder newBuilder(NewRelicSpanExporter delegate) {
+    return new Builder(delegate);
+  }
+
+  @Override
+  public CompletableResultCode export(Collection<SpanData> spans) {
+    int shardCount = Math.min(workerCount, spans.size() / minShardSize);
+    if (shardCount <= 1) {
+      // not worth the hand-off
+      return delegate.export(spans);
+    }
+    List<List<SpanData>> shards = shardByTraceId(spans, shardCount);
+    List<CompletableResultCode> results = new ArrayList<>(shardCount);
+    for (List<SpanData> shard : shards) {
+      if (!shard.isEmpty()) {
+        results.add(submit(shard));
+      }
+    }
+    return CompletableResultCode.ofAll(results);
+  }
+
+  private CompletableResultCode submit(List<SpanData> shard) {
+    CompletableResultCode result = new CompletableResultCode();
+    pendingShards.add(result);
+    result.whenComplete(() -> pendingShards.remove(result));
+    try {
+      workers.execute(
+          () -> {
+            try {
+              CompletableResultCode shardResult = delegate.export(shard);
+              shardResult.whenComplete(
+                  () -> {
+                    if (shardResult.isSuccess()) {
+                      result.succeed();
+                    } else {
+                      result.fail();
+                    }
+                  });
+            } catch (RuntimeException e) {
+              logger.warn("Failed to export a shard of " + shard.size() + " spans", e);
+              result.fail();
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      logger.debug("Exporter has been shut down, dropping " + shard.size() + " spans");
+      result.fail();
+    }
+    return result;
+  }
+
+  static List<List<SpanData>> shardByTraceId(Collection<SpanData> spans, int shardCount) {
+    List<List<SpanData>> shards = new ArrayList<>(shardCount);
+    int expectedShardSize = spans.size() / shardCount + 1;
+    for (int i = 0; i < shardCount; i++) {
+      shards.add(new ArrayList<>(expectedShardSize));
+    }
+    for (SpanData span : spans) {
+      shards.get(Math.floorMod(span.getTraceId().hashCode(), shardCount)).add(span);
+    }
+    return shards;
+  }
+
+  /**
+   * Waits for the shards that are still being converted to be handed to the New Relic sender, then
+   * flushes the wrapped exporter.
+   *
+   * @return a result that completes when the wrapped exporter's flush does.
+   */
+  @Override
+  public CompletableResultCode flush() {
+    CompletableResultCode result = new CompletableResultCode();
+    CompletableResultCode.ofAll(new ArrayList<>(pendingShards))
+        .whenComplete(
+            () -> {
+              CompletableResultCode delegateResult = delegate.flush();
+              delegateResult.whenComplete(
+                  () -> {
+                    if (delegateResult.isSuccess()) {
+                      result.succeed();
+                    } else {
+                      result.fail();
+                    }
+                  });
+            });
+    return result;
+  }
+
+  /**
+   * Shuts down the workers and then the wrapped exporter, within the wrapped exporter's shutdown
+   * timeout.
+   *
+   * @return a result that succeeds if nothing was dropped, and fails otherwise.
+   */
+  @Override
+  public CompletableResultCode shutdown() {
+    return shutdown(delegate.getShutdownTimeoutNanos(), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Shuts down the workers and then the wrapped exporter, spending no more than the given time on
+   * both together.
+   *
+   * @param timeout how long to wait for shards and outstanding batches to be sent.
+   * @param unit the unit of the timeout.
+   * @return a result that succeeds if nothing was dropped, and fails otherwise.
+   * @see NewRelicSpanExporter#shutdown(long, TimeUnit)
+   */
+  public CompletableResultCode shutdown(long timeout, TimeUnit unit) {
+    long deadlineNanos = System.nanoTime() + unit.toNanos(timeout);
+    workers.shutdown();
+    try {
+      if (!workers.awaitTermination(timeout, unit)) {
+        logger.warn("Timed out waiting for span export workers to finish");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    long remainingNanos = Math.max(0, deadlineNanos - System.nanoTime());
+    return delegate.shutdown(remainingNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Builder utility for the {@link ParallelSpanExporter}.
+   *
+   * @since 0.14.0
+   */
+  public static class Builder {
+
+    private final NewRelicSpanExporter delegate;
+    private int workerCount = Runtime.getRuntime().availableProcessors();
+    private int minShardSize = 64;
+
+    private Builder(NewRelicSpanExporter delegate) {
+      if (delegate == null) {
+        throw new IllegalArgumentException("You must provide a non-null NewRelicSpanExporter");
+      }
+      this.delegate = delegate;
+    }
+
+    /**
+     * Set the number of worker threads that convert and send spans. Defaults to the number of
+     * available processors.
+     *
+     * @param workerCount the number of workers, at least 1.
+     * @return this builder's instance
+     */
+    public Builder workerCount(int workerCount) {
+      if (workerCount < 1) {
+        throw new IllegalArgumentException("workerCount must be at least 1");
+      }
+      this.workerCount = workerCount;
+      return this;
+    }
+
+    /**
+     * Set the smallest number of spans worth handing to a worker. Collections smaller than twice
+     * this size are exported on the calling thread. Defaults to 64.
+     *
+     * @param minShardSize the minimum number of spans per shard, at least 1.
+     * @return this builder's instance
+     */
+    public Builder minShardSize(int minShardSize) {
+      if (minShardSize < 1) {
+        throw new IllegalArgumentException("minShardSize must be at least 1");
+      }
+      this.minShardSize = minShardSize;
+      return this;
+    }
+
+    /**
+     * Constructs a new instance of the exporter based on the builder's values.
+     *
+     * @return a new ParallelSpanExporter instance
+     */
+    public ParallelSpanExporter build() {
+      ExecutorService workers =
+          Executors.newFixedThreadPool(
+              workerCount, new DaemonThreadFactory("newrelic-span-export-worker"));
+      return new ParallelSpanExporter(delegate, workers, workerCount, minShardSize);
+    }
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import com.newrelic.telemetry.http.HttpPoster;
+import com.newrelic.telemetry.http.HttpResponse;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link HttpPoster} that writes the uncompressed body of the first few requests it posts to a
+ * directory, one file each, as samples for {@link ZstdDictionaryTrainer} to train a dictionary
+ * from. Requests are posted as usual whether or not their sample could be written.
+ */
+class PayloadSampleRecorder implements HttpPoster {
+  private static final Logger logger = LoggerFactory.getLogger(PayloadSampleRecorder.class);
+
+  private final HttpPoster delegate;
+  private final Path directory;
+  private final int maxSamples;
+  private final String prefix;
+  private final AtomicInteger sampleCount = new AtomicInteger();
+
+  PayloadSampleRecorder(HttpPoster delegate, Path directory, int maxSamples) {
+    this.delegate = delegate;
+    this.directory = directory;
+    this.maxSamples = maxSamples;
+    // several exporters, or runs, can record to the same directory without overwriting each other.
+    this.prefix = "sample-" + Long.toHexString(System.nanoTime()) + "-";
+  }
+
+  @Override
+  public HttpResponse post(URL url, Map<String, String> headers, byte[] body, String mediaType)
+      throws IOException {
+    int sample = sampleCount.getAndIncrement();
+    if (sample < maxSamples) {
+      record(sample, body);
+    }
+    return delegate.post(url, headers, body, mediaType);
+  }
+
+  private void record(int sample, byte[] body) {
+    try {
+      Files.createDirectories(directory);
+      Files.write(
+          directory.resolve(prefix + sample),
+          IngestResponses.isGzipped(body) ? IngestResponses.gunzip(body) : body,
+          StandardOpenOption.CREATE_NEW);
+    } catch (IOException | RuntimeException e) {
+      logger.debug("Failed to record a payload sample in " + directory, e);
+    }
+  }
+}
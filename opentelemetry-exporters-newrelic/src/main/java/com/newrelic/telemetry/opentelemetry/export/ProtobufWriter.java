@@ -0,0 +1,203 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Writes protobuf messages straight from the objects they describe, with {@link CodedOutputStream},
+ * into a buffer that is reused from one message to the next.
+ *
+ * <p>Every nested message is prefixed with its length, which isn't known until its fields have been
+ * written. So a message is written twice: first only to add up the size of every nested message,
+ * and then for real, with the sizes from the first pass. Both passes must make the same calls in
+ * the same order, which they do when a {@link Message} writes its fields deterministically.
+ *
+ * <p>Instances are not thread-safe.
+ */
+final class ProtobufWriter {
+
+  // a buffer grown past this by an unusually large message is let go rather than kept.
+  private static final int MAX_RETAINED_BUFFER_BYTES = 4 * 1024 * 1024;
+
+  /** A message that writes its fields, and its nested messages' fields, to a writer. */
+  interface Message {
+    void writeTo(ProtobufWriter writer) throws IOException;
+  }
+
+  private byte[] buffer = new byte[8192];
+  private CodedOutputStream out;
+  private boolean sizing;
+
+  // sizes of the nested messages, in the order they start.
+  private int[] messageSizes = new int[256];
+  private int messageCount;
+  private int nextMessage;
+
+  // the nested messages being sized, innermost last: their index in messageSizes, their field
+  // number, and the size of their fields so far.
+  private int[] openMessages = new int[16];
+  private int[] openFields = new int[16];
+  private int[] openSizes = new int[16];
+  private int depth;
+
+  /**
+   * Write the message to this writer's buffer.
+   *
+   * @param message the message to write.
+   * @return the number of bytes written, from the start of {@link #buffer()}.
+   * @throws IOException if the message could not be written.
+   */
+  int write(Message message) throws IOException {
+    if (buffer.length > MAX_RETAINED_BUFFER_BYTES) {
+      buffer = new byte[8192];
+    }
+    sizing = true;
+    messageCount = 0;
+    depth = 0;
+    openSizes[0] = 0;
+    message.writeTo(this);
+    int size = openSizes[0];
+
+    if (buffer.length < size) {
+      buffer = new byte[Math.max(size, buffer.length * 2)];
+    }
+    sizing = false;
+    nextMessage = 0;
+    out = CodedOutputStream.newInstance(buffer, 0, size);
+    message.writeTo(this);
+    out.checkNoSpaceLeft();
+    out = null;
+    return size;
+  }
+
+  /**
+   * The buffer the last message was written to, which is reused by the next call to {@link
+   * #write(Message)}.
+   *
+   * @return the buffer
+   */
+  byte[] buffer() {
+    return buffer;
+  }
+
+  /**
+   * Start a nested message. Every call must be matched by a call to {@link #endMessage()} after
+   * the message's fields are written.
+   *
+   * @param field the field number of the message in its parent.
+   * @throws IOException if the message could not be written.
+   */
+  void startMessage(int field) throws IOException {
+    if (sizing) {
+      if (messageCount == messageSizes.length) {
+        messageSizes = Arrays.copyOf(messageSizes, messageCount * 2);
+      }
+      if (depth + 1 == openMessages.length) {
+        openMessages = Arrays.copyOf(openMessages, openMessages.length * 2);
+        openFields = Arrays.copyOf(openFields, openFields.length * 2);
+        openSizes = Arrays.copyOf(openSizes, openSizes.length * 2);
+      }
+      depth++;
+      openMessages[depth] = messageCount++;
+      openFields[depth] = field;
+      openSizes[depth] = 0;
+      return;
+    }
+    out.writeTag(field, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    out.writeUInt32NoTag(messageSizes[nextMessage++]);
+  }
+
+  /** End the innermost nested message. */
+  void endMessage() {
+    if (!sizing) {
+      return;
+    }
+    int fieldsSize = openSizes[depth];
+    messageSizes[openMessages[depth]] = fieldsSize;
+    int total =
+        CodedOutputStream.computeTagSize(openFields[depth])
+            + CodedOutputStream.computeUInt32SizeNoTag(fieldsSize)
+            + fieldsSize;
+    depth--;
+    openSizes[depth] += total;
+  }
+
+  void writeString(int field, String value) throws IOException {
+    if (sizing) {
+      openSizes[depth] += CodedOutputStream.computeStringSize(field, value);
+    } else {
+      out.writeString(field, value);
+    }
+  }
+
+  void writeBytes(int field, byte[] value) throws IOException {
+    if (sizing) {
+      openSizes[depth] += CodedOutputStream.computeByteArraySize(field, value);
+    } else {
+      out.writeByteArray(field, value);
+    }
+  }
+
+  void writeBool(int field, boolean value) throws IOException {
+    if (sizing) {
+      openSizes[depth] += CodedOutputStream.computeBoolSize(field, value);
+    } else {
+      out.writeBool(field, value);
+    }
+  }
+
+  void writeInt64(int field, long value) throws IOException {
+    if (sizing) {
+      openSizes[depth] += CodedOutputStream.computeInt64Size(field, value);
+    } else {
+      out.writeInt64(field, value);
+    }
+  }
+
+  void writeUInt32(int field, int value) throws IOException {
+    if (sizing) {
+      openSizes[depth] += CodedOutputStream.computeUInt32Size(field, value);
+    } else {
+      out.writeUInt32(field, value);
+    }
+  }
+
+  void writeEnum(int field, int value) throws IOException {
+    if (sizing) {
+      openSizes[depth] += CodedOutputStream.computeEnumSize(field, value);
+    } else {
+      out.writeEnum(field, value);
+    }
+  }
+
+  void writeFixed64(int field, long value) throws IOException {
+    if (sizing) {
+      openSizes[depth] += CodedOutputStream.computeFixed64Size(field, value);
+    } else {
+      out.writeFixed64(field, value);
+    }
+  }
+
+  void writeSFixed64(int field, long value) throws IOException {
+    if (sizing) {
+      openSizes[depth] += CodedOutputStream.computeSFixed64Size(field, value);
+    } else {
+      out.writeSFixed64(field, value);
+    }
+  }
+
+  void writeDouble(int field, double value) throws IOException {
+    if (sizing) {
+      openSizes[depth] += CodedOutputStream.computeDoubleSize(field, value);
+    } else {
+      out.writeDouble(field, value);
+    }
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import java.net.URI;
+
+/**
+ * Sends the telemetry of resources with a given attribute value to their own New Relic account or
+ * region, for example one account per tenant of a shared platform. See {@link
+ * NewRelicSpanExporter.Builder#addRoute(ResourceRoute)}.
+ *
+ * @since 0.14.0
+ */
+public final class ResourceRoute {
+
+  private final String attributeKey;
+  private final String attributeValue;
+  private final String apiKey;
+  private final URI uriOverride;
+  private final URI eventUriOverride;
+  private final URI metricUriOverride;
+
+  private ResourceRoute(Builder builder) {
+    this.attributeKey = builder.attributeKey;
+    this.attributeValue = builder.attributeValue;
+    this.apiKey = builder.apiKey;
+    this.uriOverride = builder.uriOverride;
+    this.eventUriOverride = builder.eventUriOverride;
+    this.metricUriOverride = builder.metricUriOverride;
+  }
+
+  /**
+   * Creates a builder for a route that matches resources whose attribute has the given value.
+   *
+   * @param attributeKey the resource attribute to match on, for example {@code tenant.id}.
+   * @param attributeValue the value that the attribute must have, compared as a string.
+   * @return a new builder instance.
+   */
+  public static Builder newBuilder(String attributeKey, String attributeValue) {
+    return new Builder(attributeKey, attributeValue);
+  }
+
+  String getAttributeKey() {
+    return attributeKey;
+  }
+
+  String getAttributeValue() {
+    return attributeValue;
+  }
+
+  String getApiKey() {
+    return apiKey;
+  }
+
+  URI getUriOverride() {
+    return uriOverride;
+  }
+
+  URI getEventUriOverride() {
+    return eventUriOverride;
+  }
+
+  URI getMetricUriOverride() {
+    return metricUriOverride;
+  }
+
+  @Override
+  public String toString() {
+    return "ResourceRoute{" + attributeKey + "=" + attributeValue + "}";
+  }
+
+  /**
+   * Builder utility for a {@link ResourceRoute}.
+   *
+   * @since 0.14.0
+   */
+  public static class Builder {
+
+    private final String attributeKey;
+    private final String attributeValue;
+    private String apiKey;
+    private URI uriOverride;
+    private URI eventUriOverride;
+    private URI metricUriOverride;
+
+    private Builder(String attributeKey, String attributeValue) {
+      if (attributeKey == null || attributeKey.isEmpty() || attributeValue == null) {
+        throw new IllegalArgumentException("A route needs an attribute key and value to match");
+      }
+      this.attributeKey = attributeKey;
+      this.attributeValue = attributeValue;
+    }
+
+    /**
+     * Set the Insert API Key of the account that matching telemetry is sent to. This is required.
+     *
+     * @param apiKey the Insert API Key.
+     * @return this builder's instance
+     */
+    public Builder apiKey(String apiKey) {
+      this.apiKey = apiKey;
+      return this;
+    }
+
+    /**
+     * Set the trace API endpoint for matching spans, for example the EU endpoint. Defaults to the
+     * US endpoint.
+     *
+     * @param uriOverride the trace API endpoint.
+     * @return this builder's instance
+     */
+    public Builder uriOverride(URI uriOverride) {
+      this.uriOverride = uriOverride;
+      return this;
+    }
+
+    /**
+     * Set the Event API endpoint for matching span events and links. Defaults to the US endpoint.
+     *
+     * @param eventUriOverride the Event API endpoint.
+     * @return this builder's instance
+     */
+    public Builder eventUriOverride(URI eventUriOverride) {
+      this.eventUriOverride = eventUriOverride;
+      return this;
+    }
+
+    /**
+     * Set the Metric API endpoint for matching span metrics. Defaults to the US endpoint.
+     *
+     * @param metricUriOverride the Metric API endpoint.
+     * @return this builder's instance
+     */
+    public Builder metricUriOverride(URI metricUriOverride) {
+      this.metricUriOverride = metricUriOverride;
+      return this;
+    }
+
+    /**
+     * Constructs a new route based on the builder's values.
+     *
+     * @return a new ResourceRoute instance
+     */
+    public ResourceRoute build() {
+      if (apiKey == null || apiKey.isEmpty()) {
+        throw new IllegalArgumentException("You must provide an API key for the route");
+      }
+      return new ResourceRoute(this);
+    }
+  }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.internal.DaemonThreadFactory;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link SpanExporter} that wraps a {@link NewRelicSpanExporter} and puts exported spans into a
+ * preallocated, lock-free ring buffer, from which a dedicated consumer thread converts and sends
+ * them.
+ *
+ * <p>This makes {@link #export(Collection)} cheap and non-blocking, so that it can be called on
+ * application threads, for example from a {@link
+ * io.opentelemetry.sdk.trace.export.SimpleSpanProcessor}. The memory held for unsent spans is
+ * bounded by the ring's capacity. When the ring is full, spans are dropped rather than making the
+ * application wait, and counted in {@link #getDroppedCount()}.
+ *
+ * @since 0.14.0
+ */
+public class RingBufferSpanExporter implements SpanExporter {
+  private static final Logger logger = LoggerFactory.getLogger(RingBufferSpanExporter.class);
+
+  // how long the consumer sleeps when the ring is empty. Producers never wake it, so that export()
+  // stays free of any signalling cost. The sleep doubles while the ring stays empty, so that an
+  // idle exporter doesn't wake a thousand times a second.
+  private static final long MIN_IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final long MAX_IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private final NewRelicSpanExporter delegate;
+  private final SpanRingBuffer ring;
+  private final int maxExportBatchSize;
+  private final Thread consumer;
+  private final LongAdder dropped = new LongAdder();
+  private final Queue<PendingFlush> pendingFlushes = new ConcurrentLinkedQueue<>();
+  private volatile boolean running = true;
+  // set once the ring has been drained for the last time, after which anything left in it is lost.
+  private volatile boolean stopped = false;
+
+  RingBufferSpanExporter(
+      NewRelicSpanExporter delegate, SpanRingBuffer ring, int maxExportBatchSize) {
+    this.delegate = delegate;
+    this.ring = ring;
+    this.maxExportBatchSize = maxExportBatchSize;
+    this.consumer = new DaemonThreadFactory("newrelic-span-ring-consumer").newThread(this::consume);
+    consumer.start();
+  }
+
+  /**
+   * Creates a new builder that wraps the given exporter.
+   *
+   * @param delegate the exporter that converts and sends the spans taken from the ring.
+   * @return a new builder instance.
+   */
+  public static Builder newBuilder(NewRelicSpanExporter delegate) {
+    return new Builder(delegate);
+  }
+
+  /**
+   * Adds the spans to the ring buffer without blocking.
+   *
+   * @return a result that succeeds if every span fitted in the ring, and fails if any were dropped.
+   */
+  @Override
+  public CompletableResultCode export(Collection<SpanData> spans) {
+    if (!running) {
+      dropped.add(spans.size());
+      return CompletableResultCode.ofFailure();
+    }
+    int rejected = 0;
+    for (SpanData span : spans) {
+      if (!ring.offer(span)) {
+        rejected++;
+      }
+    }
+    if (rejected > 0) {
+      dropped.add(rejected);
+      return CompletableResultCode.ofFailure();
+    }
+    return CompletableResultCode.ofSuccess();
+  }
+
+  private void consume() {
+    List<SpanData> batch = new ArrayList<>(maxExportBatchSize);
+    long idleWaitNanos = MIN_IDLE_WAIT_NANOS;
+    while (running) {
+      if (ring.drainTo(batch, maxExportBatchSize) > 0) {
+        send(batch);
+        batch = new ArrayList<>(maxExportBatchSize);
+        idleWaitNanos = MIN_IDLE_WAIT_NANOS;
+      } else {
+        completeFlushes();
+        LockSupport.parkNanos(this, idleWaitNanos);
+        idleWaitNanos = Math.min(idleWaitNanos * 2, MAX_IDLE_WAIT_NANOS);
+      }
+    }
+    while (ring.drainTo(batch, maxExportBatchSize) > 0) {
+      send(batch);
+      batch = new ArrayList<>(maxExportBatchSize);
+    }
+    completeFlushes();
+  }
+
+  private void send(List<SpanData> batch) {
+    try {
+      delegate.export(batch);
+    } catch (RuntimeException e) {
+      logger.warn("Failed to export " + batch.size() + " spans from the ring buffer", e);
+    }
+  }
+
+  // hands each flush whose spans have all been taken from the ring on to the wrapped exporter.
+  private void completeFlushes() {
+    PendingFlush flush;
+    while ((flush = pendingFlushes.peek()) != null
+        && ring.getConsumedCount() >= flush.producedCount) {
+      pendingFlushes.poll();
+      CompletableResultCode result = flush.result;
+      CompletableResultCode delegateResult = delegate.flush();
+      delegateResult.whenComplete(
+          () -> {
+            if (delegateResult.isSuccess()) {
+              result.succeed();
+            } else {
+              result.fail();
+            }
+          });
+    }
+  }
+
+  /**
+   * Waits for the spans already in the ring to be taken by the consumer, then flushes the wrapped
+   * exporter.
+   *
+   * @return a result that completes when the wrapped exporter's flush does.
+   */
+  @Override
+  public CompletableResultCode flush() {
+    CompletableResultCode result = new CompletableResultCode();
+    if (!running) {
+      return result.fail();
+    }
+    PendingFlush flush = new PendingFlush(ring.getProducedCount(), result);
+    pendingFlushes.add(flush);
+    if (!running) {
+      // shutdown may have failed the pending flushes before this one was added, and the consumer
+      // won't complete it.
+      pendingFlushes.remove(flush);
+      return result.fail();
+    }
+    LockSupport.unpark(consumer);
+    return result;
+  }
+
+  @Override
+  public CompletableResultCode shutdown() {
+    stopConsumer(TimeUnit.SECONDS.toNanos(5));
+    return delegate.shutdown();
+  }
+
+  /**
+   * Sends what is left in the ring, then shuts down the wrapped exporter, spending no more than
+   * the given time on both together.
+   *
+   * @param timeout how long to wait for the ring to drain and outstanding batches to be sent.
+   * @param unit the unit of the timeout.
+   * @return a result that succeeds if nothing was dropped by the wrapped exporter, and fails
+   *     otherwise.
+   * @see NewRelicSpanExporter#shutdown(long, TimeUnit)
+   */
+  public CompletableResultCode shutdown(long timeout, TimeUnit unit) {
+    long deadlineNanos = System.nanoTime() + unit.toNanos(timeout);
+    stopConsumer(unit.toNanos(timeout));
+    long remainingNanos = Math.max(0, deadlineNanos - System.nanoTime());
+    return delegate.shutdown(remainingNanos, TimeUnit.NANOSECONDS);
+  }
+
+  private synchronized void stopConsumer(long timeoutNanos) {
+    running = false;
+    LockSupport.unpark(consumer);
+    try {
+      TimeUnit.NANOSECONDS.timedJoin(consumer, timeoutNanos);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (consumer.isAlive()) {
+      logger.warn("Timed out waiting for the span ring buffer to drain");
+    } else if (!stopped) {
+      // a producer that passed the running check in export() may have added spans after the
+      // consumer's last drain. The consumer is gone, so this thread can take them.
+      List<SpanData> batch = new ArrayList<>(maxExportBatchSize);
+      while (ring.drainTo(batch, maxExportBatchSize) > 0) {
+        send(batch);
+        batch = new ArrayList<>(maxExportBatchSize);
+      }
+      stopped = true;
+    }
+    PendingFlush flush;
+    while ((flush = pendingFlushes.poll()) != null) {
+      flush.result.fail();
+    }
+  }
+
+  /**
+   * The number of spans dropped because the ring buffer was full, or because they were exported
+   * during or after shutdown and were not sent. Spans that the wrapped exporter fails to send are
+   * counted by {@link NewRelicSpanExporter#getDroppedCount()} instead.
+   *
+   * @return the number of spans dropped by the ring buffer.
+   */
+  public long getDroppedCount() {
+    if (stopped) {
+      // spans that raced with shutdown into the ring after its last drain will never be taken.
+      return dropped.sum() + ring.getProducedCount() - ring.getConsumedCount();
+    }
+    return dropped.sum();
+  }
+
+  /**
+   * The number of spans waiting in the ring buffer, which is 0 once the exporter has shut down.
+   *
+   * @return the number of buffered spans.
+   */
+  public long getBufferedCount() {
+    if (stopped) {
+      return 0;
+    }
+    return Math.max(0, ring.getProducedCount() - ring.getConsumedCount());
+  }
+
+  private static class PendingFlush {
+    private final long producedCount;
+    private final CompletableResultCode result;
+
+    private PendingFlush(long producedCount, CompletableResultCode result) {
+      this.producedCount = producedCount;
+      this.result = result;
+    }
+  }
+
+  /**
+   * Builder utility for the {@link RingBufferSpanExporter}.
+   *
+   * @since 0.14.0
+   */
+  public static class Builder {
+
+    private final NewRelicSpanExporter delegate;
+    private int capacity = 8192;
+    private int maxExportBatchSize = 512;
+
+    private Builder(NewRelicSpanExporter delegate) {
+      if (delegate == null) {
+        throw new IllegalArgumentException("You must provide a non-null NewRelicSpanExporter");
+      }
+      this.delegate = delegate;
+    }
+
+    /**
+     * Set the number of spans the ring buffer holds, which is rounded up to a power of two. The
+     * ring's slots are allocated when the exporter is built, so memory use does not grow with load.
+     * Defaults to 8192.
+     *
+     * @param capacity the number of spans to hold, between 1 and 2^30.
+     * @return this builder's instance
+     */
+    public Builder capacity(int capacity) {
+      if (capacity < 1 || capacity > 1 << 30) {
+        throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+      }
+      this.capacity = capacity;
+      return this;
+    }
+
+    /**
+     * Set the most spans the consumer takes from the ring and hands to the wrapped exporter at
+     * once. Defaults to 512.
+     *
+     * @param maxExportBatchSize the batch size, at least 1.
+     * @return this builder's instance
+     */
+    public Builder maxExportBatchSize(int maxExportBatchSize) {
+      if (maxExportBatchSize < 1) {
+        throw new IllegalArgumentException("maxExportBatchSize must be at least 1");
+      }
+      this.maxExportBatchSize = maxExportBatchSize;
+      return this;
+    }
+
+    /**
+     * Constructs a new instance of the exporter based on the builder's values, and starts its
+     * consumer thread.
+     *
+     * @return a new RingBufferSpanExporter instance
+     */
+    public RingBufferSpanExporter build() {
+      return new RingBufferSpanExporter(
+          delegate, new SpanRingBuffer(capacity), maxExportBatchSize);
+    }
+  }
+}
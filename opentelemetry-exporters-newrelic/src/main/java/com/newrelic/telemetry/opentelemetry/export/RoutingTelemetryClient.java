@@ -0,0 +1,173 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import com.newrelic.telemetry.Attributes;
+import com.newrelic.telemetry.events.EventBatch;
+import com.newrelic.telemetry.events.EventBatchSender;
+import com.newrelic.telemetry.metrics.MetricBatch;
+import com.newrelic.telemetry.metrics.MetricBatchSender;
+import com.newrelic.telemetry.spans.SpanBatch;
+import com.newrelic.telemetry.spans.SpanBatchSender;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link DispatchingTelemetryClient} that hands batches whose common attributes match a {@link
+ * ResourceRoute} to that route's own client, and sends the rest itself.
+ *
+ * <p>The span adapter puts each resource's attributes into the common attributes of its batches,
+ * so batches are routed by resource. Each route has its own senders, executor, concurrency limit
+ * and retry queue, so a slow or failing account or region only holds back its own telemetry.
+ */
+class RoutingTelemetryClient extends DispatchingTelemetryClient {
+
+  private final List<Route> routes;
+
+  RoutingTelemetryClient(
+      MetricBatchSender metricBatchSender,
+      SpanBatchSender spanBatchSender,
+      EventBatchSender eventBatchSender,
+      ExecutorService sendExecutor,
+      AdaptiveConcurrencyLimiter limiter,
+      long shutdownTimeoutNanos,
+      int maxBatchSize,
+      List<Route> routes) {
+    super(
+        metricBatchSender,
+        spanBatchSender,
+        eventBatchSender,
+        sendExecutor,
+        limiter,
+        shutdownTimeoutNanos,
+        maxBatchSize);
+    this.routes = routes;
+  }
+
+  /**
+   * Creates a client that sends unrouted batches with the given senders, and routed batches with
+   * the clients of the given routes. Every client gets its own executor and concurrency limit.
+   */
+  static RoutingTelemetryClient create(
+      MetricBatchSender metricBatchSender,
+      SpanBatchSender spanBatchSender,
+      EventBatchSender eventBatchSender,
+      boolean useVirtualThreads,
+      int maxConcurrentSends,
+      int maxBatchSize,
+      long shutdownTimeoutNanos,
+      List<Route> routes) {
+    return new RoutingTelemetryClient(
+        metricBatchSender,
+        spanBatchSender,
+        eventBatchSender,
+        newSendExecutor(useVirtualThreads, maxConcurrentSends),
+        newLimiter(maxConcurrentSends),
+        shutdownTimeoutNanos,
+        maxBatchSize,
+        routes);
+  }
+
+  @Override
+  public void sendBatch(MetricBatch batch) {
+    DispatchingTelemetryClient client = routeFor(batch.getCommonAttributes());
+    if (client == null) {
+      super.sendBatch(batch);
+    } else {
+      client.sendBatch(batch);
+    }
+  }
+
+  @Override
+  public void sendBatch(SpanBatch batch) {
+    DispatchingTelemetryClient client = routeFor(batch.getCommonAttributes());
+    if (client == null) {
+      super.sendBatch(batch);
+    } else {
+      client.sendBatch(batch);
+    }
+  }
+
+  @Override
+  public void sendBatch(EventBatch batch) {
+    DispatchingTelemetryClient client = routeFor(batch.getCommonAttributes());
+    if (client == null) {
+      super.sendBatch(batch);
+    } else {
+      client.sendBatch(batch);
+    }
+  }
+
+  // the first matching route wins. null means the batch belongs to the default account.
+  private DispatchingTelemetryClient routeFor(Attributes commonAttributes) {
+    if (commonAttributes == null) {
+      return null;
+    }
+    Map<String, Object> attributes = commonAttributes.asMap();
+    for (Route route : routes) {
+      Object value = attributes.get(route.attributeKey);
+      if (value != null && route.attributeValue.equals(value.toString())) {
+        return route.client;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  CompletableResultCode flush(long timeout, TimeUnit unit) {
+    List<CompletableResultCode> results = new ArrayList<>(routes.size() + 1);
+    results.add(super.flush(timeout, unit));
+    for (Route route : routes) {
+      results.add(route.client.flush(timeout, unit));
+    }
+    return CompletableResultCode.ofAll(results);
+  }
+
+  /** Shuts down every route and the default client within the one time budget. */
+  @Override
+  CompletableResultCode shutdown(long timeout, TimeUnit unit) {
+    long deadlineNanos = System.nanoTime() + unit.toNanos(timeout);
+    // drain every route at once, so that the routes don't wait on each other.
+    flush(timeout, unit).join(timeout, unit);
+    List<CompletableResultCode> results = new ArrayList<>(routes.size() + 1);
+    for (Route route : routes) {
+      results.add(route.client.shutdown(remainingNanos(deadlineNanos), TimeUnit.NANOSECONDS));
+    }
+    results.add(super.shutdown(remainingNanos(deadlineNanos), TimeUnit.NANOSECONDS));
+    return CompletableResultCode.ofAll(results);
+  }
+
+  private static long remainingNanos(long deadlineNanos) {
+    return Math.max(0, deadlineNanos - System.nanoTime());
+  }
+
+  /** The dropped count of the default client and every route together. */
+  @Override
+  long getDroppedCount() {
+    long dropped = super.getDroppedCount();
+    for (Route route : routes) {
+      dropped += route.client.getDroppedCount();
+    }
+    return dropped;
+  }
+
+  /** A resource attribute value, and the client that sends the batches that have it. */
+  static class Route {
+    private final String attributeKey;
+    private final String attributeValue;
+    private final DispatchingTelemetryClient client;
+
+    Route(String attributeKey, String attributeValue, DispatchingTelemetryClient client) {
+      this.attributeKey = attributeKey;
+      this.attributeValue = attributeValue;
+      this.client = client;
+    }
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import io.opentelemetry.sdk.internal.DaemonThreadFactory;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Creates the executors that the exporters send batches on. */
+class SendExecutors {
+  private static final Logger logger = LoggerFactory.getLogger(SendExecutors.class);
+
+  static final int DEFAULT_PLATFORM_THREADS = Runtime.getRuntime().availableProcessors();
+
+  private SendExecutors() {}
+
+  /**
+   * Creates an executor that runs each send on its own virtual thread, if the running JVM supports
+   * them. Otherwise, falls back to a fixed pool of daemon platform threads.
+   *
+   * @param fallbackThreads the size of the platform thread pool to use on older JVMs.
+   * @return a new executor
+   */
+  static ExecutorService newVirtualThreadExecutor(int fallbackThreads) {
+    try {
+      // the exporters are compiled for Java 8, so this has to be looked up reflectively.
+      Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) method.invoke(null);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      logger.info(
+          "Virtual threads are not available on this JVM, sending on "
+              + fallbackThreads
+              + " platform threads instead.");
+      return newPlatformThreadExecutor(fallbackThreads);
+    }
+  }
+
+  /**
+   * Creates a fixed pool of daemon platform threads.
+   *
+   * @param threads the number of threads in the pool.
+   * @return a new executor
+   */
+  static ExecutorService newPlatformThreadExecutor(int threads) {
+    return Executors.newFixedThreadPool(threads, new DaemonThreadFactory("newrelic-exporter-send"));
+  }
+}
@@ -8,36 +8,72 @@ package com.newrelic.telemetry.opentelemetry.export;
 import static com.newrelic.telemetry.opentelemetry.export.AttributeNames.COLLECTOR_NAME;
 import static com.newrelic.telemetry.opentelemetry.export.AttributeNames.ERROR_MESSAGE;
 import static com.newrelic.telemetry.opentelemetry.export.AttributeNames.INSTRUMENTATION_PROVIDER;
+import static com.newrelic.telemetry.opentelemetry.export.AttributeNames.LINKED_SPAN_ID;
+import static com.newrelic.telemetry.opentelemetry.export.AttributeNames.LINKED_TRACE_ID;
 import static com.newrelic.telemetry.opentelemetry.export.AttributeNames.SERVICE_INSTANCE_ID;
+import static com.newrelic.telemetry.opentelemetry.export.AttributeNames.SPAN_EVENT_NAME;
+import static com.newrelic.telemetry.opentelemetry.export.AttributeNames.SPAN_ID;
 import static com.newrelic.telemetry.opentelemetry.export.AttributeNames.SPAN_KIND;
+import static com.newrelic.telemetry.opentelemetry.export.AttributeNames.SPAN_LINK_ID;
+import static com.newrelic.telemetry.opentelemetry.export.AttributeNames.TRACE_ID;
 import static com.newrelic.telemetry.opentelemetry.export.AttributesSupport.addResourceAttributes;
+import static com.newrelic.telemetry.opentelemetry.export.AttributesSupport.libraryInfoFragment;
 import static com.newrelic.telemetry.opentelemetry.export.AttributesSupport.populateLibraryInfo;
 import static com.newrelic.telemetry.opentelemetry.export.AttributesSupport.putInAttributes;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.stream.Collectors.groupingBy;
 
 import com.newrelic.telemetry.Attributes;
+import com.newrelic.telemetry.events.Event;
+import com.newrelic.telemetry.events.EventBatch;
 import com.newrelic.telemetry.spans.Span;
 import com.newrelic.telemetry.spans.Span.SpanBuilder;
 import com.newrelic.telemetry.spans.SpanBatch;
 import io.opentelemetry.api.trace.SpanId;
+import io.opentelemetry.sdk.common.InstrumentationLibraryInfo;
 import io.opentelemetry.sdk.resources.Resource;
 import io.opentelemetry.sdk.trace.data.SpanData;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 class SpanBatchAdapter {
 
+  static final String SPAN_EVENT_TYPE = "SpanEvent";
+  static final String SPAN_LINK_TYPE = "SpanLink";
+
   private final Attributes commonAttributes;
+  private final boolean groupByInstrumentationLibrary;
+  private final boolean exportEventsAndLinks;
+  private final boolean useThreadLocalPools;
 
   /**
    * Note: the serviceInstanceId passed in here will only be used if the OTel Resource that is
    * associated with a span does not already contain an instance id. See {@link
    * io.opentelemetry.sdk.resources.ResourceAttributes#SERVICE_INSTANCE}.
+   *
+   * <p>When groupByInstrumentationLibrary is true, spans are batched by both their Resource and
+   * their InstrumentationLibraryInfo, and the instrumentation name and version are sent once, in
+   * the batch's common attributes, rather than on every span. When exportEventsAndLinks is true,
+   * {@link #adaptToEventBatches(Collection)} turns span events and links into New Relic SpanEvent
+   * and SpanLink events. When useThreadLocalPools is true, the map and lists that spans are grouped
+   * into are taken from a per-thread {@link SpanGroups} pool and reused by later exports on the
+   * same thread.
    */
-  SpanBatchAdapter(Attributes commonAttributes, String serviceInstanceId) {
+  SpanBatchAdapter(
+      Attributes commonAttributes,
+      String serviceInstanceId,
+      boolean groupByInstrumentationLibrary,
+      boolean exportEventsAndLinks,
+      boolean useThreadLocalPools) {
+    this.useThreadLocalPools = useThreadLocalPools;
+    this.groupByInstrumentationLibrary = groupByInstrumentationLibrary;
+    this.exportEventsAndLinks = exportEventsAndLinks;
     this.commonAttributes =
         commonAttributes
             .copy()
@@ -46,7 +82,17 @@ class SpanBatchAdapter {
             .put(SERVICE_INSTANCE_ID, serviceInstanceId);
   }
 
+  Attributes getCommonAttributes() {
+    return commonAttributes;
+  }
+
   Collection<SpanBatch> adaptToSpanBatches(Collection<SpanData> openTracingSpans) {
+    if (useThreadLocalPools) {
+      return adaptToSpanBatchesWithPool(openTracingSpans);
+    }
+    if (groupByInstrumentationLibrary) {
+      return adaptToSpanBatchesByLibrary(openTracingSpans);
+    }
     Map<Resource, List<SpanData>> spansGroupedByResource =
         openTracingSpans.stream().collect(groupingBy(SpanData::getResource));
     return spansGroupedByResource
@@ -58,21 +104,142 @@ class SpanBatchAdapter {
         .collect(Collectors.toList());
   }
 
+  /**
+   * Turns the events and links of the given spans into New Relic events, batched by Resource with
+   * the same common attributes as the spans.
+   *
+   * <p>Each event only carries its own attributes plus the ids that tie it to its span. The
+   * resource and service attributes are sent once per batch, and the span's own attributes are not
+   * repeated at all.
+   *
+   * @return the event batches, which are empty unless event and link export is enabled.
+   */
+  Collection<EventBatch> adaptToEventBatches(Collection<SpanData> spans) {
+    if (!exportEventsAndLinks) {
+      return Collections.emptyList();
+    }
+    Map<Resource, List<Event>> eventsByResource = new HashMap<>();
+    for (SpanData span : spans) {
+      List<SpanData.Event> spanEvents = span.getEvents();
+      List<SpanData.Link> spanLinks = span.getLinks();
+      boolean hasEvents = spanEvents != null && !spanEvents.isEmpty();
+      boolean hasLinks = spanLinks != null && !spanLinks.isEmpty();
+      if (!hasEvents && !hasLinks) {
+        continue;
+      }
+      List<Event> events =
+          eventsByResource.computeIfAbsent(span.getResource(), resource -> new ArrayList<>());
+      if (hasEvents) {
+        addSpanEvents(span, spanEvents, events);
+      }
+      if (hasLinks) {
+        addSpanLinks(span, spanLinks, events);
+      }
+    }
+    List<EventBatch> batches = new ArrayList<>(eventsByResource.size());
+    eventsByResource.forEach(
+        (resource, events) ->
+            batches.add(
+                new EventBatch(events, addResourceAttributes(commonAttributes.copy(), resource))));
+    return batches;
+  }
+
+  private static void addSpanEvents(
+      SpanData span, List<SpanData.Event> spanEvents, List<Event> events) {
+    for (SpanData.Event spanEvent : spanEvents) {
+      Attributes attributes =
+          new Attributes()
+              .put(TRACE_ID, span.getTraceId())
+              .put(SPAN_ID, span.getSpanId())
+              .put(SPAN_EVENT_NAME, spanEvent.getName());
+      putInAttributes(attributes, spanEvent.getAttributes());
+      events.add(
+          new Event(
+              SPAN_EVENT_TYPE, attributes, NANOSECONDS.toMillis(spanEvent.getEpochNanos())));
+    }
+  }
+
+  private static void addSpanLinks(
+      SpanData span, List<SpanData.Link> spanLinks, List<Event> events) {
+    long timestamp = calculateTimestampMillis(span);
+    for (SpanData.Link spanLink : spanLinks) {
+      Attributes attributes =
+          new Attributes()
+              .put(TRACE_ID, span.getTraceId())
+              .put(SPAN_LINK_ID, span.getSpanId())
+              .put(LINKED_TRACE_ID, spanLink.getContext().getTraceIdAsHexString())
+              .put(LINKED_SPAN_ID, spanLink.getContext().getSpanIdAsHexString());
+      putInAttributes(attributes, spanLink.getAttributes());
+      events.add(new Event(SPAN_LINK_TYPE, attributes, timestamp));
+    }
+  }
+
+  private Collection<SpanBatch> adaptToSpanBatchesByLibrary(Collection<SpanData> spans) {
+    Map<BatchKey, List<SpanData>> spansGroupedByLibrary =
+        spans.stream().collect(groupingBy(BatchKey::new));
+    List<SpanBatch> batches = new ArrayList<>(spansGroupedByLibrary.size());
+    spansGroupedByLibrary.forEach(
+        (key, librarySpans) -> batches.add(makeLibraryBatch(key, librarySpans)));
+    return batches;
+  }
+
+  // the same batches as the stream-based paths above, but grouped into pooled collections, and
+  // with a single lookup key reused for every span.
+  private Collection<SpanBatch> adaptToSpanBatchesWithPool(Collection<SpanData> spans) {
+    SpanGroups groups = SpanGroups.forCurrentThread();
+    try {
+      BatchKey lookupKey = new BatchKey();
+      for (SpanData span : spans) {
+        Object key = groupByInstrumentationLibrary ? lookupKey.of(span) : span.getResource();
+        List<SpanData> group = groups.get(key);
+        if (group == null) {
+          group = groups.newGroup(groupByInstrumentationLibrary ? new BatchKey(span) : key);
+        }
+        group.add(span);
+      }
+      List<SpanBatch> batches = new ArrayList<>(groups.size());
+      groups.forEach(
+          (key, group) ->
+              batches.add(
+                  groupByInstrumentationLibrary
+                      ? makeLibraryBatch((BatchKey) key, group)
+                      : makeBatch((Resource) key, group, commonAttributes)));
+      return batches;
+    } finally {
+      groups.recycle();
+    }
+  }
+
+  private SpanBatch makeLibraryBatch(BatchKey key, List<SpanData> spans) {
+    Attributes attributes = addResourceAttributes(commonAttributes.copy(), key.resource);
+    if (key.instrumentationLibraryInfo != null) {
+      attributes.putAll(libraryInfoFragment(key.instrumentationLibraryInfo));
+    }
+    List<Span> newRelicSpans = new ArrayList<>(spans.size());
+    for (SpanData span : spans) {
+      newRelicSpans.add(makeNewRelicSpan(span, false));
+    }
+    return new SpanBatch(newRelicSpans, attributes);
+  }
+
   private SpanBatch makeBatch(
       Resource resource, List<SpanData> spans, Attributes commonAttributes) {
     Attributes attributes = addResourceAttributes(commonAttributes.copy(), resource);
-    List<Span> newRelicSpans =
-        spans.stream().map(SpanBatchAdapter::makeNewRelicSpan).collect(Collectors.toList());
+    List<Span> newRelicSpans = new ArrayList<>(spans.size());
+    for (SpanData span : spans) {
+      newRelicSpans.add(makeNewRelicSpan(span, true));
+    }
     return new SpanBatch(newRelicSpans, attributes);
   }
 
-  private static com.newrelic.telemetry.spans.Span makeNewRelicSpan(SpanData span) {
+  private static com.newrelic.telemetry.spans.Span makeNewRelicSpan(
+      SpanData span, boolean includeLibraryInfo) {
     SpanBuilder spanBuilder =
         com.newrelic.telemetry.spans.Span.builder(span.getSpanId())
             .name(span.getName().isEmpty() ? null : span.getName())
             .parentId(makeParentSpanId(span.getParentSpanId()))
             .traceId(span.getTraceId())
-            .attributes(generateSpanAttributes(span));
+            .attributes(generateSpanAttributes(span, includeLibraryInfo));
 
     spanBuilder.timestamp(calculateTimestampMillis(span));
     spanBuilder.durationMs(calculateDuration(span));
@@ -86,11 +253,13 @@ class SpanBatchAdapter {
     return null;
   }
 
-  private static Attributes generateSpanAttributes(SpanData span) {
+  private static Attributes generateSpanAttributes(SpanData span, boolean includeLibraryInfo) {
     Attributes attributes = new Attributes();
     attributes = createIntrinsicAttributes(span, attributes);
     attributes = addPossibleErrorAttribute(span, attributes);
-    attributes = addPossibleInstrumentationAttributes(span, attributes);
+    if (includeLibraryInfo) {
+      attributes = addPossibleInstrumentationAttributes(span, attributes);
+    }
     return attributes;
   }
 
@@ -135,4 +304,36 @@ class SpanBatchAdapter {
   private static long calculateTimestampMillis(SpanData span) {
     return NANOSECONDS.toMillis(span.getStartEpochNanos());
   }
+
+  private static class BatchKey {
+    // only modified on lookup keys, which are never stored in a map.
+    private Resource resource;
+    private InstrumentationLibraryInfo instrumentationLibraryInfo;
+
+    private BatchKey() {}
+
+    private BatchKey(SpanData span) {
+      of(span);
+    }
+
+    private BatchKey of(SpanData span) {
+      this.resource = span.getResource();
+      this.instrumentationLibraryInfo = span.getInstrumentationLibraryInfo();
+      return this;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      BatchKey key = (BatchKey) o;
+      return Objects.equals(resource, key.resource)
+          && Objects.equals(instrumentationLibraryInfo, key.instrumentationLibraryInfo);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * Objects.hashCode(resource) + Objects.hashCode(instrumentationLibraryInfo);
+    }
+  }
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import io.opentelemetry.sdk.trace.data.SpanData;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Drops spans whose (trace id, span id) has already been seen, using two Bloom filters of fixed
+ * size that take turns being filled.
+ *
+ * <p>New spans are recorded in the current filter. Once it holds {@code capacity} spans, the older
+ * filter is cleared and becomes the current one, so a span is recognized as a duplicate if it
+ * arrives within at least the next {@code capacity} spans after the original. Memory use depends
+ * only on the capacity and the false positive rate, not on throughput. A false positive drops a
+ * span that was not a duplicate, so the rate should be kept small.
+ */
+class SpanDeduplicator {
+
+  private final int capacity;
+  private final long bitCount;
+  private final int hashCount;
+  private long[] current;
+  private long[] previous;
+  private int currentSize = 0;
+
+  /**
+   * @param capacity how many spans to record in a filter before rotating.
+   * @param falsePositiveRate the chance of taking a new span for a duplicate, when both filters are
+   *     full.
+   */
+  SpanDeduplicator(int capacity, double falsePositiveRate) {
+    if (capacity < 1 || !(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+      throw new IllegalArgumentException(
+          "Invalid deduplication settings, capacity: "
+              + capacity
+              + " false positive rate: "
+              + falsePositiveRate);
+    }
+    // two full filters are checked, so each gets half of the allowed false positive rate.
+    double perFilterRate = falsePositiveRate / 2;
+    long bits = (long) Math.ceil(-capacity * Math.log(perFilterRate) / (Math.log(2) * Math.log(2)));
+    int words = (int) Math.min(Integer.MAX_VALUE, (bits + 63) / 64);
+    this.capacity = capacity;
+    this.bitCount = words * 64L;
+    this.hashCount = Math.max(1, (int) Math.round((double) bitCount / capacity * Math.log(2)));
+    this.current = new long[words];
+    this.previous = new long[words];
+  }
+
+  /**
+   * Returns the spans that have not been seen before, in their original order, and records them.
+   *
+   * @param spans the spans to check.
+   * @return the spans that are not duplicates.
+   */
+  synchronized Collection<SpanData> removeDuplicates(Collection<SpanData> spans) {
+    List<SpanData> unique = new ArrayList<>(spans.size());
+    for (SpanData span : spans) {
+      if (add(span.getTraceId(), span.getSpanId())) {
+        unique.add(span);
+      }
+    }
+    return unique;
+  }
+
+  /**
+   * Records the span, unless it has been seen before.
+   *
+   * @return true if the span was not seen before.
+   */
+  private boolean add(String traceId, String spanId) {
+    long hash = hash(traceId, spanId);
+    long h1 = mix(hash);
+    // an odd step visits different bits for each of the k hashes.
+    long h2 = mix(hash ^ 0x9e3779b97f4a7c15L) | 1;
+    if (mightContain(current, h1, h2) || mightContain(previous, h1, h2)) {
+      return false;
+    }
+    if (currentSize == capacity) {
+      long[] cleared = previous;
+      Arrays.fill(cleared, 0);
+      previous = current;
+      current = cleared;
+      currentSize = 0;
+    }
+    for (int i = 0; i < hashCount; i++) {
+      long bit = Math.floorMod(h1 + i * h2, bitCount);
+      current[(int) (bit >>> 6)] |= 1L << bit;
+    }
+    currentSize++;
+    return true;
+  }
+
+  private boolean mightContain(long[] filter, long h1, long h2) {
+    for (int i = 0; i < hashCount; i++) {
+      long bit = Math.floorMod(h1 + i * h2, bitCount);
+      if ((filter[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  long getMemoryBytes() {
+    return 2 * bitCount / 8;
+  }
+
+  // FNV-1a over the characters of both ids, which are ASCII hex.
+  private static long hash(String traceId, String spanId) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < traceId.length(); i++) {
+      hash = (hash ^ traceId.charAt(i)) * 0x100000001b3L;
+    }
+    for (int i = 0; i < spanId.length(); i++) {
+      hash = (hash ^ spanId.charAt(i)) * 0x100000001b3L;
+    }
+    return hash;
+  }
+
+  // the MurmurHash3 finalizer, to spread FNV's weak low bits over the whole word.
+  private static long mix(long hash) {
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
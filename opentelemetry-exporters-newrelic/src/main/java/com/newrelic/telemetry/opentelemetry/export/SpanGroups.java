@@ -0,0 +1,80 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import io.opentelemetry.sdk.trace.data.SpanData;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * A per-thread pool of the map and lists that {@link SpanBatchAdapter} groups spans into before
+ * turning each group into a batch. The groups are only scratch space: the batches hold their own
+ * lists of New Relic spans, so everything here is recycled as soon as the batches are built, and
+ * nothing has to wait for the batches to be sent.
+ *
+ * <p>Instances must only be used by the thread that took them from {@link #forCurrentThread()}.
+ */
+class SpanGroups {
+
+  private static final ThreadLocal<SpanGroups> pool = ThreadLocal.withInitial(SpanGroups::new);
+
+  // lists that grew beyond this are left for the garbage collector, so that one unusually large
+  // export doesn't pin its arrays to the thread forever.
+  private static final int MAX_RETAINED_LIST_SIZE = 4_096;
+  private static final int MAX_RETAINED_LISTS = 64;
+
+  private final Map<Object, List<SpanData>> groups = new HashMap<>();
+  private final Deque<ArrayList<SpanData>> spareLists = new ArrayDeque<>();
+
+  private SpanGroups() {}
+
+  static SpanGroups forCurrentThread() {
+    return pool.get();
+  }
+
+  /**
+   * The group for the given key.
+   *
+   * @return the group, or null if no span has been added under that key since the last recycle.
+   */
+  List<SpanData> get(Object key) {
+    return groups.get(key);
+  }
+
+  /**
+   * Starts a new, empty group. The key is kept until {@link #recycle()}, so it must not be a
+   * lookup key that is modified afterwards.
+   */
+  List<SpanData> newGroup(Object key) {
+    List<SpanData> group = spareLists.isEmpty() ? new ArrayList<>() : spareLists.pop();
+    groups.put(key, group);
+    return group;
+  }
+
+  int size() {
+    return groups.size();
+  }
+
+  void forEach(BiConsumer<Object, List<SpanData>> action) {
+    groups.forEach(action);
+  }
+
+  /** Empties the groups and keeps their lists for the next export on this thread. */
+  void recycle() {
+    for (List<SpanData> group : groups.values()) {
+      if (group.size() <= MAX_RETAINED_LIST_SIZE && spareLists.size() < MAX_RETAINED_LISTS) {
+        group.clear();
+        spareLists.push((ArrayList<SpanData>) group);
+      }
+    }
+    groups.clear();
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import static com.newrelic.telemetry.opentelemetry.export.AttributeNames.SPAN_KIND;
+import static com.newrelic.telemetry.opentelemetry.export.AttributesSupport.addResourceAttributes;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.newrelic.telemetry.Attributes;
+import com.newrelic.telemetry.metrics.Metric;
+import com.newrelic.telemetry.metrics.MetricBatch;
+import com.newrelic.telemetry.metrics.Summary;
+import io.opentelemetry.api.trace.Span.Kind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.sdk.common.Clock;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Aggregates exported spans into request rate, error rate and duration (RED) metrics, so that they
+ * stay accurate when only a sample of the spans is sent on to New Relic.
+ *
+ * <p>Spans are recorded as they are exported, into one {@code span.duration} summary per resource,
+ * span name, span kind and status code, until the summaries are harvested. Each harvest covers the
+ * interval since the one before it: the summary's count is the number of spans recorded in that
+ * interval, and its sum, min and max are their durations in milliseconds. The resource's
+ * attributes, including {@code service.name}, are the common attributes of each batch.
+ */
+class SpanMetricsAggregator {
+
+  static final String DURATION_METRIC_NAME = "span.duration";
+  static final String SPAN_NAME = "span.name";
+  static final String STATUS_CODE = "otel.status_code";
+
+  private final Attributes commonAttributes;
+  private final Clock clock;
+  // guarded by this, and swapped for an empty map on each harvest.
+  private Map<Key, Accumulator> accumulators = new HashMap<>();
+  private long intervalStartEpochNanos;
+
+  /**
+   * @param commonAttributes the attributes to attach to every metric batch, in addition to the
+   *     resource attributes.
+   * @param clock the clock to time harvest intervals with.
+   */
+  SpanMetricsAggregator(Attributes commonAttributes, Clock clock) {
+    this.commonAttributes = commonAttributes;
+    this.clock = clock;
+    this.intervalStartEpochNanos = clock.now();
+  }
+
+  synchronized void record(Collection<SpanData> spans) {
+    for (SpanData span : spans) {
+      accumulators.computeIfAbsent(new Key(span), key -> new Accumulator()).record(span);
+    }
+  }
+
+  /**
+   * Takes the summaries recorded since the last harvest, and starts a new interval.
+   *
+   * @return one metric batch per resource that spans were recorded for, or none if there were no
+   *     spans.
+   */
+  Collection<MetricBatch> harvest() {
+    Map<Key, Accumulator> harvested;
+    long startEpochNanos;
+    long endEpochNanos;
+    synchronized (this) {
+      endEpochNanos = clock.now();
+      harvested = accumulators;
+      startEpochNanos = intervalStartEpochNanos;
+      accumulators = new HashMap<>();
+      intervalStartEpochNanos = endEpochNanos;
+    }
+    Map<Resource, List<Metric>> metricsByResource = new HashMap<>();
+    harvested.forEach(
+        (key, accumulator) ->
+            metricsByResource
+                .computeIfAbsent(key.resource, resource -> new ArrayList<>())
+                .add(accumulator.toSummary(key, startEpochNanos, endEpochNanos)));
+    List<MetricBatch> batches = new ArrayList<>(metricsByResource.size());
+    metricsByResource.forEach(
+        (resource, metrics) -> {
+          Attributes attributes = addResourceAttributes(commonAttributes.copy(), resource);
+          batches.add(new MetricBatch(metrics, attributes));
+        });
+    return batches;
+  }
+
+  private static class Accumulator {
+    private int count = 0;
+    private double sumMs = 0;
+    private double minMs = Double.POSITIVE_INFINITY;
+    private double maxMs = Double.NEGATIVE_INFINITY;
+
+    private void record(SpanData span) {
+      double durationMs = (span.getEndEpochNanos() - span.getStartEpochNanos()) / 1_000_000d;
+      count++;
+      sumMs += durationMs;
+      minMs = Math.min(minMs, durationMs);
+      maxMs = Math.max(maxMs, durationMs);
+    }
+
+    private Summary toSummary(Key key, long startEpochNanos, long endEpochNanos) {
+      Attributes attributes =
+          new Attributes()
+              .put(SPAN_NAME, key.name)
+              .put(SPAN_KIND, key.kind.name())
+              .put(STATUS_CODE, key.statusCode.name());
+      return new Summary(
+          DURATION_METRIC_NAME,
+          count,
+          sumMs,
+          minMs,
+          maxMs,
+          NANOSECONDS.toMillis(startEpochNanos),
+          NANOSECONDS.toMillis(endEpochNanos),
+          attributes);
+    }
+  }
+
+  private static class Key {
+    private final Resource resource;
+    private final String name;
+    private final Kind kind;
+    private final StatusCode statusCode;
+
+    private Key(SpanData span) {
+      this.resource = span.getResource();
+      this.name = span.getName();
+      this.kind = span.getKind() == null ? Kind.INTERNAL : span.getKind();
+      this.statusCode =
+          span.getStatus() == null ? StatusCode.UNSET : span.getStatus().getStatusCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      Key key = (Key) o;
+      return kind == key.kind
+          && statusCode == key.statusCode
+          && Objects.equals(name, key.name)
+          && Objects.equals(resource, key.resource);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(resource, name, kind, statusCode);
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import io.opentelemetry.sdk.trace.data.SpanData;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free queue of spans for many producer threads and a single consumer thread, in
+ * the style of Dmitry Vyukov's bounded MPMC queue. All slots are allocated up front, and producers
+ * never block: when the ring is full, {@link #offer(SpanData)} returns false straight away.
+ *
+ * <p>Each slot carries a sequence number that says whose turn it is. A slot at position p is free
+ * for the producer that claims p when its sequence is p, and holds a span for the consumer when its
+ * sequence is p + 1. Producers claim positions by advancing the tail with a compare-and-set.
+ */
+class SpanRingBuffer {
+
+  private final int capacity;
+  private final int mask;
+  private final AtomicReferenceArray<SpanData> slots;
+  private final AtomicLongArray sequences;
+  private final AtomicLong tail = new AtomicLong();
+  // only written by the consumer thread
+  private volatile long head = 0;
+
+  /** @param capacity the number of slots, rounded up to a power of two. */
+  SpanRingBuffer(int capacity) {
+    if (capacity < 1 || capacity > 1 << 30) {
+      throw new IllegalArgumentException("Invalid ring buffer capacity: " + capacity);
+    }
+    this.capacity = ceilPowerOfTwo(capacity);
+    this.mask = this.capacity - 1;
+    this.slots = new AtomicReferenceArray<>(this.capacity);
+    this.sequences = new AtomicLongArray(this.capacity);
+    for (int i = 0; i < this.capacity; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  /**
+   * Adds a span to the ring, if there is room. Safe to call from any thread.
+   *
+   * @return false if the ring was full, and the span was not added.
+   */
+  boolean offer(SpanData span) {
+    long position = tail.get();
+    while (true) {
+      int index = (int) (position & mask);
+      long difference = sequences.get(index) - position;
+      if (difference == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          slots.lazySet(index, span);
+          sequences.lazySet(index, position + 1);
+          return true;
+        }
+        position = tail.get();
+      } else if (difference < 0) {
+        // the consumer hasn't freed this slot since the last lap
+        return false;
+      } else {
+        // another producer claimed this position first
+        position = tail.get();
+      }
+    }
+  }
+
+  /**
+   * Moves up to {@code max} spans out of the ring, in the order they were added. Must only be
+   * called from the consumer thread.
+   *
+   * @return the number of spans moved.
+   */
+  int drainTo(Collection<SpanData> out, int max) {
+    long position = head;
+    int drained = 0;
+    while (drained < max) {
+      int index = (int) (position & mask);
+      if (sequences.get(index) != position + 1) {
+        // empty, or a producer has claimed the slot but not filled it yet
+        break;
+      }
+      out.add(slots.get(index));
+      slots.lazySet(index, null);
+      sequences.lazySet(index, position + capacity);
+      position++;
+      drained++;
+    }
+    head = position;
+    return drained;
+  }
+
+  /** @return the number of positions claimed by producers so far. */
+  long getProducedCount() {
+    return tail.get();
+  }
+
+  /** @return the number of spans taken by the consumer so far. */
+  long getConsumedCount() {
+    return head;
+  }
+
+  int getCapacity() {
+    return capacity;
+  }
+
+  private static int ceilPowerOfTwo(int value) {
+    int highest = Integer.highestOneBit(value);
+    return highest == value ? value : highest << 1;
+  }
+}
@@ -8,6 +8,13 @@ package com.newrelic.telemetry.opentelemetry.export;
 import io.opentelemetry.sdk.common.Clock;
 import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Tracks a single, exporter-wide "previous harvest" time.
+ *
+ * @deprecated Count intervals are now tracked per series by {@link MetricPointAdapter}, since one
+ *     shared timestamp can't describe series exported by several readers or by slow exports.
+ */
+@Deprecated
 public class TimeTracker {
 
   private final Clock clock;
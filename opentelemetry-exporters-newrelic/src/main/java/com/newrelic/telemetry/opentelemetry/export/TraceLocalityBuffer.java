@@ -0,0 +1,141 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanId;
+import io.opentelemetry.sdk.common.Clock;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds exported spans back for a short window, grouped by trace id, so that the spans of a trace
+ * are sent together rather than spread over several exports.
+ *
+ * <p>A trace is released as soon as its local root span (a span with no parent, or with a remote
+ * parent) has been exported, since the root usually ends last. Otherwise it is released once the
+ * window has passed since its first span arrived. If more than the configured number of spans are
+ * held, the oldest traces are released early to stay under the cap.
+ *
+ * <p>Released spans are always grouped by trace, so that a batch that has to be split is split
+ * between traces wherever possible.
+ */
+class TraceLocalityBuffer {
+
+  private final Clock clock;
+  private final long windowNanos;
+  private final int maxBufferedSpans;
+  // in order of each trace's first span, so the oldest traces are always first.
+  private final Map<String, PendingTrace> traces = new LinkedHashMap<>();
+  private int bufferedSpans = 0;
+
+  TraceLocalityBuffer(Clock clock, long windowNanos, int maxBufferedSpans) {
+    if (windowNanos <= 0 || maxBufferedSpans < 1) {
+      throw new IllegalArgumentException(
+          "Invalid trace buffer, window: " + windowNanos + "ns max spans: " + maxBufferedSpans);
+    }
+    this.clock = clock;
+    this.windowNanos = windowNanos;
+    this.maxBufferedSpans = maxBufferedSpans;
+  }
+
+  /**
+   * Buffer the given spans.
+   *
+   * @param spans the spans that were just exported.
+   * @return the spans of every trace that is now ready to send, which may include traces buffered
+   *     by earlier calls.
+   */
+  synchronized List<SpanData> add(Collection<SpanData> spans) {
+    long now = clock.nanoTime();
+    List<SpanData> ready = new ArrayList<>();
+    for (SpanData span : spans) {
+      PendingTrace trace = traces.get(span.getTraceId());
+      if (trace == null) {
+        trace = new PendingTrace(now);
+        traces.put(span.getTraceId(), trace);
+      }
+      trace.spans.add(span);
+      bufferedSpans++;
+      if (isLocalRoot(span)) {
+        release(traces.remove(span.getTraceId()), ready);
+      }
+    }
+    Iterator<PendingTrace> oldestFirst = traces.values().iterator();
+    while (oldestFirst.hasNext()) {
+      PendingTrace trace = oldestFirst.next();
+      if (bufferedSpans <= maxBufferedSpans && now - trace.firstSeenNanos < windowNanos) {
+        break;
+      }
+      oldestFirst.remove();
+      release(trace, ready);
+    }
+    return ready;
+  }
+
+  /**
+   * Release every trace that has been buffered for longer than the window.
+   *
+   * @return the spans of the released traces.
+   */
+  synchronized List<SpanData> takeExpired() {
+    long now = clock.nanoTime();
+    List<SpanData> ready = new ArrayList<>();
+    Iterator<PendingTrace> oldestFirst = traces.values().iterator();
+    while (oldestFirst.hasNext()) {
+      PendingTrace trace = oldestFirst.next();
+      if (now - trace.firstSeenNanos < windowNanos) {
+        break;
+      }
+      oldestFirst.remove();
+      release(trace, ready);
+    }
+    return ready;
+  }
+
+  /**
+   * Release every buffered trace, whether or not it is complete.
+   *
+   * @return the spans of every buffered trace.
+   */
+  synchronized List<SpanData> drain() {
+    List<SpanData> ready = new ArrayList<>(bufferedSpans);
+    traces.values().forEach(trace -> release(trace, ready));
+    traces.clear();
+    return ready;
+  }
+
+  synchronized int getBufferedSpanCount() {
+    return bufferedSpans;
+  }
+
+  private void release(PendingTrace trace, List<SpanData> ready) {
+    ready.addAll(trace.spans);
+    bufferedSpans -= trace.spans.size();
+  }
+
+  private static boolean isLocalRoot(SpanData span) {
+    if (!SpanId.isValid(span.getParentSpanId())) {
+      return true;
+    }
+    SpanContext parent = span.getParentSpanContext();
+    return parent != null && parent.isRemote();
+  }
+
+  private static class PendingTrace {
+    private final long firstSeenNanos;
+    private final List<SpanData> spans = new ArrayList<>();
+
+    private PendingTrace(long firstSeenNanos) {
+      this.firstSeenNanos = firstSeenNanos;
+    }
+  }
+}
@@ -10,14 +10,28 @@ public class VersionFinder {
 
   private static final Logger logger = LoggerFactory.getLogger(VersionFinder.class);
 
+  /**
+   * Returns the version of the exporters. The version resource is only read the first time this is
+   * called, and the result is cached for every later call.
+   *
+   * @return the exporter version, or "UnknownVersion" if it could not be read.
+   */
   public static String readVersion() {
-    try {
-      InputStream in =
-          VersionFinder.class.getClassLoader().getResourceAsStream("newrelic.exporter.version");
+    return VersionHolder.VERSION;
+  }
+
+  private static String readVersionResource() {
+    try (InputStream in =
+        VersionFinder.class.getClassLoader().getResourceAsStream("newrelic.exporter.version")) {
       return new BufferedReader(new InputStreamReader(in)).readLine().trim();
     } catch (Exception e) {
       logger.error("Error reading version. Defaulting to 'UnknownVersion'", e);
       return "UnknownVersion";
     }
   }
+
+  // initialized by the JVM on first use, which makes the lookup both lazy and thread-safe.
+  private static class VersionHolder {
+    private static final String VERSION = readVersionResource();
+  }
 }
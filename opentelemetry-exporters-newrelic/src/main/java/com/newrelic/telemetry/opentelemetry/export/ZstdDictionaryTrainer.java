@@ -0,0 +1,112 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import com.github.luben.zstd.ZstdDictTrainer;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Trains a zstd dictionary for the exporters' {@code zstdDictionary(byte[])} builder option from
+ * samples of exported batches. Record the samples with the exporters' {@code
+ * recordPayloadSamples(Path, int)} builder option, from an application sending its usual telemetry,
+ * and then run:
+ *
+ * <pre>
+ * java -cp &lt;exporter and zstd-jni jars&gt; \
+ *     com.newrelic.telemetry.opentelemetry.export.ZstdDictionaryTrainer \
+ *     &lt;sample directory&gt; &lt;dictionary file&gt; [dictionary size in bytes]
+ * </pre>
+ *
+ * <p>A dictionary only helps with payloads that look like the ones it was trained on, so train
+ * span and metric dictionaries separately, from the same kind of export (JSON or OTLP) that will
+ * be sent with them. The receiving endpoint needs the same dictionary to decompress the payloads.
+ *
+ * @since 0.14.0
+ */
+public final class ZstdDictionaryTrainer {
+
+  /** The size of a dictionary when none is given, which is zstd's own default. */
+  public static final int DEFAULT_DICTIONARY_SIZE = 112_640;
+
+  private ZstdDictionaryTrainer() {}
+
+  /**
+   * Train a dictionary from samples.
+   *
+   * @param samples the uncompressed samples to train from, ideally a hundred or more.
+   * @param dictionarySize the largest size of the dictionary, in bytes.
+   * @return the dictionary
+   * @throws IllegalArgumentException if there are too few samples to train from.
+   */
+  public static byte[] train(List<byte[]> samples, int dictionarySize) {
+    if (dictionarySize < 256) {
+      throw new IllegalArgumentException("dictionarySize must be at least 256 bytes");
+    }
+    long totalSize = 0;
+    for (byte[] sample : samples) {
+      totalSize += sample.length;
+    }
+    if (samples.size() < 10 || totalSize > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException(
+          "At least 10 samples, and less than 2GB of them, are needed to train a dictionary");
+    }
+    ZstdDictTrainer trainer = new ZstdDictTrainer((int) totalSize, dictionarySize);
+    for (byte[] sample : samples) {
+      trainer.addSample(sample);
+    }
+    try {
+      return trainer.trainSamples();
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException("The samples could not be trained on", e);
+    }
+  }
+
+  /**
+   * Read every file in a directory as a sample, gunzipping the ones that are gzipped.
+   *
+   * @param directory the directory the samples were recorded to.
+   * @return the uncompressed samples
+   * @throws IOException if the samples could not be read.
+   */
+  public static List<byte[]> readSamples(Path directory) throws IOException {
+    List<byte[]> samples = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        if (Files.isRegularFile(file)) {
+          byte[] sample = Files.readAllBytes(file);
+          samples.add(IngestResponses.isGzipped(sample) ? IngestResponses.gunzip(sample) : sample);
+        }
+      }
+    }
+    return samples;
+  }
+
+  /**
+   * Train a dictionary from the samples in a directory and write it to a file.
+   *
+   * @param args the sample directory, the dictionary file, and optionally the dictionary size.
+   * @throws IOException if the samples could not be read or the dictionary written.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2 || args.length > 3) {
+      System.err.println(
+          "Usage: ZstdDictionaryTrainer <sample directory> <dictionary file> [dictionary size]");
+      System.exit(2);
+    }
+    int dictionarySize = args.length == 3 ? Integer.parseInt(args[2]) : DEFAULT_DICTIONARY_SIZE;
+    List<byte[]> samples = readSamples(Paths.get(args[0]));
+    byte[] dictionary = train(samples, dictionarySize);
+    Files.write(Paths.get(args[1]), dictionary);
+    System.out.println(
+        "Trained a " + dictionary.length + " byte dictionary from " + samples.size() + " samples");
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.newrelic.telemetry.http.HttpPoster;
+import com.newrelic.telemetry.http.HttpResponse;
+import java.io.IOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link HttpPoster} that compresses request bodies with zstd and a pre-trained dictionary,
+ * rather than gzip. Span and metric payloads repeat the same attribute keys, service names and
+ * library names from one batch to the next, so a dictionary trained on earlier batches (see {@link
+ * ZstdDictionaryTrainer}) compresses them much better than gzip, which starts from nothing every
+ * time.
+ *
+ * <p>Bodies that are already gzipped, as the telemetry SDK's senders always send them, are
+ * inflated first, which costs more CPU than sending them gzipped. Bodies without a {@code
+ * Content-Encoding} are compressed as they are.
+ *
+ * <p>If the endpoint responds 415 (Unsupported Media Type), or 400 (Bad Request) with a body that
+ * names the content encoding, the request is sent again gzipped, and every later request is sent
+ * gzipped without trying zstd. A body that was already gzipped is sent again as it came. Every
+ * other response is returned as it is, so that throttling, size limits and auth failures are
+ * handled the same way as for gzipped requests.
+ */
+class ZstdHttpPoster implements HttpPoster {
+  private static final Logger logger = LoggerFactory.getLogger(ZstdHttpPoster.class);
+
+  static final String CONTENT_ENCODING = "Content-Encoding";
+  static final int BAD_REQUEST = 400;
+  static final int UNSUPPORTED_MEDIA_TYPE = 415;
+  static final int DEFAULT_LEVEL = 3;
+
+  private final HttpPoster delegate;
+  private final ZstdDictCompress dictionary;
+  private volatile boolean rejected = false;
+
+  ZstdHttpPoster(HttpPoster delegate, byte[] dictionary, int level) {
+    this.delegate = delegate;
+    this.dictionary = new ZstdDictCompress(dictionary, level);
+  }
+
+  @Override
+  public HttpResponse post(URL url, Map<String, String> headers, byte[] body, String mediaType)
+      throws IOException {
+    String encoding = contentEncoding(headers);
+    if (encoding != null && !"gzip".equalsIgnoreCase(encoding)) {
+      return delegate.post(url, headers, body, mediaType);
+    }
+    boolean gzipped = encoding != null;
+    if (rejected) {
+      return postGzipped(url, headers, body, gzipped, mediaType);
+    }
+    byte[] uncompressed = gzipped ? IngestResponses.gunzip(body) : body;
+    HttpResponse response =
+        delegate.post(
+            url,
+            withEncoding(headers, "zstd"),
+            Zstd.compress(uncompressed, dictionary),
+            mediaType);
+    if (!isZstdRejection(response)) {
+      return response;
+    }
+    if (!rejected) {
+      rejected = true;
+      logger.warn(
+          url
+              + " doesn't accept zstd request bodies (responded "
+              + response.getCode()
+              + "). Falling back to gzip.");
+    }
+    // the original body, so that a body the sender already gzipped isn't gzipped a second time.
+    return postGzipped(url, headers, body, gzipped, mediaType);
+  }
+
+  // some endpoints answer an encoding they don't know with a plain 400, naming it in the body.
+  private static boolean isZstdRejection(HttpResponse response) {
+    if (response.getCode() == UNSUPPORTED_MEDIA_TYPE) {
+      return true;
+    }
+    if (response.getCode() != BAD_REQUEST || response.getBody() == null) {
+      return false;
+    }
+    String body = response.getBody().toLowerCase(Locale.ROOT);
+    return body.contains("zstd") || body.contains("content-encoding");
+  }
+
+  boolean isRejected() {
+    return rejected;
+  }
+
+  private HttpResponse postGzipped(
+      URL url, Map<String, String> headers, byte[] body, boolean gzipped, String mediaType)
+      throws IOException {
+    if (gzipped) {
+      return delegate.post(url, headers, body, mediaType);
+    }
+    return delegate.post(
+        url, withEncoding(headers, "gzip"), IngestResponses.gzip(body, body.length), mediaType);
+  }
+
+  private static String contentEncoding(Map<String, String> headers) {
+    for (Map.Entry<String, String> header : headers.entrySet()) {
+      if (CONTENT_ENCODING.equalsIgnoreCase(header.getKey())) {
+        return header.getValue();
+      }
+    }
+    return null;
+  }
+
+  private static Map<String, String> withEncoding(Map<String, String> headers, String encoding) {
+    Map<String, String> encoded = new HashMap<>(headers.size() + 1);
+    for (Map.Entry<String, String> header : headers.entrySet()) {
+      if (!CONTENT_ENCODING.equalsIgnoreCase(header.getKey())) {
+        encoded.put(header.getKey(), header.getValue());
+      }
+    }
+    encoded.put(CONTENT_ENCODING, encoding);
+    return encoded;
+  }
+}
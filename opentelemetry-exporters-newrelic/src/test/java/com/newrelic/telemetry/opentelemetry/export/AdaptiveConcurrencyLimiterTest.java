@@ -0,0 +1,88 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import io.opentelemetry.sdk.common.Clock;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class AdaptiveConcurrencyLimiterTest {
+
+  @Mock private Clock clock;
+
+  @Test
+  void testStartsAtHalfTheMaximum() {
+    AdaptiveConcurrencyLimiter testClass = new AdaptiveConcurrencyLimiter(clock, 1, 8);
+
+    assertEquals(4, testClass.getLimit());
+    for (int i = 0; i < 4; i++) {
+      assertTrue(testClass.tryAcquire());
+    }
+    assertFalse(testClass.tryAcquire());
+    testClass.release();
+    assertTrue(testClass.tryAcquire());
+  }
+
+  @Test
+  void testFastResponsesGrowTheLimit() {
+    AdaptiveConcurrencyLimiter testClass = new AdaptiveConcurrencyLimiter(clock, 1, 8);
+
+    for (int i = 0; i < 100; i++) {
+      testClass.onSuccess(TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    assertEquals(8, testClass.getLimit());
+  }
+
+  @Test
+  void testSlowResponsesShrinkTheLimit() {
+    AdaptiveConcurrencyLimiter testClass = new AdaptiveConcurrencyLimiter(clock, 1, 8);
+    testClass.onSuccess(TimeUnit.MILLISECONDS.toNanos(50));
+
+    testClass.onSuccess(TimeUnit.MILLISECONDS.toNanos(500));
+
+    assertEquals(3, testClass.getLimit());
+  }
+
+  @Test
+  void testOverloadHalvesTheLimit() {
+    AdaptiveConcurrencyLimiter testClass = new AdaptiveConcurrencyLimiter(clock, 2, 16);
+
+    testClass.onOverload();
+    assertEquals(4, testClass.getLimit());
+    testClass.onOverload();
+    testClass.onOverload();
+    assertEquals(2, testClass.getLimit());
+  }
+
+  @Test
+  void testRetryAfterPausesSends() {
+    AdaptiveConcurrencyLimiter testClass = new AdaptiveConcurrencyLimiter(clock, 1, 8);
+    when(clock.nanoTime()).thenReturn(0L);
+
+    testClass.onRetryAfter(10, TimeUnit.SECONDS);
+
+    assertFalse(testClass.tryAcquire());
+    when(clock.nanoTime()).thenReturn(TimeUnit.SECONDS.toNanos(10));
+    assertTrue(testClass.tryAcquire());
+  }
+
+  @Test
+  void testInvalidLimits() {
+    assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimiter(clock, 0, 1));
+    assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimiter(clock, 4, 2));
+  }
+}
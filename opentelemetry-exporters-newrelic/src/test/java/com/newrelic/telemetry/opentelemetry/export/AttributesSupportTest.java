@@ -50,6 +50,20 @@ class AttributesSupportTest {
     assertEquals(expected, result);
   }
 
+  @Test
+  void libraryInfoFragment_isSharedPerLibrary() {
+    InstrumentationLibraryInfo libraryInfo = InstrumentationLibraryInfo.create("theName", "1.0");
+
+    Attributes fragment = AttributesSupport.libraryInfoFragment(libraryInfo);
+
+    assertEquals(
+        new Attributes().put(INSTRUMENTATION_NAME, "theName").put(INSTRUMENTATION_VERSION, "1.0"),
+        fragment);
+    assertSame(
+        fragment,
+        AttributesSupport.libraryInfoFragment(InstrumentationLibraryInfo.create("theName", "1.0")));
+  }
+
   @Test
   void addResourceAttributes_nullResource() {
     Attributes attributes = new Attributes().put("a", "b");
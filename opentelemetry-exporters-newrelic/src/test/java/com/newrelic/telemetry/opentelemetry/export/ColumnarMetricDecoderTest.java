@@ -0,0 +1,88 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.newrelic.telemetry.Attributes;
+import com.newrelic.telemetry.metrics.Count;
+import com.newrelic.telemetry.metrics.Gauge;
+import com.newrelic.telemetry.metrics.Metric;
+import com.newrelic.telemetry.metrics.MetricBatch;
+import com.newrelic.telemetry.metrics.Summary;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ColumnarMetricDecoderTest {
+
+  private final ColumnarMetricEncoder encoder = new ColumnarMetricEncoder();
+
+  @Test
+  void testDecodesWhatTheEncoderWrites() {
+    Attributes attributes =
+        new Attributes()
+            .put("host", "a")
+            .put("port", 8080L)
+            .put("load", 0.5)
+            .put("primary", true);
+    // the summary's timestamp is earlier than the count's, so its delta is negative.
+    List<Metric> metrics =
+        asList(
+            new Gauge("heap", 1.5, 10_000, attributes),
+            new Count("requests", 3, 9_000, 10_000, attributes),
+            new Summary("latency", 2, 30, 10, 20, 5_000, 9_500, new Attributes().put("host", "b")),
+            new Gauge("heap", -2, 1_600_000_000_000L, new Attributes()));
+    Attributes common = new Attributes().put("service.name", "svc");
+
+    MetricBatch result =
+        ColumnarMetricDecoder.decode(encoder.encode(new MetricBatch(metrics, common)));
+
+    assertEquals(common, result.getCommonAttributes());
+    assertEquals(metrics, new ArrayList<>(result.getTelemetry()));
+  }
+
+  @Test
+  void testDecodesAnEmptyBatch() {
+    MetricBatch result =
+        ColumnarMetricDecoder.decode(
+            encoder.encode(new MetricBatch(new ArrayList<>(), new Attributes())));
+
+    assertEquals(0, result.size());
+    assertEquals(new Attributes(), result.getCommonAttributes());
+  }
+
+  @Test
+  void testRejectsOtherPayloads() {
+    byte[] json = "[{\"metrics\":[]}]".getBytes(StandardCharsets.UTF_8);
+    assertThrows(IllegalArgumentException.class, () -> ColumnarMetricDecoder.decode(json));
+
+    byte[] otherVersion = encoder.encode(new MetricBatch(new ArrayList<>(), new Attributes()));
+    otherVersion[4] = 2;
+    assertThrows(IllegalArgumentException.class, () -> ColumnarMetricDecoder.decode(otherVersion));
+  }
+
+  @Test
+  void testRejectsTruncatedPayloads() {
+    List<Metric> metrics =
+        asList(
+            new Gauge("heap", 1.5, 10_000, new Attributes().put("host", "a")),
+            new Count("requests", 3, 9_000, 10_000, new Attributes()));
+    byte[] encoded = encoder.encode(new MetricBatch(metrics, new Attributes()));
+
+    for (int length = 0; length < encoded.length; length++) {
+      byte[] truncated = Arrays.copyOf(encoded, length);
+      assertThrows(
+          IllegalArgumentException.class,
+          () -> ColumnarMetricDecoder.decode(truncated),
+          "truncated to " + length + " bytes");
+    }
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.newrelic.telemetry.Attributes;
+import com.newrelic.telemetry.metrics.Count;
+import com.newrelic.telemetry.metrics.Gauge;
+import com.newrelic.telemetry.metrics.Metric;
+import com.newrelic.telemetry.metrics.MetricBatch;
+import com.newrelic.telemetry.metrics.Summary;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class ColumnarMetricEncoderTest {
+
+  private final ColumnarMetricEncoder testClass = new ColumnarMetricEncoder();
+
+  @Test
+  void testEncodesEachColumn() {
+    Attributes attributes = new Attributes().put("host", "a").put("port", 8080L);
+    List<Metric> metrics =
+        asList(
+            new Gauge("heap", 1.5, 10_000, attributes),
+            new Count("requests", 3, 9_000, 10_000, attributes),
+            new Summary("latency", 2, 30, 10, 20, 5_000, 10_500, new Attributes()));
+    MetricBatch batch = new MetricBatch(metrics, new Attributes().put("service.name", "svc"));
+
+    ByteBuffer in = ByteBuffer.wrap(testClass.encode(batch));
+
+    byte[] magic = new byte[4];
+    in.get(magic);
+    assertArrayEquals("NRCM".getBytes(StandardCharsets.UTF_8), magic);
+    assertEquals(ColumnarMetricEncoder.VERSION, in.get());
+    List<String> dictionary = readDictionary(in);
+    List<Map<String, Object>> attributeSets = readAttributeSets(in, dictionary);
+    Map<String, Object> common = attributeSets.get((int) readVarint(in));
+    assertEquals("svc", common.get("service.name"));
+    assertEquals(3, readVarint(in));
+
+    ByteBuffer types = readBlock(in);
+    ByteBuffer names = readBlock(in);
+    ByteBuffer timestamps = readBlock(in);
+    ByteBuffer intervals = readBlock(in);
+    ByteBuffer attributeIndexes = readBlock(in);
+    ByteBuffer values = readBlock(in);
+    assertEquals(0, in.remaining());
+
+    assertEquals(ColumnarMetricEncoder.GAUGE, types.get());
+    assertEquals(ColumnarMetricEncoder.COUNT, types.get());
+    assertEquals(ColumnarMetricEncoder.SUMMARY, types.get());
+    assertEquals("heap", dictionary.get((int) readVarint(names)));
+    assertEquals("requests", dictionary.get((int) readVarint(names)));
+    assertEquals("latency", dictionary.get((int) readVarint(names)));
+    assertEquals(10_000, readZigzag(timestamps));
+    assertEquals(0, readZigzag(timestamps));
+    assertEquals(500, readZigzag(timestamps));
+    assertEquals(0, readVarint(intervals));
+    assertEquals(1_000, readVarint(intervals));
+    assertEquals(5_500, readVarint(intervals));
+    long gaugeAttributes = readVarint(attributeIndexes);
+    assertEquals(gaugeAttributes, readVarint(attributeIndexes));
+    assertEquals("a", attributeSets.get((int) gaugeAttributes).get("host"));
+    assertEquals(8080L, attributeSets.get((int) gaugeAttributes).get("port"));
+    assertTrue(attributeSets.get((int) readVarint(attributeIndexes)).isEmpty());
+    assertEquals(1.5, values.getDouble());
+    assertEquals(3, values.getDouble());
+    assertEquals(2, readVarint(values));
+    assertEquals(30, values.getDouble());
+    assertEquals(10, values.getDouble());
+    assertEquals(20, values.getDouble());
+  }
+
+  @Test
+  void testRepeatedAttributesAreWrittenOnce() {
+    List<Metric> metrics = new ArrayList<>();
+    for (int i = 0; i < 1_000; i++) {
+      Attributes attributes =
+          new Attributes()
+              .put("service.name", "a-fairly-long-service-name")
+              .put("host.name", "host-" + (i % 10));
+      metrics.add(new Gauge("jvm.memory.used", i, 10_000, attributes));
+    }
+
+    byte[] encoded = testClass.encode(new MetricBatch(metrics, new Attributes()));
+
+    // 1 type, 1 name, 1 timestamp, 1 interval, 1 attribute set and 8 value bytes per metric.
+    assertTrue(encoded.length < 1_000 * 14 + 500, "encoded to " + encoded.length + " bytes");
+  }
+
+  private static List<String> readDictionary(ByteBuffer in) {
+    int size = (int) readVarint(in);
+    List<String> dictionary = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      byte[] utf8 = new byte[(int) readVarint(in)];
+      in.get(utf8);
+      dictionary.add(new String(utf8, StandardCharsets.UTF_8));
+    }
+    return dictionary;
+  }
+
+  private static List<Map<String, Object>> readAttributeSets(
+      ByteBuffer in, List<String> dictionary) {
+    int size = (int) readVarint(in);
+    List<Map<String, Object>> attributeSets = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      int pairs = (int) readVarint(in);
+      Map<String, Object> attributes = new HashMap<>();
+      for (int j = 0; j < pairs; j++) {
+        String key = dictionary.get((int) readVarint(in));
+        byte type = in.get();
+        if (type == ColumnarMetricEncoder.STRING_VALUE) {
+          attributes.put(key, dictionary.get((int) readVarint(in)));
+        } else if (type == ColumnarMetricEncoder.LONG_VALUE) {
+          attributes.put(key, readZigzag(in));
+        } else if (type == ColumnarMetricEncoder.DOUBLE_VALUE) {
+          attributes.put(key, in.getDouble());
+        } else {
+          attributes.put(key, in.get() == 1);
+        }
+      }
+      attributeSets.add(attributes);
+    }
+    return attributeSets;
+  }
+
+  private static ByteBuffer readBlock(ByteBuffer in) {
+    int length = (int) readVarint(in);
+    ByteBuffer block = in.slice();
+    block.limit(length);
+    in.position(in.position() + length);
+    return block;
+  }
+
+  private static long readVarint(ByteBuffer in) {
+    long value = 0;
+    for (int shift = 0; ; shift += 7) {
+      byte b = in.get();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+  }
+
+  private static long readZigzag(ByteBuffer in) {
+    long value = readVarint(in);
+    return (value >>> 1) ^ -(value & 1);
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.newrelic.telemetry.Attributes;
+import com.newrelic.telemetry.Response;
+import com.newrelic.telemetry.exceptions.DiscardBatchException;
+import com.newrelic.telemetry.exceptions.RetryWithBackoffException;
+import com.newrelic.telemetry.exceptions.RetryWithRequestedWaitException;
+import com.newrelic.telemetry.exceptions.RetryWithSplitException;
+import com.newrelic.telemetry.http.HttpPoster;
+import com.newrelic.telemetry.http.HttpResponse;
+import com.newrelic.telemetry.metrics.Gauge;
+import com.newrelic.telemetry.metrics.MetricBatch;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ColumnarMetricSenderTest {
+
+  @Mock private HttpPoster poster;
+
+  private URL endpoint;
+  private ColumnarMetricSender testClass;
+  private final MetricBatch batch =
+      new MetricBatch(
+          singletonList(new Gauge("heap", 1.5, 10_000, new Attributes())), new Attributes());
+
+  @BeforeEach
+  void setup() throws Exception {
+    endpoint = new URL("http://localhost/v1/columnar");
+    testClass = new ColumnarMetricSender(poster, endpoint, "api-key", "test-agent");
+  }
+
+  @Test
+  void testPostsTheGzippedEncoding() throws Exception {
+    when(poster.post(eq(endpoint), any(), any(), eq(ColumnarMetricSender.MEDIA_TYPE)))
+        .thenReturn(new HttpResponse("{}", 202, "Accepted", emptyMap()));
+
+    Response response = testClass.sendBatch(batch);
+
+    assertEquals(202, response.getStatusCode());
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<Map<String, String>> headers = ArgumentCaptor.forClass(Map.class);
+    ArgumentCaptor<byte[]> body = ArgumentCaptor.forClass(byte[].class);
+    verify(poster).post(eq(endpoint), headers.capture(), body.capture(), any());
+    assertEquals("api-key", headers.getValue().get("Api-Key"));
+    assertEquals("gzip", headers.getValue().get("Content-Encoding"));
+    assertArrayEquals(
+        new ColumnarMetricEncoder().encode(batch), IngestResponses.gunzip(body.getValue()));
+  }
+
+  @Test
+  void testLeavesCompressionToTheZstdPoster() throws Exception {
+    ColumnarMetricSender testClass =
+        new ColumnarMetricSender(poster, endpoint, "api-key", "test-agent", false);
+    when(poster.post(any(), any(), any(), any()))
+        .thenReturn(new HttpResponse("{}", 202, "Accepted", emptyMap()));
+
+    testClass.sendBatch(batch);
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<Map<String, String>> headers = ArgumentCaptor.forClass(Map.class);
+    ArgumentCaptor<byte[]> body = ArgumentCaptor.forClass(byte[].class);
+    verify(poster).post(any(), headers.capture(), body.capture(), any());
+    assertNull(headers.getValue().get("Content-Encoding"));
+    assertArrayEquals(new ColumnarMetricEncoder().encode(batch), body.getValue());
+  }
+
+  @Test
+  void testTooLargeIsSplit() throws Exception {
+    when(poster.post(any(), any(), any(), any()))
+        .thenReturn(new HttpResponse("", 413, "Payload Too Large", emptyMap()));
+
+    assertThrows(RetryWithSplitException.class, () -> testClass.sendBatch(batch));
+  }
+
+  @Test
+  void testRetryAfterIsHonoured() throws Exception {
+    when(poster.post(any(), any(), any(), any()))
+        .thenReturn(
+            new HttpResponse(
+                "", 429, "Too Many Requests", singletonMap("retry-after", singletonList("7"))));
+
+    RetryWithRequestedWaitException e =
+        assertThrows(RetryWithRequestedWaitException.class, () -> testClass.sendBatch(batch));
+
+    assertEquals(7, e.getWaitTime());
+    assertEquals(TimeUnit.SECONDS, e.getTimeUnit());
+  }
+
+  @Test
+  void testServerErrorsAreRetried() throws Exception {
+    when(poster.post(any(), any(), any(), any()))
+        .thenReturn(new HttpResponse("", 503, "Unavailable", emptyMap()));
+
+    assertThrows(RetryWithBackoffException.class, () -> testClass.sendBatch(batch));
+  }
+
+  @Test
+  void testIoErrorsAreRetried() throws Exception {
+    when(poster.post(any(), any(), any(), any())).thenThrow(new IOException("connection reset"));
+
+    assertThrows(RetryWithBackoffException.class, () -> testClass.sendBatch(batch));
+  }
+
+  @Test
+  void testUnsupportedMediaTypeIsDiscarded() throws Exception {
+    when(poster.post(any(), any(), any(), any()))
+        .thenReturn(new HttpResponse("", 415, "Unsupported Media Type", emptyMap()));
+
+    assertThrows(DiscardBatchException.class, () -> testClass.sendBatch(batch));
+  }
+}
@@ -29,4 +29,41 @@ class DeltaDoubleCounterTest {
 
     assertEquals(22.22d, result);
   }
+
+  @Test
+  void testNoPreviousUsesPointStart() throws Exception {
+    DeltaDoubleCounter deltaDoubleCounter = new DeltaDoubleCounter();
+    deltaDoubleCounter.delta(DoublePoint.create(100, 200, Labels.empty(), 55.55d));
+
+    assertEquals(100, deltaDoubleCounter.getIntervalStartEpochNanos());
+  }
+
+  @Test
+  void testIntervalStartsAtPreviousPoint() throws Exception {
+    DeltaDoubleCounter deltaDoubleCounter = new DeltaDoubleCounter();
+    deltaDoubleCounter.delta(DoublePoint.create(100, 200, Labels.empty(), 55.55d));
+    deltaDoubleCounter.delta(DoublePoint.create(100, 300, Labels.empty(), 77.77d));
+
+    assertEquals(200, deltaDoubleCounter.getIntervalStartEpochNanos());
+  }
+
+  @Test
+  void testResetOnNewStartTime() throws Exception {
+    DeltaDoubleCounter deltaDoubleCounter = new DeltaDoubleCounter();
+    deltaDoubleCounter.delta(DoublePoint.create(100, 200, Labels.empty(), 77.77d));
+    double result = deltaDoubleCounter.delta(DoublePoint.create(250, 300, Labels.empty(), 10.5d));
+
+    assertEquals(10.5d, result);
+    assertEquals(250, deltaDoubleCounter.getIntervalStartEpochNanos());
+  }
+
+  @Test
+  void testResetOnDecrease() throws Exception {
+    DeltaDoubleCounter deltaDoubleCounter = new DeltaDoubleCounter();
+    deltaDoubleCounter.delta(DoublePoint.create(100, 200, Labels.empty(), 77.77d));
+    double result = deltaDoubleCounter.delta(DoublePoint.create(100, 300, Labels.empty(), 10.5d));
+
+    assertEquals(10.5d, result);
+    assertEquals(200, deltaDoubleCounter.getIntervalStartEpochNanos());
+  }
 }
@@ -29,4 +29,41 @@ class DeltaLongCounterTest {
 
     assertEquals(22, result);
   }
+
+  @Test
+  void testNoPreviousUsesPointStart() throws Exception {
+    DeltaLongCounter deltaLongCounter = new DeltaLongCounter();
+    deltaLongCounter.delta(LongPoint.create(100, 200, Labels.empty(), 55));
+
+    assertEquals(100, deltaLongCounter.getIntervalStartEpochNanos());
+  }
+
+  @Test
+  void testIntervalStartsAtPreviousPoint() throws Exception {
+    DeltaLongCounter deltaLongCounter = new DeltaLongCounter();
+    deltaLongCounter.delta(LongPoint.create(100, 200, Labels.empty(), 55));
+    deltaLongCounter.delta(LongPoint.create(100, 300, Labels.empty(), 77));
+
+    assertEquals(200, deltaLongCounter.getIntervalStartEpochNanos());
+  }
+
+  @Test
+  void testResetOnNewStartTime() throws Exception {
+    DeltaLongCounter deltaLongCounter = new DeltaLongCounter();
+    deltaLongCounter.delta(LongPoint.create(100, 200, Labels.empty(), 77));
+    long result = deltaLongCounter.delta(LongPoint.create(250, 300, Labels.empty(), 10));
+
+    assertEquals(10, result);
+    assertEquals(250, deltaLongCounter.getIntervalStartEpochNanos());
+  }
+
+  @Test
+  void testResetOnDecrease() throws Exception {
+    DeltaLongCounter deltaLongCounter = new DeltaLongCounter();
+    deltaLongCounter.delta(LongPoint.create(100, 200, Labels.empty(), 77));
+    long result = deltaLongCounter.delta(LongPoint.create(100, 300, Labels.empty(), 10));
+
+    assertEquals(10, result);
+    assertEquals(200, deltaLongCounter.getIntervalStartEpochNanos());
+  }
 }
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import static com.newrelic.telemetry.opentelemetry.export.TestSpans.span;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.newrelic.telemetry.Attributes;
+import com.newrelic.telemetry.Response;
+import com.newrelic.telemetry.exceptions.RetryWithBackoffException;
+import com.newrelic.telemetry.exceptions.RetryWithSplitException;
+import com.newrelic.telemetry.metrics.MetricBatchSender;
+import com.newrelic.telemetry.spans.SpanBatch;
+import com.newrelic.telemetry.spans.SpanBatchSender;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.internal.SystemClock;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class DispatchingTelemetryClientTest {
+
+  @Mock private SpanBatchSender spanBatchSender;
+  @Mock private MetricBatchSender metricBatchSender;
+
+  private final Response ok = new Response(202, "Accepted", "{}");
+  private final AdaptiveConcurrencyLimiter limiter =
+      new AdaptiveConcurrencyLimiter(SystemClock.getInstance(), 1, 4);
+
+  @Test
+  void testSendsOnProvidedExecutor() throws Exception {
+    DispatchingTelemetryClient testClass = newClient(Integer.MAX_VALUE);
+    SpanBatch batch = new SpanBatch(singletonList(span("1")), new Attributes());
+    when(spanBatchSender.sendBatch(batch)).thenReturn(ok);
+
+    testClass.sendBatch(batch);
+
+    verify(spanBatchSender, timeout(1_000)).sendBatch(batch);
+  }
+
+  @Test
+  void testOverloadLowersConcurrencyLimit() throws Exception {
+    DispatchingTelemetryClient testClass = newClient(Integer.MAX_VALUE);
+    SpanBatch batch = new SpanBatch(singletonList(span("1")), new Attributes());
+    when(spanBatchSender.sendBatch(batch)).thenThrow(RetryWithBackoffException.class);
+
+    testClass.sendBatch(batch);
+
+    verify(spanBatchSender, timeout(1_000)).sendBatch(batch);
+    testClass.shutdown();
+    assertEquals(1, testClass.getConcurrencyLimit());
+  }
+
+  @Test
+  void testSplitsBatchesThatAreTooLarge() throws Exception {
+    DispatchingTelemetryClient testClass = newClient(Integer.MAX_VALUE);
+    Attributes commonAttributes = new Attributes().put("host", "bar");
+    SpanBatch batch = new SpanBatch(asList(span("1"), span("2")), commonAttributes);
+    SpanBatch firstHalf = new SpanBatch(singletonList(span("1")), commonAttributes);
+    SpanBatch secondHalf = new SpanBatch(singletonList(span("2")), commonAttributes);
+    when(spanBatchSender.sendBatch(any())).thenReturn(ok);
+    when(spanBatchSender.sendBatch(batch)).thenThrow(RetryWithSplitException.class);
+
+    testClass.sendBatch(batch);
+
+    verify(spanBatchSender, timeout(1_000)).sendBatch(firstHalf);
+    verify(spanBatchSender, timeout(1_000)).sendBatch(secondHalf);
+  }
+
+  @Test
+  void testSplitsBatchesLargerThanTheMaxBatchSizeBeforeSending() throws Exception {
+    DispatchingTelemetryClient testClass = newClient(2);
+    Attributes commonAttributes = new Attributes().put("host", "bar");
+    SpanBatch batch =
+        new SpanBatch(asList(span("1"), span("2"), span("3"), span("4")), commonAttributes);
+    SpanBatch firstHalf = new SpanBatch(asList(span("1"), span("2")), commonAttributes);
+    SpanBatch secondHalf = new SpanBatch(asList(span("3"), span("4")), commonAttributes);
+    when(spanBatchSender.sendBatch(any())).thenReturn(ok);
+
+    testClass.sendBatch(batch);
+
+    verify(spanBatchSender, timeout(1_000)).sendBatch(firstHalf);
+    verify(spanBatchSender, timeout(1_000)).sendBatch(secondHalf);
+    verify(spanBatchSender, never()).sendBatch(batch);
+  }
+
+  @Test
+  void testFlushWithNothingOutstanding() {
+    DispatchingTelemetryClient testClass = newClient(Integer.MAX_VALUE);
+
+    CompletableResultCode result = testClass.flush(1, TimeUnit.SECONDS);
+
+    assertTrue(result.isSuccess());
+  }
+
+  @Test
+  void testFlushWaitsForOutstandingBatches() throws Exception {
+    DispatchingTelemetryClient testClass = newClient(Integer.MAX_VALUE);
+    SpanBatch batch = new SpanBatch(singletonList(span("1")), new Attributes());
+    CountDownLatch sendStarted = new CountDownLatch(1);
+    CountDownLatch releaseSend = new CountDownLatch(1);
+    when(spanBatchSender.sendBatch(batch))
+        .thenAnswer(
+            invocation -> {
+              sendStarted.countDown();
+              releaseSend.await();
+              return ok;
+            });
+
+    testClass.sendBatch(batch);
+    sendStarted.await(1, TimeUnit.SECONDS);
+    CompletableResultCode result = testClass.flush(5, TimeUnit.SECONDS);
+    assertFalse(result.isDone());
+    releaseSend.countDown();
+
+    assertTrue(result.join(5, TimeUnit.SECONDS).isSuccess());
+  }
+
+  @Test
+  void testFlushTimesOut() throws Exception {
+    DispatchingTelemetryClient testClass = newClient(Integer.MAX_VALUE);
+    SpanBatch batch = new SpanBatch(singletonList(span("1")), new Attributes());
+    CountDownLatch releaseSend = new CountDownLatch(1);
+    when(spanBatchSender.sendBatch(batch))
+        .thenAnswer(
+            invocation -> {
+              releaseSend.await();
+              return ok;
+            });
+
+    testClass.sendBatch(batch);
+    CompletableResultCode result = testClass.flush(10, TimeUnit.MILLISECONDS);
+
+    assertFalse(result.join(5, TimeUnit.SECONDS).isSuccess());
+    releaseSend.countDown();
+  }
+
+  @Test
+  void testShutdownDropsWhatIsStillOutstandingAtTheDeadline() throws Exception {
+    DispatchingTelemetryClient testClass = newClient(Integer.MAX_VALUE);
+    SpanBatch batch = new SpanBatch(asList(span("1"), span("2")), new Attributes());
+    CountDownLatch releaseSend = new CountDownLatch(1);
+    when(spanBatchSender.sendBatch(batch))
+        .thenAnswer(
+            invocation -> {
+              releaseSend.await();
+              return ok;
+            });
+
+    testClass.sendBatch(batch);
+    CompletableResultCode result = testClass.shutdown(10, TimeUnit.MILLISECONDS);
+
+    assertFalse(result.isSuccess());
+    assertEquals(2, testClass.getDroppedCount());
+    releaseSend.countDown();
+  }
+
+  @Test
+  void testShutdownAfterEverythingIsSent() throws Exception {
+    DispatchingTelemetryClient testClass = newClient(Integer.MAX_VALUE);
+    SpanBatch batch = new SpanBatch(singletonList(span("1")), new Attributes());
+    when(spanBatchSender.sendBatch(batch)).thenReturn(ok);
+
+    testClass.sendBatch(batch);
+    CompletableResultCode result = testClass.shutdown(5, TimeUnit.SECONDS);
+
+    assertTrue(result.isSuccess());
+    assertEquals(0, testClass.getDroppedCount());
+  }
+
+  @Test
+  void testShutdownDeadlineReplacesTheTimeout() throws Exception {
+    DispatchingTelemetryClient testClass = newClient(Integer.MAX_VALUE);
+    SpanBatch batch = new SpanBatch(singletonList(span("1")), new Attributes());
+    CountDownLatch releaseSend = new CountDownLatch(1);
+    when(spanBatchSender.sendBatch(batch))
+        .thenAnswer(
+            invocation -> {
+              releaseSend.await();
+              return ok;
+            });
+
+    testClass.sendBatch(batch);
+    testClass.setShutdownDeadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10));
+    long startNanos = System.nanoTime();
+    testClass.shutdown();
+
+    assertTrue(System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(5));
+    assertEquals(0, testClass.getShutdownTimeoutNanos());
+    assertEquals(1, testClass.getDroppedCount());
+    releaseSend.countDown();
+  }
+
+  private DispatchingTelemetryClient newClient(int maxBatchSize) {
+    return new DispatchingTelemetryClient(
+        metricBatchSender,
+        spanBatchSender,
+        null,
+        Executors.newSingleThreadExecutor(),
+        limiter,
+        TimeUnit.SECONDS.toNanos(DispatchingTelemetryClient.DEFAULT_SHUTDOWN_TIMEOUT_SECONDS),
+        maxBatchSize);
+  }
+
+  @Test
+  void testBackoff() {
+    assertEquals(1_000, DispatchingTelemetryClient.backoffMillis(0));
+    assertEquals(2_000, DispatchingTelemetryClient.backoffMillis(1));
+    assertEquals(8_000, DispatchingTelemetryClient.backoffMillis(3));
+    assertEquals(16_000, DispatchingTelemetryClient.backoffMillis(7));
+  }
+}
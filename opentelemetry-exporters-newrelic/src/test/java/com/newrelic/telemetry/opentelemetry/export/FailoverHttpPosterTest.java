@@ -0,0 +1,139 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonMap;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.newrelic.telemetry.http.HttpPoster;
+import com.newrelic.telemetry.http.HttpResponse;
+import com.sun.net.httpserver.HttpServer;
+import io.opentelemetry.sdk.common.Clock;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class FailoverHttpPosterTest {
+
+  @Mock private Clock clock;
+  @Mock private HttpPoster slowPoster;
+
+  private final AtomicLong nanoTime = new AtomicLong();
+  private final AtomicInteger primaryStatus = new AtomicInteger(202);
+  private final AtomicInteger primaryPosts = new AtomicInteger();
+  private final AtomicInteger failoverPosts = new AtomicInteger();
+  private HttpServer primary;
+  private HttpServer failover;
+
+  @BeforeEach
+  void startServers() throws Exception {
+    primary = stubServer(primaryStatus, primaryPosts);
+    failover = stubServer(new AtomicInteger(202), failoverPosts);
+  }
+
+  @AfterEach
+  void stopServers() {
+    primary.stop(0);
+    failover.stop(0);
+  }
+
+  @Test
+  void testFailsOverOnErrorsAndComesBackAfterRecovery() throws Exception {
+    when(clock.nanoTime()).thenAnswer(invocation -> nanoTime.get());
+    FailoverHttpPoster testClass =
+        new FailoverHttpPoster(
+            new JdkHttpPoster(), url(failover), TimeUnit.SECONDS.toNanos(2), clock);
+
+    primaryStatus.set(503);
+    assertEquals(503, post(testClass).getCode());
+    assertFalse(testClass.isFailedOver());
+    assertEquals(503, post(testClass).getCode());
+    assertTrue(testClass.isFailedOver());
+
+    assertEquals(202, post(testClass).getCode());
+    assertEquals(2, primaryPosts.get());
+    assertEquals(1, failoverPosts.get());
+
+    // the primary recovers, and is probed with one post every probe interval until that shows.
+    primaryStatus.set(202);
+    int probes = 0;
+    while (testClass.isFailedOver() && probes < 10) {
+      nanoTime.addAndGet(FailoverHttpPoster.PROBE_INTERVAL_NANOS);
+      post(testClass);
+      probes++;
+    }
+    assertFalse(testClass.isFailedOver());
+    assertEquals(2 + probes, primaryPosts.get());
+    assertEquals(1, failoverPosts.get());
+
+    post(testClass);
+    assertEquals(3 + probes, primaryPosts.get());
+  }
+
+  @Test
+  void testFailsOverWhenThePrimaryIsSlow() throws Exception {
+    when(clock.nanoTime()).thenAnswer(invocation -> nanoTime.get());
+    URL primaryUrl = url(primary);
+    URL failoverUrl = url(failover);
+    HttpResponse accepted = new HttpResponse("{}", 202, "Accepted", emptyMap());
+    when(slowPoster.post(eq(primaryUrl), any(), any(), any()))
+        .thenAnswer(
+            invocation -> {
+              nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(3));
+              return accepted;
+            });
+    when(slowPoster.post(eq(failoverUrl), any(), any(), any())).thenReturn(accepted);
+    FailoverHttpPoster testClass =
+        new FailoverHttpPoster(slowPoster, failoverUrl, TimeUnit.SECONDS.toNanos(1), clock);
+
+    testClass.post(primaryUrl, emptyMap(), new byte[0], "application/json");
+    assertFalse(testClass.isFailedOver());
+    testClass.post(primaryUrl, emptyMap(), new byte[0], "application/json");
+    assertTrue(testClass.isFailedOver());
+    testClass.post(primaryUrl, emptyMap(), new byte[0], "application/json");
+
+    verify(slowPoster).post(eq(failoverUrl), any(), any(), any());
+  }
+
+  private HttpResponse post(FailoverHttpPoster testClass) throws Exception {
+    return testClass.post(
+        url(primary), singletonMap("Api-Key", "secret"), new byte[] {1}, "application/json");
+  }
+
+  private static HttpServer stubServer(AtomicInteger status, AtomicInteger posts)
+      throws Exception {
+    HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext(
+        "/trace/v1",
+        exchange -> {
+          posts.incrementAndGet();
+          exchange.sendResponseHeaders(status.get(), -1);
+          exchange.close();
+        });
+    server.start();
+    return server;
+  }
+
+  private static URL url(HttpServer server) throws Exception {
+    return new URL("http://localhost:" + server.getAddress().getPort() + "/trace/v1");
+  }
+}
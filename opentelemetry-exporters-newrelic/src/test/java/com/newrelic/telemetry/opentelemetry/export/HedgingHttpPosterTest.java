@@ -0,0 +1,216 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import static java.util.Collections.emptyMap;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.newrelic.telemetry.http.HttpPoster;
+import com.newrelic.telemetry.http.HttpResponse;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
+
+@ExtendWith(MockitoExtension.class)
+class HedgingHttpPosterTest {
+
+  @Mock private HttpPoster delegate;
+
+  private final ScheduledExecutorService executor = HedgingHttpPoster.newExecutor();
+  private final Thread callerThread = Thread.currentThread();
+  private final AtomicInteger callerPosts = new AtomicInteger();
+  private final AtomicReference<Thread> hedgeThread = new AtomicReference<>();
+  private final AtomicReference<String> originalBatchId = new AtomicReference<>();
+  private final AtomicReference<String> hedgeBatchId = new AtomicReference<>();
+  private final CountDownLatch hedgeSent = new CountDownLatch(1);
+  private URL url;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    url = new URL("http://localhost/v1/traces");
+  }
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void testSlowRequestIsHedgedWithTheSameBatchId() throws Exception {
+    HedgingHttpPoster testClass = new HedgingHttpPoster(delegate, 0.5, 1.0, executor);
+    when(delegate.post(any(), any(), any(), any()))
+        .thenAnswer(
+            hedgedPost(
+                () -> {
+                  // stays outstanding until the hedge has been sent.
+                  assertTrue(hedgeSent.await(5, TimeUnit.SECONDS));
+                  return response(202, "original");
+                },
+                response(202, "hedge")));
+    warmUp(testClass);
+
+    HttpResponse response = testClass.post(url, emptyMap(), new byte[0], "application/json");
+
+    assertEquals("original", response.getBody());
+    assertEquals(1, testClass.getHedgeCount());
+    assertNotNull(hedgeThread.get());
+    assertNotEquals(callerThread, hedgeThread.get());
+    assertNotNull(originalBatchId.get());
+    assertEquals(originalBatchId.get(), hedgeBatchId.get());
+    verify(delegate, times(HedgingHttpPoster.MIN_SAMPLES + 2)).post(any(), any(), any(), any());
+  }
+
+  @Test
+  void testHedgeIsUsedWhenTheOriginalFails() throws Exception {
+    HedgingHttpPoster testClass = new HedgingHttpPoster(delegate, 0.5, 1.0, executor);
+    when(delegate.post(any(), any(), any(), any()))
+        .thenAnswer(
+            hedgedPost(
+                () -> {
+                  assertTrue(hedgeSent.await(5, TimeUnit.SECONDS));
+                  throw new IOException("connection reset");
+                },
+                response(202, "hedge")));
+    warmUp(testClass);
+
+    HttpResponse response = testClass.post(url, emptyMap(), new byte[0], "application/json");
+
+    assertEquals("hedge", response.getBody());
+    assertEquals(1, testClass.getHedgeCount());
+  }
+
+  @Test
+  void testHedgeIsUsedWhenTheOriginalIsRejected() throws Exception {
+    HedgingHttpPoster testClass = new HedgingHttpPoster(delegate, 0.5, 1.0, executor);
+    when(delegate.post(any(), any(), any(), any()))
+        .thenAnswer(
+            hedgedPost(
+                () -> {
+                  assertTrue(hedgeSent.await(5, TimeUnit.SECONDS));
+                  return response(503, "original");
+                },
+                response(202, "hedge")));
+    warmUp(testClass);
+
+    HttpResponse response = testClass.post(url, emptyMap(), new byte[0], "application/json");
+
+    assertEquals("hedge", response.getBody());
+  }
+
+  @Test
+  void testOriginalFailureIsThrownWhenTheHedgeFailsToo() throws Exception {
+    HedgingHttpPoster testClass = new HedgingHttpPoster(delegate, 0.5, 1.0, executor);
+    when(delegate.post(any(), any(), any(), any()))
+        .thenAnswer(
+            hedgedPost(
+                () -> {
+                  assertTrue(hedgeSent.await(5, TimeUnit.SECONDS));
+                  throw new IOException("connection reset");
+                },
+                response(503, "hedge")));
+    warmUp(testClass);
+
+    assertThrows(
+        IOException.class,
+        () -> testClass.post(url, emptyMap(), new byte[0], "application/json"));
+    assertEquals(1, testClass.getHedgeCount());
+  }
+
+  @Test
+  void testNoHedgeWithoutBudget() throws Exception {
+    HedgingHttpPoster testClass = new HedgingHttpPoster(delegate, 0.5, 0.01, executor);
+    when(delegate.post(any(), any(), any(), any()))
+        .thenAnswer(
+            hedgedPost(
+                () -> {
+                  Thread.sleep(50);
+                  return response(202, "original");
+                },
+                response(202, "hedge")));
+    warmUp(testClass);
+
+    HttpResponse response = testClass.post(url, emptyMap(), new byte[0], "application/json");
+
+    assertEquals("original", response.getBody());
+    assertEquals(0, testClass.getHedgeCount());
+    verify(delegate, times(HedgingHttpPoster.MIN_SAMPLES + 1)).post(any(), any(), any(), any());
+  }
+
+  @Test
+  void testNoHedgeOnceTheExecutorIsShutDown() throws Exception {
+    HedgingHttpPoster testClass = new HedgingHttpPoster(delegate, 0.5, 1.0, executor);
+    when(delegate.post(any(), any(), any(), any()))
+        .thenAnswer(
+            hedgedPost(
+                () -> {
+                  Thread.sleep(50);
+                  return response(202, "original");
+                },
+                response(202, "hedge")));
+    warmUp(testClass);
+    executor.shutdownNow();
+
+    HttpResponse response = testClass.post(url, emptyMap(), new byte[0], "application/json");
+
+    assertEquals("original", response.getBody());
+    assertEquals(0, testClass.getHedgeCount());
+  }
+
+  /**
+   * Answers the warm-up posts on the caller's thread with a 202, then the original post on the
+   * caller's thread with {@code original}, and the hedge on any other thread with {@code hedge}.
+   */
+  private Answer<HttpResponse> hedgedPost(OriginalPost original, HttpResponse hedge) {
+    return invocation -> {
+      Map<String, String> headers = invocation.getArgument(1);
+      if (Thread.currentThread() != callerThread) {
+        hedgeThread.set(Thread.currentThread());
+        hedgeBatchId.set(headers.get(HedgingHttpPoster.BATCH_ID_HEADER));
+        hedgeSent.countDown();
+        return hedge;
+      }
+      if (callerPosts.incrementAndGet() <= HedgingHttpPoster.MIN_SAMPLES) {
+        return response(202, "warm up");
+      }
+      originalBatchId.set(headers.get(HedgingHttpPoster.BATCH_ID_HEADER));
+      return original.post();
+    };
+  }
+
+  private interface OriginalPost {
+    HttpResponse post() throws Exception;
+  }
+
+  private void warmUp(HedgingHttpPoster testClass) throws Exception {
+    for (int i = 0; i < HedgingHttpPoster.MIN_SAMPLES; i++) {
+      testClass.post(url, emptyMap(), new byte[0], "application/json");
+    }
+  }
+
+  private static HttpResponse response(int code, String body) {
+    return new HttpResponse(body, code, "", emptyMap());
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import static java.util.Collections.singletonMap;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.newrelic.telemetry.http.HttpResponse;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class JdkHttpPosterTest {
+
+  private HttpServer server;
+  private final AtomicReference<byte[]> received = new AtomicReference<>();
+  private final AtomicReference<String> apiKey = new AtomicReference<>();
+  private final AtomicReference<String> contentType = new AtomicReference<>();
+
+  @BeforeEach
+  void startServer() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext(
+        "/trace/v1",
+        exchange -> {
+          received.set(readFully(exchange.getRequestBody()));
+          apiKey.set(exchange.getRequestHeaders().getFirst("Api-Key"));
+          contentType.set(exchange.getRequestHeaders().getFirst("Content-Type"));
+          byte[] response = "{\"requestId\":\"1\"}".getBytes(StandardCharsets.UTF_8);
+          exchange.getResponseHeaders().add("Retry-After", "7");
+          exchange.sendResponseHeaders(202, response.length);
+          try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+          }
+        });
+    server.createContext(
+        "/overloaded",
+        exchange -> {
+          exchange.sendResponseHeaders(503, -1);
+          exchange.close();
+        });
+    server.start();
+  }
+
+  @AfterEach
+  void stopServer() {
+    server.stop(0);
+  }
+
+  @Test
+  void testPostsBodyAndHeaders() throws Exception {
+    JdkHttpPoster testClass = new JdkHttpPoster();
+    byte[] body = "[{\"spans\":[]}]".getBytes(StandardCharsets.UTF_8);
+
+    HttpResponse response =
+        testClass.post(
+            url("/trace/v1"), singletonMap("Api-Key", "secret"), body, "application/json");
+
+    assertEquals(202, response.getCode());
+    assertEquals("{\"requestId\":\"1\"}", response.getBody());
+    // the stub server normalizes the case of header names
+    assertTrue(response.getHeaders().keySet().stream().anyMatch("Retry-After"::equalsIgnoreCase));
+    assertArrayEquals(body, received.get());
+    assertEquals("secret", apiKey.get());
+    assertEquals("application/json", contentType.get());
+  }
+
+  @Test
+  void testErrorResponsesAreReturnedNotThrown() throws Exception {
+    JdkHttpPoster testClass = new JdkHttpPoster();
+
+    HttpResponse response =
+        testClass.post(url("/overloaded"), singletonMap("Api-Key", "secret"), new byte[0], "a/b");
+
+    assertEquals(503, response.getCode());
+    assertTrue(response.getBody().isEmpty());
+  }
+
+  private URL url(String path) throws Exception {
+    return new URL("http://localhost:" + server.getAddress().getPort() + path);
+  }
+
+  private static byte[] readFully(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+}
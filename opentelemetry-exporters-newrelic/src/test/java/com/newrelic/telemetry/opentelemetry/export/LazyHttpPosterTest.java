@@ -0,0 +1,50 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import static java.util.Collections.emptyMap;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import com.newrelic.telemetry.http.HttpPoster;
+import com.newrelic.telemetry.http.HttpResponse;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class LazyHttpPosterTest {
+
+  @Mock private HttpPoster httpPoster;
+  @Mock private HttpResponse response;
+
+  @Test
+  void testCreatesPosterOnFirstPostOnly() throws Exception {
+    AtomicInteger created = new AtomicInteger();
+    LazyHttpPoster testClass =
+        new LazyHttpPoster(
+            () -> {
+              created.incrementAndGet();
+              return httpPoster;
+            });
+    URL url = new URL("http://localhost/v1/accounts/events");
+    byte[] body = new byte[0];
+    when(httpPoster.post(url, emptyMap(), body, "application/json")).thenReturn(response);
+
+    assertFalse(testClass.isInitialized());
+    assertSame(response, testClass.post(url, emptyMap(), body, "application/json"));
+    assertSame(response, testClass.post(url, emptyMap(), body, "application/json"));
+
+    assertTrue(testClass.isInitialized());
+    assertEquals(1, created.get());
+  }
+}
@@ -6,10 +6,11 @@
 package com.newrelic.telemetry.opentelemetry.export;
 
 import static com.newrelic.telemetry.opentelemetry.export.AttributeNames.SERVICE_NAME;
+import static java.util.Collections.emptyList;
 import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 import com.newrelic.telemetry.Attributes;
 import com.newrelic.telemetry.metrics.Count;
@@ -24,6 +25,7 @@ import io.opentelemetry.sdk.metrics.data.MetricData.DoubleSummaryPoint;
 import io.opentelemetry.sdk.metrics.data.MetricData.LongPoint;
 import io.opentelemetry.sdk.metrics.data.MetricData.ValueAtPercentile;
 import io.opentelemetry.sdk.resources.Resource;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -40,15 +42,13 @@ class MetricPointAdapterTest {
 
   @Test
   void testLongPoint() {
-    TimeTracker timeTracker = mock(TimeTracker.class);
-    when(timeTracker.getPreviousTime()).thenReturn(TimeUnit.MILLISECONDS.toNanos(9_000L));
-    MetricPointAdapter metricPointAdapter = new MetricPointAdapter(timeTracker);
+    MetricPointAdapter metricPointAdapter = new MetricPointAdapter();
 
     Attributes commonAttributes = new Attributes().put(SERVICE_NAME, "fooService");
 
     LongPoint longPoint =
         LongPoint.create(
-            100,
+            TimeUnit.MILLISECONDS.toNanos(9_000L),
             TimeUnit.MILLISECONDS.toNanos(10_000L),
             Labels.of("specificKey", "specificValue"),
             123L);
@@ -74,8 +74,7 @@ class MetricPointAdapterTest {
 
   @Test
   void testLongPoint_nonMonotonic() {
-    TimeTracker timeTracker = mock(TimeTracker.class);
-    MetricPointAdapter metricPointAdapter = new MetricPointAdapter(timeTracker);
+    MetricPointAdapter metricPointAdapter = new MetricPointAdapter();
 
     Attributes commonAttributes = new Attributes().put(SERVICE_NAME, "fooService");
 
@@ -108,14 +107,12 @@ class MetricPointAdapterTest {
 
   @Test
   void testDoublePoint() {
-    TimeTracker timeTracker = mock(TimeTracker.class);
-    when(timeTracker.getPreviousTime()).thenReturn(TimeUnit.MILLISECONDS.toNanos(9_000L));
-    MetricPointAdapter metricPointAdapter = new MetricPointAdapter(timeTracker);
+    MetricPointAdapter metricPointAdapter = new MetricPointAdapter();
 
     Attributes commonAttributes = new Attributes().put(SERVICE_NAME, "fooService");
     DoublePoint doublePoint =
         DoublePoint.create(
-            100,
+            TimeUnit.MILLISECONDS.toNanos(9_000L),
             TimeUnit.MILLISECONDS.toNanos(10_000L),
             Labels.of("specificKey", "specificValue"),
             123.55d);
@@ -141,8 +138,7 @@ class MetricPointAdapterTest {
 
   @Test
   void testDoublePoint_nonMonotonic() {
-    TimeTracker timeTracker = mock(TimeTracker.class);
-    MetricPointAdapter metricPointAdapter = new MetricPointAdapter(timeTracker);
+    MetricPointAdapter metricPointAdapter = new MetricPointAdapter();
 
     Attributes commonAttributes = new Attributes().put(SERVICE_NAME, "fooService");
     DoublePoint doublePoint =
@@ -172,11 +168,237 @@ class MetricPointAdapterTest {
     assertEquals(singleton(expectedMetric), result);
   }
 
+  @Test
+  void testLongPoint_cumulativeDeltas() {
+    MetricPointAdapter metricPointAdapter = new MetricPointAdapter();
+    Labels labels = Labels.of("specificKey", "specificValue");
+    LongPoint first =
+        LongPoint.create(
+            TimeUnit.MILLISECONDS.toNanos(9_000L),
+            TimeUnit.MILLISECONDS.toNanos(10_000L),
+            labels,
+            100L);
+    LongPoint second =
+        LongPoint.create(
+            TimeUnit.MILLISECONDS.toNanos(9_000L),
+            TimeUnit.MILLISECONDS.toNanos(15_000L),
+            labels,
+            130L);
+    // the process restarted, so the start time moved forward and the cumulative value dropped.
+    LongPoint afterRestart =
+        LongPoint.create(
+            TimeUnit.MILLISECONDS.toNanos(18_000L),
+            TimeUnit.MILLISECONDS.toNanos(20_000L),
+            labels,
+            7L);
+
+    MetricData longSum =
+        MetricData.createLongSum(
+            resource,
+            libraryInfo,
+            "metricName",
+            "metricDescription",
+            "units",
+            MetricData.LongSumData.create(
+                true,
+                MetricData.AggregationTemporality.CUMULATIVE,
+                Arrays.asList(first, second, afterRestart)));
+
+    Attributes expectedAttributes = new Attributes().put("specificKey", "specificValue");
+    assertEquals(
+        singleton(new Count("metricName", 100L, 9_000L, 10_000L, expectedAttributes)),
+        metricPointAdapter.buildMetricsFromPoint(longSum, new Attributes(), first));
+    assertEquals(
+        singleton(new Count("metricName", 30L, 10_000L, 15_000L, expectedAttributes)),
+        metricPointAdapter.buildMetricsFromPoint(longSum, new Attributes(), second));
+    assertEquals(
+        singleton(new Count("metricName", 7L, 18_000L, 20_000L, expectedAttributes)),
+        metricPointAdapter.buildMetricsFromPoint(longSum, new Attributes(), afterRestart));
+  }
+
+  @Test
+  void testToDeltaSum() {
+    MetricPointAdapter metricPointAdapter = new MetricPointAdapter();
+    Labels labels = Labels.of("specificKey", "specificValue");
+    MetricData first =
+        longSum(
+            MetricData.AggregationTemporality.CUMULATIVE,
+            LongPoint.create(
+                TimeUnit.MILLISECONDS.toNanos(9_000L),
+                TimeUnit.MILLISECONDS.toNanos(10_000L),
+                labels,
+                100L));
+    MetricData second =
+        longSum(
+            MetricData.AggregationTemporality.CUMULATIVE,
+            LongPoint.create(
+                TimeUnit.MILLISECONDS.toNanos(9_000L),
+                TimeUnit.MILLISECONDS.toNanos(15_000L),
+                labels,
+                130L));
+
+    metricPointAdapter.toDeltaSum(first);
+    MetricData result = metricPointAdapter.toDeltaSum(second);
+
+    assertEquals(
+        MetricData.AggregationTemporality.DELTA,
+        result.getLongSumData().getAggregationTemporality());
+    assertEquals(
+        singletonList(
+            LongPoint.create(
+                TimeUnit.MILLISECONDS.toNanos(10_000L),
+                TimeUnit.MILLISECONDS.toNanos(15_000L),
+                labels,
+                30L)),
+        new ArrayList<>(result.getLongSumData().getPoints()));
+    // the same point exported again, e.g. by a second reader, is left out.
+    assertEquals(0, metricPointAdapter.toDeltaSum(second).getPoints().size());
+  }
+
+  @Test
+  void testToDeltaSum_deltaTemporality() {
+    MetricData deltaSum =
+        longSum(
+            MetricData.AggregationTemporality.DELTA,
+            LongPoint.create(100L, 200L, Labels.empty(), 5L));
+
+    assertSame(deltaSum, new MetricPointAdapter().toDeltaSum(deltaSum));
+  }
+
+  private MetricData longSum(MetricData.AggregationTemporality temporality, LongPoint point) {
+    return MetricData.createLongSum(
+        resource,
+        libraryInfo,
+        "metricName",
+        "metricDescription",
+        "units",
+        MetricData.LongSumData.create(true, temporality, singletonList(point)));
+  }
+
+  @Test
+  void testLongPoint_staleAndSharedPoints() {
+    MetricPointAdapter metricPointAdapter = new MetricPointAdapter();
+    Labels labels = Labels.of("specificKey", "specificValue");
+    LongPoint first =
+        LongPoint.create(
+            TimeUnit.MILLISECONDS.toNanos(9_000L),
+            TimeUnit.MILLISECONDS.toNanos(10_000L),
+            labels,
+            100L);
+    LongPoint second =
+        LongPoint.create(
+            TimeUnit.MILLISECONDS.toNanos(9_000L),
+            TimeUnit.MILLISECONDS.toNanos(15_000L),
+            labels,
+            130L);
+    MetricData.LongSumData longSumData =
+        MetricData.LongSumData.create(
+            true, MetricData.AggregationTemporality.CUMULATIVE, Arrays.asList(first, second));
+    MetricData longSum =
+        MetricData.createLongSum(
+            resource, libraryInfo, "metricName", "metricDescription", "units", longSumData);
+    MetricData fromOtherResource =
+        MetricData.createLongSum(
+            Resource.getEmpty(),
+            libraryInfo,
+            "metricName",
+            "metricDescription",
+            "units",
+            longSumData);
+
+    metricPointAdapter.buildMetricsFromPoint(longSum, new Attributes(), first);
+    metricPointAdapter.buildMetricsFromPoint(longSum, new Attributes(), second);
+
+    // a second reader exporting the same points must not produce overlapping intervals...
+    assertEquals(
+        emptyList(), metricPointAdapter.buildMetricsFromPoint(longSum, new Attributes(), first));
+    assertEquals(
+        emptyList(), metricPointAdapter.buildMetricsFromPoint(longSum, new Attributes(), second));
+    // ...but the same series from another producer has its own interval.
+    Attributes expectedAttributes = new Attributes().put("specificKey", "specificValue");
+    assertEquals(
+        singleton(new Count("metricName", 100L, 9_000L, 10_000L, expectedAttributes)),
+        metricPointAdapter.buildMetricsFromPoint(fromOtherResource, new Attributes(), first));
+  }
+
+  @Test
+  void testLongPoint_cumulativeDeltasWithThreadLocalPools() {
+    MetricPointAdapter metricPointAdapter = new MetricPointAdapter(true);
+    Labels labels = Labels.of("specificKey", "specificValue");
+    LongPoint first =
+        LongPoint.create(
+            TimeUnit.MILLISECONDS.toNanos(9_000L),
+            TimeUnit.MILLISECONDS.toNanos(10_000L),
+            labels,
+            100L);
+    LongPoint second =
+        LongPoint.create(
+            TimeUnit.MILLISECONDS.toNanos(9_000L),
+            TimeUnit.MILLISECONDS.toNanos(15_000L),
+            labels,
+            130L);
+    MetricData.LongSumData longSumData =
+        MetricData.LongSumData.create(
+            true, MetricData.AggregationTemporality.CUMULATIVE, Arrays.asList(first, second));
+    MetricData longSum =
+        MetricData.createLongSum(
+            resource, libraryInfo, "metricName", "metricDescription", "units", longSumData);
+    MetricData fromOtherResource =
+        MetricData.createLongSum(
+            Resource.getEmpty(),
+            libraryInfo,
+            "metricName",
+            "metricDescription",
+            "units",
+            longSumData);
+
+    Attributes expectedAttributes = new Attributes().put("specificKey", "specificValue");
+    assertEquals(
+        singleton(new Count("metricName", 100L, 9_000L, 10_000L, expectedAttributes)),
+        metricPointAdapter.buildMetricsFromPoint(longSum, new Attributes(), first));
+    assertEquals(
+        singleton(new Count("metricName", 30L, 10_000L, 15_000L, expectedAttributes)),
+        metricPointAdapter.buildMetricsFromPoint(longSum, new Attributes(), second));
+    assertEquals(
+        singleton(new Count("metricName", 100L, 9_000L, 10_000L, expectedAttributes)),
+        metricPointAdapter.buildMetricsFromPoint(fromOtherResource, new Attributes(), first));
+  }
+
+  @Test
+  void testDoublePoint_deltaTemporality() {
+    MetricPointAdapter metricPointAdapter = new MetricPointAdapter();
+    DoublePoint doublePoint =
+        DoublePoint.create(
+            TimeUnit.MILLISECONDS.toNanos(9_000L),
+            TimeUnit.MILLISECONDS.toNanos(10_000L),
+            Labels.of("specificKey", "specificValue"),
+            12.5d);
+
+    MetricData doubleSum =
+        MetricData.createDoubleSum(
+            resource,
+            libraryInfo,
+            "metricName",
+            "metricDescription",
+            "units",
+            MetricData.DoubleSumData.create(
+                true,
+                MetricData.AggregationTemporality.DELTA,
+                Collections.singletonList(doublePoint)));
+
+    // delta points are passed through, even when they repeat.
+    metricPointAdapter.buildMetricsFromPoint(doubleSum, new Attributes(), doublePoint);
+    Collection<Metric> result =
+        metricPointAdapter.buildMetricsFromPoint(doubleSum, new Attributes(), doublePoint);
+
+    Attributes expectedAttributes = new Attributes().put("specificKey", "specificValue");
+    assertEquals(
+        singleton(new Count("metricName", 12.5d, 9_000L, 10_000L, expectedAttributes)), result);
+  }
+
   @Test
   void testSummaryPoint() {
-    TimeTracker timeTracker = mock(TimeTracker.class);
-    when(timeTracker.getPreviousTime()).thenReturn(TimeUnit.MILLISECONDS.toNanos(9_000L));
-    MetricPointAdapter metricPointAdapter = new MetricPointAdapter(timeTracker);
+    MetricPointAdapter metricPointAdapter = new MetricPointAdapter();
 
     Attributes commonAttributes = new Attributes().put(SERVICE_NAME, "fooService");
     ValueAtPercentile min = ValueAtPercentile.create(0.0, 5.5d);
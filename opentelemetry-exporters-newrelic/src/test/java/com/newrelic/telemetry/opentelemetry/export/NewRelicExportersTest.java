@@ -7,8 +7,10 @@ package com.newrelic.telemetry.opentelemetry.export;
 
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.newrelic.telemetry.opentelemetry.export.NewRelicExporters.Configuration;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.Test;
 
 class NewRelicExportersTest {
@@ -38,4 +40,33 @@ class NewRelicExportersTest {
   void testConfigurationCreation_emptyServiceName() {
     assertThrows(IllegalArgumentException.class, () -> new Configuration("apiKey", ""));
   }
+
+  @Test
+  void testConfigurationCreation_negativeShutdownTimeout() {
+    Configuration configuration = new Configuration("apiKey", "serviceName");
+    assertThrows(IllegalArgumentException.class, () -> configuration.shutdownTimeoutSeconds(-1));
+  }
+
+  @Test
+  void testConfigurationCreation_invalidQueueSettings() {
+    Configuration configuration = new Configuration("apiKey", "serviceName");
+    assertThrows(IllegalArgumentException.class, () -> configuration.maxQueueSize(0));
+    assertThrows(IllegalArgumentException.class, () -> configuration.maxExportBatchSize(0));
+    assertThrows(IllegalArgumentException.class, () -> configuration.exportTimeoutMillis(0));
+    assertThrows(IllegalArgumentException.class, () -> configuration.maxConcurrentSends(0));
+    assertThrows(
+        IllegalArgumentException.class, () -> configuration.metricExportIntervalSeconds(0));
+  }
+
+  @Test
+  void testStart_batchLargerThanQueue() {
+    Configuration configuration =
+        new Configuration("apiKey", "serviceName").maxQueueSize(100).maxExportBatchSize(200);
+    assertThrows(IllegalArgumentException.class, () -> NewRelicExporters.start(configuration));
+  }
+
+  @Test
+  void testShutdownBeforeStart() {
+    assertTrue(NewRelicExporters.shutdown(1, TimeUnit.SECONDS).isSuccess());
+  }
 }
@@ -43,10 +43,9 @@ class NewRelicMetricExporterTest {
     MetricPointAdapter metricPointAdapter = mock(MetricPointAdapter.class);
     Attributes globalAttributes = new Attributes().put("globalKey", "globalValue");
     TelemetryClient telemetryClient = mock(TelemetryClient.class);
-    TimeTracker timeTracker = mock(TimeTracker.class);
     NewRelicMetricExporter newRelicMetricExporter =
         new NewRelicMetricExporter(
-            telemetryClient, globalAttributes, timeTracker, metricPointAdapter, "instanceId");
+            telemetryClient, globalAttributes, metricPointAdapter, "instanceId");
 
     Resource resource =
         Resource.create(
@@ -95,14 +94,13 @@ class NewRelicMetricExporterTest {
 
     assertTrue(result.isSuccess());
 
-    InOrder inOrder = inOrder(metricPointAdapter, timeTracker, telemetryClient);
+    InOrder inOrder = inOrder(metricPointAdapter, telemetryClient);
     inOrder
         .verify(metricPointAdapter)
         .buildMetricsFromPoint(doubleSummary, updatedAttributes, point1);
     inOrder
         .verify(metricPointAdapter)
         .buildMetricsFromPoint(doubleSummary, updatedAttributes, point2);
-    inOrder.verify(timeTracker).tick();
     inOrder
         .verify(telemetryClient)
         .sendBatch(new MetricBatch(Arrays.asList(metric1, metric2), amendedGlobalAttributes));
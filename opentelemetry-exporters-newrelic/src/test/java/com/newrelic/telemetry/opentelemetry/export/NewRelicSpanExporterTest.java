@@ -5,20 +5,32 @@
 
 package com.newrelic.telemetry.opentelemetry.export;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.newrelic.telemetry.Attributes;
 import com.newrelic.telemetry.TelemetryClient;
+import com.newrelic.telemetry.metrics.Metric;
+import com.newrelic.telemetry.metrics.MetricBatch;
+import com.newrelic.telemetry.metrics.Summary;
 import com.newrelic.telemetry.spans.SpanBatch;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.internal.SystemClock;
 import io.opentelemetry.sdk.resources.Resource;
 import io.opentelemetry.sdk.trace.data.SpanData;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
@@ -33,7 +45,7 @@ class NewRelicSpanExporterTest {
 
   @Test
   void testExportHappyPath() {
-    NewRelicSpanExporter testClass = new NewRelicSpanExporter(adapter, sender);
+    NewRelicSpanExporter testClass = newExporter(null, 1.0);
 
     SpanData inputSpan = createMinimalSpanData();
     List<SpanData> spans = Collections.singletonList(inputSpan);
@@ -44,6 +56,91 @@ class NewRelicSpanExporterTest {
     assertTrue(result.isSuccess());
   }
 
+  @Test
+  void testSpanMetricsAreSentForUnsampledSpans() {
+    SpanMetricsAggregator aggregator =
+        new SpanMetricsAggregator(new Attributes(), SystemClock.getInstance());
+    NewRelicSpanExporter testClass = newExporter(aggregator, 0.0);
+
+    CompletableResultCode result =
+        testClass.export(Collections.singletonList(createMinimalSpanData()));
+    testClass.flush();
+
+    assertTrue(result.isSuccess());
+    verify(sender).sendBatch(any(MetricBatch.class));
+    verify(adapter, never()).adaptToSpanBatches(any());
+  }
+
+  @Test
+  void testExportsWithinAnIntervalAreSentAsOneSummary() {
+    SpanMetricsAggregator aggregator =
+        new SpanMetricsAggregator(new Attributes(), SystemClock.getInstance());
+    NewRelicSpanExporter testClass = newExporter(aggregator, 0.0);
+
+    testClass.export(Collections.singletonList(createMinimalSpanData()));
+    testClass.export(Collections.singletonList(createMinimalSpanData()));
+    verify(sender, never()).sendBatch(any(MetricBatch.class));
+    testClass.shutdown();
+
+    ArgumentCaptor<MetricBatch> batches = ArgumentCaptor.forClass(MetricBatch.class);
+    verify(sender).sendBatch(batches.capture());
+    Collection<Metric> metrics = batches.getValue().getTelemetry();
+    assertEquals(1, metrics.size());
+    assertEquals(2, ((Summary) metrics.iterator().next()).getCount());
+  }
+
+  @Test
+  void testSamplingByTraceId() {
+    assertTrue(NewRelicSpanExporter.isSampled(traceId, Long.MAX_VALUE));
+    assertFalse(NewRelicSpanExporter.isSampled(traceId, 0));
+    // the random part of the trace id is 0x37fe0393
+    assertTrue(NewRelicSpanExporter.isSampled(traceId, 0x37fe0394L));
+    assertFalse(NewRelicSpanExporter.isSampled(traceId, 0x37fe0393L));
+    assertTrue(NewRelicSpanExporter.isSampled("not a trace id", 0));
+  }
+
+  @Test
+  void testRatioZeroSendsNoSpans() {
+    // Math.abs(Long.MIN_VALUE) is negative, so this trace is below any bound of 0 or more.
+    String minValueTraceId = "00000000000000008000000000000000";
+    assertTrue(NewRelicSpanExporter.isSampled(minValueTraceId, 0));
+    assertFalse(NewRelicSpanExporter.isSampled(minValueTraceId, Long.MIN_VALUE));
+
+    NewRelicSpanExporter testClass = newExporter(null, 0.0);
+    SpanData span =
+        TestSpanData.newBuilder()
+            .setTraceId(minValueTraceId)
+            .setSpanId(spanId)
+            .setResource(Resource.create(io.opentelemetry.api.common.Attributes.empty()))
+            .setName("spanName")
+            .setKind(Span.Kind.SERVER)
+            .setStatus(SpanData.Status.ok())
+            .setStartEpochNanos(456_001_000L)
+            .setEndEpochNanos(456_001_100L)
+            .setHasEnded(true)
+            .build();
+
+    CompletableResultCode result = testClass.export(Collections.singletonList(span));
+
+    assertTrue(result.isSuccess());
+    verify(adapter, never()).adaptToSpanBatches(any());
+  }
+
+  private NewRelicSpanExporter newExporter(
+      SpanMetricsAggregator aggregator, double spanSampleRatio) {
+    return new NewRelicSpanExporter(
+        adapter,
+        sender,
+        null,
+        0,
+        aggregator,
+        TimeUnit.MINUTES.toNanos(1),
+        spanSampleRatio,
+        null,
+        null,
+        null);
+  }
+
   private SpanData createMinimalSpanData() {
     return TestSpanData.newBuilder()
         .setTraceId(traceId)
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.common.Labels;
+import io.opentelemetry.sdk.common.InstrumentationLibraryInfo;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.metrics.data.MetricData.AggregationTemporality;
+import io.opentelemetry.sdk.metrics.data.MetricData.DoublePoint;
+import io.opentelemetry.sdk.metrics.data.MetricData.DoubleSummaryPoint;
+import io.opentelemetry.sdk.metrics.data.MetricData.LongPoint;
+import io.opentelemetry.sdk.metrics.data.MetricData.ValueAtPercentile;
+import io.opentelemetry.sdk.resources.Resource;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class OtlpMetricEncoderTest {
+
+  private final Resource resource =
+      Resource.create(Attributes.of(AttributeKey.stringKey("service.name"), "svc"));
+  private final InstrumentationLibraryInfo library =
+      InstrumentationLibraryInfo.create("lib", "1.0");
+
+  @Test
+  void testEncodesSums() throws Exception {
+    MetricData longSum =
+        MetricData.createLongSum(
+            resource,
+            library,
+            "requests",
+            "description",
+            "1",
+            MetricData.LongSumData.create(
+                true,
+                AggregationTemporality.CUMULATIVE,
+                singletonList(LongPoint.create(1_000L, 2_000L, Labels.of("host", "a"), -3L))));
+    MetricData doubleSum =
+        MetricData.createDoubleSum(
+            resource,
+            library,
+            "bytes",
+            "description",
+            "By",
+            MetricData.DoubleSumData.create(
+                false,
+                AggregationTemporality.DELTA,
+                singletonList(DoublePoint.create(1_000L, 2_000L, Labels.empty(), 1.5))));
+
+    List<ProtobufFields> metrics = encode(asList(longSum, doubleSum));
+
+    assertEquals(2, metrics.size());
+    ProtobufFields requests = metrics.get(0);
+    assertEquals("requests", requests.string(1));
+    assertEquals("1", requests.string(3));
+    ProtobufFields intSum = requests.message(6);
+    assertEquals(2, intSum.number(2));
+    assertEquals(1, intSum.number(3));
+    ProtobufFields longPoint = intSum.message(1);
+    assertEquals("host", longPoint.message(1).string(1));
+    assertEquals("a", longPoint.message(1).string(2));
+    assertEquals(1_000L, longPoint.number(2));
+    assertEquals(2_000L, longPoint.number(3));
+    assertEquals(-3L, longPoint.number(4));
+
+    ProtobufFields doubleSumFields = metrics.get(1).message(7);
+    assertEquals(1, doubleSumFields.number(2));
+    assertEquals(0, doubleSumFields.number(3));
+    assertEquals(1.5, doubleSumFields.message(1).doubleValue(4));
+  }
+
+  @Test
+  void testEncodesSummariesAsQuantiles() throws Exception {
+    MetricData summary =
+        MetricData.createDoubleSummary(
+            resource,
+            library,
+            "latency",
+            "description",
+            "ms",
+            MetricData.DoubleSummaryData.create(
+                singletonList(
+                    DoubleSummaryPoint.create(
+                        1_000L,
+                        2_000L,
+                        Labels.empty(),
+                        4,
+                        10.0,
+                        asList(
+                            ValueAtPercentile.create(0.0, 1.0),
+                            ValueAtPercentile.create(100.0, 5.0))))));
+
+    ProtobufFields point = encode(singletonList(summary)).get(0).message(11).message(1);
+
+    assertEquals(4, point.number(4));
+    assertEquals(10.0, point.doubleValue(5));
+    List<ProtobufFields> quantiles = point.messages(6);
+    assertEquals(2, quantiles.size());
+    assertEquals(0.0, quantiles.get(0).doubleValue(1));
+    assertEquals(1.0, quantiles.get(0).doubleValue(2));
+    assertEquals(1.0, quantiles.get(1).doubleValue(1));
+    assertEquals(5.0, quantiles.get(1).doubleValue(2));
+  }
+
+  @Test
+  @Test
+  void testSkipsMetricsWithoutPoints() throws Exception {
+    MetricData empty =
+        MetricData.createLongSum(
+            resource,
+            library,
+            "requests",
+            "description",
+            "1",
+            MetricData.LongSumData.create(
+                true, AggregationTemporality.CUMULATIVE, Collections.emptyList()));
+
+    assertEquals(0, encode(singletonList(empty)).size());
+  }
+
+  private List<ProtobufFields> encode(List<MetricData> metrics) throws Exception {
+    ProtobufWriter writer = new ProtobufWriter();
+    int length = OtlpMetricEncoder.encode(writer, metrics);
+    ProtobufFields request = ProtobufFields.parse(writer.buffer(), length);
+    return request.message(1).message(2).messages(2);
+  }
+}
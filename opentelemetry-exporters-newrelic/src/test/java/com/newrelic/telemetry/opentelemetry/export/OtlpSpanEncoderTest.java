@@ -0,0 +1,149 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.sdk.common.InstrumentationLibraryInfo;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class OtlpSpanEncoderTest {
+
+  private final Resource resource =
+      Resource.create(Attributes.of(AttributeKey.stringKey("service.name"), "svc"));
+  private final InstrumentationLibraryInfo library =
+      InstrumentationLibraryInfo.create("lib", "1.0");
+
+  @Test
+  void testEncodesSpans() throws Exception {
+    SpanData span =
+        TestSpanData.newBuilder()
+            .setTraceId("000000000063d76f0000000037fe0393")
+            .setSpanId("000000000012d685")
+            .setParentSpanId("000000000012d684")
+            .setName("GET /")
+            .setKind(Span.Kind.SERVER)
+            .setStatus(SpanData.Status.create(StatusCode.ERROR, "boom"))
+            .setStartEpochNanos(1_000L)
+            .setEndEpochNanos(2_000L)
+            .setResource(resource)
+            .setInstrumentationLibraryInfo(library)
+            .setAttributes(
+                Attributes.of(
+                    AttributeKey.longKey("http.status_code"),
+                    500L,
+                    AttributeKey.booleanKey("error"),
+                    true))
+            .setEvents(
+                singletonList(
+                    SpanData.Event.create(
+                        1_500L,
+                        "exception",
+                        Attributes.of(AttributeKey.stringKey("exception.type"), "IOException"))))
+            .setLinks(
+                singletonList(
+                    SpanData.Link.create(
+                        SpanContext.create(
+                            "000000000063d76f0000000037fe0394",
+                            "000000000012d686",
+                            TraceFlags.getDefault(),
+                            TraceState.getDefault()))))
+            .setHasEnded(true)
+            .build();
+
+    ProtobufWriter writer = new ProtobufWriter();
+    int length = OtlpSpanEncoder.encode(writer, singletonList(span));
+    ProtobufFields request = ProtobufFields.parse(writer.buffer(), length);
+
+    ProtobufFields resourceSpans = request.message(1);
+    ProtobufFields resourceAttribute = resourceSpans.message(1).message(1);
+    assertEquals("service.name", resourceAttribute.string(1));
+    assertEquals("svc", resourceAttribute.message(2).string(1));
+    ProtobufFields librarySpans = resourceSpans.message(2);
+    assertEquals("lib", librarySpans.message(1).string(1));
+    assertEquals("1.0", librarySpans.message(1).string(2));
+
+    ProtobufFields encoded = librarySpans.message(2);
+    assertArrayEquals(
+        OtlpCommon.hexToBytes("000000000063d76f0000000037fe0393"), encoded.bytes(1));
+    assertEquals(16, encoded.bytes(1).length);
+    assertArrayEquals(OtlpCommon.hexToBytes("000000000012d685"), encoded.bytes(2));
+    assertArrayEquals(OtlpCommon.hexToBytes("000000000012d684"), encoded.bytes(4));
+    assertEquals("GET /", encoded.string(5));
+    assertEquals(2, encoded.number(6));
+    assertEquals(1_000L, encoded.number(7));
+    assertEquals(2_000L, encoded.number(8));
+    assertEquals(2, encoded.messages(9).size());
+    ProtobufFields event = encoded.message(11);
+    assertEquals(1_500L, event.number(1));
+    assertEquals("exception", event.string(2));
+    assertEquals("IOException", event.message(3).message(2).string(1));
+    assertArrayEquals(OtlpCommon.hexToBytes("000000000012d686"), encoded.message(13).bytes(2));
+    assertEquals("boom", encoded.message(15).string(2));
+    assertEquals(2, encoded.message(15).number(3));
+  }
+
+  @Test
+  void testGroupsByResourceAndLibrary() throws Exception {
+    Resource other = Resource.create(Attributes.of(AttributeKey.stringKey("service.name"), "b"));
+    List<SpanData> spans =
+        asList(span("1", resource), span("2", other), span("3", resource), span("4", other));
+
+    ProtobufWriter writer = new ProtobufWriter();
+    int length = OtlpSpanEncoder.encode(writer, spans);
+    ProtobufFields request = ProtobufFields.parse(writer.buffer(), length);
+
+    List<ProtobufFields> resourceSpans = request.messages(1);
+    assertEquals(2, resourceSpans.size());
+    for (ProtobufFields each : resourceSpans) {
+      assertEquals(1, each.messages(2).size());
+      ProtobufFields root = each.message(2).message(2);
+      assertEquals(2, each.message(2).messages(2).size());
+      assertFalse(root.has(4));
+      assertEquals(1, root.message(15).all(3).size());
+    }
+  }
+
+  @Test
+  void testReusesTheBuffer() throws Exception {
+    ProtobufWriter writer = new ProtobufWriter();
+    int first = OtlpSpanEncoder.encode(writer, singletonList(span("1", resource)));
+    byte[] buffer = writer.buffer();
+    int second = OtlpSpanEncoder.encode(writer, singletonList(span("2", resource)));
+
+    assertEquals(first, second);
+    assertSame(buffer, writer.buffer());
+  }
+
+  private SpanData span(String id, Resource resource) {
+    return TestSpanData.newBuilder()
+        .setTraceId("000000000063d76f0000000037fe039" + id)
+        .setSpanId("000000000012d68" + id)
+        .setName("span" + id)
+        .setKind(Span.Kind.INTERNAL)
+        .setStatus(SpanData.Status.ok())
+        .setResource(resource)
+        .setInstrumentationLibraryInfo(library)
+        .setAttributes(Attributes.empty())
+        .setHasEnded(true)
+        .build();
+  }
+}
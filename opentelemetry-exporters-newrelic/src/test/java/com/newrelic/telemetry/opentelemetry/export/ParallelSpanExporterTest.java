@@ -0,0 +1,131 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ParallelSpanExporterTest {
+
+  @Mock private NewRelicSpanExporter delegate;
+
+  private final ExecutorService workers = Executors.newFixedThreadPool(4);
+
+  @AfterEach
+  void tearDown() {
+    workers.shutdownNow();
+  }
+
+  @Test
+  void testSmallCollectionsAreExportedInline() {
+    ParallelSpanExporter testClass = new ParallelSpanExporter(delegate, workers, 4, 10);
+    List<SpanData> spans = makeSpans(5, 15);
+    when(delegate.export(spans)).thenReturn(CompletableResultCode.ofSuccess());
+
+    CompletableResultCode result = testClass.export(spans);
+
+    assertTrue(result.isSuccess());
+    verify(delegate).export(spans);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void testSpansOfATraceStayTogether() {
+    ParallelSpanExporter testClass = new ParallelSpanExporter(delegate, workers, 4, 1);
+    List<SpanData> spans = makeSpans(20, 10);
+    when(delegate.export(any())).thenReturn(CompletableResultCode.ofSuccess());
+
+    CompletableResultCode result = testClass.export(spans).join(5, TimeUnit.SECONDS);
+
+    assertTrue(result.isSuccess());
+    ArgumentCaptor<Collection<SpanData>> captor = ArgumentCaptor.forClass(Collection.class);
+    verify(delegate, atLeast(2)).export(captor.capture());
+    Set<String> seenTraceIds = new HashSet<>();
+    int exported = 0;
+    for (Collection<SpanData> shard : captor.getAllValues()) {
+      Set<String> shardTraceIds = new HashSet<>();
+      shard.forEach(span -> shardTraceIds.add(span.getTraceId()));
+      for (String traceId : shardTraceIds) {
+        assertTrue(seenTraceIds.add(traceId), "trace " + traceId + " was split across shards");
+      }
+      exported += shard.size();
+    }
+    assertEquals(spans.size(), exported);
+  }
+
+  @Test
+  void testFailedShardFailsExport() {
+    ParallelSpanExporter testClass = new ParallelSpanExporter(delegate, workers, 2, 1);
+    List<SpanData> spans = makeSpans(10, 1);
+    when(delegate.export(any())).thenReturn(CompletableResultCode.ofFailure());
+
+    CompletableResultCode result = testClass.export(spans).join(5, TimeUnit.SECONDS);
+
+    assertFalse(result.isSuccess());
+  }
+
+  @Test
+  void testShutdownShutsDownDelegate() {
+    ParallelSpanExporter testClass = new ParallelSpanExporter(delegate, workers, 2, 1);
+    long timeoutNanos = TimeUnit.SECONDS.toNanos(3);
+    when(delegate.getShutdownTimeoutNanos()).thenReturn(timeoutNanos);
+    when(delegate.shutdown(anyLong(), eq(TimeUnit.NANOSECONDS)))
+        .thenReturn(CompletableResultCode.ofSuccess());
+
+    testClass.shutdown();
+
+    ArgumentCaptor<Long> remaining = ArgumentCaptor.forClass(Long.class);
+    verify(delegate, times(1)).shutdown(remaining.capture(), eq(TimeUnit.NANOSECONDS));
+    assertTrue(remaining.getValue() <= timeoutNanos);
+    verify(delegate, never()).shutdown();
+  }
+
+  private static List<SpanData> makeSpans(int traceCount, int spansPerTrace) {
+    List<SpanData> spans = new ArrayList<>();
+    for (int trace = 0; trace < traceCount; trace++) {
+      for (int span = 0; span < spansPerTrace; span++) {
+        spans.add(
+            TestSpanData.newBuilder()
+                .setTraceId(String.format("%032x", trace + 1))
+                .setSpanId(String.format("%016x", trace * spansPerTrace + span + 1))
+                .setName("span")
+                .setKind(Span.Kind.INTERNAL)
+                .setStatus(SpanData.Status.ok())
+                .setHasEnded(true)
+                .build());
+      }
+    }
+    return spans;
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.WireFormat;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** A test helper that reads an encoded protobuf message back into its fields, by field number. */
+class ProtobufFields {
+
+  private final Map<Integer, List<Object>> fields = new HashMap<>();
+
+  static ProtobufFields parse(byte[] bytes, int length) throws IOException {
+    return parse(CodedInputStream.newInstance(bytes, 0, length));
+  }
+
+  private static ProtobufFields parse(CodedInputStream input) throws IOException {
+    ProtobufFields result = new ProtobufFields();
+    int tag;
+    while ((tag = input.readTag()) != 0) {
+      Object value;
+      switch (WireFormat.getTagWireType(tag)) {
+        case WireFormat.WIRETYPE_VARINT:
+          value = input.readInt64();
+          break;
+        case WireFormat.WIRETYPE_FIXED64:
+          value = input.readFixed64();
+          break;
+        case WireFormat.WIRETYPE_LENGTH_DELIMITED:
+          value = input.readBytes();
+          break;
+        case WireFormat.WIRETYPE_FIXED32:
+          value = input.readFixed32();
+          break;
+        default:
+          throw new IOException("Unexpected wire type in tag " + tag);
+      }
+      result
+          .fields
+          .computeIfAbsent(WireFormat.getTagFieldNumber(tag), field -> new ArrayList<>())
+          .add(value);
+    }
+    return result;
+  }
+
+  List<ProtobufFields> messages(int field) throws IOException {
+    List<ProtobufFields> messages = new ArrayList<>();
+    for (Object value : all(field)) {
+      messages.add(parse(((ByteString) value).newCodedInput()));
+    }
+    return messages;
+  }
+
+  ProtobufFields message(int field) throws IOException {
+    return messages(field).get(0);
+  }
+
+  String string(int field) {
+    return ((ByteString) all(field).get(0)).toStringUtf8();
+  }
+
+  byte[] bytes(int field) {
+    return ((ByteString) all(field).get(0)).toByteArray();
+  }
+
+  long number(int field) {
+    return (Long) all(field).get(0);
+  }
+
+  double doubleValue(int field) {
+    return Double.longBitsToDouble(number(field));
+  }
+
+  boolean has(int field) {
+    return fields.containsKey(field);
+  }
+
+  List<Object> all(int field) {
+    return fields.getOrDefault(field, Collections.emptyList());
+  }
+}
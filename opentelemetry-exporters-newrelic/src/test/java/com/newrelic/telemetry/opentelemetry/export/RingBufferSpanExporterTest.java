@@ -0,0 +1,167 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import static com.newrelic.telemetry.opentelemetry.export.TestSpans.span;
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class RingBufferSpanExporterTest {
+
+  @Mock private NewRelicSpanExporter delegate;
+
+  @Test
+  void testExportedSpansReachTheDelegate() {
+    RingBufferSpanExporter testClass = RingBufferSpanExporter.newBuilder(delegate).build();
+    SpanData span = span(1);
+    when(delegate.export(any())).thenReturn(CompletableResultCode.ofSuccess());
+
+    CompletableResultCode result = testClass.export(Collections.singletonList(span));
+
+    assertTrue(result.isSuccess());
+    verify(delegate, timeout(1_000)).export(Collections.singletonList(span));
+  }
+
+  @Test
+  void testDropsAndCountsSpansWhenTheRingIsFull() throws Exception {
+    CountDownLatch exportStarted = new CountDownLatch(1);
+    CountDownLatch releaseExport = new CountDownLatch(1);
+    when(delegate.export(any()))
+        .thenAnswer(
+            invocation -> {
+              exportStarted.countDown();
+              releaseExport.await();
+              return CompletableResultCode.ofSuccess();
+            });
+    RingBufferSpanExporter testClass =
+        RingBufferSpanExporter.newBuilder(delegate).capacity(2).maxExportBatchSize(1).build();
+
+    testClass.export(Collections.singletonList(span(1)));
+    assertTrue(exportStarted.await(1, TimeUnit.SECONDS));
+    CompletableResultCode result = testClass.export(asList(span(2), span(3), span(4)));
+    releaseExport.countDown();
+
+    assertFalse(result.isSuccess());
+    assertEquals(1, testClass.getDroppedCount());
+  }
+
+  @Test
+  void testFlushWaitsForTheRingAndFlushesTheDelegate() {
+    when(delegate.export(any())).thenReturn(CompletableResultCode.ofSuccess());
+    when(delegate.flush()).thenReturn(CompletableResultCode.ofSuccess());
+    RingBufferSpanExporter testClass = RingBufferSpanExporter.newBuilder(delegate).build();
+
+    testClass.export(asList(span(1), span(2)));
+    CompletableResultCode result = testClass.flush().join(5, TimeUnit.SECONDS);
+
+    assertTrue(result.isSuccess());
+    assertEquals(0, testClass.getBufferedCount());
+    verify(delegate).flush();
+  }
+
+  @Test
+  void testShutdownDrainsTheRingAndShutsDownTheDelegate() {
+    when(delegate.export(any())).thenReturn(CompletableResultCode.ofSuccess());
+    when(delegate.shutdown(anyLong(), any())).thenReturn(CompletableResultCode.ofSuccess());
+    RingBufferSpanExporter testClass = RingBufferSpanExporter.newBuilder(delegate).build();
+
+    testClass.export(asList(span(1), span(2)));
+    CompletableResultCode result = testClass.shutdown(5, TimeUnit.SECONDS);
+
+    assertTrue(result.isSuccess());
+    assertEquals(0, testClass.getBufferedCount());
+    assertFalse(testClass.export(Collections.singletonList(span(3))).isSuccess());
+    assertEquals(1, testClass.getDroppedCount());
+  }
+
+  @Test
+  void testSpansExportedDuringShutdownAreSentOrCounted() throws Exception {
+    AtomicLong sent = new AtomicLong();
+    when(delegate.export(any()))
+        .thenAnswer(
+            invocation -> {
+              sent.addAndGet(invocation.<Collection<SpanData>>getArgument(0).size());
+              return CompletableResultCode.ofSuccess();
+            });
+    when(delegate.shutdown(anyLong(), any())).thenReturn(CompletableResultCode.ofSuccess());
+    RingBufferSpanExporter testClass =
+        RingBufferSpanExporter.newBuilder(delegate).maxExportBatchSize(8).build();
+    AtomicLong exported = new AtomicLong();
+    AtomicBoolean producing = new AtomicBoolean(true);
+    CountDownLatch started = new CountDownLatch(4);
+    List<Thread> producers = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      Thread producer =
+          new Thread(
+              () -> {
+                started.countDown();
+                for (int id = 1; producing.get(); id++) {
+                  testClass.export(Collections.singletonList(span(id)));
+                  exported.incrementAndGet();
+                }
+              });
+      producer.start();
+      producers.add(producer);
+    }
+
+    assertTrue(started.await(1, TimeUnit.SECONDS));
+    testClass.shutdown(5, TimeUnit.SECONDS);
+    producing.set(false);
+    for (Thread producer : producers) {
+      producer.join(5_000);
+    }
+
+    assertEquals(exported.get(), sent.get() + testClass.getDroppedCount());
+    assertEquals(0, testClass.getBufferedCount());
+  }
+
+  @Test
+  void testFlushAfterShutdownFails() {
+    when(delegate.shutdown(anyLong(), any())).thenReturn(CompletableResultCode.ofSuccess());
+    RingBufferSpanExporter testClass = RingBufferSpanExporter.newBuilder(delegate).build();
+    testClass.shutdown(5, TimeUnit.SECONDS);
+
+    CompletableResultCode result = testClass.flush().join(5, TimeUnit.SECONDS);
+
+    assertTrue(result.isDone());
+    assertFalse(result.isSuccess());
+    verify(delegate, never()).flush();
+  }
+
+  @Test
+  void testInvalidSettings() {
+    RingBufferSpanExporter.Builder builder = RingBufferSpanExporter.newBuilder(delegate);
+
+    assertThrows(IllegalArgumentException.class, () -> builder.capacity(0));
+    assertThrows(IllegalArgumentException.class, () -> builder.maxExportBatchSize(0));
+    assertThrows(IllegalArgumentException.class, () -> RingBufferSpanExporter.newBuilder(null));
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import static com.newrelic.telemetry.opentelemetry.export.TestSpans.span;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.newrelic.telemetry.Attributes;
+import com.newrelic.telemetry.Response;
+import com.newrelic.telemetry.spans.SpanBatch;
+import com.newrelic.telemetry.spans.SpanBatchSender;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.internal.SystemClock;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class RoutingTelemetryClientTest {
+
+  @Mock private SpanBatchSender defaultSender;
+  @Mock private SpanBatchSender acmeSender;
+
+  private final Response ok = new Response(202, "Accepted", "{}");
+
+  @Test
+  void testRoutesBatchesByResourceAttribute() throws Exception {
+    RoutingTelemetryClient testClass = newClient();
+    SpanBatch acmeBatch =
+        new SpanBatch(singletonList(span("1")), new Attributes().put("tenant.id", "acme"));
+    SpanBatch otherBatch =
+        new SpanBatch(singletonList(span("2")), new Attributes().put("tenant.id", "globex"));
+    when(acmeSender.sendBatch(acmeBatch)).thenReturn(ok);
+    when(defaultSender.sendBatch(otherBatch)).thenReturn(ok);
+
+    testClass.sendBatch(acmeBatch);
+    testClass.sendBatch(otherBatch);
+
+    verify(acmeSender, timeout(1_000)).sendBatch(acmeBatch);
+    verify(defaultSender, timeout(1_000)).sendBatch(otherBatch);
+    verify(defaultSender, never()).sendBatch(acmeBatch);
+  }
+
+  @Test
+  void testSlowRouteDoesNotHoldBackOthers() throws Exception {
+    RoutingTelemetryClient testClass = newClient();
+    SpanBatch acmeBatch =
+        new SpanBatch(singletonList(span("1")), new Attributes().put("tenant.id", "acme"));
+    SpanBatch otherBatch = new SpanBatch(singletonList(span("2")), new Attributes());
+    CountDownLatch releaseAcme = new CountDownLatch(1);
+    when(acmeSender.sendBatch(acmeBatch))
+        .thenAnswer(
+            invocation -> {
+              releaseAcme.await();
+              return ok;
+            });
+    when(defaultSender.sendBatch(otherBatch)).thenReturn(ok);
+
+    testClass.sendBatch(acmeBatch);
+    testClass.sendBatch(otherBatch);
+
+    verify(defaultSender, timeout(1_000)).sendBatch(otherBatch);
+    CompletableResultCode flush = testClass.flush(10, TimeUnit.MILLISECONDS);
+    assertFalse(flush.join(5, TimeUnit.SECONDS).isSuccess());
+    releaseAcme.countDown();
+    assertTrue(testClass.flush(5, TimeUnit.SECONDS).join(5, TimeUnit.SECONDS).isSuccess());
+  }
+
+  @Test
+  void testShutdownCountsDropsOnEveryRoute() throws Exception {
+    RoutingTelemetryClient testClass = newClient();
+    SpanBatch acmeBatch =
+        new SpanBatch(singletonList(span("1")), new Attributes().put("tenant.id", "acme"));
+    CountDownLatch releaseAcme = new CountDownLatch(1);
+    when(acmeSender.sendBatch(acmeBatch))
+        .thenAnswer(
+            invocation -> {
+              releaseAcme.await();
+              return ok;
+            });
+
+    testClass.sendBatch(acmeBatch);
+    CompletableResultCode result = testClass.shutdown(10, TimeUnit.MILLISECONDS);
+
+    assertFalse(result.isSuccess());
+    assertEquals(1, testClass.getDroppedCount());
+    releaseAcme.countDown();
+  }
+
+  @Test
+  void testRouteNeedsAnApiKey() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> ResourceRoute.newBuilder("tenant.id", "acme").build());
+    assertThrows(IllegalArgumentException.class, () -> ResourceRoute.newBuilder(null, "acme"));
+  }
+
+  private RoutingTelemetryClient newClient() {
+    DispatchingTelemetryClient acmeClient =
+        new DispatchingTelemetryClient(
+            null,
+            acmeSender,
+            null,
+            Executors.newSingleThreadExecutor(),
+            limiter(),
+            TimeUnit.SECONDS.toNanos(1),
+            Integer.MAX_VALUE);
+    return new RoutingTelemetryClient(
+        null,
+        defaultSender,
+        null,
+        Executors.newSingleThreadExecutor(),
+        limiter(),
+        TimeUnit.SECONDS.toNanos(1),
+        Integer.MAX_VALUE,
+        singletonList(new RoutingTelemetryClient.Route("tenant.id", "acme", acmeClient)));
+  }
+
+  private static AdaptiveConcurrencyLimiter limiter() {
+    return new AdaptiveConcurrencyLimiter(SystemClock.getInstance(), 1, 4);
+  }
+}
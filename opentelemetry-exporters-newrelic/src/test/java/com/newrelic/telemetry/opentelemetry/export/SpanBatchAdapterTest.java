@@ -11,6 +11,8 @@ import static com.newrelic.telemetry.opentelemetry.export.AttributeNames.INSTRUM
 import static com.newrelic.telemetry.opentelemetry.export.AttributeNames.INSTRUMENTATION_VERSION;
 import static com.newrelic.telemetry.opentelemetry.export.AttributeNames.SERVICE_INSTANCE_ID;
 import static com.newrelic.telemetry.opentelemetry.export.AttributeNames.SPAN_KIND;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.mock;
@@ -18,11 +20,15 @@ import static org.mockito.Mockito.when;
 
 import com.google.common.collect.Sets;
 import com.newrelic.telemetry.Attributes;
+import com.newrelic.telemetry.events.Event;
+import com.newrelic.telemetry.events.EventBatch;
 import com.newrelic.telemetry.spans.SpanBatch;
 import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.SpanContext;
 import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
 import io.opentelemetry.sdk.common.InstrumentationLibraryInfo;
 import io.opentelemetry.sdk.resources.Resource;
 import io.opentelemetry.sdk.trace.data.SpanData;
@@ -70,7 +76,8 @@ class SpanBatchAdapterTest {
                 .put("datacenter", "boo")
                 .put(SERVICE_INSTANCE_ID, "instanceId"));
 
-    SpanBatchAdapter testClass = new SpanBatchAdapter(new Attributes(), "instanceId");
+    SpanBatchAdapter testClass =
+        new SpanBatchAdapter(new Attributes(), "instanceId", false, false, false);
 
     Resource inputResource =
         Resource.create(
@@ -182,7 +189,8 @@ class SpanBatchAdapterTest {
                     .put("datacenter", "useast-1")
                     .put(SERVICE_INSTANCE_ID, "instanceId")));
 
-    SpanBatchAdapter testClass = new SpanBatchAdapter(new Attributes(), "instanceId");
+    SpanBatchAdapter testClass =
+        new SpanBatchAdapter(new Attributes(), "instanceId", false, false, false);
 
     Collection<SpanBatch> result =
         testClass.adaptToSpanBatches(Arrays.asList(inputSpan1, inputSpan2));
@@ -190,6 +198,157 @@ class SpanBatchAdapterTest {
     assertEquals(expected, new HashSet<>(result));
   }
 
+  @Test
+  void testGroupingByInstrumentationLibrary() {
+    Resource resource =
+        Resource.create(
+            io.opentelemetry.api.common.Attributes.of(AttributeKey.stringKey("host"), "abcd"));
+    InstrumentationLibraryInfo jetty = InstrumentationLibraryInfo.create("jetty-server", "9.4");
+    InstrumentationLibraryInfo jdbc = InstrumentationLibraryInfo.create("jdbc", null);
+
+    SpanData jettySpan = buildSpan(resource, jetty, Span.Kind.SERVER);
+    SpanData jdbcSpan = buildSpan(resource, jdbc, Span.Kind.CLIENT);
+
+    Attributes commonAttributes =
+        new Attributes()
+            .put(INSTRUMENTATION_PROVIDER, "opentelemetry")
+            .put(COLLECTOR_NAME, "newrelic-opentelemetry-exporter")
+            .put("host", "abcd")
+            .put(SERVICE_INSTANCE_ID, "instanceId");
+    Set<SpanBatch> expected =
+        Sets.newHashSet(
+            new SpanBatch(
+                singletonList(buildGroupedResultSpan("SERVER")),
+                commonAttributes
+                    .copy()
+                    .put(INSTRUMENTATION_NAME, "jetty-server")
+                    .put(INSTRUMENTATION_VERSION, "9.4")),
+            new SpanBatch(
+                singletonList(buildGroupedResultSpan("CLIENT")),
+                commonAttributes.copy().put(INSTRUMENTATION_NAME, "jdbc")));
+
+    SpanBatchAdapter testClass =
+        new SpanBatchAdapter(new Attributes(), "instanceId", true, false, false);
+
+    Collection<SpanBatch> result = testClass.adaptToSpanBatches(Arrays.asList(jettySpan, jdbcSpan));
+    // wrap in a Set to get rid of any order dependency in the test.
+    assertEquals(expected, new HashSet<>(result));
+  }
+
+  @Test
+  void testThreadLocalPoolsProduceTheSameBatches() {
+    Resource resource1 =
+        Resource.create(
+            io.opentelemetry.api.common.Attributes.of(AttributeKey.stringKey("host"), "abcd"));
+    Resource resource2 =
+        Resource.create(
+            io.opentelemetry.api.common.Attributes.of(AttributeKey.stringKey("host"), "efgh"));
+    InstrumentationLibraryInfo jetty = InstrumentationLibraryInfo.create("jetty-server", "9.4");
+    InstrumentationLibraryInfo jdbc = InstrumentationLibraryInfo.create("jdbc", null);
+    Collection<SpanData> spans =
+        asList(
+            buildSpan(resource1, jetty, Span.Kind.SERVER),
+            buildSpan(resource1, jdbc, Span.Kind.CLIENT),
+            buildSpan(resource2, jetty, Span.Kind.SERVER));
+
+    for (boolean groupByLibrary : new boolean[] {false, true}) {
+      SpanBatchAdapter unpooled =
+          new SpanBatchAdapter(new Attributes(), "instanceId", groupByLibrary, false, false);
+      SpanBatchAdapter pooled =
+          new SpanBatchAdapter(new Attributes(), "instanceId", groupByLibrary, false, true);
+      Set<SpanBatch> expected = new HashSet<>(unpooled.adaptToSpanBatches(spans));
+
+      // the second export reuses the collections recycled by the first.
+      assertEquals(expected, new HashSet<>(pooled.adaptToSpanBatches(spans)));
+      assertEquals(expected, new HashSet<>(pooled.adaptToSpanBatches(spans)));
+    }
+  }
+
+  @Test
+  void testEventsAndLinks() {
+    String linkedTraceId = "000000000063d76f0000000037fe0394";
+    String linkedSpanId = "000000000012d686";
+    SpanData inputSpan =
+        TestSpanData.newBuilder()
+            .setTraceId(traceId)
+            .setSpanId(spanId)
+            .setStartEpochNanos(1_000_456_001_000L)
+            .setEndEpochNanos(1_001_789_021_111L)
+            .setName("spanName")
+            .setKind(Span.Kind.SERVER)
+            .setStatus(SpanData.Status.ok())
+            .setEvents(
+                singletonList(
+                    SpanData.Event.create(
+                        1_000_500_000_000L,
+                        "exception",
+                        io.opentelemetry.api.common.Attributes.of(
+                            AttributeKey.stringKey("exception.type"), "IOException"))))
+            .setLinks(
+                singletonList(
+                    SpanData.Link.create(
+                        SpanContext.create(
+                            linkedTraceId,
+                            linkedSpanId,
+                            TraceFlags.getDefault(),
+                            TraceState.getDefault()))))
+            .setHasEnded(true)
+            .build();
+
+    Attributes commonAttributes =
+        new Attributes()
+            .put(INSTRUMENTATION_PROVIDER, "opentelemetry")
+            .put(COLLECTOR_NAME, "newrelic-opentelemetry-exporter")
+            .put(SERVICE_INSTANCE_ID, "instanceId");
+    Event expectedEvent =
+        new Event(
+            "SpanEvent",
+            new Attributes()
+                .put("trace.id", traceId)
+                .put("span.id", spanId)
+                .put("name", "exception")
+                .put("exception.type", "IOException"),
+            1_000_500);
+    Event expectedLink =
+        new Event(
+            "SpanLink",
+            new Attributes()
+                .put("trace.id", traceId)
+                .put("id", spanId)
+                .put("linkedTraceId", linkedTraceId)
+                .put("linkedSpanId", linkedSpanId),
+            1_000_456);
+    EventBatch expected = new EventBatch(asList(expectedEvent, expectedLink), commonAttributes);
+
+    SpanBatchAdapter testClass =
+        new SpanBatchAdapter(new Attributes(), "instanceId", false, true, false);
+
+    assertEquals(singletonList(expected), testClass.adaptToEventBatches(singletonList(inputSpan)));
+  }
+
+  @Test
+  void testEventsAndLinksDisabledByDefault() {
+    SpanData inputSpan =
+        TestSpanData.newBuilder()
+            .setTraceId(traceId)
+            .setSpanId(spanId)
+            .setName("spanName")
+            .setKind(Span.Kind.SERVER)
+            .setEvents(
+                singletonList(
+                    SpanData.Event.create(
+                        1_000_500_000_000L,
+                        "exception",
+                        io.opentelemetry.api.common.Attributes.empty())))
+            .setHasEnded(true)
+            .build();
+
+    SpanBatchAdapter testClass =
+        new SpanBatchAdapter(new Attributes(), "instanceId", false, false, false);
+
+    assertEquals(emptyList(), testClass.adaptToEventBatches(singletonList(inputSpan)));
+  }
+
   @Test
   void testAttributes() {
     com.newrelic.telemetry.spans.Span resultSpan =
@@ -215,7 +374,8 @@ class SpanBatchAdapterTest {
                 .put(COLLECTOR_NAME, "newrelic-opentelemetry-exporter")
                 .put(AttributeNames.SERVICE_INSTANCE_ID, "1234.5678"));
 
-    SpanBatchAdapter testClass = new SpanBatchAdapter(new Attributes(), "instanceId");
+    SpanBatchAdapter testClass =
+        new SpanBatchAdapter(new Attributes(), "instanceId", false, false, false);
 
     SpanData inputSpan =
         TestSpanData.newBuilder()
@@ -250,7 +410,8 @@ class SpanBatchAdapterTest {
 
   @Test
   void testMinimalData() {
-    SpanBatchAdapter testClass = new SpanBatchAdapter(new Attributes(), "instanceId");
+    SpanBatchAdapter testClass =
+        new SpanBatchAdapter(new Attributes(), "instanceId", false, false, false);
 
     SpanData inputSpan =
         TestSpanData.newBuilder()
@@ -283,7 +444,8 @@ class SpanBatchAdapterTest {
                 .put(SERVICE_INSTANCE_ID, "instanceId"));
 
     SpanBatchAdapter testClass =
-        new SpanBatchAdapter(new Attributes().put("host", "localhost"), "instanceId");
+        new SpanBatchAdapter(
+            new Attributes().put("host", "localhost"), "instanceId", false, false, false);
 
     SpanData inputSpan = buildSpan(SpanData.Status.create(StatusCode.ERROR, "it's broken"));
 
@@ -306,7 +468,8 @@ class SpanBatchAdapterTest {
                 .put(SERVICE_INSTANCE_ID, "instanceId"));
 
     SpanBatchAdapter testClass =
-        new SpanBatchAdapter(new Attributes().put("host", "localhost"), "instanceId");
+        new SpanBatchAdapter(
+            new Attributes().put("host", "localhost"), "instanceId", false, false, false);
 
     SpanData inputSpan = buildSpan(SpanData.Status.error());
 
@@ -342,4 +505,30 @@ class SpanBatchAdapterTest {
     }
     return builder.build();
   }
+
+  private com.newrelic.telemetry.spans.Span buildGroupedResultSpan(String kind) {
+    return com.newrelic.telemetry.spans.Span.builder(spanId)
+        .traceId(traceId)
+        .timestamp(1000456)
+        .name("spanName")
+        .durationMs(1333.020111d)
+        .attributes(new Attributes().put(SPAN_KIND, kind))
+        .build();
+  }
+
+  private SpanData buildSpan(
+      Resource resource, InstrumentationLibraryInfo libraryInfo, Span.Kind kind) {
+    return TestSpanData.newBuilder()
+        .setTraceId(traceId)
+        .setSpanId(spanId)
+        .setStartEpochNanos(1_000_456_001_000L)
+        .setEndEpochNanos(1_001_789_021_111L)
+        .setName("spanName")
+        .setStatus(SpanData.Status.ok())
+        .setResource(resource)
+        .setInstrumentationLibraryInfo(libraryInfo)
+        .setKind(kind)
+        .setHasEnded(true)
+        .build();
+  }
 }
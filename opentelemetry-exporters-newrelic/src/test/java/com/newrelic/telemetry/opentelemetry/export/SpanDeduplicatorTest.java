@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class SpanDeduplicatorTest {
+
+  private final String traceId = "000000000063d76f0000000037fe0393";
+
+  @Test
+  void testDropsDuplicatesWithinABatchAndAcrossBatches() {
+    SpanDeduplicator testClass = new SpanDeduplicator(1_000, 0.0001);
+    SpanData first = span(traceId, "000000000012d685");
+    SpanData second = span(traceId, "000000002e5a40d9");
+
+    assertEquals(
+        asList(first, second),
+        testClass.removeDuplicates(asList(first, second, span(traceId, "000000000012d685"))));
+    SpanData third = span(traceId, "0000000000000001");
+    assertEquals(
+        singletonList(third),
+        testClass.removeDuplicates(asList(span(traceId, "000000002e5a40d9"), third)));
+  }
+
+  @Test
+  void testForgetsSpansAfterTwoRotations() {
+    SpanDeduplicator testClass = new SpanDeduplicator(10, 0.0001);
+    SpanData original = span(traceId, "000000000012d685");
+    testClass.removeDuplicates(singletonList(original));
+
+    // fills the rest of the first filter, then all of the second.
+    testClass.removeDuplicates(spans(19));
+    assertTrue(testClass.removeDuplicates(singletonList(original)).isEmpty());
+
+    // rotating again clears the filter that the original was recorded in.
+    testClass.removeDuplicates(spans(10));
+    assertEquals(1, testClass.removeDuplicates(singletonList(original)).size());
+  }
+
+  @Test
+  void testFalsePositiveRateAndFixedMemory() {
+    int capacity = 100_000;
+    SpanDeduplicator testClass = new SpanDeduplicator(capacity, 0.001);
+    long memoryBytes = testClass.getMemoryBytes();
+
+    List<SpanData> unique = spans(4 * capacity);
+    int kept = testClass.removeDuplicates(unique).size();
+
+    assertTrue(4 * capacity - kept < 4 * capacity * 0.001, "dropped " + (4 * capacity - kept));
+    assertEquals(memoryBytes, testClass.getMemoryBytes());
+    assertTrue(memoryBytes < capacity * 5, "uses " + memoryBytes + " bytes");
+  }
+
+  @Test
+  void testRejectsInvalidSettings() {
+    assertThrows(IllegalArgumentException.class, () -> new SpanDeduplicator(0, 0.01));
+    assertThrows(IllegalArgumentException.class, () -> new SpanDeduplicator(10, 0));
+    assertThrows(IllegalArgumentException.class, () -> new SpanDeduplicator(10, 1));
+  }
+
+  private List<SpanData> spans(int count) {
+    List<SpanData> spans = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      String randomTraceId =
+          String.format("%016x%016x", (long) i * 0x9e3779b97f4a7c15L, (long) count + i);
+      spans.add(span(randomTraceId, String.format("%016x", i + 1L)));
+    }
+    return spans;
+  }
+
+  private static SpanData span(String traceId, String spanId) {
+    return TestSpanData.newBuilder()
+        .setTraceId(traceId)
+        .setSpanId(spanId)
+        .setResource(Resource.create(io.opentelemetry.api.common.Attributes.empty()))
+        .setName("spanName")
+        .setStatus(SpanData.Status.ok())
+        .setStartEpochNanos(456_001_000L)
+        .setEndEpochNanos(456_001_100L)
+        .setHasEnded(true)
+        .build();
+  }
+}
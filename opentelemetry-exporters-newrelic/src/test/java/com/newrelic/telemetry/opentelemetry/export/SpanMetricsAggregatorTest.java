@@ -0,0 +1,151 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import static com.newrelic.telemetry.opentelemetry.export.AttributeNames.SPAN_KIND;
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import com.newrelic.telemetry.Attributes;
+import com.newrelic.telemetry.metrics.Metric;
+import com.newrelic.telemetry.metrics.MetricBatch;
+import com.newrelic.telemetry.metrics.Summary;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.sdk.common.Clock;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class SpanMetricsAggregatorTest {
+
+  @Mock private Clock clock;
+
+  private final Resource resource =
+      Resource.create(
+          io.opentelemetry.api.common.Attributes.of(
+              AttributeKey.stringKey("service.name"), "checkout"));
+
+  @Test
+  void testAggregatesByNameKindAndStatus() {
+    when(clock.now()).thenReturn(0L, 60_000_000_000L);
+    SpanMetricsAggregator testClass =
+        new SpanMetricsAggregator(new Attributes().put("host", "bar"), clock);
+    SpanData fast = span("GET /cart", Span.Kind.SERVER, SpanData.Status.ok(), 1_000, 3_000_000);
+    SpanData slow = span("GET /cart", Span.Kind.SERVER, SpanData.Status.ok(), 2_000, 9_000_000);
+    SpanData failed =
+        span("GET /cart", Span.Kind.SERVER, SpanData.Status.error(), 5_000, 1_000_000);
+    SpanData client = span("SELECT", Span.Kind.CLIENT, SpanData.Status.unset(), 4_000, 2_000_000);
+
+    testClass.record(asList(fast, slow, failed, client));
+    Collection<MetricBatch> result = testClass.harvest();
+
+    assertEquals(1, result.size());
+    MetricBatch batch = result.iterator().next();
+    assertEquals(
+        new Attributes().put("host", "bar").put("service.name", "checkout"),
+        batch.getCommonAttributes());
+    Set<Metric> expected = new HashSet<>();
+    expected.add(summary("GET /cart", "SERVER", StatusCode.OK, 2, 12d, 3d, 9d, 0, 60_000));
+    expected.add(summary("GET /cart", "SERVER", StatusCode.ERROR, 1, 1d, 1d, 1d, 0, 60_000));
+    expected.add(summary("SELECT", "CLIENT", StatusCode.UNSET, 1, 2d, 2d, 2d, 0, 60_000));
+    assertEquals(expected, new HashSet<>(batch.getTelemetry()));
+  }
+
+  @Test
+  void testSpansAreAggregatedUntilHarvested() {
+    when(clock.now()).thenReturn(0L, 60_000_000_000L, 120_000_000_000L);
+    SpanMetricsAggregator testClass = new SpanMetricsAggregator(new Attributes(), clock);
+    SpanData first = span("GET /cart", Span.Kind.SERVER, SpanData.Status.ok(), 1_000, 3_000_000);
+    SpanData second = span("GET /cart", Span.Kind.SERVER, SpanData.Status.ok(), 2_000, 9_000_000);
+
+    testClass.record(asList(first));
+    testClass.record(asList(second));
+    Collection<MetricBatch> result = testClass.harvest();
+
+    assertEquals(1, result.size());
+    assertEquals(
+        asList(summary("GET /cart", "SERVER", StatusCode.OK, 2, 12d, 3d, 9d, 0, 60_000)),
+        result.iterator().next().getTelemetry());
+    assertTrue(testClass.harvest().isEmpty());
+  }
+
+  @Test
+  void testOneBatchPerResource() {
+    SpanMetricsAggregator testClass = new SpanMetricsAggregator(new Attributes(), clock);
+    Resource other =
+        Resource.create(
+            io.opentelemetry.api.common.Attributes.of(
+                AttributeKey.stringKey("service.name"), "billing"));
+    SpanData checkout = span("GET /cart", Span.Kind.SERVER, SpanData.Status.ok(), 0, 1_000_000);
+    SpanData billing =
+        TestSpanData.newBuilder()
+            .setTraceId("000000000063d76f0000000037fe0393")
+            .setSpanId("000000000012d685")
+            .setResource(other)
+            .setName("charge")
+            .setKind(Span.Kind.SERVER)
+            .setStatus(SpanData.Status.ok())
+            .setStartEpochNanos(0)
+            .setEndEpochNanos(1_000_000)
+            .setHasEnded(true)
+            .build();
+
+    testClass.record(asList(checkout, billing));
+    Collection<MetricBatch> result = testClass.harvest();
+
+    assertEquals(2, result.size());
+  }
+
+  private SpanData span(
+      String name, Span.Kind kind, SpanData.Status status, long startNanos, long durationNanos) {
+    return TestSpanData.newBuilder()
+        .setTraceId("000000000063d76f0000000037fe0393")
+        .setSpanId("000000000012d685")
+        .setResource(resource)
+        .setName(name)
+        .setKind(kind)
+        .setStatus(status)
+        .setStartEpochNanos(startNanos)
+        .setEndEpochNanos(startNanos + durationNanos)
+        .setHasEnded(true)
+        .build();
+  }
+
+  private static Summary summary(
+      String name,
+      String kind,
+      StatusCode statusCode,
+      int count,
+      double sum,
+      double min,
+      double max,
+      long startMs,
+      long endMs) {
+    return new Summary(
+        SpanMetricsAggregator.DURATION_METRIC_NAME,
+        count,
+        sum,
+        min,
+        max,
+        startMs,
+        endMs,
+        new Attributes()
+            .put(SpanMetricsAggregator.SPAN_NAME, name)
+            .put(SPAN_KIND, kind)
+            .put(SpanMetricsAggregator.STATUS_CODE, statusCode.name()));
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import static com.newrelic.telemetry.opentelemetry.export.TestSpans.span;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.opentelemetry.sdk.trace.data.SpanData;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class SpanRingBufferTest {
+
+  @Test
+  void testCapacityIsRoundedUpToAPowerOfTwo() {
+    assertEquals(1, new SpanRingBuffer(1).getCapacity());
+    assertEquals(8, new SpanRingBuffer(5).getCapacity());
+    assertEquals(8, new SpanRingBuffer(8).getCapacity());
+    assertThrows(IllegalArgumentException.class, () -> new SpanRingBuffer(0));
+  }
+
+  @Test
+  void testDrainsInOrder() {
+    SpanRingBuffer testClass = new SpanRingBuffer(4);
+    SpanData first = span(1);
+    SpanData second = span(2);
+    testClass.offer(first);
+    testClass.offer(second);
+
+    List<SpanData> drained = new ArrayList<>();
+    assertEquals(2, testClass.drainTo(drained, 10));
+
+    assertEquals(first, drained.get(0));
+    assertEquals(second, drained.get(1));
+    assertEquals(0, testClass.drainTo(drained, 10));
+  }
+
+  @Test
+  void testOfferFailsWhenFull() {
+    SpanRingBuffer testClass = new SpanRingBuffer(2);
+
+    assertTrue(testClass.offer(span(1)));
+    assertTrue(testClass.offer(span(2)));
+    assertFalse(testClass.offer(span(3)));
+
+    List<SpanData> drained = new ArrayList<>();
+    assertEquals(1, testClass.drainTo(drained, 1));
+    assertTrue(testClass.offer(span(3)));
+  }
+
+  @Test
+  void testWrapsAround() {
+    SpanRingBuffer testClass = new SpanRingBuffer(4);
+    List<SpanData> drained = new ArrayList<>();
+
+    for (int i = 1; i <= 10; i++) {
+      assertTrue(testClass.offer(span(i)));
+      assertTrue(testClass.offer(span(i + 100)));
+      testClass.drainTo(drained, 2);
+    }
+
+    assertEquals(20, drained.size());
+    assertEquals(20, testClass.getConsumedCount());
+    assertEquals(span(10), drained.get(18));
+    assertEquals(span(110), drained.get(19));
+  }
+
+  @Test
+  void testConcurrentProducers() throws Exception {
+    int producers = 4;
+    int spansPerProducer = 10_000;
+    SpanRingBuffer testClass = new SpanRingBuffer(256);
+    ExecutorService executor = Executors.newFixedThreadPool(producers);
+    CountDownLatch done = new CountDownLatch(producers);
+    for (int p = 0; p < producers; p++) {
+      int producer = p;
+      executor.execute(
+          () -> {
+            for (int i = 0; i < spansPerProducer; i++) {
+              SpanData span = span(producer * spansPerProducer + i + 1);
+              while (!testClass.offer(span)) {
+                Thread.yield();
+              }
+            }
+            done.countDown();
+          });
+    }
+
+    Set<String> spanIds = new HashSet<>();
+    List<SpanData> drained = new ArrayList<>();
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+    while (spanIds.size() < producers * spansPerProducer && System.nanoTime() < deadline) {
+      drained.clear();
+      testClass.drainTo(drained, 64);
+      drained.forEach(span -> assertTrue(spanIds.add(span.getSpanId())));
+    }
+    executor.shutdown();
+
+    assertTrue(done.await(1, TimeUnit.SECONDS));
+    assertEquals(producers * spansPerProducer, spanIds.size());
+  }
+}
@@ -31,6 +31,8 @@ public class TestSpanData implements SpanData {
   private final InstrumentationLibraryInfo instrumentationLibraryInfo;
   private final boolean hasEnded;
   private final Attributes attributes;
+  private final List<Event> events;
+  private final List<Link> links;
 
   public TestSpanData(Builder builder) {
     this.traceId = builder.traceId;
@@ -47,6 +49,8 @@ public class TestSpanData implements SpanData {
     this.instrumentationLibraryInfo = builder.instrumentationLibraryInfo;
     this.hasEnded = builder.hasEnded;
     this.attributes = builder.attributes;
+    this.events = builder.events;
+    this.links = builder.links;
   }
 
   public static Builder newBuilder() {
@@ -115,12 +119,12 @@ public class TestSpanData implements SpanData {
 
   @Override
   public List<Event> getEvents() {
-    return null;
+    return events;
   }
 
   @Override
   public List<Link> getLinks() {
-    return null;
+    return links;
   }
 
   @Override
@@ -174,6 +178,8 @@ public class TestSpanData implements SpanData {
     private Span.Kind kind;
     private boolean hasEnded;
     private Attributes attributes = Attributes.empty();
+    private List<Event> events;
+    private List<Link> links;
 
     public Builder setTraceId(String traceId) {
       this.traceId = traceId;
@@ -244,5 +250,15 @@ public class TestSpanData implements SpanData {
       this.attributes = attributes;
       return this;
     }
+
+    public Builder setEvents(List<Event> events) {
+      this.events = events;
+      return this;
+    }
+
+    public Builder setLinks(List<Link> links) {
+      this.links = links;
+      return this;
+    }
   }
 }
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import com.newrelic.telemetry.spans.Span;
+import io.opentelemetry.sdk.trace.data.SpanData;
+
+/** Minimal spans for tests that only care about telling spans apart. */
+final class TestSpans {
+
+  private TestSpans() {}
+
+  /**
+   * @param id the span id, which is also what tells two spans apart.
+   * @return a New Relic span in a trace shared by every span from here.
+   */
+  static Span span(String id) {
+    return Span.builder(id).traceId("trace").timestamp(1_000).durationMs(1d).build();
+  }
+
+  /**
+   * @param id the trace and span id, as a number.
+   * @return an ended OpenTelemetry span in its own trace.
+   */
+  static SpanData span(int id) {
+    return TestSpanData.newBuilder()
+        .setTraceId(String.format("%032x", id))
+        .setSpanId(String.format("%016x", id))
+        .setName("span")
+        .setKind(io.opentelemetry.api.trace.Span.Kind.INTERNAL)
+        .setStatus(SpanData.Status.ok())
+        .setHasEnded(true)
+        .build();
+  }
+}
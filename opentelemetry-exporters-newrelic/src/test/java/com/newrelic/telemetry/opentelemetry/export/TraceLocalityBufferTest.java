@@ -0,0 +1,110 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.sdk.common.Clock;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class TraceLocalityBufferTest {
+
+  private static final String TRACE_1 = "000000000063d76f0000000037fe0393";
+  private static final String TRACE_2 = "000000000063d76f0000000037fe0394";
+  private static final String ROOT_ID = "000000002e5a40d9";
+
+  @Mock private Clock clock;
+
+  @Test
+  void testReleasesTraceWhenItsRootArrives() {
+    TraceLocalityBuffer testClass = new TraceLocalityBuffer(clock, 1_000, 100);
+    SpanData child1 = child(TRACE_1, "0000000000000001");
+    SpanData child2 = child(TRACE_1, "0000000000000002");
+    SpanData otherTrace = child(TRACE_2, "0000000000000003");
+    SpanData root = root(TRACE_1);
+
+    assertEquals(emptyList(), testClass.add(asList(child1, otherTrace)));
+    assertEquals(asList(child1, child2, root), testClass.add(asList(child2, root)));
+    assertEquals(1, testClass.getBufferedSpanCount());
+  }
+
+  @Test
+  void testReleasesTracesOnceTheWindowHasPassed() {
+    TraceLocalityBuffer testClass = new TraceLocalityBuffer(clock, 1_000, 100);
+    SpanData child1 = child(TRACE_1, "0000000000000001");
+    SpanData child2 = child(TRACE_2, "0000000000000002");
+
+    when(clock.nanoTime()).thenReturn(0L, 500L, 999L, 1_400L);
+    testClass.add(singletonList(child1));
+    testClass.add(singletonList(child2));
+
+    assertEquals(emptyList(), testClass.takeExpired());
+    assertEquals(singletonList(child1), testClass.takeExpired());
+    assertEquals(1, testClass.getBufferedSpanCount());
+  }
+
+  @Test
+  void testReleasesOldestTracesWhenOverTheCap() {
+    TraceLocalityBuffer testClass = new TraceLocalityBuffer(clock, 1_000, 2);
+    SpanData child1 = child(TRACE_1, "0000000000000001");
+    SpanData child2 = child(TRACE_1, "0000000000000002");
+    SpanData child3 = child(TRACE_2, "0000000000000003");
+
+    assertEquals(asList(child1, child2), testClass.add(asList(child1, child2, child3)));
+    assertEquals(1, testClass.getBufferedSpanCount());
+  }
+
+  @Test
+  void testDrainReleasesEverythingGroupedByTrace() {
+    TraceLocalityBuffer testClass = new TraceLocalityBuffer(clock, 1_000, 100);
+    SpanData child1 = child(TRACE_1, "0000000000000001");
+    SpanData child2 = child(TRACE_2, "0000000000000002");
+    SpanData child3 = child(TRACE_1, "0000000000000003");
+
+    testClass.add(asList(child1, child2, child3));
+
+    assertEquals(asList(child1, child3, child2), testClass.drain());
+    assertEquals(0, testClass.getBufferedSpanCount());
+  }
+
+  @Test
+  void testInvalidSettings() {
+    assertThrows(IllegalArgumentException.class, () -> new TraceLocalityBuffer(clock, 0, 100));
+    assertThrows(IllegalArgumentException.class, () -> new TraceLocalityBuffer(clock, 1_000, 0));
+  }
+
+  private static SpanData root(String traceId) {
+    return TestSpanData.newBuilder()
+        .setTraceId(traceId)
+        .setSpanId(ROOT_ID)
+        .setName("root")
+        .setKind(Span.Kind.SERVER)
+        .setHasEnded(true)
+        .build();
+  }
+
+  private static SpanData child(String traceId, String spanId) {
+    return TestSpanData.newBuilder()
+        .setTraceId(traceId)
+        .setSpanId(spanId)
+        .setParentSpanId(ROOT_ID)
+        .setName("child")
+        .setKind(Span.Kind.INTERNAL)
+        .setHasEnded(true)
+        .build();
+  }
+}
@@ -0,0 +1,22 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+class VersionFinderTest {
+
+  @Test
+  void testVersionIsReadOnce() {
+    String version = VersionFinder.readVersion();
+
+    assertNotNull(version);
+    assertSame(version, VersionFinder.readVersion());
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonMap;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.newrelic.telemetry.http.HttpPoster;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ZstdDictionaryTrainerTest {
+
+  @Test
+  void testTrainsFromRecordedSamples(@TempDir Path directory) throws Exception {
+    PayloadSampleRecorder recorder =
+        new PayloadSampleRecorder(mock(HttpPoster.class), directory, 150);
+    URL url = new URL("http://localhost/v1/traces");
+    for (int i = 0; i < 200; i++) {
+      byte[] payload = ZstdHttpPosterTest.payload(i);
+      if (i % 2 == 0) {
+        recorder.post(url, emptyMap(), payload, "application/json");
+      } else {
+        recorder.post(
+            url,
+            singletonMap("Content-Encoding", "gzip"),
+            IngestResponses.gzip(payload, payload.length),
+            "application/json");
+      }
+    }
+
+    List<byte[]> samples = ZstdDictionaryTrainer.readSamples(directory);
+    assertEquals(150, samples.size());
+    byte[] dictionary = ZstdDictionaryTrainer.train(samples, 4096);
+
+    byte[] payload = ZstdHttpPosterTest.payload(1000);
+    byte[] withDictionary = Zstd.compress(payload, new ZstdDictCompress(dictionary, 3));
+    byte[] gzipped = IngestResponses.gzip(payload, payload.length);
+    assertTrue(withDictionary.length < gzipped.length);
+    assertTrue(withDictionary.length < Zstd.compress(payload, 3).length);
+  }
+
+  @Test
+  void testRejectsTooFewSamples() {
+    List<byte[]> samples = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      samples.add(ZstdHttpPosterTest.payload(i));
+    }
+
+    assertThrows(IllegalArgumentException.class, () -> ZstdDictionaryTrainer.train(samples, 4096));
+  }
+
+  @Test
+  void testReadsSamplesAsWritten(@TempDir Path directory) throws Exception {
+    byte[] payload = ZstdHttpPosterTest.payload(1);
+    Files.write(directory.resolve("plain"), payload);
+    Files.write(directory.resolve("gzipped"), IngestResponses.gzip(payload, payload.length));
+
+    List<byte[]> samples = ZstdDictionaryTrainer.readSamples(directory);
+
+    assertEquals(2, samples.size());
+    assertArrayEquals(payload, samples.get(0));
+    assertArrayEquals(payload, samples.get(1));
+  }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2020 New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.telemetry.opentelemetry.export;
+
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonMap;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.newrelic.telemetry.http.HttpPoster;
+import com.newrelic.telemetry.http.HttpResponse;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ZstdHttpPosterTest {
+
+  private static byte[] dictionary;
+
+  @Mock private HttpPoster delegate;
+
+  private final ArgumentCaptor<Map<String, String>> headers = ArgumentCaptor.forClass(Map.class);
+  private final ArgumentCaptor<byte[]> bodies = ArgumentCaptor.forClass(byte[].class);
+
+  @BeforeAll
+  static void trainDictionary() {
+    List<byte[]> samples = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      samples.add(payload(i));
+    }
+    dictionary = ZstdDictionaryTrainer.train(samples, 4096);
+  }
+
+  @Test
+  void testGzippedBodyIsSentAsZstd() throws Exception {
+    ZstdHttpPoster testClass = new ZstdHttpPoster(delegate, dictionary, 3);
+    URL url = new URL("http://localhost/v1/traces");
+    byte[] payload = payload(1000);
+    byte[] gzipped = IngestResponses.gzip(payload, payload.length);
+    when(delegate.post(any(), any(), any(), any())).thenReturn(response(202));
+
+    testClass.post(url, singletonMap("Content-Encoding", "gzip"), gzipped, "application/json");
+
+    verify(delegate).post(any(), headers.capture(), bodies.capture(), any());
+    assertEquals("zstd", headers.getValue().get("Content-Encoding"));
+    byte[] compressed = bodies.getValue();
+    assertTrue(compressed.length < gzipped.length);
+    assertArrayEquals(
+        payload, Zstd.decompress(compressed, new ZstdDictDecompress(dictionary), payload.length));
+  }
+
+  @Test
+  void testFallsBackToGzipWhenZstdIsRejected() throws Exception {
+    ZstdHttpPoster testClass = new ZstdHttpPoster(delegate, dictionary, 3);
+    URL url = new URL("http://localhost/v1/metrics");
+    byte[] payload = payload(1000);
+    byte[] gzipped = IngestResponses.gzip(payload, payload.length);
+    when(delegate.post(any(), any(), any(), any())).thenReturn(response(415), response(202));
+
+    HttpResponse first =
+        testClass.post(url, singletonMap("Content-Encoding", "gzip"), gzipped, "application/json");
+    HttpResponse second =
+        testClass.post(url, singletonMap("Content-Encoding", "gzip"), gzipped, "application/json");
+
+    assertEquals(202, first.getCode());
+    assertEquals(202, second.getCode());
+    assertTrue(testClass.isRejected());
+    verify(delegate, times(3)).post(any(), headers.capture(), bodies.capture(), any());
+    assertEquals("zstd", headers.getAllValues().get(0).get("Content-Encoding"));
+    assertEquals("gzip", headers.getAllValues().get(1).get("Content-Encoding"));
+    assertEquals("gzip", headers.getAllValues().get(2).get("Content-Encoding"));
+    assertArrayEquals(gzipped, bodies.getAllValues().get(1));
+    assertArrayEquals(gzipped, bodies.getAllValues().get(2));
+  }
+
+  @Test
+  void testFallsBackToGzipOnBadRequestNamingTheEncoding() throws Exception {
+    ZstdHttpPoster testClass = new ZstdHttpPoster(delegate, dictionary, 3);
+    URL url = new URL("http://localhost/v1/metrics");
+    byte[] payload = payload(1000);
+    when(delegate.post(any(), any(), any(), any()))
+        .thenReturn(
+            new HttpResponse("unsupported Content-Encoding: zstd", 400, "", emptyMap()),
+            response(202));
+
+    HttpResponse result = testClass.post(url, emptyMap(), payload, "application/x-protobuf");
+
+    assertEquals(202, result.getCode());
+    assertTrue(testClass.isRejected());
+    verify(delegate, times(2)).post(any(), headers.capture(), any(), any());
+    assertEquals("zstd", headers.getAllValues().get(0).get("Content-Encoding"));
+    assertEquals("gzip", headers.getAllValues().get(1).get("Content-Encoding"));
+  }
+
+  @Test
+  void testOtherClientErrorsAreReturned() throws Exception {
+    ZstdHttpPoster testClass = new ZstdHttpPoster(delegate, dictionary, 3);
+    URL url = new URL("http://localhost/v1/metrics");
+    byte[] payload = payload(1000);
+    when(delegate.post(any(), any(), any(), any()))
+        .thenReturn(response(429), response(413), response(400));
+
+    assertEquals(429, testClass.post(url, emptyMap(), payload, "application/json").getCode());
+    assertEquals(413, testClass.post(url, emptyMap(), payload, "application/json").getCode());
+    assertEquals(400, testClass.post(url, emptyMap(), payload, "application/json").getCode());
+
+    assertFalse(testClass.isRejected());
+    verify(delegate, times(3)).post(any(), headers.capture(), any(), any());
+    headers.getAllValues().forEach(sent -> assertEquals("zstd", sent.get("Content-Encoding")));
+  }
+
+  @Test
+  void testUncompressedBodyIsGzippedWhenZstdIsRejected() throws Exception {
+    ZstdHttpPoster testClass = new ZstdHttpPoster(delegate, dictionary, 3);
+    URL url = new URL("http://localhost/v1/metrics");
+    byte[] payload = payload(1000);
+    when(delegate.post(any(), any(), any(), any())).thenReturn(response(415), response(202));
+
+    testClass.post(url, emptyMap(), payload, "application/x-protobuf");
+
+    verify(delegate, times(2)).post(any(), headers.capture(), bodies.capture(), any());
+    assertEquals("zstd", headers.getAllValues().get(0).get("Content-Encoding"));
+    assertEquals("gzip", headers.getAllValues().get(1).get("Content-Encoding"));
+    assertArrayEquals(payload, IngestResponses.gunzip(bodies.getAllValues().get(1)));
+  }
+
+  @Test
+  void testOtherEncodingsArePassedThrough() throws Exception {
+    ZstdHttpPoster testClass = new ZstdHttpPoster(delegate, dictionary, 3);
+    URL url = new URL("http://localhost/v1/metrics");
+    byte[] body = {1, 2, 3};
+    Map<String, String> deflated = singletonMap("Content-Encoding", "deflate");
+    when(delegate.post(url, deflated, body, "application/json")).thenReturn(response(202));
+
+    testClass.post(url, deflated, body, "application/json");
+
+    assertFalse(testClass.isRejected());
+  }
+
+  // a span batch, in the shape of the New Relic JSON, with the ids and timestamps varying.
+  static byte[] payload(int seed) {
+    StringBuilder json = new StringBuilder("[{\"common\":{\"attributes\":{");
+    json.append("\"service.name\":\"checkout\",\"instrumentation.provider\":\"opentelemetry\",");
+    json.append("\"collector.name\":\"newrelic-opentelemetry-exporter\"}},\"spans\":[");
+    for (int i = 0; i < 20; i++) {
+      if (i > 0) {
+        json.append(',');
+      }
+      json.append("{\"id\":\"")
+          .append(String.format("%016x", seed * 31L + i))
+          .append("\",\"trace.id\":\"")
+          .append(String.format("%032x", seed * 7L))
+          .append("\",\"timestamp\":")
+          .append(1_600_000_000_000L + seed * 1000L + i)
+          .append(",\"attributes\":{\"name\":\"GET /cart/")
+          .append(i % 4)
+          .append("\",\"duration.ms\":")
+          .append((seed + i) % 97)
+          .append(".5,\"span.kind\":\"SERVER\",\"http.method\":\"GET\"}}");
+    }
+    return json.append("]}]").toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static HttpResponse response(int code) {
+    return new HttpResponse("", code, "", emptyMap());
+  }
+}